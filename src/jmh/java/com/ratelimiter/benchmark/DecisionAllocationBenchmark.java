@@ -0,0 +1,84 @@
+package com.ratelimiter.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitStatus;
+import com.ratelimiter.service.impl.CaffeineTokenBucketRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per decision: the {@link RateLimitStatus} path versus the reusable {@link RateLimitDecision} path.
+ * <p>
+ * {@code allowed} uses a bucket that never runs dry, {@code rejected} one that is always empty.
+ * The {@code ...Exception} benchmarks add what the interceptor does on a rejection.
+ * Decision logging is turned off so only the decision path itself is measured.
+ * </p>
+ * <p>Run with: <code>./gradlew jmh -PjmhIncludes=DecisionAllocationBenchmark -PjmhProfilers=gc</code>
+ * and compare {@code gc.alloc.rate.norm} (bytes per operation).</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecisionAllocationBenchmark {
+
+    private static final String KEY = "api:rl_benchmark";
+
+    @Param({"allowed", "rejected"})
+    public String outcome;
+
+    private CaffeineTokenBucketRateLimiter rateLimiter;
+    private final RateLimitDecision decision = new RateLimitDecision();
+    private long capacity;
+    private double refillRate;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.ratelimiter")).setLevel(Level.ERROR);
+        rateLimiter = new CaffeineTokenBucketRateLimiter(new RateLimitConfig(), 1);
+        if ("allowed".equals(outcome)) {
+            capacity = 1_000_000;
+            refillRate = 1_000_000_000;
+        } else {
+            capacity = 1;
+            refillRate = 0.001;
+            rateLimiter.tryConsume(KEY, 1, capacity, refillRate);
+        }
+    }
+
+    @Benchmark
+    public RateLimitStatus statusPath() {
+        return rateLimiter.tryConsume(KEY, 1, capacity, refillRate);
+    }
+
+    @Benchmark
+    public boolean decisionPath() {
+        return rateLimiter.tryConsume(KEY, 1, capacity, refillRate, decision);
+    }
+
+    @Benchmark
+    public Object statusPathException() {
+        RateLimitStatus status = rateLimiter.tryConsume(KEY, 1, capacity, refillRate);
+        return status.isAllowed() ? status : new RateLimitExceededException(KEY, status);
+    }
+
+    @Benchmark
+    public Object decisionPathException() {
+        if (rateLimiter.tryConsume(KEY, 1, capacity, refillRate, decision)) {
+            return decision;
+        }
+        return new RateLimitExceededException(KEY, decision.toStatus());
+    }
+}
@@ -0,0 +1,77 @@
+package com.ratelimiter.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedTokenBucket;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.RateLimiter;
+import com.ratelimiter.service.impl.CaffeineTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.MeteredRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link MeteredRateLimiter}: the same Caffeine limiter called directly and through the decorator.
+ * <p>
+ * The bucket never runs dry, so every call takes the allowed path. The difference between {@code plain} and
+ * {@code metered} is the timer (with percentiles and histogram) plus the tier counter lookup and increment.
+ * Runs with 4 threads so the shared meters see some contention.
+ * </p>
+ * <p>Run with: <code>./gradlew jmh -PjmhIncludes=MetricsOverheadBenchmark -PjmhProfilers=gc</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class MetricsOverheadBenchmark {
+
+    private static final String KEY = "api:rl_benchmark";
+
+    @Param({"premium"})
+    public String tier;
+
+    private RateLimiter plain;
+    private RateLimiter metered;
+
+    @State(Scope.Thread)
+    public static class ThreadDecision {
+        final RateLimitDecision decision = new RateLimitDecision();
+    }
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.ratelimiter")).setLevel(Level.ERROR);
+        RateLimitConfig config = new RateLimitConfig();
+        RateLimitConfig.TierConfig tierConfig = new RateLimitConfig.TierConfig();
+        // Largest bucket the packed state holds, refilled completely every millisecond
+        tierConfig.setCapacity(PackedTokenBucket.MAX_TOKENS);
+        tierConfig.setRefillRate(PackedTokenBucket.MAX_TOKENS * 1000.0);
+        config.getTiers().put(tier, tierConfig);
+
+        plain = new CaffeineTokenBucketRateLimiter(config, 1);
+        metered = new MeteredRateLimiter(new CaffeineTokenBucketRateLimiter(config, 1), config,
+                new SimpleMeterRegistry(), "caffeine", "token-bucket");
+    }
+
+    @Benchmark
+    public boolean plain(ThreadDecision state) {
+        return plain.tryConsumeForTier(KEY, tier, state.decision);
+    }
+
+    @Benchmark
+    public boolean metered(ThreadDecision state) {
+        return metered.tryConsumeForTier(KEY, tier, state.decision);
+    }
+}
@@ -0,0 +1,143 @@
+package com.ratelimiter.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.configuration.RedisConfig;
+import com.ratelimiter.model.PackedTokenBucket;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.RateLimiter;
+import com.ratelimiter.service.impl.CaffeineTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.InMemoryTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.RedisTokenBucketRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One decision through each token bucket backend, the way {@code RateLimitInterceptor} calls it.
+ * <p>
+ * Dimensions:
+ * <ul>
+ *     <li>{@code backend} - in-memory, caffeine, redis (in-process {@link RedisStandIn}, or a real server when
+ *     {@code -Dbenchmark.redis.host=...} is passed to the forked JVM)</li>
+ *     <li>{@code keys} - distinct keys, from one hot key to 10M (10M needs the 6 GB heap set below)</li>
+ *     <li>{@code tierMix} - {@code free} only, or 70% free / 25% premium / 5% enterprise</li>
+ *     <li>{@code rejectedPercent} - share of keys on an exhausted bucket; the others never run dry</li>
+ *     <li>threads - pass {@code -PjmhThreads=N}, e.g. 1, 4, 16 and 64 in separate runs</li>
+ * </ul>
+ * Each run reports throughput and the sampled latency distribution (average, p99); add {@code -PjmhProfilers=gc}
+ * for allocation per operation. Results go to {@code build/results/jmh/results.json} for comparison between
+ * runs.
+ * </p>
+ * <p>Run with: <code>./gradlew jmh -PjmhIncludes=RateLimiterBackendBenchmark -PjmhThreads=16 -PjmhProfilers=gc</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class RateLimiterBackendBenchmark {
+
+    private static final String THROTTLED_TIER = "throttled";
+
+    @Param({"in-memory", "caffeine", "redis"})
+    public String backend;
+
+    @Param({"1", "10000", "1000000", "10000000"})
+    public int keys;
+
+    @Param({"free", "mixed"})
+    public String tierMix;
+
+    @Param({"0", "10", "100"})
+    public int rejectedPercent;
+
+    private RateLimiter rateLimiter;
+    private String[] keyNames;
+    private String[] keyTiers;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final RateLimitDecision decision = new RateLimitDecision();
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.ratelimiter")).setLevel(Level.ERROR);
+        RateLimitConfig config = new RateLimitConfig();
+        // Regular tiers never run dry, so only throttled keys are rejected
+        config.getTiers().put("free", unlimitedTier());
+        config.getTiers().put("premium", unlimitedTier());
+        config.getTiers().put("enterprise", unlimitedTier());
+        RateLimitConfig.TierConfig throttled = new RateLimitConfig.TierConfig();
+        throttled.setCapacity(1);
+        throttled.setRefillRate(1);
+        config.getTiers().put(THROTTLED_TIER, throttled);
+
+        rateLimiter = switch (backend) {
+            case "in-memory" -> new InMemoryTokenBucketRateLimiter(config, 1);
+            case "caffeine" -> new CaffeineTokenBucketRateLimiter(config, 1);
+            case "redis" -> new RedisTokenBucketRateLimiter(config, 1, redisTemplate(),
+                    new RedisConfig().tokenBucketScript(), null, 100_000);
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        };
+
+        keyNames = new String[keys];
+        keyTiers = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = "api:rl_benchmark_" + i;
+            keyTiers[i] = tierOf(i);
+            if (THROTTLED_TIER.equals(keyTiers[i])) {
+                // Start exhausted; afterwards the key gets back one token per second
+                rateLimiter.tryConsumeForTier(keyNames[i], THROTTLED_TIER, new RateLimitDecision());
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean tryConsumeForTier(ThreadState state) {
+        int index = keys == 1 ? 0 : state.random.nextInt(keys);
+        return rateLimiter.tryConsumeForTier(keyNames[index], keyTiers[index], state.decision);
+    }
+
+    // Spreads rejected keys and tiers evenly over the key space
+    private String tierOf(int index) {
+        int bucket = Math.floorMod(index * 0x9E3779B9, 100);
+        if (bucket < rejectedPercent) {
+            return THROTTLED_TIER;
+        }
+        if ("free".equals(tierMix)) {
+            return "free";
+        }
+        int mix = Math.floorMod(index * 7 + 3, 100);
+        return mix < 70 ? "free" : mix < 95 ? "premium" : "enterprise";
+    }
+
+    // Largest bucket the packed state holds, refilled completely every millisecond
+    private static RateLimitConfig.TierConfig unlimitedTier() {
+        RateLimitConfig.TierConfig tierConfig = new RateLimitConfig.TierConfig();
+        tierConfig.setCapacity(PackedTokenBucket.MAX_TOKENS);
+        tierConfig.setRefillRate(PackedTokenBucket.MAX_TOKENS * 1000.0);
+        return tierConfig;
+    }
+
+    private static RedisTemplate<String, Long> redisTemplate() {
+        String host = System.getProperty("benchmark.redis.host");
+        if (host == null) {
+            return new RedisStandIn();
+        }
+        return RedisStandIn.connect(host, Integer.getInteger("benchmark.redis.port", 6379));
+    }
+}
@@ -0,0 +1,64 @@
+package com.ratelimiter.benchmark;
+
+import com.ratelimiter.configuration.RedisConfig;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for Redis running the token bucket script, so Redis-backed limiters can be benchmarked
+ * without a server.
+ * <p>
+ * Scripts run one at a time, like on a Redis server, with the same arithmetic as
+ * {@code ApplicationConstants.TOKEN_BUCKET_SCRIPT}. The {@code benchmark.redis.rtt-micros} system property adds a
+ * simulated round trip (busy wait, outside the lock). This measures the client side of the limiter (result
+ * parsing, rejected-key cache) plus a fixed network cost; use {@link #connect(String, int)} for a real server.
+ * </p>
+ */
+final class RedisStandIn extends RedisTemplate<String, Long> {
+
+    private final Map<String, long[]> buckets = new ConcurrentHashMap<>();
+    private final long rttNanos = Long.getLong("benchmark.redis.rtt-micros", 0) * 1000;
+
+    /**
+     * Returns a template connected to a real Redis server, configured like the application's.
+     */
+    static RedisTemplate<String, Long> connect(String host, int port) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(host, port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        return new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        long startNanos = System.nanoTime();
+        List<Long> result = tokenBucket(keys.getFirst(), (Long) args[0], (Long) args[1], (Long) args[2], (Long) args[3]);
+        while (System.nanoTime() - startNanos < rttNanos) {
+            Thread.onSpinWait();
+        }
+        return (T) result;
+    }
+
+    // {tokens, lastRefillTime} per key, same steps as the Lua script
+    private synchronized List<Long> tokenBucket(String key, long capacity, long refillRate,
+                                                long tokensRequested, long currentTimeMs) {
+        long[] bucket = buckets.computeIfAbsent(key, k -> new long[]{capacity, currentTimeMs});
+        long tokensToAdd = (long) Math.floor((currentTimeMs - bucket[1]) * (double) refillRate / 1000);
+        bucket[0] = Math.min(capacity, bucket[0] + tokensToAdd);
+        if (tokensToAdd > 0) {
+            bucket[1] = currentTimeMs;
+        }
+        if (bucket[0] >= tokensRequested) {
+            bucket[0] -= tokensRequested;
+            return List.of(1L, bucket[0], 0L, 0L);
+        }
+        long retryAtMs = bucket[1] + (long) Math.ceil((tokensRequested - bucket[0]) * 1000.0 / refillRate);
+        return List.of(0L, bucket[0], Math.max(0, retryAtMs - currentTimeMs), retryAtMs);
+    }
+}
@@ -0,0 +1,89 @@
+package com.ratelimiter.benchmark;
+
+import com.ratelimiter.model.AtomicTokenBucket;
+import com.ratelimiter.model.PackedTokenBucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmark: many threads hitting the same (hot) bucket.
+ * <p>
+ * Compares the lock-free {@link AtomicTokenBucket} against the previous
+ * {@code synchronized (tokenBucket)} implementation on a mutable bucket.
+ * A huge refill rate keeps the bucket from running dry so both variants do the full
+ * refill-and-consume path on every call.
+ * </p>
+ * <p>Run with: <code>./gradlew jmh -PjmhIncludes=TokenBucketContentionBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class TokenBucketContentionBenchmark {
+
+    @Param({"1000", "1000000"})
+    public long capacity;
+
+    @Param({"100", "1000000"})
+    public double refillRate;
+
+    private AtomicTokenBucket atomicBucket;
+    private MutableBucket synchronizedBucket;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        atomicBucket = AtomicTokenBucket.createNew(capacity, now);
+        synchronizedBucket = new MutableBucket(capacity, now);
+    }
+
+    @Benchmark
+    public long casEngine() {
+        return atomicBucket.tryConsume(1, capacity, refillRate, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long synchronizedEngine() {
+        return synchronizedTryConsume(synchronizedBucket, 1, capacity, refillRate, System.currentTimeMillis());
+    }
+
+    // The old bucket state: plain fields guarded by the bucket's monitor
+    private static final class MutableBucket {
+        private long availableTokens;
+        private long lastRefillTime;
+
+        private MutableBucket(long availableTokens, long lastRefillTime) {
+            this.availableTokens = availableTokens;
+            this.lastRefillTime = lastRefillTime;
+        }
+    }
+
+    // The old synchronized block, returning the same encoded decision as the CAS engine
+    private static long synchronizedTryConsume(MutableBucket tokenBucket, long tokens, long bucketCapacity,
+                                               double bucketRefillRate, long currentTimeMs) {
+        synchronized (tokenBucket) {
+            long elapsedMs = currentTimeMs - tokenBucket.lastRefillTime;
+            long tokensToAdd = (long) Math.floor(elapsedMs * bucketRefillRate / 1000.0);
+
+            tokenBucket.availableTokens = Math.min(bucketCapacity, tokenBucket.availableTokens + tokensToAdd);
+            if (tokensToAdd > 0) {
+                tokenBucket.lastRefillTime = currentTimeMs;
+            }
+
+            if (tokenBucket.availableTokens >= tokens) {
+                tokenBucket.availableTokens -= tokens;
+                return PackedTokenBucket.allowed(tokenBucket.availableTokens);
+            }
+            return PackedTokenBucket.rejected(tokenBucket.availableTokens);
+        }
+    }
+}
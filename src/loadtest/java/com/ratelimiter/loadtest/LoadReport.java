@@ -0,0 +1,158 @@
+package com.ratelimiter.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects outcomes and latencies of a load test run and prints the summary.
+ * <p>
+ * Latencies are recorded in microseconds from the time a request was <em>scheduled</em> to start, not from when
+ * it was actually sent, so a stalled server shows up in the percentiles instead of slowing the load down
+ * (coordinated omission). Requests sent during warm-up count for rejection accuracy but not for latency or
+ * throughput.
+ * </p>
+ */
+final class LoadReport {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram all = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Histogram allowed = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Histogram rejected = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final LongAdder measured = new LongAdder();
+    private final LongAdder okResponses = new LongAdder();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder otherResponses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Map<Integer, LongAdder> otherStatuses = new ConcurrentHashMap<>();
+
+    /**
+     * Per-tier totals for the rejection accuracy table
+     */
+    private static final class TierAccuracy {
+        long identities;
+        long sentTokens;
+        long allowedTokens;
+        double expectedTokens;
+        long overAdmitted;
+    }
+
+    void record(Traffic.Call call, int status, long latencyNanos, boolean inMeasurement) {
+        Traffic.Identity identity = call.identity();
+        identity.sentTokens.add(call.tokens());
+        if (status == 200) {
+            identity.allowed.increment();
+            identity.allowedTokens.add(call.tokens());
+        } else if (status == 429) {
+            identity.rejected.increment();
+        }
+        if (!inMeasurement) {
+            return;
+        }
+        measured.increment();
+        long latencyMicros = toMicros(latencyNanos);
+        all.recordValue(latencyMicros);
+        if (status == 200) {
+            okResponses.increment();
+            allowed.recordValue(latencyMicros);
+        } else if (status == 429) {
+            tooManyRequests.increment();
+            rejected.recordValue(latencyMicros);
+        } else {
+            otherResponses.increment();
+            otherStatuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    void recordFailure(Traffic.Call call, long latencyNanos, boolean inMeasurement) {
+        call.identity().sentTokens.add(call.tokens());
+        if (inMeasurement) {
+            measured.increment();
+            failures.increment();
+            all.recordValue(toMicros(latencyNanos));
+        }
+    }
+
+    void print(PrintStream out, LoadTestOptions options, Traffic traffic, double measuredSeconds, double totalSeconds) {
+        out.printf("%nMode: %s, target %s, %d connections, %.1fs measured after %ds warm-up%n",
+                options.mode().name().toLowerCase(),
+                options.rate() > 0 ? String.format("%.0f req/s", options.rate()) : "as fast as possible",
+                options.concurrency(), measuredSeconds, options.warmupSeconds());
+        out.printf("Throughput: %.0f req/s (%d requests)%n", measured.sum() / measuredSeconds, measured.sum());
+        out.printf("Responses: 200=%d, 429=%d, other=%d %s, failed=%d%n",
+                okResponses.sum(), tooManyRequests.sum(), otherResponses.sum(), otherStatuses, failures.sum());
+
+        out.printf("%nLatency in ms, from scheduled start%n");
+        out.printf("%-10s %10s %10s %10s %10s %10s %10s%n", "", "count", "mean", "p50", "p99", "p99.9", "max");
+        printLatency(out, "all", all);
+        printLatency(out, "allowed", allowed);
+        printLatency(out, "rejected", rejected);
+
+        out.printf("%nRejection accuracy: allowed tokens vs. capacity + refill rate x %.0fs, per client%n", totalSeconds);
+        out.printf("%-12s %10s %12s %12s %12s %8s %14s%n",
+                "tier", "clients", "sent", "allowed", "expected", "ratio", "over-admitted");
+        Map<String, TierAccuracy> byTier = new TreeMap<>();
+        for (Traffic.Identity identity : traffic.identities()) {
+            long sentTokens = identity.sentTokens.sum();
+            if (sentTokens == 0) {
+                continue;
+            }
+            LoadTestOptions.Limit limit = traffic.limits().getOrDefault(identity.tier,
+                    new LoadTestOptions.Limit(10, 1));
+            double expected = Math.min(sentTokens, limit.capacity() + limit.refillRate() * totalSeconds);
+            long allowedTokens = identity.allowedTokens.sum();
+            TierAccuracy accuracy = byTier.computeIfAbsent(identity.tier, t -> new TierAccuracy());
+            accuracy.identities++;
+            accuracy.sentTokens += sentTokens;
+            accuracy.allowedTokens += allowedTokens;
+            accuracy.expectedTokens += expected;
+            // One request of slack for the request in flight when the window closes
+            if (allowedTokens > expected + maxTokens(options)) {
+                accuracy.overAdmitted++;
+            }
+        }
+        byTier.forEach((tier, accuracy) -> out.printf("%-12s %10d %12d %12d %12.0f %8.3f %14d%n",
+                tier, accuracy.identities, accuracy.sentTokens, accuracy.allowedTokens, accuracy.expectedTokens,
+                accuracy.expectedTokens > 0 ? accuracy.allowedTokens / accuracy.expectedTokens : 0,
+                accuracy.overAdmitted));
+        out.println("(ratio > 1: more let through than the limits allow; < 1: clients throttled below their limit)");
+
+        if (!options.histogramFile().isBlank()) {
+            try (PrintStream file = new PrintStream(options.histogramFile())) {
+                all.outputPercentileDistribution(file, 1000.0);
+                out.printf("%nFull latency distribution (ms) written to %s%n", options.histogramFile());
+            } catch (FileNotFoundException e) {
+                out.printf("%nCould not write %s: %s%n", options.histogramFile(), e.getMessage());
+            }
+        }
+    }
+
+    private static void printLatency(PrintStream out, String label, Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            out.printf("%-10s %10d%n", label, 0);
+            return;
+        }
+        out.printf("%-10s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n", label, histogram.getTotalCount(),
+                histogram.getMean() / 1000.0,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static long maxTokens(LoadTestOptions options) {
+        return options.endpoints().stream().mapToLong(LoadTestOptions.Endpoint::tokens).max().orElse(1);
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(MAX_LATENCY_MICROS, Math.max(0, nanos / 1000));
+    }
+}
@@ -0,0 +1,171 @@
+package com.ratelimiter.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP load generator for a running rate limiter instance.
+ * <p>
+ * Two ways of generating load:
+ * <ul>
+ *     <li>{@code --mode=open} - requests are scheduled at {@code --rate} per second by {@code --dispatchers}
+ *     threads and sent asynchronously, with at most {@code --concurrency} in flight. A slow server does not lower
+ *     the offered load; requests queue up and their wait counts as latency.</li>
+ *     <li>{@code --mode=closed} - {@code --concurrency} workers each send a request and wait for the response.
+ *     With {@code --rate} the workers are paced to that total rate and latency is measured from the paced start
+ *     time; with {@code --rate=0} they go as fast as the server answers and latency is the raw response time.</li>
+ * </ul>
+ * Clients, endpoints and limits are described in {@link LoadTestOptions}; results in {@link LoadReport}.
+ * </p>
+ * <p>Run with: <code>./gradlew loadTest -PloadTestArgs="--mode=open --rate=20000 --duration=60"</code>
+ * against an application started with <code>make run</code>.</p>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        Traffic traffic = new Traffic(options);
+        LoadReport report = new LoadReport();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(options.timeoutMs()))
+                .build();
+
+        long startNanos = System.nanoTime();
+        long warmupEndNanos = startNanos + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long endNanos = warmupEndNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        System.out.printf("Sending %s load to %s for %ds (+%ds warm-up)%n", options.mode().name().toLowerCase(),
+                options.baseUrl(), options.durationSeconds(), options.warmupSeconds());
+
+        if (options.mode() == LoadTestOptions.Mode.OPEN) {
+            runOpenLoop(options, traffic, report, client, startNanos, warmupEndNanos, endNanos);
+        } else {
+            runClosedLoop(options, traffic, report, client, startNanos, warmupEndNanos, endNanos);
+        }
+
+        double measuredSeconds = (System.nanoTime() - warmupEndNanos) / 1e9;
+        double totalSeconds = (System.nanoTime() - startNanos) / 1e9;
+        report.print(System.out, options, traffic, Math.min(measuredSeconds, options.durationSeconds()), totalSeconds);
+        System.exit(0);
+    }
+
+    private static void runOpenLoop(LoadTestOptions options, Traffic traffic, LoadReport report, HttpClient client,
+                                    long startNanos, long warmupEndNanos, long endNanos) throws InterruptedException {
+        if (options.rate() <= 0) {
+            throw new IllegalArgumentException("Open-loop mode needs --rate > 0");
+        }
+        int dispatcherCount = Math.max(1, options.dispatchers());
+        double intervalNanos = 1e9 / options.rate();
+        Semaphore inFlight = new Semaphore(options.concurrency());
+
+        List<Thread> dispatchers = new ArrayList<>();
+        for (int d = 0; d < dispatcherCount; d++) {
+            int offset = d;
+            Thread dispatcher = new Thread(() -> {
+                // Dispatcher d sends requests d, d + n, d + 2n, ... of one global schedule
+                for (long i = offset; ; i += dispatcherCount) {
+                    long scheduledNanos = startNanos + (long) (i * intervalNanos);
+                    if (scheduledNanos >= endNanos) {
+                        return;
+                    }
+                    waitUntil(scheduledNanos);
+                    inFlight.acquireUninterruptibly();
+                    Traffic.Call call = traffic.next();
+                    boolean inMeasurement = scheduledNanos >= warmupEndNanos;
+                    client.sendAsync(call.request(), HttpResponse.BodyHandlers.discarding())
+                            .whenComplete((response, error) -> {
+                                long latencyNanos = System.nanoTime() - scheduledNanos;
+                                inFlight.release();
+                                if (error != null) {
+                                    report.recordFailure(call, latencyNanos, inMeasurement);
+                                } else {
+                                    report.record(call, response.statusCode(), latencyNanos, inMeasurement);
+                                }
+                            });
+                }
+            }, "load-dispatcher-" + d);
+            dispatcher.start();
+            dispatchers.add(dispatcher);
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join();
+        }
+        // Let the last requests finish (or time out)
+        inFlight.tryAcquire(options.concurrency(), options.timeoutMs() * 2, TimeUnit.MILLISECONDS);
+    }
+
+    private static void runClosedLoop(LoadTestOptions options, Traffic traffic, LoadReport report, HttpClient client,
+                                      long startNanos, long warmupEndNanos, long endNanos) throws InterruptedException {
+        int workerCount = Math.max(1, options.concurrency());
+        // Per-worker interval when paced, 0 to send back to back
+        double pacingNanos = options.rate() > 0 ? 1e9 * workerCount / options.rate() : 0;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < workerCount; w++) {
+            long firstNanos = startNanos + (long) (pacingNanos * w / workerCount);
+            Thread worker = new Thread(() -> {
+                for (long i = 0; ; i++) {
+                    long scheduledNanos;
+                    if (pacingNanos > 0) {
+                        scheduledNanos = firstNanos + (long) (i * pacingNanos);
+                        if (scheduledNanos >= endNanos) {
+                            return;
+                        }
+                        waitUntil(scheduledNanos);
+                    } else {
+                        scheduledNanos = System.nanoTime();
+                        if (scheduledNanos >= endNanos) {
+                            return;
+                        }
+                    }
+                    Traffic.Call call = traffic.next();
+                    boolean inMeasurement = scheduledNanos >= warmupEndNanos;
+                    try {
+                        HttpResponse<Void> response = client.send(call.request(), HttpResponse.BodyHandlers.discarding());
+                        report.record(call, response.statusCode(), System.nanoTime() - scheduledNanos, inMeasurement);
+                    } catch (IOException e) {
+                        report.recordFailure(call, System.nanoTime() - scheduledNanos, inMeasurement);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }, "load-worker-" + w);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    // Parks for most of the wait and spins for the last few microseconds
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > 100_000) {
+                LockSupport.parkNanos(remaining - 50_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
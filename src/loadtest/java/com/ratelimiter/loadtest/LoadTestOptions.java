@@ -0,0 +1,165 @@
+package com.ratelimiter.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options of {@link LoadTest}, given as {@code --name=value}.
+ * <p>
+ * Lists are comma separated, entries colon separated, e.g.
+ * {@code --endpoints=/api/v1/test:8:1,/api/v1/ratelimit/expensive:1:6} (path:weight:tokens).
+ * Defaults match {@code application.properties} and the users in {@code data.sql}.
+ * </p>
+ */
+record LoadTestOptions(String baseUrl,
+                       Mode mode,
+                       double rate,
+                       int durationSeconds,
+                       int warmupSeconds,
+                       int concurrency,
+                       int dispatchers,
+                       long timeoutMs,
+                       List<Endpoint> endpoints,
+                       List<ApiKey> apiKeys,
+                       int users,
+                       int ips,
+                       double skew,
+                       Map<String, Double> identityMix,
+                       Map<String, Double> userTiers,
+                       Map<String, Limit> limits,
+                       String histogramFile) {
+
+    enum Mode {
+        /**
+         * Requests start on a fixed schedule, whatever the response times
+         */
+        OPEN,
+        /**
+         * A fixed number of workers, each sending its next request when the previous one completes
+         */
+        CLOSED
+    }
+
+    /**
+     * An endpoint, its share of the traffic and the tokens one request costs
+     */
+    record Endpoint(String path, double weight, long tokens) {
+    }
+
+    /**
+     * A registered API key with the tier it belongs to
+     */
+    record ApiKey(String key, String tier, double weight) {
+    }
+
+    /**
+     * Token bucket limits of a tier
+     */
+    record Limit(long capacity, double refillRate) {
+    }
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("url", "http://localhost:8080");
+        DEFAULTS.put("mode", "open");
+        DEFAULTS.put("rate", "20000");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("concurrency", "512");
+        DEFAULTS.put("dispatchers", "4");
+        DEFAULTS.put("timeout-ms", "5000");
+        // /ratelimit endpoints charge the annotation's tokens plus the global request token in one decision
+        DEFAULTS.put("endpoints", "/api/v1/test:8:1,/api/v1/ratelimit/free:1:2,/api/v1/ratelimit/expensive:1:6");
+        DEFAULTS.put("api-keys", "rl_free_user_api_key_12345678:free:1,rl_premium_user_api_key_1234:premium:1,"
+                + "rl_enterprise_api_key_12345:enterprise:1");
+        DEFAULTS.put("users", "1000");
+        DEFAULTS.put("ips", "10000");
+        DEFAULTS.put("skew", "0");
+        DEFAULTS.put("identity-mix", "api:20,user:40,ip:40");
+        DEFAULTS.put("user-tiers", "free:70,premium:25,enterprise:5");
+        DEFAULTS.put("limits", "free:10:1,premium:100:10,enterprise:1000:100");
+        DEFAULTS.put("hgrm", "");
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg + "\n" + usage());
+            }
+            String name = arg.substring(2, separator);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: " + name + "\n" + usage());
+            }
+            values.put(name, arg.substring(separator + 1));
+        }
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String[] entry : entries(values.get("endpoints"))) {
+            endpoints.add(new Endpoint(entry[0], number(entry, 1, 1), (long) number(entry, 2, 1)));
+        }
+        List<ApiKey> apiKeys = new ArrayList<>();
+        for (String[] entry : entries(values.get("api-keys"))) {
+            apiKeys.add(new ApiKey(entry[0], entry.length > 1 ? entry[1].toLowerCase() : "free", number(entry, 2, 1)));
+        }
+        Map<String, Limit> limits = new HashMap<>();
+        for (String[] entry : entries(values.get("limits"))) {
+            limits.put(entry[0].toLowerCase(), new Limit((long) number(entry, 1, 10), number(entry, 2, 1)));
+        }
+
+        return new LoadTestOptions(
+                values.get("url").replaceAll("/+$", ""),
+                Mode.valueOf(values.get("mode").toUpperCase()),
+                Double.parseDouble(values.get("rate")),
+                Integer.parseInt(values.get("duration")),
+                Integer.parseInt(values.get("warmup")),
+                Integer.parseInt(values.get("concurrency")),
+                Integer.parseInt(values.get("dispatchers")),
+                Long.parseLong(values.get("timeout-ms")),
+                endpoints,
+                apiKeys,
+                Integer.parseInt(values.get("users")),
+                Integer.parseInt(values.get("ips")),
+                Double.parseDouble(values.get("skew")),
+                weights(values.get("identity-mix")),
+                weights(values.get("user-tiers")),
+                limits,
+                values.get("hgrm"));
+    }
+
+    static String usage() {
+        StringBuilder usage = new StringBuilder("Options (defaults):\n");
+        DEFAULTS.forEach((name, value) -> usage.append("  --").append(name).append('=').append(value).append('\n'));
+        return usage.toString();
+    }
+
+    private static List<String[]> entries(String value) {
+        List<String[]> entries = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (!entry.isBlank()) {
+                entries.add(entry.trim().split(":"));
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, Double> weights(String value) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String[] entry : entries(value)) {
+            weights.put(entry[0].toLowerCase(), number(entry, 1, 1));
+        }
+        return weights;
+    }
+
+    private static double number(String[] entry, int index, double defaultValue) {
+        return entry.length > index ? Double.parseDouble(entry[index]) : defaultValue;
+    }
+}
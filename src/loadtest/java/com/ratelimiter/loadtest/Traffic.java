@@ -0,0 +1,177 @@
+package com.ratelimiter.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates requests: picks an endpoint and a client identity from the configured distributions.
+ * <p>
+ * Identities are {@code api} (X-API-Key of a registered user), {@code user} (X-User-Id with an X-User-Tier drawn
+ * from {@code user-tiers}) and {@code ip} (X-Forwarded-For, free tier). Within a kind, the identity is chosen
+ * uniformly, or Zipf-distributed with exponent {@code skew} (1.0 gives a few very hot clients).
+ * Each identity keeps its own counts for the rejection accuracy report.
+ * </p>
+ */
+final class Traffic {
+
+    /**
+     * One client as the server sees it, with what it sent and what was let through
+     */
+    static final class Identity {
+        final String kind;
+        final String header;
+        final String value;
+        final String tier;
+        final String tierHeader;
+        final LongAdder sentTokens = new LongAdder();
+        final LongAdder allowedTokens = new LongAdder();
+        final LongAdder allowed = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+
+        Identity(String kind, String header, String value, String tier, String tierHeader) {
+            this.kind = kind;
+            this.header = header;
+            this.value = value;
+            this.tier = tier;
+            this.tierHeader = tierHeader;
+        }
+    }
+
+    /**
+     * A request ready to send, with what it costs and who sent it
+     */
+    record Call(HttpRequest request, long tokens, Identity identity) {
+    }
+
+    private final LoadTestOptions options;
+    private final URI[] endpointUris;
+    private final long[] endpointTokens;
+    private final Sampler endpoints;
+    private final String[] kinds;
+    private final Sampler kindSampler;
+    private final List<Identity> apiIdentities = new ArrayList<>();
+    private final Sampler apiSampler;
+    private final Identity[] userIdentities;
+    private final Identity[] ipIdentities;
+    private final Sampler userSampler;
+    private final Sampler ipSampler;
+
+    Traffic(LoadTestOptions options) {
+        this.options = options;
+
+        int endpointCount = options.endpoints().size();
+        endpointUris = new URI[endpointCount];
+        endpointTokens = new long[endpointCount];
+        double[] endpointWeights = new double[endpointCount];
+        for (int i = 0; i < endpointCount; i++) {
+            LoadTestOptions.Endpoint endpoint = options.endpoints().get(i);
+            endpointUris[i] = URI.create(options.baseUrl() + endpoint.path());
+            endpointTokens[i] = endpoint.tokens();
+            endpointWeights[i] = endpoint.weight();
+        }
+        endpoints = Sampler.weighted(endpointWeights);
+
+        kinds = options.identityMix().keySet().toArray(String[]::new);
+        kindSampler = Sampler.weighted(options.identityMix().values().stream().mapToDouble(Double::doubleValue).toArray());
+
+        double[] apiWeights = new double[options.apiKeys().size()];
+        for (int i = 0; i < apiWeights.length; i++) {
+            LoadTestOptions.ApiKey apiKey = options.apiKeys().get(i);
+            apiIdentities.add(new Identity("api", "X-API-Key", apiKey.key(), apiKey.tier(), null));
+            apiWeights[i] = apiKey.weight();
+        }
+        apiSampler = Sampler.weighted(apiWeights);
+
+        String[] tiers = options.userTiers().keySet().toArray(String[]::new);
+        Sampler tierSampler = Sampler.weighted(options.userTiers().values().stream().mapToDouble(Double::doubleValue).toArray());
+        userIdentities = new Identity[Math.max(1, options.users())];
+        for (int i = 0; i < userIdentities.length; i++) {
+            String tier = tiers[tierSampler.next()];
+            userIdentities[i] = new Identity("user", "X-User-Id", "loadtest-user-" + i, tier, tier);
+        }
+        ipIdentities = new Identity[Math.max(1, options.ips())];
+        for (int i = 0; i < ipIdentities.length; i++) {
+            String ip = "10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF);
+            ipIdentities[i] = new Identity("ip", "X-Forwarded-For", ip, "free", null);
+        }
+        userSampler = Sampler.zipf(userIdentities.length, options.skew());
+        ipSampler = Sampler.zipf(ipIdentities.length, options.skew());
+    }
+
+    Call next() {
+        int endpoint = endpoints.next();
+        Identity identity = switch (kinds[kindSampler.next()]) {
+            case "api" -> apiIdentities.get(apiSampler.next());
+            case "user" -> userIdentities[userSampler.next()];
+            case "ip" -> ipIdentities[ipSampler.next()];
+            default -> throw new IllegalArgumentException("Unknown identity kind, use api, user or ip");
+        };
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpointUris[endpoint])
+                .timeout(Duration.ofMillis(options.timeoutMs()))
+                .header(identity.header, identity.value)
+                .GET();
+        if (identity.tierHeader != null) {
+            builder.header("X-User-Tier", identity.tierHeader);
+        }
+        return new Call(builder.build(), endpointTokens[endpoint], identity);
+    }
+
+    List<Identity> identities() {
+        List<Identity> identities = new ArrayList<>(apiIdentities);
+        identities.addAll(List.of(userIdentities));
+        identities.addAll(List.of(ipIdentities));
+        return identities;
+    }
+
+    Map<String, LoadTestOptions.Limit> limits() {
+        return options.limits();
+    }
+
+    /**
+     * Draws indexes from a discrete distribution by binary search over its cumulative weights.
+     */
+    private record Sampler(double[] cumulative) {
+
+        static Sampler weighted(double[] weights) {
+            double[] cumulative = new double[weights.length];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                total += weights[i];
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < cumulative.length; i++) {
+                cumulative[i] /= total;
+            }
+            return new Sampler(cumulative);
+        }
+
+        static Sampler zipf(int size, double exponent) {
+            double[] weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                weights[i] = exponent == 0 ? 1 : 1 / Math.pow(i + 1, exponent);
+            }
+            return weighted(weights);
+        }
+
+        int next() {
+            double value = ThreadLocalRandom.current().nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.lang.annotation.Target;
  * &#64;RateLimit(tier = "free")        // All users get their tier's rate limits
  * &#64;RateLimit(tier = "premium")     // Free users get grace limits, premium+ get full access
  * &#64;RateLimit(tier = "enterprise")  // Only enterprise gets full access, others get grace limits
+ * &#64;RateLimit(policy = "reports")   // Also within the "reports" per-client and endpoint-wide limits
  * </pre>
  */
 @Target(ElementType.METHOD)
@@ -38,4 +39,15 @@ public @interface RateLimit {
      * For example, a report generation endpoint might cost 10 tokens.
      */
     long tokens() default 1;
+
+    /**
+     * Composite policy (a key of {@code rate.limit.composite.policies}) adding per-client and endpoint-wide
+     * limits to this endpoint.
+     * <p>
+     * The request is allowed only if the client's tier bucket, the policy's buckets and the service-wide bucket
+     * all have enough tokens, and then all of them are charged. Endpoints sharing a policy share its limits.
+     * <p>
+     * Default: "" (only the client's tier bucket and the service-wide limit, if configured)
+     */
+    String policy() default "";
 }
@@ -3,9 +3,11 @@ package com.ratelimiter.aspect;
 import com.ratelimiter.annotation.RateLimit;
 import com.ratelimiter.configuration.RateLimitConfig;
 import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.interceptor.RateLimitContext;
+import com.ratelimiter.model.RateLimitRequest;
 import com.ratelimiter.model.RateLimitStatus;
 import com.ratelimiter.service.ClientIdentityResolver;
-import com.ratelimiter.service.ClientIdentityResolver.ResolvedIdentity;
+import com.ratelimiter.service.CompositeLimitChain;
 import com.ratelimiter.service.RateLimiter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -20,6 +22,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
+import java.util.List;
 
 /**
  * Aspect that provides hierarchical tier-based rate limiting for methods annotated with {@link RateLimit}.
@@ -31,6 +34,13 @@ import java.lang.reflect.Method;
  * </ul>
  * <p>
  * If the rate limit is exceeded, the aspect throws a {@link RateLimitExceededException}.
+ * <p>
+ * Identity and tier come from the request's {@link RateLimitContext}. Tokens deferred by the
+ * {@link com.ratelimiter.interceptor.RateLimitInterceptor} are charged together with the endpoint's tokens,
+ * so an annotated endpoint costs a single limiter call.
+ * <p>
+ * With composite limits (a {@link RateLimit#policy()} or the service-wide limit) the client's bucket is
+ * checked together with the policy and service buckets, all or nothing (see {@link CompositeLimitChain}).
  *
  * @see RateLimit
  * @see RateLimiter
@@ -45,6 +55,7 @@ public class RateLimitAspect {
     private final RateLimiter rateLimiter;
     private final RateLimitConfig rateLimitConfig;
     private final ClientIdentityResolver clientIdentityResolver;
+    private final CompositeLimitChain compositeLimitChain;
     private final HttpServletRequest request;
     private final HttpServletResponse response;
 
@@ -60,25 +71,30 @@ public class RateLimitAspect {
 
         RateLimit rateLimit = AnnotationUtils.findAnnotation(method, RateLimit.class);
 
-        // Resolve client identity (clientId + optional user for tier lookup)
-        ResolvedIdentity identity = clientIdentityResolver.resolveIdentity(request);
-        String clientId = identity.key();
-        String userTier = clientIdentityResolver.resolveUserTier(request, identity.user());
+        // Resolve client identity (reuses the interceptor's resolution when it ran)
+        RateLimitContext context = RateLimitContext.resolve(request, clientIdentityResolver);
+        String clientId = context.getClientId();
+        String userTier = context.getUserTier();
         String requiredTier = rateLimit.tier();
-        long tokens = rateLimit.tokens();
+        // Global limit's tokens (deferred by the interceptor) plus the endpoint's own
+        long tokens = rateLimit.tokens() + context.takeDeferredTokens();
 
-        // Apply rate limit based on tier comparison
-        RateLimitStatus result = applyRateLimit(clientId, userTier, requiredTier, tokens);
+        // Apply rate limit based on tier comparison, together with the composite limits if any
+        RateLimitRequest clientRequest = clientRequestOf(clientId, userTier, requiredTier, tokens);
+        List<RateLimitRequest> chain = compositeLimitChain.chainOf(clientRequest, rateLimit.policy(), rateLimit.tokens());
+        RateLimitStatus result = chain.size() == 1
+                ? applyRateLimit(clientRequest)
+                : CompositeLimitChain.tightestOf(rateLimiter.tryConsumeAll(chain, true));
 
         // Add rate limit headers to response
         clientIdentityResolver.addRateLimitHeaders(response, result);
 
-        log.debug("Rate limit check for clientId '{}': userTier={}, requiredTier={}, allowed={}, remaining={}",
-                clientId, userTier, requiredTier, result.isAllowed(), result.getRemainingTokens());
+        log.debug("Rate limit check for clientId '{}': userTier={}, requiredTier={}, buckets={}, allowed={}, remaining={}",
+                clientId, userTier, requiredTier, chain.size(), result.isAllowed(), result.getRemainingTokens());
 
         if (!result.isAllowed()) {
             String methodName = signature.getDeclaringType().getSimpleName() + "." + signature.getName();
-            log.warn("Rate limit exceeded for method '{}' with clientId '{}'. Retry after {}ms",
+            log.debug("Rate limit exceeded for method '{}' with clientId '{}'. Retry after {}ms",
                     methodName, clientId, result.getRetryAfterMs());
             throw new RateLimitExceededException(clientId, result);
         }
@@ -87,25 +103,36 @@ public class RateLimitAspect {
     }
 
     /**
-     * Applies rate limiting based on user tier vs required tier.
+     * Selects the client's bucket limits based on user tier vs required tier.
      *
      * @param key          The rate limit key (user ID, API key, or IP)
      * @param userTier     The user's tier
      * @param requiredTier The tier required by the endpoint
      * @param tokens       Number of tokens to consume
-     * @return RateLimitResult indicating if request is allowed
+     * @return request for the client's own bucket
      */
-    private RateLimitStatus applyRateLimit(String key, String userTier, String requiredTier, long tokens) {
+    private RateLimitRequest clientRequestOf(String key, String userTier, String requiredTier, long tokens) {
         if (rateLimitConfig.hasAccess(userTier, requiredTier)) {
             // User has sufficient tier - apply their tier's rate limits
             log.debug("User tier '{}' has full access to '{}' tier endpoint", userTier, requiredTier);
-            return rateLimiter.tryConsumeForTier(key, userTier, tokens);
+            return RateLimitRequest.forTier(key, userTier, tokens);
         } else {
-            // User is below required tier - apply their tier's limits as grace limits
+            // User is below required tier - apply their tier's limits as grace limits. The tier is kept so
+            // limiters that need more than capacity and rate (e.g. the sliding window's length) use the tier's
             log.debug("User tier '{}' below required '{}' - applying grace limits", userTier, requiredTier);
             RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(userTier);
-            return rateLimiter.tryConsume(key, tokens, tierConfig.getCapacity(), tierConfig.getRefillRate());
+            return RateLimitRequest.forTier(key, userTier, tokens)
+                    .withLimits(tierConfig.getCapacity(), tierConfig.getRefillRate());
+        }
+    }
+
+    // Client bucket alone: the single-key calls, which keep the limiters' fast paths
+    private RateLimitStatus applyRateLimit(RateLimitRequest clientRequest) {
+        if (clientRequest.tier() != null) {
+            return rateLimiter.tryConsumeForTier(clientRequest.key(), clientRequest.tier(), clientRequest.tokens());
         }
+        return rateLimiter.tryConsume(clientRequest.key(), clientRequest.tokens(),
+                clientRequest.bucketCapacity(), clientRequest.bucketRefillRate());
     }
 
 }
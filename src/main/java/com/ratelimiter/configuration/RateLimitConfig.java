@@ -1,11 +1,15 @@
 package com.ratelimiter.configuration;
 
+import com.ratelimiter.model.PackedSlidingWindow;
+import com.ratelimiter.model.PackedTokenBucket;
 import lombok.Builder;
 import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,11 +26,14 @@ import java.util.Map;
  *     <li>PREMIUM tier: Higher limits for paying customers</li>
  *     <li>ENTERPRISE tier: Highest limits for enterprise customers</li>
  * </ul>
+ * <p>
+ * The limits are validated once bound, so a capacity the local buckets cannot hold fails the startup
+ * instead of every request.
  */
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "rate.limit")
-public class RateLimitConfig {
+public class RateLimitConfig implements InitializingBean {
 
     // Default bucket capacity if no tier specified
     private long defaultCapacity = 10;
@@ -37,6 +44,9 @@ public class RateLimitConfig {
     // Storage backend for rate limiting.
     private String storage = "in-memory";
 
+    // Rate limiting algorithm: "token-bucket", "gcra" or "sliding-window".
+    private String algorithm = "token-bucket";
+
     // Tier hierarchy from lowest to highest priority.
     private List<String> tierHierarchy = List.of("free", "premium", "enterprise");
 
@@ -46,6 +56,15 @@ public class RateLimitConfig {
      */
     private Map<String, TierConfig> tiers = new HashMap<>();
 
+    /**
+     * Limits above the client's own bucket, checked together with it
+     * (see {@link com.ratelimiter.service.CompositeLimitChain})
+     */
+    private CompositeConfig composite = new CompositeConfig();
+
+    // Redis settings that decide whether local buckets are used as a fallback
+    private RedisSettings redis = new RedisSettings();
+
     /**
      * Configuration of a specific user tier.
      * <p>
@@ -63,9 +82,134 @@ public class RateLimitConfig {
         // Tokens added per second (sustained rate)
         private double refillRate;
 
+        // Rolling window for the sliding-window algorithm (capacity tokens per window).
+        // When not set, capacity / refillRate is used.
+        private Duration window;
+
         private String description;
     }
 
+    /**
+     * Composite limits: the service-wide limit and named policies referenced by
+     * {@link com.ratelimiter.annotation.RateLimit#policy()}.
+     */
+    @Data
+    public static class CompositeConfig {
+        // All @RateLimit requests of this instance's service together
+        private LimitConfig service = new LimitConfig();
+
+        // Policy name -> per-client and endpoint-wide limits
+        private Map<String, PolicyConfig> policies = new HashMap<>();
+    }
+
+    /**
+     * Limits of one composite policy, for the endpoints that reference it.
+     */
+    @Data
+    public static class PolicyConfig {
+        // Each client on the policy's endpoints (stripes are ignored)
+        private LimitConfig perClient = new LimitConfig();
+
+        // All clients together on the policy's endpoints
+        private LimitConfig endpoint = new LimitConfig();
+    }
+
+    /**
+     * One bucket of a composite chain. A capacity of 0 disables it.
+     * <p>
+     * A limit shared by all clients is split into {@code stripes} independent buckets with an equal share of
+     * the capacity and refill rate, so concurrent requests do not all update the same bucket. Every stripe needs
+     * at least one token of capacity and one token per second of refill, so both must be at least {@code stripes}.
+     * </p>
+     */
+    @Data
+    public static class LimitConfig {
+        private long capacity;
+
+        private double refillRate;
+
+        private int stripes = 1;
+
+        public boolean isEnabled() {
+            return capacity > 0;
+        }
+    }
+
+    /**
+     * Redis settings read by {@link #validate()}. The breaker's thresholds are read where the breaker is created.
+     */
+    @Data
+    public static class RedisSettings {
+        private CircuitBreakerSettings circuitBreaker = new CircuitBreakerSettings();
+    }
+
+    @Data
+    public static class CircuitBreakerSettings {
+        // While open, the Redis token bucket falls back to local buckets
+        private boolean enabled = true;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        validate();
+    }
+
+    /**
+     * Checks every configured capacity (default, tiers and composite limits) against what the local buckets
+     * can hold: {@link PackedTokenBucket#MAX_TOKENS}, or {@link PackedSlidingWindow#MAX_COUNT} for the local
+     * sliding window. Redis storage is only capped when its circuit breaker can fall back to local buckets.
+     *
+     * @throws IllegalStateException naming the first invalid property
+     */
+    public void validate() {
+        long maxCapacity = maxCapacity();
+        checkCapacity("rate.limit.default-capacity", defaultCapacity, maxCapacity);
+        tiers.forEach((name, tier) ->
+                checkCapacity("rate.limit.tiers." + name + ".capacity", tier.getCapacity(), maxCapacity));
+        checkCapacity("rate.limit.composite.service.capacity", composite.getService().getCapacity(), maxCapacity);
+        checkStripes("rate.limit.composite.service", composite.getService());
+        composite.getPolicies().forEach((name, policy) -> {
+            String prefix = "rate.limit.composite.policies." + name;
+            checkCapacity(prefix + ".per-client.capacity", policy.getPerClient().getCapacity(), maxCapacity);
+            checkCapacity(prefix + ".endpoint.capacity", policy.getEndpoint().getCapacity(), maxCapacity);
+            checkStripes(prefix + ".endpoint", policy.getEndpoint());
+        });
+    }
+
+    private long maxCapacity() {
+        boolean tokenBucket = "token-bucket".equals(algorithm);
+        if ("redis".equals(storage)) {
+            // Only the Redis token bucket has a local fallback, and only with the circuit breaker
+            return tokenBucket && redis.getCircuitBreaker().isEnabled() ? PackedTokenBucket.MAX_TOKENS : Long.MAX_VALUE;
+        }
+        if ("redis-lease".equals(storage) && tokenBucket) {
+            // Leased tokens are plain counters, the buckets stay in Redis
+            return Long.MAX_VALUE;
+        }
+        return "sliding-window".equals(algorithm) ? PackedSlidingWindow.MAX_COUNT : PackedTokenBucket.MAX_TOKENS;
+    }
+
+    // A stripe with no capacity rejects everything, and Redis truncates a refill rate below 1 token/s to 0
+    private static void checkStripes(String prefix, LimitConfig limit) {
+        if (!limit.isEnabled()) {
+            return;
+        }
+        int stripes = limit.getStripes();
+        if (stripes < 1) {
+            throw new IllegalStateException(prefix + ".stripes must be at least 1: " + stripes);
+        }
+        if (limit.getCapacity() < stripes || limit.getRefillRate() < stripes) {
+            throw new IllegalStateException(prefix + ".capacity and " + prefix + ".refill-rate must be at least "
+                    + prefix + ".stripes (" + stripes + "): " + limit.getCapacity() + ", " + limit.getRefillRate());
+        }
+    }
+
+    private static void checkCapacity(String property, long capacity, long maxCapacity) {
+        if (capacity < 0 || capacity > maxCapacity) {
+            throw new IllegalStateException(property + " must be between 0 and " + maxCapacity + ": " + capacity);
+        }
+    }
+
     /**
      * Gets the configuration for a specific tier.
      * Falls back to default values if tier is not found.
@@ -85,6 +229,27 @@ public class RateLimitConfig {
         return tiers.get(tierName.toLowerCase());
     }
 
+    /**
+     * Longest time any configured limit (tiers and defaults) takes to refill an empty bucket.
+     * A bucket last refilled longer ago than this is full at every tier, same as a missing bucket.
+     *
+     * @return milliseconds, or Long.MAX_VALUE if a limit never refills
+     */
+    public long slowestRefillMs() {
+        long slowest = refillMs(defaultCapacity, defaultRefillRate);
+        for (TierConfig tier : tiers.values()) {
+            slowest = Math.max(slowest, refillMs(tier.getCapacity(), tier.getRefillRate()));
+        }
+        return slowest;
+    }
+
+    private static long refillMs(long capacity, double refillRate) {
+        if (refillRate <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) Math.ceil(capacity * 1000.0 / refillRate);
+    }
+
     /**
      * Gets the priority level of a tier (higher = more privileged).
      *
@@ -1,11 +1,28 @@
 package com.ratelimiter.configuration;
 
+import com.ratelimiter.service.impl.CaffeineGcraRateLimiter;
+import com.ratelimiter.service.impl.CaffeineSlidingWindowRateLimiter;
 import com.ratelimiter.service.impl.CaffeineTokenBucketRateLimiter;
 import com.ratelimiter.service.impl.InMemoryTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.OffHeapTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.ShardedInMemoryTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.SharedMemoryTokenBucketRateLimiter;
 import com.ratelimiter.service.RateLimiter;
+import com.ratelimiter.service.impl.RedisCircuitBreaker;
+import com.ratelimiter.service.impl.RedisGcraRateLimiter;
+import com.ratelimiter.service.impl.RedisLeasingTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.RedisScriptBatcher;
+import com.ratelimiter.service.impl.RedisSlidingWindowRateLimiter;
 import com.ratelimiter.service.impl.RedisTokenBucketRateLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
@@ -14,7 +31,9 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.RedisScript;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Auto-configuration for Rate Limiter implementations.
@@ -22,8 +41,18 @@ import java.util.List;
  * Use the property {@code rate.limit.storage} to select the implementation:
  * <ul>
  *   <li>{@code redis} - Uses Redis for distributed rate limiting (production)</li>
+ *   <li>{@code redis-lease} - Redis token bucket, with blocks of tokens leased and spent locally (token-bucket only)</li>
  *   <li>{@code caffeine} - Uses Caffeine cache with TTL support (single instance with auto-expiry)</li>
  *   <li>{@code in-memory} - Uses ConcurrentHashMap (simple, no TTL)</li>
+ *   <li>{@code sharded} - Uses N ConcurrentHashMap shards with a background sweeper (bounded by active clients)</li>
+ *   <li>{@code offheap} - Uses a fixed-size off-heap hash table (bounded memory, no GC pressure)</li>
+ *   <li>{@code shm} - The off-heap table in a memory-mapped file shared by all instances on the host</li>
+ * </ul>
+ * Use the property {@code rate.limit.algorithm} to select the algorithm:
+ * <ul>
+ *   <li>{@code token-bucket} (default) - Token Bucket on the storage above</li>
+ *   <li>{@code gcra} - Generic Cell Rate Algorithm, one timestamp per key (Redis, or Caffeine for local storages)</li>
+ *   <li>{@code sliding-window} - N tokens per rolling window (Redis, or Caffeine for local storages)</li>
  * </ul>
  * </p>
  */
@@ -34,17 +63,107 @@ public class RateLimiterAutoConfiguration {
     @Value("${rate.limit.bucket.tokens-per-request:1}")
     private long tokensPerRequest;
 
+    @Value("${rate.limit.sharded.shards:16}")
+    private int shardCount;
+
+    @Value("${rate.limit.sharded.sweep-interval-ms:1000}")
+    private long sweepIntervalMs;
+
+    @Value("${rate.limit.offheap.max-buckets:1048576}")
+    private long offHeapMaxBuckets;
+
     /**
      * Creates Redis-based rate limiter when storage is set to 'redis'.
      */
     @Bean
     @Primary
     @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "redis")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
     public RateLimiter redisRateLimiter(RateLimitConfig rateLimitConfig,
                                         RedisTemplate<String, Long> redisTemplate,
-                                        RedisScript<List<Long>> tokenBucketScript) {
+                                        @Qualifier("tokenBucketScript") RedisScript<List<Long>> tokenBucketScript,
+                                        @Qualifier("tokenBucketBatchScript") RedisScript<List<Long>> tokenBucketBatchScript,
+                                        ObjectProvider<RedisScriptBatcher> redisScriptBatcher,
+                                        ObjectProvider<RedisCircuitBreaker> redisCircuitBreaker,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${rate.limit.redis.reject-cache.max-size:100000}") long rejectCacheMaxSize,
+                                        @Value("${rate.limit.redis.circuit-breaker.instance-count:1}") int instanceCount) {
         log.info("Initializing Redis-based Token Bucket Rate Limiter");
-        return new RedisTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest, redisTemplate, tokenBucketScript);
+        RedisCircuitBreaker circuitBreaker = redisCircuitBreaker.getIfAvailable();
+        RateLimiter fallbackRateLimiter = circuitBreaker != null
+                ? new CaffeineTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest)
+                : null;
+        RedisTokenBucketRateLimiter rateLimiter = new RedisTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest,
+                redisTemplate, tokenBucketScript, tokenBucketBatchScript, redisScriptBatcher.getIfAvailable(), rejectCacheMaxSize,
+                circuitBreaker, fallbackRateLimiter, instanceCount);
+        FunctionCounter.builder("ratelimiter.redis.rejections.local", rateLimiter,
+                        RedisTokenBucketRateLimiter::getLocalRejectionCount)
+                .description("Requests rejected from the local rejected-key cache without calling Redis")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.redis.rejected.keys", rateLimiter, RedisTokenBucketRateLimiter::getRejectedKeyCount)
+                .description("Keys currently known to be rejected until their retry-after deadline")
+                .register(meterRegistry);
+        FunctionTimer.builder("ratelimiter.redis.script", rateLimiter, RedisTokenBucketRateLimiter::getScriptCallCount,
+                        RedisTokenBucketRateLimiter::getScriptTimeNanos, TimeUnit.NANOSECONDS)
+                .description("Round trips of the token bucket script (including micro-batching wait)")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratelimiter.redis.script.errors", rateLimiter, RedisTokenBucketRateLimiter::getScriptErrorCount)
+                .description("Token bucket script calls that failed")
+                .register(meterRegistry);
+        return rateLimiter;
+    }
+
+    /**
+     * Creates Redis-based rate limiter with local token leases when storage is set to 'redis-lease'.
+     * Hot keys go to Redis about once per lease instead of once per request.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "redis-lease")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
+    public RateLimiter redisLeasingRateLimiter(RateLimitConfig rateLimitConfig,
+                                               RedisTemplate<String, Long> redisTemplate,
+                                               @Qualifier("tokenLeaseScript") RedisScript<List<Long>> tokenLeaseScript,
+                                               @Value("${rate.limit.redis.lease.ttl-ms:1000}") long leaseTtlMs,
+                                               @Value("${rate.limit.redis.lease.max-fraction:0.1}") double maxLeaseFraction) {
+        log.info("Initializing Redis-based Token Bucket Rate Limiter with local leases");
+        return new RedisLeasingTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest, redisTemplate, tokenLeaseScript,
+                leaseTtlMs, maxLeaseFraction);
+    }
+
+    /**
+     * Creates the circuit breaker around Redis token bucket checks when
+     * 'rate.limit.redis.circuit-breaker.enabled' is true (the default).
+     * While it is open, requests are limited locally with 1/instance-count of the limits.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "redis")
+    @ConditionalOnProperty(name = "rate.limit.redis.circuit-breaker.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisCircuitBreaker redisCircuitBreaker(@Value("${rate.limit.redis.circuit-breaker.failure-rate-percent:50}") int failureRatePercent,
+                                                   @Value("${rate.limit.redis.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                                   @Value("${rate.limit.redis.circuit-breaker.slow-call-ms:250}") long slowCallMs,
+                                                   @Value("${rate.limit.redis.circuit-breaker.window-ms:10000}") long windowMs,
+                                                   @Value("${rate.limit.redis.circuit-breaker.open-duration-ms:5000}") long openDurationMs,
+                                                   @Value("${rate.limit.redis.circuit-breaker.half-open-probes:5}") int halfOpenProbes) {
+        log.info("Initializing Redis circuit breaker");
+        return new RedisCircuitBreaker(failureRatePercent, minimumCalls, slowCallMs, windowMs, openDurationMs, halfOpenProbes);
+    }
+
+    /**
+     * Creates the micro-batcher that pipelines concurrent Redis token bucket checks
+     * when 'rate.limit.redis.batch.enabled' is true.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "redis")
+    @ConditionalOnProperty(name = "rate.limit.redis.batch.enabled", havingValue = "true")
+    public RedisScriptBatcher redisScriptBatcher(RedisTemplate<String, Long> redisTemplate,
+                                                 @Qualifier("tokenBucketScript") RedisScript<List<Long>> tokenBucketScript,
+                                                 MeterRegistry meterRegistry,
+                                                 @Value("${rate.limit.redis.batch.window-micros:200}") long windowMicros,
+                                                 @Value("${rate.limit.redis.batch.max-size:64}") int maxBatchSize,
+                                                 @Value("${rate.limit.redis.batch.timeout-ms:2000}") long timeoutMs) {
+        log.info("Initializing Redis script micro-batching");
+        return new RedisScriptBatcher(redisTemplate, tokenBucketScript, windowMicros, maxBatchSize, timeoutMs, meterRegistry);
     }
 
     /**
@@ -54,6 +173,7 @@ public class RateLimiterAutoConfiguration {
     @Bean
     @Primary
     @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "caffeine")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
     public RateLimiter caffeineRateLimiter(RateLimitConfig rateLimitConfig) {
         log.info("Initializing Caffeine-based Token Bucket Rate Limiter");
         return new CaffeineTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest);
@@ -66,11 +186,109 @@ public class RateLimiterAutoConfiguration {
     @Bean
     @Primary
     @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "in-memory")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
     public RateLimiter inMemoryRateLimiter(RateLimitConfig rateLimitConfig) {
         log.info("Initializing In-Memory Token Bucket Rate Limiter");
         return new InMemoryTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest);
     }
 
+    /**
+     * Creates sharded in-memory rate limiter when storage is set to 'sharded'.
+     * Buckets that have refilled to capacity are swept in the background.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "sharded")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
+    public RateLimiter shardedInMemoryRateLimiter(RateLimitConfig rateLimitConfig) {
+        log.info("Initializing Sharded In-Memory Token Bucket Rate Limiter");
+        return new ShardedInMemoryTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest, shardCount, sweepIntervalMs);
+    }
+
+    /**
+     * Creates off-heap rate limiter when storage is set to 'offheap'.
+     * Bounded memory with CLOCK eviction of idle keys, no per-request allocation.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "offheap")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
+    public RateLimiter offHeapRateLimiter(RateLimitConfig rateLimitConfig) {
+        log.info("Initializing Off-Heap Token Bucket Rate Limiter");
+        return new OffHeapTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest, offHeapMaxBuckets);
+    }
+
+    /**
+     * Creates shared-memory rate limiter when storage is set to 'shm'.
+     * Every instance on the host maps the same bucket table, so they share one set of limits.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "shm")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "token-bucket", matchIfMissing = true)
+    public RateLimiter sharedMemoryRateLimiter(RateLimitConfig rateLimitConfig,
+                                               @Value("${rate.limit.shm.path:/dev/shm/ratelimiter-buckets}") String path,
+                                               @Value("${rate.limit.shm.max-buckets:1048576}") long maxBuckets,
+                                               @Value("${rate.limit.shm.sweep-interval-ms:10000}") long sweepIntervalMs) {
+        log.info("Initializing Shared-Memory Token Bucket Rate Limiter");
+        return new SharedMemoryTokenBucketRateLimiter(rateLimitConfig, tokensPerRequest, Path.of(path), maxBuckets,
+                sweepIntervalMs);
+    }
+
+    /**
+     * Creates Redis-based GCRA rate limiter when storage is 'redis' and algorithm is 'gcra'.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "redis")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "gcra")
+    public RateLimiter redisGcraRateLimiter(RateLimitConfig rateLimitConfig,
+                                            RedisTemplate<String, Long> redisTemplate,
+                                            @Qualifier("gcraScript") RedisScript<List<Long>> gcraScript,
+                                            @Qualifier("gcraBatchScript") RedisScript<List<Long>> gcraBatchScript) {
+        log.info("Initializing Redis-based GCRA Rate Limiter");
+        return new RedisGcraRateLimiter(rateLimitConfig, tokensPerRequest, redisTemplate, gcraScript, gcraBatchScript);
+    }
+
+    /**
+     * Creates local GCRA rate limiter when algorithm is 'gcra' and storage is anything but 'redis'.
+     * GCRA keeps one timestamp per key, so all local storages share the Caffeine implementation.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnExpression("'${rate.limit.algorithm:token-bucket}' == 'gcra' and '${rate.limit.storage:in-memory}' != 'redis'")
+    public RateLimiter gcraRateLimiter(RateLimitConfig rateLimitConfig) {
+        log.info("Initializing Caffeine-based GCRA Rate Limiter");
+        return new CaffeineGcraRateLimiter(rateLimitConfig, tokensPerRequest);
+    }
+
+    /**
+     * Creates Redis-based sliding window rate limiter when storage is 'redis' and algorithm is 'sliding-window'.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "rate.limit.storage", havingValue = "redis")
+    @ConditionalOnProperty(name = "rate.limit.algorithm", havingValue = "sliding-window")
+    public RateLimiter redisSlidingWindowRateLimiter(RateLimitConfig rateLimitConfig,
+                                                     RedisTemplate<String, Long> redisTemplate,
+                                                     @Qualifier("slidingWindowScript") RedisScript<List<Long>> slidingWindowScript,
+                                                     @Qualifier("slidingWindowBatchScript") RedisScript<List<Long>> slidingWindowBatchScript) {
+        log.info("Initializing Redis-based Sliding Window Rate Limiter");
+        return new RedisSlidingWindowRateLimiter(rateLimitConfig, tokensPerRequest, redisTemplate, slidingWindowScript,
+                slidingWindowBatchScript);
+    }
+
+    /**
+     * Creates local sliding window rate limiter when algorithm is 'sliding-window' and storage is anything but 'redis'.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnExpression("'${rate.limit.algorithm:token-bucket}' == 'sliding-window' and '${rate.limit.storage:in-memory}' != 'redis'")
+    public RateLimiter slidingWindowRateLimiter(RateLimitConfig rateLimitConfig) {
+        log.info("Initializing Caffeine-based Sliding Window Rate Limiter");
+        return new CaffeineSlidingWindowRateLimiter(rateLimitConfig, tokensPerRequest);
+    }
+
     /**
      * Fallback: Creates In-Memory rate limiter when no storage type is specified.
      * This ensures the application can start even without explicit configuration.
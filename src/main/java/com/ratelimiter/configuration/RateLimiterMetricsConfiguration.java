@@ -0,0 +1,140 @@
+package com.ratelimiter.configuration;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ratelimiter.service.RateLimiter;
+import com.ratelimiter.service.impl.CaffeineGcraRateLimiter;
+import com.ratelimiter.service.impl.CaffeineSlidingWindowRateLimiter;
+import com.ratelimiter.service.impl.CaffeineTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.InMemoryTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.MeteredRateLimiter;
+import com.ratelimiter.service.impl.OffHeapTokenBucketRateLimiter;
+import com.ratelimiter.service.impl.ShardedInMemoryTokenBucketRateLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer instrumentation of the configured {@link RateLimiter}.
+ * <p>
+ * Enabled unless {@code rate.limit.metrics.enabled=false}. Every {@link RateLimiter} bean is wrapped in a
+ * {@link MeteredRateLimiter} (decision counters and latency timer, tagged with {@code rate.limit.storage} and
+ * {@code rate.limit.algorithm}), and local storages also get:
+ * <ul>
+ *     <li>{@code ratelimiter.buckets} - buckets currently held</li>
+ *     <li>{@code ratelimiter.buckets.hit.ratio} / {@code ratelimiter.buckets.evictions} - Caffeine storages only</li>
+ *     <li>{@code ratelimiter.shard.buckets} / {@code ratelimiter.shard.sweep.duration} /
+ *     {@code ratelimiter.shard.evictions} - sharded storage only, tagged with {@code shard}</li>
+ * </ul>
+ * Redis script metrics are registered with the Redis limiter in {@link RateLimiterAutoConfiguration}.
+ * All of them show up under {@code /actuator/metrics} and {@code /actuator/prometheus}.
+ * </p>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "rate.limit.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimiterMetricsConfiguration {
+
+    /**
+     * Wraps rate limiter beans once they are fully initialized. Static so it does not pull this
+     * configuration (and the registry) into early bean post-processor creation.
+     */
+    @Bean
+    public static BeanPostProcessor meteredRateLimiterPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                                                    ObjectProvider<RateLimitConfig> rateLimitConfig) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof RateLimiter rateLimiter) || bean instanceof MeteredRateLimiter) {
+                    return bean;
+                }
+                MeterRegistry registry = meterRegistry.getObject();
+                RateLimitConfig config = rateLimitConfig.getObject();
+                String backend = config.getStorage();
+                registerBucketMetrics(rateLimiter, registry, backend);
+                log.info("Recording metrics for rate limiter '{}' (backend={}, algorithm={})",
+                        beanName, backend, config.getAlgorithm());
+                return new MeteredRateLimiter(rateLimiter, config, registry, backend, config.getAlgorithm());
+            }
+        };
+    }
+
+    private static void registerBucketMetrics(RateLimiter rateLimiter, MeterRegistry registry, String backend) {
+        switch (rateLimiter) {
+            case InMemoryTokenBucketRateLimiter limiter ->
+                    registerBucketCount(registry, backend, limiter, InMemoryTokenBucketRateLimiter::getBucketCount);
+            case ShardedInMemoryTokenBucketRateLimiter limiter -> {
+                registerBucketCount(registry, backend, limiter, ShardedInMemoryTokenBucketRateLimiter::getBucketCount);
+                registerShardStats(registry, backend, limiter);
+            }
+            case OffHeapTokenBucketRateLimiter limiter ->
+                    registerBucketCount(registry, backend, limiter, OffHeapTokenBucketRateLimiter::getBucketCount);
+            case CaffeineTokenBucketRateLimiter limiter -> {
+                registerBucketCount(registry, backend, limiter, CaffeineTokenBucketRateLimiter::getBucketCount);
+                registerCacheStats(registry, backend, limiter, CaffeineTokenBucketRateLimiter::getCacheStats);
+            }
+            case CaffeineGcraRateLimiter limiter -> {
+                registerBucketCount(registry, backend, limiter, CaffeineGcraRateLimiter::getBucketCount);
+                registerCacheStats(registry, backend, limiter, CaffeineGcraRateLimiter::getCacheStats);
+            }
+            case CaffeineSlidingWindowRateLimiter limiter -> {
+                registerBucketCount(registry, backend, limiter, CaffeineSlidingWindowRateLimiter::getBucketCount);
+                registerCacheStats(registry, backend, limiter, CaffeineSlidingWindowRateLimiter::getCacheStats);
+            }
+            default -> {
+                // Remote storages: buckets live in Redis
+            }
+        }
+    }
+
+    private static <T> void registerBucketCount(MeterRegistry registry, String backend, T limiter,
+                                                ToDoubleFunction<T> bucketCount) {
+        Gauge.builder("ratelimiter.buckets", limiter, bucketCount)
+                .description("Rate limit buckets currently held in memory")
+                .tag("backend", backend)
+                .register(registry);
+    }
+
+    private static void registerShardStats(MeterRegistry registry, String backend,
+                                           ShardedInMemoryTokenBucketRateLimiter limiter) {
+        for (int i = 0; i < limiter.getShardCount(); i++) {
+            int shard = i;
+            String shardTag = String.valueOf(shard);
+            Gauge.builder("ratelimiter.shard.buckets", limiter, l -> l.getShardStats(shard).bucketCount())
+                    .description("Rate limit buckets currently held in the shard")
+                    .tags("backend", backend, "shard", shardTag)
+                    .register(registry);
+            TimeGauge.builder("ratelimiter.shard.sweep.duration", limiter, TimeUnit.MICROSECONDS,
+                            l -> l.getShardStats(shard).lastSweepMicros())
+                    .description("Duration of the last sweep of the shard")
+                    .tags("backend", backend, "shard", shardTag)
+                    .register(registry);
+            FunctionCounter.builder("ratelimiter.shard.evictions", limiter, l -> l.getShardStats(shard).evictions())
+                    .description("Full buckets removed from the shard by the sweeper")
+                    .tags("backend", backend, "shard", shardTag)
+                    .register(registry);
+        }
+    }
+
+    private static <T> void registerCacheStats(MeterRegistry registry, String backend, T limiter,
+                                               Function<T, CacheStats> stats) {
+        Gauge.builder("ratelimiter.buckets.hit.ratio", limiter, l -> stats.apply(l).hitRate())
+                .description("Share of bucket lookups that found an existing bucket")
+                .tag("backend", backend)
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.buckets.evictions", limiter, l -> stats.apply(l).evictionCount())
+                .description("Buckets evicted from the cache (expired or over the size limit)")
+                .tag("backend", backend)
+                .register(registry);
+    }
+}
@@ -32,8 +32,48 @@ public class RedisConfig {
     }
 
     @Bean
-    @SuppressWarnings("unchecked")
     public RedisScript<List<Long>> tokenBucketScript() {
-        return (RedisScript<List<Long>>) (RedisScript<?>) RedisScript.of(ApplicationConstants.TOKEN_BUCKET_SCRIPT, List.class);
+        return listScript(ApplicationConstants.TOKEN_BUCKET_SCRIPT);
+    }
+
+    @Bean
+    public RedisScript<List<Long>> gcraScript() {
+        return listScript(ApplicationConstants.GCRA_SCRIPT);
+    }
+
+    @Bean
+    public RedisScript<List<Long>> slidingWindowScript() {
+        return listScript(ApplicationConstants.SLIDING_WINDOW_SCRIPT);
+    }
+
+    @Bean
+    public RedisScript<List<Long>> tokenLeaseScript() {
+        return listScript(ApplicationConstants.TOKEN_LEASE_SCRIPT);
+    }
+
+    @Bean
+    public RedisScript<List<Long>> tokenBucketBatchScript() {
+        return listScript(ApplicationConstants.TOKEN_BUCKET_BATCH_SCRIPT);
+    }
+
+    @Bean
+    public RedisScript<List<Long>> gcraBatchScript() {
+        return listScript(ApplicationConstants.GCRA_BATCH_SCRIPT);
+    }
+
+    @Bean
+    public RedisScript<List<Long>> slidingWindowBatchScript() {
+        return listScript(ApplicationConstants.SLIDING_WINDOW_BATCH_SCRIPT);
+    }
+
+    /**
+     * Wraps a Lua script that returns a list of integers
+     *
+     * @param script script source
+     * @return the script, typed for {@link RedisTemplate#execute}
+     */
+    @SuppressWarnings("unchecked")
+    public static RedisScript<List<Long>> listScript(String script) {
+        return (RedisScript<List<Long>>) (RedisScript<?>) RedisScript.of(script, List.class);
     }
 }
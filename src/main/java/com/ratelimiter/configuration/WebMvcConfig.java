@@ -1,8 +1,18 @@
 package com.ratelimiter.configuration;
 
+import com.ratelimiter.interceptor.RateLimitFilter;
 import com.ratelimiter.interceptor.RateLimitInterceptor;
+import com.ratelimiter.service.ClientIdentityResolver;
+import com.ratelimiter.service.RateLimiter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -23,4 +33,20 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "favicon.ico"
                 );
     }
+
+    /**
+     * Registers the early-rejection filter ahead of DispatcherServlet when 'rate.limit.filter.enabled' is true.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rate.limit.filter.enabled", havingValue = "true")
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(
+            RateLimiter rateLimiter, ClientIdentityResolver clientIdentityResolver,
+            // Lazy: filters are created before the MVC infrastructure
+            @Lazy @Qualifier("requestMappingHandlerMapping") HandlerMapping handlerMapping) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+                new RateLimitFilter(rateLimiter, clientIdentityResolver, handlerMapping));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
 }
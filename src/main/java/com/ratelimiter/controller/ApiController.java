@@ -40,13 +40,15 @@ public class ApiController {
     }
 
     /**
-     * Check current rate limit status without consuming tokens
+     * Check current rate limit status without consuming tokens (read-only, unknown keys report a full bucket).
+     * Pass {@code tier} to see the key with that tier's limits.
      * Usage:
-     * <p><code>curl http://localhost:8080/api/v1/limit/status?key=user:123</code>
+     * <p><code>curl http://localhost:8080/api/v1/limit/status?key=user:123&tier=premium</code>
      */
     @GetMapping("/limit/status")
-    public ResponseEntity<Map<String, Object>> getLimitStatus(@RequestParam String key) {
-        RateLimitStatus result = rateLimiter.peek(key);
+    public ResponseEntity<Map<String, Object>> getLimitStatus(@RequestParam String key,
+                                                              @RequestParam(required = false) String tier) {
+        RateLimitStatus result = tier != null ? rateLimiter.peekForTier(key, tier) : rateLimiter.peek(key);
         Map<String, Object> response = new HashMap<>();
         response.put("key", key);
         response.put("limit", result.getLimit());
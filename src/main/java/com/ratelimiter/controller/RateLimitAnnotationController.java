@@ -76,6 +76,18 @@ public class RateLimitAnnotationController {
         return buildResponse("Expensive operation - consumed 5 tokens");
     }
 
+    /**
+     * Report generation with composite limits: besides the client's tier limits, each client and all clients
+     * together are limited by the "reports" policy, and every request counts against the service-wide limit.
+     * <p>Usage:</p>
+     * <code>curl -H "X-API-Key: your-api-key" http://localhost:8080/api/v1/examples/report</code>
+     */
+    @RateLimit(tokens = 5, policy = "reports")
+    @GetMapping("/report")
+    public ResponseEntity<Map<String, Object>> reportOperation() {
+        return buildResponse("Report generated - within the client, per-client report, report and service limits");
+    }
+
     /**
      * Default rate limited endpoint (uses free tier by default).
      * <p>Usage:</p>
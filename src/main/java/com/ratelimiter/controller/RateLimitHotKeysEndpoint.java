@@ -0,0 +1,64 @@
+package com.ratelimiter.controller;
+
+import com.ratelimiter.service.HotKeyTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.ratelimiter.utils.ApplicationUtils.maskApiKey;
+
+/**
+ * Actuator endpoint listing the keys driving the most requests and rejections.
+ * <p>
+ * Mapped to {@code /actuator/ratelimit-hotkeys} through {@code management.endpoints.web.path-mapping.hotkeys}
+ * (endpoint ids should not contain dashes). Not exposed over HTTP by default: add {@code hotkeys} to
+ * {@code management.endpoints.web.exposure.include} to enable it. API keys are masked in {@code api:} keys, like
+ * everywhere else they are returned.
+ * </p>
+ * <p>Usage:
+ * <p><code>curl http://localhost:8080/actuator/ratelimit-hotkeys</code>
+ */
+@Component
+@Endpoint(id = "hotkeys")
+@ConditionalOnProperty(name = "rate.limit.hotkeys.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class RateLimitHotKeysEndpoint {
+
+    private static final String API_KEY_PREFIX = "api:";
+
+    private final HotKeyTracker hotKeyTracker;
+
+    @ReadOperation
+    public Map<String, Object> hotKeys() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("requests", masked(hotKeyTracker.getTopRequests()));
+        response.put("rejections", masked(hotKeyTracker.getTopRejections()));
+        response.put("requestTotal", hotKeyTracker.getRequestTotal());
+        response.put("rejectionTotal", hotKeyTracker.getRejectionTotal());
+        response.put("relativeError", hotKeyTracker.getRelativeError());
+        response.put("topK", hotKeyTracker.getTopK());
+        response.put("decayIntervalMs", hotKeyTracker.getDecayIntervalMs());
+        response.put("decayFactor", hotKeyTracker.getDecayFactor());
+        response.put("timestamp", Instant.now().toString());
+        return response;
+    }
+
+    private static List<HotKeyTracker.HotKey> masked(List<HotKeyTracker.HotKey> hotKeys) {
+        return hotKeys.stream().map(RateLimitHotKeysEndpoint::masked).toList();
+    }
+
+    private static HotKeyTracker.HotKey masked(HotKeyTracker.HotKey hotKey) {
+        if (!hotKey.key().startsWith(API_KEY_PREFIX)) {
+            return hotKey;
+        }
+        String apiKey = hotKey.key().substring(API_KEY_PREFIX.length());
+        return new HotKeyTracker.HotKey(API_KEY_PREFIX + maskApiKey(apiKey), hotKey.count());
+    }
+}
@@ -136,7 +136,7 @@ public class UserController {
         return userService.getUserById(id)
                 .map(user -> {
                     String rateLimitKey = "user:" + user.getId();
-                    RateLimitStatus rateLimitStatus = rateLimiter.peek(rateLimitKey);
+                    RateLimitStatus rateLimitStatus = rateLimiter.peekForTier(rateLimitKey, user.getTier());
                     Map<String, Object> usage = new HashMap<>();
                     usage.put("userId", user.getId());
                     usage.put("username", user.getUsername());
@@ -23,9 +23,10 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(RateLimitExceededException.class)
     public ResponseEntity<Map<String, Object>> handleRateLimitExceeded(RateLimitExceededException ex) {
-        Map<String, Object> body = createBody("Too Many Requests", ex.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
-
         RateLimitStatus result = ex.getRateLimitStatus();
+        String message = RateLimitExceededException.messageOf(ex.getIdentifier(), result.getRetryAfterMs());
+        Map<String, Object> body = createBody("Too Many Requests", message, HttpStatus.TOO_MANY_REQUESTS);
+
         Map<String, Object> rateLimitDetails = new HashMap<>();
         rateLimitDetails.put("limit", result.getLimit());
         rateLimitDetails.put("remaining", result.getRemainingTokens());
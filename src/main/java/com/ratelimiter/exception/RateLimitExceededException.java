@@ -6,6 +6,10 @@ import lombok.Getter;
 /**
  * Exception thrown when a rate limit is exceeded
  * Contains all information to build a proper 429 response
+ * <p>
+ * Thrown for every rejected request, so it is kept cheap: no stack trace (it is a control-flow signal
+ * handled by GlobalExceptionHandler) and the message is only formatted when someone reads it.
+ * </p>
  */
 @Getter
 public class RateLimitExceededException extends RuntimeException {
@@ -16,11 +20,23 @@ public class RateLimitExceededException extends RuntimeException {
     private final String identifier;
 
     public RateLimitExceededException(String identifier, RateLimitStatus rateLimitStatus) {
-        super(String.format("Rate limit exceeded for '%s'. Retry after %d ms.", identifier, rateLimitStatus.getRetryAfterMs()));
+        super(null, null, false, false);
         this.identifier = identifier;
         this.rateLimitStatus = rateLimitStatus;
     }
 
+    @Override
+    public String getMessage() {
+        return messageOf(identifier, rateLimitStatus.getRetryAfterMs());
+    }
+
+    /**
+     * Message of a 429 response, also rendered by {@link com.ratelimiter.interceptor.RateLimitFilter}.
+     */
+    public static String messageOf(String identifier, long retryAfterMs) {
+        return "Rate limit exceeded for '" + identifier + "'. Retry after " + retryAfterMs + " ms.";
+    }
+
     public long getRetryAfterSeconds() {
         return (long) Math.ceil(rateLimitStatus.getRetryAfterMs() / 1000.0);
     }
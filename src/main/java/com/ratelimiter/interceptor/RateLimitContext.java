@@ -0,0 +1,73 @@
+package com.ratelimiter.interceptor;
+
+import com.ratelimiter.model.User;
+import com.ratelimiter.service.ClientIdentityResolver;
+import com.ratelimiter.service.ClientIdentityResolver.ResolvedIdentity;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.Getter;
+
+/**
+ * Rate limit state of a single HTTP request, kept as a request attribute.
+ * <p>
+ * Identity and tier are resolved once, by whichever of {@link RateLimitInterceptor} and
+ * {@link com.ratelimiter.aspect.RateLimitAspect} runs first, and reused by the other.
+ * For {@link com.ratelimiter.annotation.RateLimit} endpoints the interceptor does not charge the bucket itself;
+ * it defers its tokens so the aspect charges global and annotation tokens in one limiter call.
+ * </p>
+ */
+@Getter
+public final class RateLimitContext {
+
+    public static final String ATTRIBUTE = RateLimitContext.class.getName();
+
+    private final String clientId;
+    private final User user;
+    private final String userTier;
+    // Tokens of the global (interceptor) limit still to be charged with the annotation limit
+    private long deferredTokens;
+    // Set when RateLimitFilter already charged the global limit
+    private boolean globalCharged;
+
+    private RateLimitContext(String clientId, User user, String userTier) {
+        this.clientId = clientId;
+        this.user = user;
+        this.userTier = userTier;
+    }
+
+    /**
+     * Returns the context of this request, resolving identity and tier on first use.
+     */
+    public static RateLimitContext resolve(HttpServletRequest request, ClientIdentityResolver clientIdentityResolver) {
+        if (request.getAttribute(ATTRIBUTE) instanceof RateLimitContext context) {
+            return context;
+        }
+        ResolvedIdentity identity = clientIdentityResolver.resolveIdentity(request);
+        String userTier = clientIdentityResolver.resolveUserTier(request, identity.user());
+        RateLimitContext context = new RateLimitContext(identity.key(), identity.user(), userTier);
+        request.setAttribute(ATTRIBUTE, context);
+        return context;
+    }
+
+    /**
+     * Records that the global limit was charged (by {@link RateLimitFilter}), so the interceptor skips it.
+     */
+    public void markGlobalCharged() {
+        globalCharged = true;
+    }
+
+    /**
+     * Leaves the global limit's tokens to be charged together with the endpoint's own limit.
+     */
+    public void deferTokens(long tokens) {
+        deferredTokens += tokens;
+    }
+
+    /**
+     * Returns the deferred tokens and clears them, so they are charged only once.
+     */
+    public long takeDeferredTokens() {
+        long tokens = deferredTokens;
+        deferredTokens = 0;
+        return tokens;
+    }
+}
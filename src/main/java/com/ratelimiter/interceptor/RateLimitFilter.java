@@ -0,0 +1,217 @@
+package com.ratelimiter.interceptor;
+
+import com.ratelimiter.exception.ApiKeyNotFoundException;
+import com.ratelimiter.exception.UserDisabledException;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.ClientIdentityResolver;
+import com.ratelimiter.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.RequestPath;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Servlet filter that applies the global rate limit before the request reaches DispatcherServlet.
+ * <p>
+ * Enabled with {@code rate.limit.filter.enabled=true}. Uses the same identity resolution, tier limits and path
+ * exclusions as {@link RateLimitInterceptor}, which then skips the charge. A rejected request never reaches
+ * handler mapping, exception translation or JSON serialization: the 429 body is copied from pre-rendered byte
+ * segments with only the numbers filled in.
+ * </p>
+ * <p>
+ * The 429 body has the same fields as the one {@link com.ratelimiter.exception.GlobalExceptionHandler} renders.
+ * Requests with an unknown API key or a disabled user are passed on untouched, so MVC renders the usual 401/403.
+ * </p>
+ * <p>
+ * Requests to {@link com.ratelimiter.annotation.RateLimit} endpoints are passed on uncharged: the handler is
+ * looked up here (one extra handler mapping lookup) and, like in the interceptor, the global tokens are left to
+ * the aspect, which charges them together with the endpoint's own in one decision.
+ * </p>
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String CONTENT_TYPE = "application/json";
+
+    // {"error":"Too Many Requests","message":"Rate limit exceeded for '<id>'. Retry after <ms> ms.","status":429,
+    //  "timestamp":"<>","rateLimitDetails":{"limit":<>,"remaining":<>,"resetAt":<>,"retryAfterMs":<>,
+    //  "retryAfterSeconds":<>}}
+    private static final byte[][] BODY_SEGMENTS = {
+            bytes("{\"error\":\"Too Many Requests\",\"message\":\"Rate limit exceeded for '"),
+            bytes("'. Retry after "),
+            bytes(" ms.\",\"status\":429,\"timestamp\":\""),
+            bytes("\",\"rateLimitDetails\":{\"limit\":"),
+            bytes(",\"remaining\":"),
+            bytes(",\"resetAt\":"),
+            bytes(",\"retryAfterMs\":"),
+            bytes(",\"retryAfterSeconds\":"),
+            bytes("}}")
+    };
+    private static final int SEGMENTS_LENGTH = totalLength(BODY_SEGMENTS);
+
+    // One reusable decision holder per request thread
+    private static final ThreadLocal<RateLimitDecision> DECISIONS = ThreadLocal.withInitial(RateLimitDecision::new);
+
+    private final RateLimiter rateLimiter;
+    private final ClientIdentityResolver clientIdentityResolver;
+    private final HandlerMapping handlerMapping;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return RateLimitInterceptor.isPathExcluded(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        RateLimitContext context;
+        try {
+            context = RateLimitContext.resolve(request, clientIdentityResolver);
+        } catch (ApiKeyNotFoundException | UserDisabledException e) {
+            // Let the interceptor throw again so GlobalExceptionHandler renders the 401/403
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (isRateLimitedByAspect(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RateLimitDecision result = DECISIONS.get();
+        boolean allowed = rateLimiter.tryConsumeForTier(context.getClientId(), context.getUserTier(), result);
+        context.markGlobalCharged();
+        clientIdentityResolver.addRateLimitHeaders(response, result);
+
+        if (!allowed) {
+            log.debug("Rate limit exceeded in filter - clientId: {}, userTier: {}", context.getClientId(), context.getUserTier());
+            writeTooManyRequests(response, context.getClientId(), result);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // Looks up the handler the way DispatcherServlet will, restoring the request's parsed path afterwards
+    private boolean isRateLimitedByAspect(HttpServletRequest request) {
+        RequestPath previousPath = ServletRequestPathUtils.hasParsedRequestPath(request)
+                ? ServletRequestPathUtils.getParsedRequestPath(request)
+                : null;
+        ServletRequestPathUtils.parseAndCache(request);
+        try {
+            HandlerExecutionChain chain = handlerMapping.getHandler(request);
+            return chain != null && RateLimitInterceptor.isRateLimitedByAspect(chain.getHandler());
+        } catch (Exception e) {
+            log.debug("Could not look up the handler of {}: {}", request.getRequestURI(), e.getMessage());
+            return false;
+        } finally {
+            ServletRequestPathUtils.setParsedRequestPath(previousPath, request);
+        }
+    }
+
+    private static void writeTooManyRequests(HttpServletResponse response, String clientId, RateLimitDecision result)
+            throws IOException {
+        long retryAfterMs = result.getRetryAfterMs();
+        byte[] identifier = bytes(jsonEscaped(clientId));
+        byte[] timestamp = bytes(Instant.now().toString());
+        long[] numbers = {
+                result.getLimit(),
+                result.getRemainingTokens(),
+                result.getResetAtSeconds(),
+                retryAfterMs,
+                (long) Math.ceil(retryAfterMs / 1000.0)
+        };
+
+        int length = SEGMENTS_LENGTH + identifier.length + digits(retryAfterMs) + timestamp.length;
+        for (long number : numbers) {
+            length += digits(number);
+        }
+        byte[] body = new byte[length];
+        int position = writeBytes(body, 0, BODY_SEGMENTS[0]);
+        position = writeBytes(body, position, identifier);
+        position = writeBytes(body, position, BODY_SEGMENTS[1]);
+        position = writeLong(body, position, retryAfterMs);
+        position = writeBytes(body, position, BODY_SEGMENTS[2]);
+        position = writeBytes(body, position, timestamp);
+        for (int i = 0; i < numbers.length; i++) {
+            position = writeBytes(body, position, BODY_SEGMENTS[3 + i]);
+            position = writeLong(body, position, numbers[i]);
+        }
+        writeBytes(body, position, BODY_SEGMENTS[3 + numbers.length]);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // Copies bytes to position, returns the position after them
+    private static int writeBytes(byte[] buffer, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    // Client ids are API keys, user ids and IP addresses; escape anything that would break the JSON string
+    private static String jsonEscaped(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+                }
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+
+    // Writes the decimal digits of value at position, returns the position after them
+    private static int writeLong(byte[] buffer, int position, long value) {
+        int end = position + digits(value);
+        int index = end;
+        long remaining = Math.abs(value);
+        do {
+            buffer[--index] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            buffer[--index] = '-';
+        }
+        return end;
+    }
+
+    private static int digits(long value) {
+        int count = value < 0 ? 2 : 1;
+        for (long remaining = Math.abs(value) / 10; remaining != 0; remaining /= 10) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int totalLength(byte[][] segments) {
+        int length = 0;
+        for (byte[] segment : segments) {
+            length += segment.length;
+        }
+        return length;
+    }
+}
@@ -1,16 +1,20 @@
 package com.ratelimiter.interceptor;
 
+import com.ratelimiter.annotation.RateLimit;
 import com.ratelimiter.exception.RateLimitExceededException;
-import com.ratelimiter.model.RateLimitStatus;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.service.ClientIdentityResolver;
-import com.ratelimiter.service.ClientIdentityResolver.ResolvedIdentity;
 import com.ratelimiter.service.RateLimiter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 // HTTP interceptor that applies rate limiting to incoming requests
@@ -22,6 +26,12 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     private final RateLimiter rateLimiter;
     private final ClientIdentityResolver clientIdentityResolver;
 
+    // One reusable decision holder per request thread, so allowed requests don't allocate a result
+    private static final ThreadLocal<RateLimitDecision> DECISIONS = ThreadLocal.withInitial(RateLimitDecision::new);
+
+    @Value("${rate.limit.bucket.tokens-per-request:1}")
+    private long tokensPerRequest;
+
     /**
      * Extracts client identity and applies rate limits before the request
      * reaches the controller.
@@ -34,34 +44,52 @@ public class RateLimitInterceptor implements HandlerInterceptor {
             return true;
         }
 
-        // Resolve client identity
-        ResolvedIdentity identity = clientIdentityResolver.resolveIdentity(request);
+        // Resolve client identity once per request (shared with RateLimitAspect)
+        RateLimitContext context = RateLimitContext.resolve(request, clientIdentityResolver);
         /*
-         * ResolvedIdentity can be of three types
-         * 1. User called with valid API Key -> ResolvedIdentity("api:+key", user)
-         * 2. User didn't have API Key but was registered -> ResolvedIdentity("user:+userId")
-         * 3. Non-registered user called -> ResolvedIdentity("ip:+addr")
+         * The client id can be of three types
+         * 1. User called with valid API Key -> "api:+key" (with user)
+         * 2. User didn't have API Key but was registered -> "user:+userId"
+         * 3. Non-registered user called -> "ip:+addr"
          */
 
-        String clientId = identity.key();
-        String userTier = clientIdentityResolver.resolveUserTier(request, identity.user());
+        String clientId = context.getClientId();
+        String userTier = context.getUserTier();
 
-        log.info("Rate limit check - clientId: {}, userTier: {}, path: {}", clientId, userTier, path);
+        if (context.isGlobalCharged()) {
+            // RateLimitFilter already applied the global limit
+            return true;
+        }
+        if (isRateLimitedByAspect(handler)) {
+            // RateLimitAspect charges these tokens together with the endpoint's own in one decision
+            context.deferTokens(tokensPerRequest);
+            return true;
+        }
+
+        log.debug("Rate limit check - clientId: {}, userTier: {}, path: {}", clientId, userTier, path);
 
         // Check Rate Limit
-        RateLimitStatus result = rateLimiter.tryConsumeForTier(clientId, userTier);
+        RateLimitDecision decision = DECISIONS.get();
+        boolean allowed = rateLimiter.tryConsumeForTier(clientId, userTier, decision);
 
         // Always add rate limit headers to response
-        clientIdentityResolver.addRateLimitHeaders(response, result);
+        clientIdentityResolver.addRateLimitHeaders(response, decision);
 
-        if (!result.isAllowed()) {
-            log.warn("Rate limit exceeded - clientId: {}, userTier: {}, path: {}", clientId, userTier, path);
-            throw new RateLimitExceededException(clientId, result);
+        if (!allowed) {
+            log.debug("Rate limit exceeded - clientId: {}, userTier: {}, path: {}", clientId, userTier, path);
+            throw new RateLimitExceededException(clientId, decision.toStatus());
         }
         return true;
     }
 
-    private boolean isPathExcluded(String path) {
+    // Same pointcut as RateLimitAspect: @RateLimit methods of @RestController classes
+    static boolean isRateLimitedByAspect(Object handler) {
+        return handler instanceof HandlerMethod handlerMethod
+                && handlerMethod.hasMethodAnnotation(RateLimit.class)
+                && AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), RestController.class);
+    }
+
+    static boolean isPathExcluded(String path) {
         return path.startsWith("/actuator") ||
                 path.startsWith("/admin") ||
                 path.equals("/health") ||
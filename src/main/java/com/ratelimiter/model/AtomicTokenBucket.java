@@ -0,0 +1,107 @@
+package com.ratelimiter.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Lock-free Token Bucket.
+ * <p>
+ * Tokens and last refill time are kept in one {@link PackedTokenBucket} word and
+ * refill-and-consume runs as a compare-and-set loop, so concurrent requests for the
+ * same key never block each other. Capacity and refill rate are not stored here;
+ * they are passed in on every call (they come from the caller's tier config).
+ * </p>
+ */
+public final class AtomicTokenBucket {
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(AtomicTokenBucket.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused") // accessed through STATE
+    private volatile long state;
+
+    public AtomicTokenBucket(long packedState) {
+        this.state = packedState;
+    }
+
+    // Creates a new bucket with full capacity
+    public static AtomicTokenBucket createNew(long capacity, long currentTimeMs) {
+        PackedTokenBucket.checkCapacity(capacity);
+        return new AtomicTokenBucket(PackedTokenBucket.full(capacity, currentTimeMs));
+    }
+
+    /**
+     * Refills the bucket and tries to consume tokens atomically.
+     *
+     * @param tokens           tokens to consume
+     * @param capacity         bucket capacity
+     * @param bucketRefillRate tokens per second refill rate
+     * @param currentTimeMs    current time in milliseconds
+     * @return decision encoded as described in {@link PackedTokenBucket}
+     */
+    public long tryConsume(long tokens, long capacity, double bucketRefillRate, long currentTimeMs) {
+        while (true) {
+            long current = state;
+            long refilled = PackedTokenBucket.refill(current, currentTimeMs, capacity, bucketRefillRate);
+            long available = PackedTokenBucket.tokensOf(refilled);
+
+            if (available >= tokens) {
+                long next = PackedTokenBucket.pack(available - tokens, PackedTokenBucket.lastRefillTimeOf(refilled));
+                if (STATE.compareAndSet(this, current, next)) {
+                    return PackedTokenBucket.allowed(available - tokens);
+                }
+            } else if (refilled == current || STATE.compareAndSet(this, current, refilled)) {
+                // Persist the refill even when rejecting, exactly like the synchronized path did
+                return PackedTokenBucket.rejected(available);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Gives back tokens taken earlier, without going over capacity. The refill time is kept.
+     *
+     * @param tokens   tokens to give back
+     * @param capacity bucket capacity
+     */
+    public void refund(long tokens, long capacity) {
+        while (true) {
+            long current = state;
+            long tokensAfter = Math.min(capacity, PackedTokenBucket.tokensOf(current) + tokens);
+            long next = PackedTokenBucket.pack(tokensAfter, PackedTokenBucket.lastRefillTimeOf(current));
+            if (STATE.compareAndSet(this, current, next)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Current packed state (for monitoring and snapshots)
+    public long getState() {
+        return state;
+    }
+
+    public long getAvailableTokens() {
+        return PackedTokenBucket.tokensOf(state);
+    }
+
+    public long getLastRefillTime() {
+        return PackedTokenBucket.lastRefillTimeOf(state);
+    }
+
+    @Override
+    public String toString() {
+        long snapshot = state;
+        return "AtomicTokenBucket{" +
+                "availableTokens=" + PackedTokenBucket.tokensOf(snapshot) +
+                ", lastRefillTime=" + PackedTokenBucket.lastRefillTimeOf(snapshot) +
+                '}';
+    }
+}
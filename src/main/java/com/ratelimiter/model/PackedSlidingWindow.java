@@ -0,0 +1,100 @@
+package com.ratelimiter.model;
+
+/**
+ * Codec and math for the sliding-window-counter algorithm.
+ * <p>
+ * Time is cut into fixed windows. The request count over the last rolling window is estimated
+ * by weighting the previous fixed window by how much of it still overlaps the rolling window:
+ * <pre>
+ * estimate = previous * (1 - elapsedInCurrent / window) + current
+ * </pre>
+ * </p>
+ * <p>
+ * Layout of the packed word used by local storage (most significant bit first):
+ * <ul>
+ *     <li>22 bits: index of the current fixed window (low bits only, used to detect rollover)</li>
+ *     <li>21 bits: count of the previous window</li>
+ *     <li>21 bits: count of the current window</li>
+ * </ul>
+ * </p>
+ */
+public final class PackedSlidingWindow {
+
+    public static final int COUNT_BITS = 21;
+    public static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+    private static final long INDEX_MASK = (1L << (Long.SIZE - 2 * COUNT_BITS)) - 1;
+
+    private PackedSlidingWindow() {
+    }
+
+    public static long pack(long windowIndex, long previousCount, long currentCount) {
+        return ((windowIndex & INDEX_MASK) << (2 * COUNT_BITS))
+                | (Math.min(previousCount, MAX_COUNT) << COUNT_BITS)
+                | Math.min(currentCount, MAX_COUNT);
+    }
+
+    public static long previousOf(long state) {
+        return (state >>> COUNT_BITS) & MAX_COUNT;
+    }
+
+    public static long currentOf(long state) {
+        return state & MAX_COUNT;
+    }
+
+    /**
+     * Moves a packed state forward to the given window.
+     *
+     * @param state       packed state
+     * @param windowIndex index of the window containing now
+     * @return state whose current window is {@code windowIndex}
+     */
+    public static long roll(long state, long windowIndex) {
+        long storedIndex = state >>> (2 * COUNT_BITS);
+        long index = windowIndex & INDEX_MASK;
+        if (storedIndex == index) {
+            return state;
+        }
+        // The old current window becomes the previous one only if it is directly adjacent
+        long previous = ((storedIndex + 1) & INDEX_MASK) == index ? currentOf(state) : 0;
+        return pack(windowIndex, previous, 0);
+    }
+
+    /**
+     * Estimated number of tokens used during the rolling window ending now.
+     *
+     * @param previousCount count of the previous fixed window
+     * @param currentCount  count of the current fixed window
+     * @param offsetMs      time elapsed since the start of the current window
+     * @param windowMs      window length
+     * @return estimated tokens used (fractional)
+     */
+    public static double estimate(long previousCount, long currentCount, long offsetMs, long windowMs) {
+        return previousCount * (1.0 - (double) offsetMs / windowMs) + currentCount;
+    }
+
+    /**
+     * Time until a request for {@code tokens} would fit, assuming no other requests arrive.
+     *
+     * @return milliseconds to wait (at least 1)
+     */
+    public static long retryAfterMs(long previousCount, long currentCount, long tokens, long limit,
+                                    long offsetMs, long windowMs) {
+        long room = limit - tokens;
+        if (room < 0) {
+            // Can never fit: report a full window
+            return windowMs;
+        }
+        if (currentCount <= room && previousCount > 0) {
+            // Fits later in this window, once enough of the previous window has slid out
+            double fraction = 1.0 - (double) (room - currentCount) / previousCount;
+            return Math.max(1, (long) Math.ceil(fraction * windowMs) - offsetMs);
+        }
+        // Wait for the next window, where the current count becomes the weighted previous one
+        long untilNextWindow = windowMs - offsetMs;
+        if (currentCount <= room) {
+            return Math.max(1, untilNextWindow);
+        }
+        double fraction = 1.0 - (double) room / currentCount;
+        return Math.max(1, untilNextWindow + (long) Math.ceil(fraction * windowMs));
+    }
+}
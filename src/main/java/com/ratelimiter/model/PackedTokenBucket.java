@@ -0,0 +1,118 @@
+package com.ratelimiter.model;
+
+/**
+ * Codec for a Token Bucket whose whole state fits in a single {@code long}.
+ * <p>
+ * Layout of the packed word (most significant bit first):
+ * <ul>
+ *     <li>40 bits: last refill time, milliseconds since {@link #EPOCH_MS} (good until 2058)</li>
+ *     <li>24 bits: available tokens (max {@link #MAX_TOKENS})</li>
+ * </ul>
+ * Keeping both values in one word lets a bucket be refilled and consumed with a single
+ * compare-and-set, whether the word lives in an {@link AtomicTokenBucket}, a {@code long[]}
+ * slot or a memory-mapped file.
+ * </p>
+ * <p>
+ * Decisions are also encoded as a primitive {@code long} so callers don't allocate:
+ * a value {@code >= 0} means allowed (the value is the remaining tokens), a negative value
+ * means rejected (see {@link #availableOf(long)}).
+ * </p>
+ */
+public final class PackedTokenBucket {
+
+    // 2024-01-01T00:00:00Z, the zero point for the packed refill time
+    public static final long EPOCH_MS = 1_704_067_200_000L;
+
+    public static final int TOKEN_BITS = 24;
+    public static final long MAX_TOKENS = (1L << TOKEN_BITS) - 1;
+    private static final long MAX_TIME = (1L << (Long.SIZE - TOKEN_BITS)) - 1;
+
+    private PackedTokenBucket() {
+    }
+
+    // Packs tokens and refill time (epoch milliseconds) into one word
+    public static long pack(long tokens, long lastRefillTimeMs) {
+        long time = Math.min(Math.max(lastRefillTimeMs - EPOCH_MS, 0), MAX_TIME);
+        return (time << TOKEN_BITS) | (tokens & MAX_TOKENS);
+    }
+
+    // Creates the packed state of a full bucket
+    public static long full(long capacity, long currentTimeMs) {
+        return pack(capacity, currentTimeMs);
+    }
+
+    public static long tokensOf(long state) {
+        return state & MAX_TOKENS;
+    }
+
+    public static long lastRefillTimeOf(long state) {
+        return (state >>> TOKEN_BITS) + EPOCH_MS;
+    }
+
+    /**
+     * Applies the refill step of the Token Bucket algorithm.
+     * Same rules as the Lua script: tokens are added in whole units, capped at capacity,
+     * and the refill time only moves forward when at least one token was added.
+     * A clock that went backwards (or a racing thread with an older timestamp) adds nothing.
+     *
+     * @param state            packed bucket state
+     * @param currentTimeMs    current time in milliseconds
+     * @param capacity         bucket capacity
+     * @param bucketRefillRate tokens per second refill rate
+     * @return packed state after refill (may be the same word)
+     */
+    public static long refill(long state, long currentTimeMs, long capacity, double bucketRefillRate) {
+        long elapsedMs = currentTimeMs - lastRefillTimeOf(state);
+        if (elapsedMs <= 0) {
+            return state;
+        }
+        long tokensToAdd = (long) Math.floor(elapsedMs * bucketRefillRate / 1000.0);
+        if (tokensToAdd <= 0) {
+            return state;
+        }
+        return pack(Math.min(capacity, tokensOf(state) + tokensToAdd), currentTimeMs);
+    }
+
+    /**
+     * Tokens a bucket holds at the given time, without changing its state (for read-only peeks).
+     *
+     * @param state            packed bucket state
+     * @param currentTimeMs    current time in milliseconds
+     * @param capacity         bucket capacity
+     * @param bucketRefillRate tokens per second refill rate
+     * @return available tokens, at most capacity
+     */
+    public static long availableAt(long state, long currentTimeMs, long capacity, double bucketRefillRate) {
+        return Math.min(capacity, tokensOf(refill(state, currentTimeMs, capacity, bucketRefillRate)));
+    }
+
+    /**
+     * Validates that a capacity can be represented in the packed word.
+     *
+     * @param capacity bucket capacity
+     */
+    public static void checkCapacity(long capacity) {
+        if (capacity < 0 || capacity > MAX_TOKENS) {
+            throw new IllegalArgumentException("Bucket capacity must be between 0 and " + MAX_TOKENS + ": " + capacity);
+        }
+    }
+
+    // Encodes an allowed decision
+    public static long allowed(long remainingTokens) {
+        return remainingTokens;
+    }
+
+    // Encodes a rejected decision
+    public static long rejected(long availableTokens) {
+        return -availableTokens - 1;
+    }
+
+    public static boolean isAllowed(long decision) {
+        return decision >= 0;
+    }
+
+    // Tokens left in the bucket for either kind of decision
+    public static long availableOf(long decision) {
+        return decision >= 0 ? decision : -decision - 1;
+    }
+}
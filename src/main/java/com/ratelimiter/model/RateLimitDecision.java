@@ -0,0 +1,71 @@
+package com.ratelimiter.model;
+
+import lombok.Getter;
+
+/**
+ * Mutable, reusable result of a rate limit check.
+ * <p>
+ * Same fields as {@link RateLimitStatus}, but filled in place by
+ * {@link com.ratelimiter.service.RateLimiter#tryConsumeForTier(String, String, RateLimitDecision)} so a caller can
+ * keep one instance per thread and check limits without allocating. Not thread-safe: don't share an instance
+ * between threads or keep it past the request; use {@link #toStatus()} for a copy that can escape.
+ * </p>
+ */
+@Getter
+public final class RateLimitDecision {
+
+    private boolean allowed;
+    private long remainingTokens;
+    private long limit;
+    private long retryAfterMs;
+    private long resetAtSeconds;
+
+    /**
+     * Fills in an allowed result, see {@link RateLimitStatus#allowed(long, long)}.
+     *
+     * @return true
+     */
+    public boolean allow(long remainingTokens, long limit, long currentTimeMs) {
+        this.allowed = true;
+        this.remainingTokens = remainingTokens;
+        this.limit = limit;
+        this.retryAfterMs = 0;
+        this.resetAtSeconds = currentTimeMs / 1000 + 1;
+        return true;
+    }
+
+    /**
+     * Fills in a rejected result, see {@link RateLimitStatus#rejected(long, long, long)}.
+     *
+     * @return false
+     */
+    public boolean reject(long remainingTokens, long limit, long retryAfterMs, long currentTimeMs) {
+        this.allowed = false;
+        this.remainingTokens = remainingTokens;
+        this.limit = limit;
+        this.retryAfterMs = retryAfterMs;
+        this.resetAtSeconds = (currentTimeMs + retryAfterMs) / 1000;
+        return false;
+    }
+
+    /**
+     * Copies a status returned by a limiter without an allocation-free path.
+     *
+     * @return whether the request is allowed
+     */
+    public boolean copyFrom(RateLimitStatus status) {
+        this.allowed = status.isAllowed();
+        this.remainingTokens = status.getRemainingTokens();
+        this.limit = status.getLimit();
+        this.retryAfterMs = status.getRetryAfterMs();
+        this.resetAtSeconds = status.getResetAtSeconds();
+        return allowed;
+    }
+
+    /**
+     * Returns an immutable-by-convention copy that may outlive this holder (e.g. inside an exception).
+     */
+    public RateLimitStatus toStatus() {
+        return new RateLimitStatus(allowed, remainingTokens, limit, retryAfterMs, resetAtSeconds);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ratelimiter.model;
+
+/**
+ * One entry of a batch rate limit check (see {@link com.ratelimiter.service.RateLimiter#tryConsumeAll}).
+ * <p>
+ * Limits are {@code bucketCapacity} and {@code bucketRefillRate} when the capacity is set, otherwise the
+ * tier's limits, or the default limits without a tier.
+ * </p>
+ *
+ * @param key              Unique identifier (e.g. user ID, IP address, API Key)
+ * @param tier             User tier name (free, premium, enterprise), or null for the default limits
+ * @param tokens           Number of tokens to consume
+ * @param bucketCapacity   custom bucket capacity, 0 for the tier or default capacity
+ * @param bucketRefillRate custom refill rate, ignored when the capacity is 0
+ */
+public record RateLimitRequest(String key, String tier, long tokens, long bucketCapacity, double bucketRefillRate) {
+
+    // Request with the default limits
+    public static RateLimitRequest of(String key, long tokens) {
+        return new RateLimitRequest(key, null, tokens, 0, 0);
+    }
+
+    // Request with the limits of a tier
+    public static RateLimitRequest forTier(String key, String tier, long tokens) {
+        return new RateLimitRequest(key, tier, tokens, 0, 0);
+    }
+
+    // Request with custom limits
+    public static RateLimitRequest withLimits(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        return new RateLimitRequest(key, null, tokens, bucketCapacity, bucketRefillRate);
+    }
+
+    // Same request with explicit limits, keeping the tier for limiters that need more than capacity and rate
+    public RateLimitRequest withLimits(long bucketCapacity, double bucketRefillRate) {
+        return new RateLimitRequest(key, tier, tokens, bucketCapacity, bucketRefillRate);
+    }
+}
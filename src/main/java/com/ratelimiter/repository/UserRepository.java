@@ -6,6 +6,7 @@ import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,15 @@ public interface UserRepository extends CrudRepository<User, Long> {
     @Query("SELECT * FROM users WHERE api_key = :apiKey")
     Optional<User> findByApiKey(@Param("apiKey") String apiKey);
 
+    @Query("SELECT api_key FROM users")
+    List<String> findAllApiKeys();
+
+    @Query("SELECT * FROM users WHERE updated_at >= :since ORDER BY updated_at")
+    List<User> findUpdatedSince(@Param("since") Instant since);
+
+    @Query("SELECT MAX(updated_at) FROM users")
+    Optional<Instant> findLatestUpdatedAt();
+
     Optional<User> findByEmail(String email);
 
     Optional<User> findByUsername(String username);
@@ -0,0 +1,281 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.model.User;
+import com.ratelimiter.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of all API keys that exist in the {@code users} table.
+ * <p>
+ * A key the filter has never seen is certainly unknown and can be rejected without a database lookup,
+ * so a flood of random {@code X-API-Key} values never reaches MySQL. Known keys (and the occasional false
+ * positive) still go through the normal lookup.
+ * </p>
+ * <p>
+ * The filter is built once the application is ready and updated by {@link UserService#createUser} and
+ * {@link UserService#rotateApiKey}. Keys created or rotated by other instances (or directly in the database)
+ * are picked up every {@code refresh-interval-ms} from rows with a newer {@code updated_at}, re-reading a few
+ * seconds back for rows committed late. Until the filter is built every key passes, and a failed build is
+ * retried on the next refresh. Keys are never removed, so a rotated key stays a (harmless) positive; once more
+ * keys were added than the filter was sized for, it is rebuilt from the table. Size and expected false-positive
+ * rate are published as {@code ratelimiter.apikey.filter.*}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ApiKeyFilter implements AutoCloseable {
+
+    // Rows committed late can carry an updated_at older than the last one seen; re-read this far back
+    private static final Duration DELTA_OVERLAP = Duration.ofSeconds(5);
+
+    private final UserRepository userRepository;
+    private final long minExpectedKeys;
+    private final double falsePositiveRate;
+    private final long refreshIntervalMs;
+    private final LongAdder rejectedKeys = new LongAdder();
+    // Keys added while a rebuild is reading the table, replayed into the new filter
+    private final Set<String> addedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService refresher;
+    private volatile BloomFilter filter;
+    private volatile boolean rebuilding;
+    // Latest updated_at whose keys are in the filter; written by rebuild and the refresher
+    private volatile Instant watermark = Instant.EPOCH;
+
+    public ApiKeyFilter(UserRepository userRepository, MeterRegistry meterRegistry,
+                        @Value("${rate.limit.api-key-filter.expected-keys:100000}") long minExpectedKeys,
+                        @Value("${rate.limit.api-key-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                        @Value("${rate.limit.api-key-filter.refresh-interval-ms:5000}") long refreshIntervalMs) {
+        this.userRepository = userRepository;
+        this.minExpectedKeys = minExpectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshIntervalMs = Math.max(1, refreshIntervalMs);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "api-key-filter-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("ratelimiter.apikey.filter.bits", this, f -> f.filter == null ? 0 : f.filter.bitCount)
+                .description("Size of the API key Bloom filter in bits")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.apikey.filter.keys", this, f -> f.filter == null ? 0 : f.filter.insertions.sum())
+                .description("API keys added to the Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.apikey.filter.false.positive.rate", this, ApiKeyFilter::getExpectedFalsePositiveRate)
+                .description("Expected false-positive rate for the current number of keys")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratelimiter.apikey.filter.rejected", rejectedKeys, LongAdder::sum)
+                .description("Unknown API keys rejected without a database lookup")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    // Runs on the refresher thread: adds keys changed elsewhere since the last refresh
+    void refresh() {
+        try {
+            BloomFilter current = filter;
+            if (current == null) {
+                rebuild();
+                return;
+            }
+            Instant since = watermark;
+            Instant latest = since;
+            for (User user : userRepository.findUpdatedSince(since.minus(DELTA_OVERLAP))) {
+                // Rows re-read from the overlap are already in: only count new keys as insertions
+                if (!current.mightContain(user.getApiKey())) {
+                    addNow(user.getApiKey());
+                }
+                latest = max(latest, user.getUpdatedAt());
+            }
+            watermark = latest;
+        } catch (Exception e) {
+            log.warn("Could not refresh API key filter: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns false only if the API key certainly does not exist.
+     */
+    public boolean mightContain(String apiKey) {
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(apiKey)) {
+            return true;
+        }
+        rejectedKeys.increment();
+        return false;
+    }
+
+    /**
+     * Adds a new or rotated API key. Inside a transaction the key is added once it commits,
+     * so a concurrent rebuild either reads it from the table or sees it here.
+     */
+    public void add(String apiKey) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addNow(apiKey);
+                }
+            });
+        } else {
+            addNow(apiKey);
+        }
+    }
+
+    private void addNow(String apiKey) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.add(apiKey);
+        }
+        if (rebuilding) {
+            addedDuringRebuild.add(apiKey);
+        }
+        BloomFilter latest = filter;
+        if (latest != current && latest != null) {
+            latest.add(apiKey);
+        }
+        if (latest != null && latest.insertions.sum() > latest.expectedKeys && !rebuilding) {
+            log.info("API key filter holds more keys than it was sized for ({}), rebuilding", latest.expectedKeys);
+            Thread thread = new Thread(this::rebuild, "api-key-filter-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Rebuilds the filter from the users table, sized for twice the current number of keys.
+     */
+    public synchronized void rebuild() {
+        rebuilding = true;
+        try {
+            long startNanos = System.nanoTime();
+            // Read before the keys: rows updated in between are re-read by the next refresh
+            Instant latest = userRepository.findLatestUpdatedAt().orElse(Instant.EPOCH);
+            List<String> apiKeys = userRepository.findAllApiKeys();
+            BloomFilter next = new BloomFilter(Math.max(minExpectedKeys, 2L * apiKeys.size()), falsePositiveRate);
+            apiKeys.forEach(next::add);
+            addedDuringRebuild.forEach(next::add);
+            filter = next;
+            watermark = latest;
+            // Keys added after the replay above went into the old filter only
+            addedDuringRebuild.forEach(next::add);
+            log.info("Built API key filter with {} keys, {} KB, in {} ms", apiKeys.size(), next.bitCount / 8 / 1024,
+                    (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Could not build API key filter, all keys will be looked up", e);
+        } finally {
+            rebuilding = false;
+            addedDuringRebuild.clear();
+        }
+    }
+
+    /**
+     * Returns the expected false-positive rate, (1 - e^(-k*n/m))^k, for the keys added so far
+     */
+    public double getExpectedFalsePositiveRate() {
+        BloomFilter current = filter;
+        if (current == null) {
+            return 1.0;
+        }
+        double fill = 1 - Math.exp(-current.hashCount * (double) current.insertions.sum() / current.bitCount);
+        return Math.pow(fill, current.hashCount);
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return b != null && b.isAfter(a) ? b : a;
+    }
+
+    /**
+     * Fixed-size Bloom filter over a lock-free bit array, using double hashing of one 64-bit hash.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final long expectedKeys;
+        private final LongAdder insertions = new LongAdder();
+
+        private BloomFilter(long expectedKeys, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (optimalBits + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * ln2));
+            this.expectedKeys = expectedKeys;
+        }
+
+        private void add(String key) {
+            long hash = hash(key);
+            long h1 = hash;
+            long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word = bits.get(index);
+                while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+                    word = bits.get(index);
+                }
+            }
+            insertions.increment();
+        }
+
+        private boolean mightContain(String key) {
+            long hash = hash(key);
+            long h1 = hash;
+            long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a over the UTF-8 bytes with a murmur3 finalizer
+        private static long hash(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ratelimiter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.ratelimiter.model.User;
+import com.ratelimiter.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * In-process cache of API key → User lookups, so resolving a client does not cost a DB query per request.
+ * <p>
+ * Entries are reloaded in the background {@code refresh-after-write} after they were loaded (the stale user
+ * is served meanwhile) and dropped after {@code expire-after-write} if the reload keeps failing.
+ * Unknown keys are remembered in a separate, smaller cache for {@code negative-ttl}, which keeps a flood of
+ * bad keys away from the database without evicting the real users.
+ * </p>
+ * <p>
+ * {@link UserService} evicts entries whenever a user's key, status or tier changes. Inside a transaction the
+ * entry is evicted right away and again after commit, so a concurrent lookup cannot re-cache the old row.
+ * Cache statistics are published as {@code cache.*} metrics with {@code cache=apiKeyUsers} and
+ * {@code cache=unknownApiKeys}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ApiKeyUserCache {
+
+    // Known keys only: the loader returns null for an unknown key, which Caffeine does not cache
+    private final LoadingCache<String, User> users;
+    private final Cache<String, Boolean> unknownKeys;
+
+    public ApiKeyUserCache(UserRepository userRepository, MeterRegistry meterRegistry,
+                           @Value("${rate.limit.user-cache.max-size:100000}") long maxSize,
+                           @Value("${rate.limit.user-cache.refresh-after-write:30s}") Duration refreshAfterWrite,
+                           @Value("${rate.limit.user-cache.expire-after-write:5m}") Duration expireAfterWrite,
+                           @Value("${rate.limit.user-cache.negative-max-size:10000}") long negativeMaxSize,
+                           @Value("${rate.limit.user-cache.negative-ttl:10s}") Duration negativeTtl) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refreshAfterWrite)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(apiKey -> userRepository.findByApiKey(apiKey).orElse(null));
+        this.unknownKeys = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "apiKeyUsers");
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownKeys, "unknownApiKeys");
+        log.info("Initialized API key user cache with maxSize={}, refreshAfterWrite={}, expireAfterWrite={}, "
+                + "negativeMaxSize={}, negativeTtl={}", maxSize, refreshAfterWrite, expireAfterWrite,
+                negativeMaxSize, negativeTtl);
+    }
+
+    /**
+     * Returns the user owning the API key, loading it from the database on a miss.
+     */
+    public Optional<User> get(String apiKey) {
+        User user = users.getIfPresent(apiKey);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        if (unknownKeys.getIfPresent(apiKey) != null) {
+            return Optional.empty();
+        }
+        user = users.get(apiKey);
+        if (user == null) {
+            unknownKeys.put(apiKey, Boolean.TRUE);
+        }
+        return Optional.ofNullable(user);
+    }
+
+    /**
+     * Evicts API keys now and, when called inside a transaction, again after it commits.
+     */
+    public void evict(String... apiKeys) {
+        evictNow(apiKeys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(apiKeys);
+                }
+            });
+        }
+    }
+
+    private void evictNow(String... apiKeys) {
+        for (String apiKey : apiKeys) {
+            if (apiKey != null) {
+                users.invalidate(apiKey);
+                unknownKeys.invalidate(apiKey);
+            }
+        }
+    }
+
+    /**
+     * Returns cache statistics (hit rate, load count, eviction count, etc.) of the known and unknown keys
+     */
+    public String getStats() {
+        return "users=" + users.stats() + ", unknownKeys=" + unknownKeys.stats();
+    }
+}
@@ -0,0 +1,263 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedTokenBucket;
+import com.ratelimiter.service.impl.BucketSnapshotSupport;
+import com.ratelimiter.service.impl.MeteredRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves local Token Bucket state to a file and restores it on startup, so a restart does not hand every
+ * client a full bucket.
+ * <p>
+ * The snapshot is written when the application stops (after graceful shutdown has drained requests) and,
+ * with {@code interval-ms > 0}, periodically in the background. It goes to a temporary file that is then
+ * renamed over the previous one, so a crash never leaves a half-written snapshot behind. On startup, before
+ * the web server accepts requests, the file is read through a memory mapping.
+ * </p>
+ * <p>
+ * Each bucket keeps its absolute last refill time, so the downtime is credited on its next decision. Buckets
+ * that would have refilled completely even at the slowest configured tier are skipped, on write and on
+ * restore (a missing bucket starts full anyway).
+ * </p>
+ * <p>
+ * File layout (big-endian): magic, version, write time (epoch ms), then per bucket the UTF-8 key length
+ * (unsigned short), key bytes and packed state (see {@link PackedTokenBucket}), then {@code 0xFFFF} and the
+ * bucket count.
+ * </p>
+ * <p>
+ * Only storages implementing {@link BucketSnapshotSupport} ({@code in-memory}, {@code caffeine}) are saved;
+ * for others this does nothing.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate.limit.snapshot.enabled", havingValue = "true")
+public class BucketSnapshotService implements SmartLifecycle {
+
+    private static final int MAGIC = 0x524C4253; // "RLBS"
+    private static final int VERSION = 1;
+    private static final int END_OF_BUCKETS = 0xFFFF;
+    private static final int MAX_KEY_BYTES = END_OF_BUCKETS - 1;
+
+    private final BucketSnapshotSupport store;
+    private final Path path;
+    private final long intervalMs;
+    private final long maxRefillMs;
+    private ScheduledExecutorService writer;
+    private volatile boolean running;
+
+    public BucketSnapshotService(RateLimiter rateLimiter,
+                                 RateLimitConfig rateLimitConfig,
+                                 @Value("${rate.limit.snapshot.path:bucket-state.snapshot}") String path,
+                                 @Value("${rate.limit.snapshot.interval-ms:0}") long intervalMs) {
+        RateLimiter target = rateLimiter instanceof MeteredRateLimiter metered ? metered.getDelegate() : rateLimiter;
+        this.store = target instanceof BucketSnapshotSupport support ? support : null;
+        this.path = Path.of(path);
+        this.intervalMs = intervalMs;
+        this.maxRefillMs = rateLimitConfig.slowestRefillMs();
+    }
+
+    /**
+     * Restores the last snapshot and starts periodic snapshots
+     */
+    @Override
+    public void start() {
+        running = true;
+        if (store == null) {
+            log.info("Bucket snapshots are not supported by the configured storage, nothing is saved");
+            return;
+        }
+        restore();
+        if (intervalMs > 0) {
+            writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rate-limit-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.scheduleWithFixedDelay(this::writeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops periodic snapshots and writes the final one
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (store == null) {
+            return;
+        }
+        if (writer != null) {
+            writer.shutdownNow();
+            try {
+                // A periodic write may still be renaming its file
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before the web server and stops after it, so the snapshot is restored before the first
+     * request and written after graceful shutdown has drained the last one.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * Writes the current bucket state, replacing the previous snapshot
+     *
+     * @return number of buckets written
+     */
+    public long write() throws IOException {
+        long start = System.nanoTime();
+        long currentTimeMs = System.currentTimeMillis();
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long[] written = new long[1];
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(currentTimeMs);
+            try {
+                store.forEachBucket((bucketKey, state) -> {
+                    if (isFullBy(state, currentTimeMs)) {
+                        return;
+                    }
+                    byte[] key = bucketKey.getBytes(StandardCharsets.UTF_8);
+                    if (key.length > MAX_KEY_BYTES) {
+                        return;
+                    }
+                    try {
+                        out.writeShort(key.length);
+                        out.write(key);
+                        out.writeLong(state);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    written[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeShort(END_OF_BUCKETS);
+            out.writeLong(written[0]);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Saved {} rate limit buckets to {} in {}ms", written[0], path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return written[0];
+    }
+
+    /**
+     * Loads the snapshot, if any, into the storage. Keys that already have a bucket keep it.
+     *
+     * @return number of buckets restored
+     */
+    public long restore() {
+        if (!Files.isRegularFile(path)) {
+            log.info("No rate limit snapshot at {}, starting with full buckets", path);
+            return 0;
+        }
+        long start = System.nanoTime();
+        long currentTimeMs = System.currentTimeMillis();
+        long restored = 0;
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.warn("Rate limit snapshot {} is too large ({} bytes), ignoring it", path, channel.size());
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("{} is not a rate limit snapshot (or has an older format), ignoring it", path);
+                return 0;
+            }
+            long writtenAtMs = buffer.getLong();
+            if (currentTimeMs - writtenAtMs >= maxRefillMs) {
+                log.info("Rate limit snapshot {} is {}s old, every bucket has refilled since", path,
+                        (currentTimeMs - writtenAtMs) / 1000);
+                return 0;
+            }
+
+            byte[] key = new byte[256];
+            int length;
+            while ((length = Short.toUnsignedInt(buffer.getShort())) != END_OF_BUCKETS) {
+                if (length > key.length) {
+                    key = new byte[length];
+                }
+                buffer.get(key, 0, length);
+                long state = buffer.getLong();
+                if (isFullBy(state, currentTimeMs)) {
+                    skipped++;
+                    continue;
+                }
+                if (PackedTokenBucket.lastRefillTimeOf(state) > currentTimeMs) {
+                    // Written by a host whose clock was ahead: refill from now instead of adding nothing for a while
+                    state = PackedTokenBucket.pack(PackedTokenBucket.tokensOf(state), currentTimeMs);
+                }
+                store.restoreBucket(new String(key, 0, length, StandardCharsets.UTF_8), state);
+                restored++;
+            }
+            long expected = buffer.getLong();
+            if (expected != restored + skipped) {
+                log.warn("Rate limit snapshot {} lists {} buckets but holds {}", path, expected, restored + skipped);
+            }
+        } catch (BufferUnderflowException e) {
+            log.warn("Rate limit snapshot {} is truncated, restored the first {} buckets", path, restored);
+        } catch (IOException e) {
+            log.warn("Could not read rate limit snapshot {}: {}", path, e.getMessage());
+        }
+        log.info("Restored {} rate limit buckets from {} in {}ms ({} already full)", restored, path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), skipped);
+        return restored;
+    }
+
+    // Runs on the snapshot thread and at shutdown: a failed write must not stop either
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not save rate limit snapshot to {}", path, e);
+        }
+    }
+
+    // A bucket last refilled this long ago is full at every tier, same as a missing one
+    private boolean isFullBy(long state, long currentTimeMs) {
+        return currentTimeMs - PackedTokenBucket.lastRefillTimeOf(state) >= maxRefillMs;
+    }
+}
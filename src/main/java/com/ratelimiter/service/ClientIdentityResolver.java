@@ -2,6 +2,7 @@ package com.ratelimiter.service;
 
 import com.ratelimiter.exception.ApiKeyNotFoundException;
 import com.ratelimiter.exception.UserDisabledException;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.model.RateLimitStatus;
 import com.ratelimiter.model.Tiers;
 import com.ratelimiter.model.User;
@@ -28,6 +29,8 @@ import java.util.Optional;
 public class ClientIdentityResolver {
 
     private final UserService userService;
+    // Present when rate.limit.user-index.enabled=true: API keys are resolved from memory only
+    private final Optional<UserIdentityIndex> userIdentityIndex;
 
     /**
      * Result of client identity resolution.
@@ -49,7 +52,9 @@ public class ClientIdentityResolver {
         // Check if user is having a valid API Key - Only a registered user can have valid API key
         String apiKey = request.getHeader(ApplicationConstants.HEADER_API_KEY);
         if (StringUtils.hasText(apiKey)) {
-            Optional<User> userOpt = userService.getUserByApiKey(apiKey);
+            Optional<User> userOpt = userIdentityIndex.isPresent()
+                    ? userIdentityIndex.get().findByApiKey(apiKey)
+                    : userService.getUserByApiKey(apiKey);
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
                 if (!user.isEnabled()) {
@@ -64,7 +69,7 @@ public class ClientIdentityResolver {
             throw new ApiKeyNotFoundException(apiKey);
         } else {
             // A registered user making a request will have HEADER_USER_ID
-            log.warn("No API key provided. Checking to see if user is registered.");
+            log.debug("No API key provided. Checking to see if user is registered.");
         }
 
         // Registered user makes a call without API key → rate limit by user ID with free tier
@@ -72,7 +77,7 @@ public class ClientIdentityResolver {
         if (StringUtils.hasText(userId)) {
             return new ResolvedIdentity("user:" + userId);
         } else {
-            log.warn("User is not registered. Falling back to rate limiting by IP");
+            log.debug("User is not registered. Falling back to rate limiting by IP");
         }
 
         // Non-registered user → rate limit by IP with free tier
@@ -142,4 +147,21 @@ public class ClientIdentityResolver {
             response.setHeader(ApplicationConstants.HEADER_RETRY_AFTER, String.valueOf(retryAfterSeconds));
         }
     }
+
+    /**
+     * Adds standard rate limit headers from a reusable decision holder.
+     *
+     * @param response the HTTP response
+     * @param decision the rate limit decision
+     */
+    public void addRateLimitHeaders(HttpServletResponse response, RateLimitDecision decision) {
+        response.setHeader(ApplicationConstants.HEADER_RATE_LIMIT_LIMIT, String.valueOf(decision.getLimit()));
+        response.setHeader(ApplicationConstants.HEADER_RATE_LIMIT_REMAINING, String.valueOf(decision.getRemainingTokens()));
+        response.setHeader(ApplicationConstants.HEADER_RATE_LIMIT_RESET, String.valueOf(decision.getResetAtSeconds()));
+
+        if (!decision.isAllowed()) {
+            long retryAfterSeconds = (long) Math.ceil(decision.getRetryAfterMs() / 1000.0);
+            response.setHeader(ApplicationConstants.HEADER_RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        }
+    }
 }
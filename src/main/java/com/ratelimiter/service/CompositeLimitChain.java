@@ -0,0 +1,136 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds the chain of buckets a {@link com.ratelimiter.annotation.RateLimit} request is charged against:
+ * <ol>
+ *     <li>the client's tier (or grace) bucket, as without composite limits</li>
+ *     <li>the client's bucket for the endpoint's policy ({@code per-client})</li>
+ *     <li>the policy's bucket shared by all clients ({@code endpoint})</li>
+ *     <li>the bucket shared by all {@code @RateLimit} requests of the service ({@code service}); requests to
+ *     endpoints without the annotation are not counted</li>
+ * </ol>
+ * Disabled limits are left out, so without composite configuration the chain is the client bucket alone.
+ * The chain is decided with {@link RateLimiter#tryConsumeAll} in all-or-nothing mode: a request passes only if
+ * every bucket has the tokens, and is then charged in all of them (on Redis, in one script call).
+ * <p>
+ * The shared buckets are striped: a limit with {@code stripes = n} is n buckets with 1/n of its capacity and
+ * refill rate each (whole tokens, the remainder going to the first stripes, so the stripes add up to the
+ * limit), and a request is charged to one of them at random. Concurrent requests then spread over n
+ * keys instead of all updating one, at the cost of rejecting a little early when the stripes drain unevenly.
+ * A request needing more tokens than a stripe holds is never allowed.
+ * </p>
+ * <p>
+ * On Redis Cluster all keys of one script call must share a hash slot, which the keys of a chain do not;
+ * use composite limits with a single Redis node (or a primary with replicas).
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompositeLimitChain {
+
+    private static final String POLICY_KEY_PREFIX = "policy:";
+    private static final String SERVICE_KEY = "service";
+
+    private final RateLimitConfig rateLimitConfig;
+
+    // Policies referenced by an annotation but not configured, logged once each
+    private final Set<String> unknownPolicies = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Builds the chain for one request.
+     *
+     * @param clientRequest  the client's own bucket, charged with the request's full tokens
+     * @param policy         policy name from the annotation, or blank for none
+     * @param endpointTokens tokens charged to the policy and service buckets
+     * @return the buckets to charge, starting with {@code clientRequest}
+     */
+    public List<RateLimitRequest> chainOf(RateLimitRequest clientRequest, String policy, long endpointTokens) {
+        RateLimitConfig.CompositeConfig composite = rateLimitConfig.getComposite();
+        List<RateLimitRequest> chain = new ArrayList<>(4);
+        chain.add(clientRequest);
+
+        RateLimitConfig.PolicyConfig policyConfig = policyConfigOf(composite, policy);
+        if (policyConfig != null) {
+            String policyKey = POLICY_KEY_PREFIX + policy;
+            RateLimitConfig.LimitConfig perClient = policyConfig.getPerClient();
+            if (perClient.isEnabled()) {
+                chain.add(RateLimitRequest.withLimits(policyKey + ":" + clientRequest.key(), endpointTokens,
+                        perClient.getCapacity(), perClient.getRefillRate()));
+            }
+            if (policyConfig.getEndpoint().isEnabled()) {
+                chain.add(stripeOf(policyKey, policyConfig.getEndpoint(), endpointTokens));
+            }
+        }
+        if (composite.getService().isEnabled()) {
+            chain.add(stripeOf(SERVICE_KEY, composite.getService(), endpointTokens));
+        }
+        return chain;
+    }
+
+    /**
+     * Reduces the chain's results to the one reported to the client: the bucket with the fewest remaining
+     * tokens. In all-or-nothing mode every result has the same decision and retry time.
+     *
+     * @param statuses results of the chain, in chain order
+     * @return the most restrictive result
+     */
+    public static RateLimitStatus tightestOf(List<RateLimitStatus> statuses) {
+        RateLimitStatus tightest = statuses.get(0);
+        for (int i = 1; i < statuses.size(); i++) {
+            if (statuses.get(i).getRemainingTokens() < tightest.getRemainingTokens()) {
+                tightest = statuses.get(i);
+            }
+        }
+        return tightest;
+    }
+
+    private RateLimitConfig.PolicyConfig policyConfigOf(RateLimitConfig.CompositeConfig composite, String policy) {
+        if (StringUtils.isBlank(policy)) {
+            return null;
+        }
+        RateLimitConfig.PolicyConfig policyConfig = composite.getPolicies().get(policy);
+        if (policyConfig == null && unknownPolicies.add(policy)) {
+            log.warn("Rate limit policy '{}' is not configured (rate.limit.composite.policies.{}), "
+                    + "only the client and service limits apply", policy, policy);
+        }
+        return policyConfig;
+    }
+
+    // One stripe at random. RateLimitConfig#validate makes capacity and rate at least one token per stripe.
+    private static RateLimitRequest stripeOf(String key, RateLimitConfig.LimitConfig limit, long tokens) {
+        int stripes = Math.max(1, limit.getStripes());
+        if (stripes == 1) {
+            return RateLimitRequest.withLimits(key, tokens, limit.getCapacity(), limit.getRefillRate());
+        }
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        long capacity = shareOf(limit.getCapacity(), stripes, stripe);
+        double refillRate = stripeRefillRate(limit.getRefillRate(), stripes, stripe);
+        return RateLimitRequest.withLimits(key + "#" + stripe, tokens, capacity, refillRate);
+    }
+
+    // Whole tokens per stripe, since the Redis scripts truncate the rate; the fraction stays with stripe 0
+    static double stripeRefillRate(double refillRate, int stripes, int stripe) {
+        long wholeRate = (long) refillRate;
+        return shareOf(wholeRate, stripes, stripe) + (stripe == 0 ? refillRate - wholeRate : 0);
+    }
+
+    // Equal shares of total, the remainder going to the first stripes so the shares add up to it
+    static long shareOf(long total, int stripes, int stripe) {
+        return total / stripes + (stripe < total % stripes ? 1 : 0);
+    }
+}
@@ -0,0 +1,235 @@
+package com.ratelimiter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous, sampled logging of rate limit decisions.
+ * <p>
+ * Request threads never format or write log lines. They:
+ * <ul>
+ *     <li>count the decision per key (two {@link LongAdder}s, no allocation once the key was seen in the interval)</li>
+ *     <li>for a sampled fraction of decisions ({@code allowed-sample-rate}, {@code rejected-sample-rate}), claim a slot
+ *     in a fixed-size ring buffer with one compare-and-set; when the buffer is full the event is dropped and counted</li>
+ * </ul>
+ * A background thread drains the buffer into log lines and, every {@code summary-interval-ms}, logs one summary with
+ * totals, the most rejected keys and the number of dropped events.
+ * </p>
+ * <p>
+ * With {@code rate.limit.decision-log.enabled=false} the limiters log every decision at DEBUG instead.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate.limit.decision-log.enabled", havingValue = "true", matchIfMissing = true)
+public class DecisionEventLog implements AutoCloseable {
+
+    private final double allowedSampleRate;
+    private final double rejectedSampleRate;
+    private final long summaryIntervalMs;
+    private final int maxTrackedKeys;
+    private final int topKeys;
+
+    // Ring buffer: slot i holds the event with sequence s where (s & mask) == i, published[i] == s + 1 once written
+    private final int mask;
+    private final String[] eventKeys;
+    private final boolean[] eventAllowed;
+    private final long[] eventRemaining;
+    private final long[] eventRetryAfterMs;
+    private final long[] eventTimeMs;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final LongAdder droppedEvents = new LongAdder();
+    private long droppedAtLastSummary;
+
+    private volatile Map<String, KeyCounts> counts = new ConcurrentHashMap<>();
+    private final KeyCounts untrackedKeys = new KeyCounts();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * Decisions for one key in the current summary interval
+     */
+    private static final class KeyCounts {
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+
+    private record KeySummary(String key, long allowed, long rejected) {
+    }
+
+    public DecisionEventLog(@Value("${rate.limit.decision-log.allowed-sample-rate:0.001}") double allowedSampleRate,
+                            @Value("${rate.limit.decision-log.rejected-sample-rate:0.01}") double rejectedSampleRate,
+                            @Value("${rate.limit.decision-log.summary-interval-ms:10000}") long summaryIntervalMs,
+                            @Value("${rate.limit.decision-log.buffer-size:8192}") int bufferSize,
+                            @Value("${rate.limit.decision-log.max-tracked-keys:10000}") int maxTrackedKeys,
+                            @Value("${rate.limit.decision-log.top-keys:5}") int topKeys) {
+        this.allowedSampleRate = allowedSampleRate;
+        this.rejectedSampleRate = rejectedSampleRate;
+        this.summaryIntervalMs = summaryIntervalMs;
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.topKeys = topKeys;
+
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.mask = capacity - 1;
+        this.eventKeys = new String[capacity];
+        this.eventAllowed = new boolean[capacity];
+        this.eventRemaining = new long[capacity];
+        this.eventRetryAfterMs = new long[capacity];
+        this.eventTimeMs = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+
+        this.writer = new Thread(this::runWriter, "rate-limit-decision-log");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Initialized decision log with sample rates allowed={}, rejected={}, buffer={}, summary every {}ms",
+                allowedSampleRate, rejectedSampleRate, capacity, summaryIntervalMs);
+    }
+
+    /**
+     * Records an allowed decision. Never blocks.
+     */
+    public void recordAllowed(String key, long remainingTokens) {
+        countsFor(key).allowed.increment();
+        if (sampled(allowedSampleRate)) {
+            offer(key, true, remainingTokens, 0);
+        }
+    }
+
+    /**
+     * Records a rejected decision. Never blocks.
+     */
+    public void recordRejected(String key, long remainingTokens, long retryAfterMs) {
+        countsFor(key).rejected.increment();
+        if (sampled(rejectedSampleRate)) {
+            offer(key, false, remainingTokens, retryAfterMs);
+        }
+    }
+
+    /**
+     * Returns how many sampled events were dropped because the ring buffer was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+    }
+
+    private KeyCounts countsFor(String key) {
+        Map<String, KeyCounts> current = counts;
+        KeyCounts keyCounts = current.get(key);
+        if (keyCounts != null) {
+            return keyCounts;
+        }
+        if (current.size() >= maxTrackedKeys) {
+            return untrackedKeys;
+        }
+        return current.computeIfAbsent(key, k -> new KeyCounts());
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private void offer(String key, boolean allowed, long remainingTokens, long retryAfterMs) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                droppedEvents.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        eventKeys[slot] = key;
+        eventAllowed[slot] = allowed;
+        eventRemaining[slot] = remainingTokens;
+        eventRetryAfterMs[slot] = retryAfterMs;
+        eventTimeMs[slot] = System.currentTimeMillis();
+        published.set(slot, sequence + 1);
+    }
+
+    private void runWriter() {
+        long nextSummaryMs = System.currentTimeMillis() + summaryIntervalMs;
+        while (running) {
+            drainEvents();
+            long now = System.currentTimeMillis();
+            if (now >= nextSummaryMs) {
+                logSummary();
+                nextSummaryMs = now + summaryIntervalMs;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        drainEvents();
+    }
+
+    private void drainEvents() {
+        long sequence = consumed;
+        while (true) {
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) {
+                break;
+            }
+            if (eventAllowed[slot]) {
+                log.info("Rate limit ALLOWED (sampled) for key: {}, remaining: {}, at: {}",
+                        eventKeys[slot], eventRemaining[slot], eventTimeMs[slot]);
+            } else {
+                log.warn("Rate limit EXCEEDED (sampled) for key: {}, retry after: {}ms, at: {}",
+                        eventKeys[slot], eventRetryAfterMs[slot], eventTimeMs[slot]);
+            }
+            eventKeys[slot] = null;
+            sequence++;
+            consumed = sequence;
+        }
+    }
+
+    private void logSummary() {
+        Map<String, KeyCounts> interval = counts;
+        counts = new ConcurrentHashMap<>();
+
+        long allowed = untrackedKeys.allowed.sumThenReset();
+        long rejected = untrackedKeys.rejected.sumThenReset();
+        List<KeySummary> rejectedKeys = new ArrayList<>();
+        for (Map.Entry<String, KeyCounts> entry : interval.entrySet()) {
+            long keyAllowed = entry.getValue().allowed.sum();
+            long keyRejected = entry.getValue().rejected.sum();
+            allowed += keyAllowed;
+            rejected += keyRejected;
+            if (keyRejected > 0) {
+                rejectedKeys.add(new KeySummary(entry.getKey(), keyAllowed, keyRejected));
+            }
+        }
+        if (allowed == 0 && rejected == 0) {
+            return;
+        }
+        rejectedKeys.sort(Comparator.comparingLong(KeySummary::rejected).reversed());
+        List<KeySummary> top = rejectedKeys.subList(0, Math.min(topKeys, rejectedKeys.size()));
+        long dropped = droppedEvents.sum();
+        log.info("Rate limit decisions in the last {}ms: allowed={}, rejected={}, keys={}, top rejected={}, dropped events={}",
+                summaryIntervalMs, allowed, rejected, interval.size(), top, dropped - droppedAtLastSummary);
+        droppedAtLastSummary = dropped;
+    }
+}
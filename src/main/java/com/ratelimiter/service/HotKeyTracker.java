@@ -0,0 +1,280 @@
+package com.ratelimiter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-memory tracker of the keys ({@code api:}, {@code user:}, {@code ip:}) sending the most requests and
+ * getting the most rejections.
+ * <p>
+ * Each of the two streams has a Count-Min sketch ({@code sketch-depth} rows of {@code sketch-width} counters) and a
+ * small candidate set of at most 2 x {@code top-k} keys. A decision adds 1 to one counter per row (lock-free) and
+ * checks whether the key is a candidate; only a key whose estimate beats the weakest candidate takes a lock to
+ * replace it. Memory does not depend on the number of keys, and the estimates never undercount: they can
+ * overcount by about e / width of the stream total.
+ * </p>
+ * <p>
+ * The counters are striped like a {@link LongAdder}: each thread increments its own copy of the sketch (one per
+ * core, up to 8) and reads add the copies up, so threads hammering the same hot key don't all write the same
+ * cache line. Admission compares the thread's own copy scaled by the stripe count, which is close to the merged
+ * estimate when a key's traffic is spread over many threads.
+ * </p>
+ * <p>
+ * Every {@code decay-interval-ms} all counters are multiplied by {@code decay-factor}, so the ranking follows
+ * current traffic rather than the whole uptime. Published by
+ * {@link com.ratelimiter.controller.RateLimitHotKeysEndpoint}.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate.limit.hotkeys.enabled", havingValue = "true", matchIfMissing = true)
+public class HotKeyTracker implements AutoCloseable {
+
+    private final TopKSketch requests;
+    private final TopKSketch rejections;
+    private final int topK;
+    private final long decayIntervalMs;
+    private final double decayFactor;
+    private final ScheduledExecutorService decayer;
+
+    /**
+     * A key with its estimated (decayed) count
+     */
+    public record HotKey(String key, long count) {
+    }
+
+    public HotKeyTracker(@Value("${rate.limit.hotkeys.top-k:20}") int topK,
+                         @Value("${rate.limit.hotkeys.sketch-width:2048}") int sketchWidth,
+                         @Value("${rate.limit.hotkeys.sketch-depth:4}") int sketchDepth,
+                         @Value("${rate.limit.hotkeys.decay-interval-ms:60000}") long decayIntervalMs,
+                         @Value("${rate.limit.hotkeys.decay-factor:0.5}") double decayFactor) {
+        this.topK = topK;
+        this.decayIntervalMs = decayIntervalMs;
+        this.decayFactor = decayFactor;
+        this.requests = new TopKSketch(sketchWidth, sketchDepth, 2 * topK);
+        this.rejections = new TopKSketch(sketchWidth, sketchDepth, 2 * topK);
+
+        this.decayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-hotkeys-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        decayer.scheduleAtFixedRate(this::decay, decayIntervalMs, decayIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Initialized hot key tracker: top {}, sketch {}x{}, decay x{} every {}ms",
+                topK, sketchDepth, requests.width, decayFactor, decayIntervalMs);
+    }
+
+    /**
+     * Counts a decision for the key; rejected decisions are also counted as rejections.
+     */
+    public void record(String key, boolean allowed) {
+        requests.add(key);
+        if (!allowed) {
+            rejections.add(key);
+        }
+    }
+
+    public List<HotKey> getTopRequests() {
+        return requests.top(topK);
+    }
+
+    public List<HotKey> getTopRejections() {
+        return rejections.top(topK);
+    }
+
+    /**
+     * Returns the (decayed) number of requests counted
+     */
+    public long getRequestTotal() {
+        return requests.total.sum();
+    }
+
+    /**
+     * Returns the (decayed) number of rejections counted
+     */
+    public long getRejectionTotal() {
+        return rejections.total.sum();
+    }
+
+    /**
+     * Returns how far an estimate can be above the true count, as a fraction of the stream total
+     */
+    public double getRelativeError() {
+        return Math.E / requests.width;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public long getDecayIntervalMs() {
+        return decayIntervalMs;
+    }
+
+    public double getDecayFactor() {
+        return decayFactor;
+    }
+
+    @Override
+    public void close() {
+        decayer.shutdownNow();
+    }
+
+    private void decay() {
+        try {
+            requests.decay(decayFactor);
+            rejections.decay(decayFactor);
+        } catch (Exception e) {
+            log.error("Could not decay hot key counts", e);
+        }
+    }
+
+    /**
+     * Count-Min sketch plus the keys with the highest estimates.
+     */
+    private static final class TopKSketch {
+
+        private static final int MAX_STRIPES = 8;
+
+        private final int width;
+        private final int depth;
+        private final int mask;
+        private final int maxCandidates;
+        private final int stripeMask;
+        // One width x depth sketch per stripe, summed on read
+        private final AtomicLongArray[] stripes;
+        private final LongAdder total = new LongAdder();
+        private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+        // Estimate a key needs to become a candidate once the set is full
+        private volatile long admissionThreshold;
+
+        private TopKSketch(int width, int depth, int maxCandidates) {
+            this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+            this.depth = Math.max(1, depth);
+            this.mask = this.width - 1;
+            this.maxCandidates = Math.max(1, maxCandidates);
+            int stripeCount = 1;
+            while (stripeCount < Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors())) {
+                stripeCount <<= 1;
+            }
+            this.stripeMask = stripeCount - 1;
+            this.stripes = new AtomicLongArray[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new AtomicLongArray(this.width * this.depth);
+            }
+        }
+
+        void add(String key) {
+            int hash = key.hashCode();
+            int h1 = mix(hash);
+            int h2 = mix(hash ^ 0x9E3779B9) | 1;
+            AtomicLongArray counters = stripes[mix((int) Thread.currentThread().threadId()) & stripeMask];
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int index = row * width + ((h1 + row * h2) & mask);
+                estimate = Math.min(estimate, counters.incrementAndGet(index));
+            }
+            total.increment();
+            if (estimate * stripes.length > admissionThreshold && !candidates.contains(key)) {
+                admit(key);
+            }
+        }
+
+        long estimate(String key) {
+            int hash = key.hashCode();
+            int h1 = mix(hash);
+            int h2 = mix(hash ^ 0x9E3779B9) | 1;
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int index = row * width + ((h1 + row * h2) & mask);
+                long count = 0;
+                for (AtomicLongArray counters : stripes) {
+                    count += counters.get(index);
+                }
+                estimate = Math.min(estimate, count);
+            }
+            return estimate;
+        }
+
+        private synchronized void admit(String key) {
+            if (!candidates.add(key) || candidates.size() <= maxCandidates) {
+                return;
+            }
+            // Full: drop the weakest candidate, which may be the new key itself
+            String weakest = null;
+            long weakestEstimate = Long.MAX_VALUE;
+            for (String candidate : candidates) {
+                long estimate = estimate(candidate);
+                if (estimate < weakestEstimate) {
+                    weakest = candidate;
+                    weakestEstimate = estimate;
+                }
+            }
+            candidates.remove(weakest);
+            updateThreshold();
+        }
+
+        private void updateThreshold() {
+            if (candidates.size() < maxCandidates) {
+                admissionThreshold = 0;
+                return;
+            }
+            long min = Long.MAX_VALUE;
+            for (String candidate : candidates) {
+                min = Math.min(min, estimate(candidate));
+            }
+            admissionThreshold = min;
+        }
+
+        synchronized void decay(double factor) {
+            for (AtomicLongArray counters : stripes) {
+                for (int i = 0; i < counters.length(); i++) {
+                    long value = counters.get(i);
+                    if (value != 0) {
+                        // Increments racing with this are rounded away, which is fine for a ranking
+                        counters.set(i, (long) (value * factor));
+                    }
+                }
+            }
+            long decayedTotal = (long) (total.sumThenReset() * factor);
+            total.add(decayedTotal);
+            candidates.removeIf(candidate -> estimate(candidate) == 0);
+            updateThreshold();
+        }
+
+        synchronized List<HotKey> top(int limit) {
+            List<HotKey> hotKeys = new ArrayList<>(candidates.size());
+            for (String candidate : candidates) {
+                long count = estimate(candidate);
+                if (count > 0) {
+                    hotKeys.add(new HotKey(candidate, count));
+                }
+            }
+            hotKeys.sort(Comparator.comparingLong(HotKey::count).reversed());
+            return hotKeys.size() > limit ? List.copyOf(hotKeys.subList(0, limit)) : hotKeys;
+        }
+
+        // fmix32 finalizer from MurmurHash3
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+}
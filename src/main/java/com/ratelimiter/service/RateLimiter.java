@@ -1,7 +1,11 @@
 package com.ratelimiter.service;
 
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
 import com.ratelimiter.model.RateLimitStatus;
 
+import java.util.List;
+
 /**
  * Interface for rate limiting implementations.
  * Implementations can use different storage backends (in-memory, Redis, etc.)
@@ -56,14 +60,103 @@ public interface RateLimiter {
     RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate);
 
     /**
-     * Get the current bucket state without consuming tokens
+     * Allocation-free variant of {@link #tryConsumeForTier(String, String)}: writes the result into a
+     * caller-owned holder instead of returning a new {@link RateLimitStatus}.
+     * Implementations without an allocation-free path copy the regular result.
+     *
+     * @param key      Unique identifier (e.g. user ID, IP address, API Key)
+     * @param tier     User tier name (free, premium, enterprise)
+     * @param decision holder that receives the result
+     * @return true if the request is allowed
+     */
+    default boolean tryConsumeForTier(String key, String tier, RateLimitDecision decision) {
+        return decision.copyFrom(tryConsumeForTier(key, tier));
+    }
+
+    /**
+     * Allocation-free variant of {@link #tryConsumeForTier(String, String, long)}.
+     *
+     * @param key      Unique identifier (e.g. user ID, IP address, API Key)
+     * @param tier     User tier name (free, premium, enterprise)
+     * @param tokens   Number of tokens to consume
+     * @param decision holder that receives the result
+     * @return true if the request is allowed
+     */
+    default boolean tryConsumeForTier(String key, String tier, long tokens, RateLimitDecision decision) {
+        return decision.copyFrom(tryConsumeForTier(key, tier, tokens));
+    }
+
+    /**
+     * Allocation-free variant of {@link #tryConsume(String, long, long, double)}.
+     *
+     * @param key              Unique identifier (e.g. user ID, IP address, API Key)
+     * @param tokens           Number of tokens to consume
+     * @param bucketCapacity   custom bucket capacity (different for each tier)
+     * @param bucketRefillRate custom refill rate (different for each tier)
+     * @param decision         holder that receives the result
+     * @return true if the request is allowed
+     */
+    default boolean tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate,
+                               RateLimitDecision decision) {
+        return decision.copyFrom(tryConsume(key, tokens, bucketCapacity, bucketRefillRate));
+    }
+
+    /**
+     * Get the current bucket state without consuming tokens, using default limits.
      * Useful for displaying rate limit info to users.
+     * <p>
+     * Read-only: never creates, refills or expires a bucket; tokens refilled since the last
+     * request are computed on the fly. An unknown key reports a full bucket.
+     * </p>
      *
      * @param key Unique identifier
      * @return RateLimitResult with current state (always marked as allowed)
      */
     RateLimitStatus peek(String key);
 
+    /**
+     * Read-only variant of {@link #tryConsumeForTier(String, String)}: the current state with the tier's limits.
+     *
+     * @param key  Unique identifier
+     * @param tier User tier name (free, premium, enterprise)
+     * @return RateLimitResult with current state (always marked as allowed)
+     */
+    RateLimitStatus peekForTier(String key, String tier);
+
+    /**
+     * Read-only variant of {@link #tryConsume(String, long, long, double)}.
+     *
+     * @param key              Unique identifier
+     * @param bucketCapacity   bucket capacity (reported for unknown keys)
+     * @param bucketRefillRate refill rate used to bring the stored state up to date
+     * @return RateLimitResult with current state (always marked as allowed)
+     */
+    RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate);
+
+    /**
+     * Checks several keys in one call, e.g. the API key, user, IP and endpoint limits of one request, or the
+     * keys of a bulk job. Backends decide the whole batch in one pass (one script call on Redis) instead of
+     * one call per key. A key listed twice is charged twice.
+     * <p>
+     * Without {@code allOrNothing}, each request is decided on its own, as with separate calls.
+     * With it, tokens are taken only if every request can be served; otherwise nothing is charged and every
+     * result is rejected, with the retry-after of the longest wait.
+     * </p>
+     *
+     * @param requests     keys, limits and tokens to check
+     * @param allOrNothing charge all requests or none
+     * @return one RateLimitResult per request, in request order
+     */
+    List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing);
+
+    /**
+     * Read-only variant of {@link #tryConsumeAll(List, boolean)}: the current state of every key.
+     *
+     * @param requests keys and limits to read (tokens are ignored)
+     * @return one RateLimitResult per request, in request order (always marked as allowed)
+     */
+    List<RateLimitStatus> peekAll(List<RateLimitRequest> requests);
+
     /**
      * Resets the rate limit for a specific key
      *
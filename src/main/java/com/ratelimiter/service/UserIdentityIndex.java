@@ -0,0 +1,226 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.model.User;
+import com.ratelimiter.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable in-memory index of API key → user identity, preloaded from the {@code users} table.
+ * <p>
+ * Enabled with {@code rate.limit.user-index.enabled=true}. All users are loaded at startup; after that a background
+ * task reads rows with a newer {@code updated_at} (via {@code idx_users_updated_at}) and applies the ones that
+ * changed. Every change builds a new map that replaces the old one with a single volatile write, so readers never
+ * block and {@link ClientIdentityResolver} never queries the database on the request path. Rows re-read from the
+ * overlap window without a change don't rebuild the map.
+ * </p>
+ * <p>
+ * Deletes don't show up in {@code updated_at}: users deleted through this instance are removed right away, and a
+ * periodic full reload catches deletes made elsewhere. Disabled users are kept in the index (as disabled), so
+ * they get 403 rather than 401.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate.limit.user-index.enabled", havingValue = "true")
+public class UserIdentityIndex implements AutoCloseable {
+
+    // Rows committed late can carry an updated_at older than the last one seen; re-read this far back
+    private static final Duration DELTA_OVERLAP = Duration.ofSeconds(5);
+
+    // Rough per-entry footprint: map node, key String (~70 chars), Identity record and username
+    private static final int ESTIMATED_ENTRY_BYTES = 48 + 112 + 32 + 56;
+
+    private final UserRepository userRepository;
+    private final long fullReloadIntervalMs;
+    private final ScheduledExecutorService refresher;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Instant.EPOCH);
+    private volatile long lastFullReloadMs;
+    private volatile long loadTimeMs;
+
+    /**
+     * What the rate limiter needs to know about a user
+     */
+    private record Identity(long id, String username, String tier, boolean enabled) {
+    }
+
+    /**
+     * One immutable version of the index
+     */
+    private record Snapshot(Map<String, Identity> byApiKey, Map<Long, String> apiKeyById, Instant watermark) {
+    }
+
+    public UserIdentityIndex(UserRepository userRepository, MeterRegistry meterRegistry,
+                             @Value("${rate.limit.user-index.refresh-interval-ms:5000}") long refreshIntervalMs,
+                             @Value("${rate.limit.user-index.full-reload-interval-ms:600000}") long fullReloadIntervalMs) {
+        this.userRepository = userRepository;
+        this.fullReloadIntervalMs = fullReloadIntervalMs;
+
+        // Load before the web server takes traffic
+        reloadAll();
+
+        Gauge.builder("ratelimiter.user.index.size", this, UserIdentityIndex::size)
+                .description("Users in the in-memory identity index")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.user.index.bytes", this, UserIdentityIndex::getEstimatedBytes)
+                .description("Estimated heap used by the identity index")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.user.index.load.ms", this, index -> index.loadTimeMs)
+                .description("Time taken by the last full load of the identity index")
+                .register(meterRegistry);
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-index-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Looks up the user owning an API key. The returned user only carries id, username, API key, tier and status.
+     */
+    public Optional<User> findByApiKey(String apiKey) {
+        Identity identity = snapshot.byApiKey().get(apiKey);
+        if (identity == null) {
+            return Optional.empty();
+        }
+        User user = new User();
+        user.setId(identity.id());
+        user.setUsername(identity.username());
+        user.setApiKey(apiKey);
+        user.setTier(identity.tier());
+        user.setEnabled(identity.enabled());
+        return Optional.of(user);
+    }
+
+    /**
+     * Removes a deleted user's key, after the surrounding transaction commits.
+     */
+    public void remove(String apiKey) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeNow(apiKey);
+                }
+            });
+        } else {
+            removeNow(apiKey);
+        }
+    }
+
+    public int size() {
+        return snapshot.byApiKey().size();
+    }
+
+    public long getEstimatedBytes() {
+        return (long) size() * ESTIMATED_ENTRY_BYTES;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    // Runs on the refresher thread
+    void refresh() {
+        try {
+            if (System.currentTimeMillis() - lastFullReloadMs >= fullReloadIntervalMs) {
+                reloadAll();
+            } else {
+                applyDeltas();
+            }
+        } catch (Exception e) {
+            log.error("Could not refresh user identity index, keeping the current one", e);
+        }
+    }
+
+    private synchronized void reloadAll() {
+        long startNanos = System.nanoTime();
+        List<User> users = (List<User>) userRepository.findAll();
+        Map<String, Identity> byApiKey = HashMap.newHashMap(users.size());
+        Map<Long, String> apiKeyById = HashMap.newHashMap(users.size());
+        Instant watermark = Instant.EPOCH;
+        for (User user : users) {
+            byApiKey.put(user.getApiKey(), toIdentity(user));
+            apiKeyById.put(user.getId(), user.getApiKey());
+            watermark = max(watermark, user.getUpdatedAt());
+        }
+        snapshot = new Snapshot(Map.copyOf(byApiKey), Map.copyOf(apiKeyById), watermark);
+        lastFullReloadMs = System.currentTimeMillis();
+        loadTimeMs = (System.nanoTime() - startNanos) / 1_000_000;
+        log.info("Loaded {} users into the identity index in {} ms, ~{} KB",
+                users.size(), loadTimeMs, getEstimatedBytes() / 1024);
+    }
+
+    private synchronized void applyDeltas() {
+        Snapshot current = snapshot;
+        List<User> rows = userRepository.findUpdatedSince(current.watermark().minus(DELTA_OVERLAP));
+        Instant watermark = current.watermark();
+        List<User> changed = new ArrayList<>();
+        for (User user : rows) {
+            // Most rows are re-read from the overlap and already applied
+            if (!toIdentity(user).equals(current.byApiKey().get(user.getApiKey()))) {
+                changed.add(user);
+            }
+            watermark = max(watermark, user.getUpdatedAt());
+        }
+        if (changed.isEmpty()) {
+            if (!watermark.equals(current.watermark())) {
+                snapshot = new Snapshot(current.byApiKey(), current.apiKeyById(), watermark);
+            }
+            return;
+        }
+        Map<String, Identity> byApiKey = new HashMap<>(current.byApiKey());
+        Map<Long, String> apiKeyById = new HashMap<>(current.apiKeyById());
+        for (User user : changed) {
+            String previousKey = apiKeyById.put(user.getId(), user.getApiKey());
+            if (previousKey != null && !previousKey.equals(user.getApiKey())) {
+                // Rotated key: the old one must stop working
+                byApiKey.remove(previousKey);
+            }
+            byApiKey.put(user.getApiKey(), toIdentity(user));
+        }
+        snapshot = new Snapshot(Map.copyOf(byApiKey), Map.copyOf(apiKeyById), watermark);
+        log.debug("Applied {} user changes to the identity index", changed.size());
+    }
+
+    private synchronized void removeNow(String apiKey) {
+        Snapshot current = snapshot;
+        Identity identity = current.byApiKey().get(apiKey);
+        if (identity == null) {
+            return;
+        }
+        Map<String, Identity> byApiKey = new HashMap<>(current.byApiKey());
+        Map<Long, String> apiKeyById = new HashMap<>(current.apiKeyById());
+        byApiKey.remove(apiKey);
+        apiKeyById.remove(identity.id());
+        snapshot = new Snapshot(Map.copyOf(byApiKey), Map.copyOf(apiKeyById), current.watermark());
+    }
+
+    private static Identity toIdentity(User user) {
+        return new Identity(user.getId(), user.getUsername(), user.getTier(), user.isEnabled());
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return b != null && b.isAfter(a) ? b : a;
+    }
+}
@@ -5,6 +5,7 @@ import com.ratelimiter.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -12,6 +13,10 @@ import java.util.Optional;
 
 /**
  * Service for managing users and their API keys
+ * <p>
+ * API key lookups go through {@link ApiKeyFilter} and {@link ApiKeyUserCache}; every change to a user's
+ * key, status or tier evicts the cache, new keys are added to the filter.
+ * </p>
  */
 @Slf4j
 @Service
@@ -20,6 +25,9 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final ApiKeyUserCache apiKeyUserCache;
+    private final ApiKeyFilter apiKeyFilter;
+    private final Optional<UserIdentityIndex> userIdentityIndex;
 
     // Creates a new user with the given details
     public User createUser(String username, String email, String tier) {
@@ -34,6 +42,9 @@ public class UserService {
 
         User user = new User(username, email, tier);
         User savedUser = userRepository.save(user);
+        // The key may have been cached as unknown before it existed
+        apiKeyUserCache.evict(savedUser.getApiKey());
+        apiKeyFilter.add(savedUser.getApiKey());
         log.info("User created successfully: id={}, apiKey={}", savedUser.getId(), savedUser.getApiKey());
         return savedUser;
     }
@@ -43,9 +54,14 @@ public class UserService {
         return userRepository.findById(id);
     }
 
-    @Transactional(readOnly = true)
+    // Served from the cache, so no transaction is started on a hit.
+    // Keys missing from the Bloom filter certainly don't exist and skip both cache and database
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Optional<User> getUserByApiKey(String apiKey) {
-        return userRepository.findByApiKey(apiKey);
+        if (!apiKeyFilter.mightContain(apiKey)) {
+            return Optional.empty();
+        }
+        return apiKeyUserCache.get(apiKey);
     }
 
     @Transactional(readOnly = true)
@@ -92,15 +108,19 @@ public class UserService {
         }
 
         log.info("Updating user: id={}", id);
+        apiKeyUserCache.evict(user.getApiKey());
         return userRepository.save(user);
     }
 
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new IllegalArgumentException("User not found!" + id);
-        }
+        User user = userRepository
+                .findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("User not found!" + id));
         log.info("Deleting user: id={}", id);
         userRepository.deleteById(id);
+        apiKeyUserCache.evict(user.getApiKey());
+        // Deletes leave no updated_at behind, so tell the index directly
+        userIdentityIndex.ifPresent(index -> index.remove(user.getApiKey()));
     }
 
     public User rotateApiKey(Long id) {
@@ -110,6 +130,8 @@ public class UserService {
         String oldKey = user.getApiKey();
         user.rotateApiKey();
         User savedUser = userRepository.save(user);
+        apiKeyUserCache.evict(oldKey, savedUser.getApiKey());
+        apiKeyFilter.add(savedUser.getApiKey());
         log.info("API key rotate for user: id={}, oldKey={}..., newKey={}...",
                 id, oldKey.substring(0, 10), savedUser.getApiKey().substring(0, 10));
         return savedUser;
@@ -121,6 +143,7 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found!" + id));
         user.enable();
         log.info("User enabled: id={}", id);
+        apiKeyUserCache.evict(user.getApiKey());
         return userRepository.save(user);
     }
 
@@ -130,6 +153,7 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found!" + id));
         user.disable();
         log.info("User disabled: id={}", id);
+        apiKeyUserCache.evict(user.getApiKey());
         return userRepository.save(user);
     }
 
@@ -139,6 +163,7 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found!" + id));
         user.updateTier(tier);
         log.info("Updating tier for user: id={}, tier={}", id, tier);
+        apiKeyUserCache.evict(user.getApiKey());
         return userRepository.save(user);
     }
 
@@ -147,9 +172,9 @@ public class UserService {
         return userRepository.countByTier(tier.toUpperCase());
     }
 
-    @Transactional(readOnly = true)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public boolean isApiKeyValid(String apiKey) {
-        return userRepository.findByApiKey(apiKey)
+        return getUserByApiKey(apiKey)
                 .map(User::isEnabled)
                 .orElse(false);
     }
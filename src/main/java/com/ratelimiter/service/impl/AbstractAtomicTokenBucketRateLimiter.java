@@ -0,0 +1,75 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.AtomicTokenBucket;
+import com.ratelimiter.model.PackedTokenBucket;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Abstract base class for Token Bucket Rate Limiters that keep one {@link AtomicTokenBucket} per key.
+ * <p>
+ * Implements the storage primitives of {@link AbstractTokenBucketRateLimiter} on top of the bucket objects;
+ * subclasses only provide the storage/retrieval mechanism via {@link #getOrCreateBucket} and {@link #findBucket}.
+ * </p>
+ */
+@Slf4j
+public abstract class AbstractAtomicTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+
+    protected AbstractAtomicTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
+        super(rateLimitConfig, tokensPerRequest);
+    }
+
+    /**
+     * Refill-and-consume is a lock-free compare-and-set loop on the bucket's packed state
+     * (see {@link AtomicTokenBucket}), so hot keys don't serialize request threads on a monitor.
+     */
+    @Override
+    protected long consume(String key, long tokens, long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
+        String bucketKey = buildBucketKey(key);
+
+        // Get or create bucket - subclasses provide storage mechanism
+        AtomicTokenBucket tokenBucket = getOrCreateBucket(bucketKey, bucketCapacity, bucketRefillRate, currentTimeMs);
+
+        long decision = tokenBucket.tryConsume(tokens, bucketCapacity, bucketRefillRate, currentTimeMs);
+        log.debug("Bucket state after tryConsume: {}", tokenBucket);
+        return decision;
+    }
+
+    @Override
+    protected void refund(String key, long tokens, long bucketCapacity) {
+        AtomicTokenBucket tokenBucket = findBucket(buildBucketKey(key));
+        if (tokenBucket != null) {
+            tokenBucket.refund(tokens, bucketCapacity);
+        }
+    }
+
+    @Override
+    protected long availableTokens(String key, long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
+        AtomicTokenBucket tokenBucket = findBucket(buildBucketKey(key));
+        if (tokenBucket == null) {
+            return bucketCapacity;
+        }
+        return PackedTokenBucket.availableAt(tokenBucket.getState(), currentTimeMs, bucketCapacity, bucketRefillRate);
+    }
+
+    /**
+     * Gets or creates a bucket for the given key.
+     * Subclasses implement this to provide their storage mechanism.
+     *
+     * @param bucketKey        the prefixed bucket key
+     * @param bucketCapacity   bucket capacity
+     * @param bucketRefillRate bucket refill rate
+     * @param currentTimeMs    current time in milliseconds
+     * @return the bucket (existing or newly created)
+     */
+    protected abstract AtomicTokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
+                                                           double bucketRefillRate, long currentTimeMs);
+
+    /**
+     * Looks up the bucket for the given key without creating it or touching its access order.
+     *
+     * @param bucketKey the prefixed bucket key
+     * @return the bucket, or null if the key has none
+     */
+    protected abstract AtomicTokenBucket findBucket(String bucketKey);
+}
@@ -0,0 +1,353 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import com.ratelimiter.service.DecisionEventLog;
+import com.ratelimiter.service.HotKeyTracker;
+import com.ratelimiter.service.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.ratelimiter.utils.ApplicationConstants.KEY_PREFIX;
+
+/**
+ * Abstract base class for all Rate Limiter implementations.
+ * <p>
+ * Resolves default and tier limits and funnels every call into
+ * {@link #tryConsume(String, long, long, double)}, which each algorithm implements.
+ * </p>
+ * <p>
+ * Decisions are reported to the {@link DecisionEventLog} when one is configured (limiters created as beans get it
+ * injected); otherwise they are only logged at DEBUG. They are also counted by the {@link HotKeyTracker}, if any.
+ * </p>
+ */
+@Slf4j
+public abstract class AbstractRateLimiter implements RateLimiter {
+
+    protected final RateLimitConfig rateLimitConfig;
+    protected final long tokensPerRequest;
+    private DecisionEventLog decisionEventLog;
+    private HotKeyTracker hotKeyTracker;
+
+    protected AbstractRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
+        this.rateLimitConfig = rateLimitConfig;
+        this.tokensPerRequest = tokensPerRequest;
+    }
+
+    @Autowired(required = false)
+    public void setDecisionEventLog(DecisionEventLog decisionEventLog) {
+        this.decisionEventLog = decisionEventLog;
+    }
+
+    @Autowired(required = false)
+    public void setHotKeyTracker(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key) {
+        return tryConsume(key, tokensPerRequest);
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens) {
+        return tryConsume(key, tokens, rateLimitConfig.getDefaultCapacity(), rateLimitConfig.getDefaultRefillRate());
+    }
+
+    @Override
+    public RateLimitStatus tryConsumeForTier(String key, String tier) {
+        return tryConsumeForTier(key, tier, tokensPerRequest);
+    }
+
+    @Override
+    public RateLimitStatus tryConsumeForTier(String key, String tier, long tokens) {
+        RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(tier);
+        return tryConsume(key, tokens, tierConfig.getCapacity(), tierConfig.getRefillRate());
+    }
+
+    @Override
+    public boolean tryConsumeForTier(String key, String tier, RateLimitDecision decision) {
+        return tryConsumeForTier(key, tier, tokensPerRequest, decision);
+    }
+
+    @Override
+    public boolean tryConsumeForTier(String key, String tier, long tokens, RateLimitDecision decision) {
+        RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(tier);
+        return tryConsume(key, tokens, tierConfig.getCapacity(), tierConfig.getRefillRate(), decision);
+    }
+
+    @Override
+    public RateLimitStatus peek(String key) {
+        return peek(key, rateLimitConfig.getDefaultCapacity(), rateLimitConfig.getDefaultRefillRate());
+    }
+
+    @Override
+    public RateLimitStatus peekForTier(String key, String tier) {
+        RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(tier);
+        return peek(key, tierConfig.getCapacity(), tierConfig.getRefillRate());
+    }
+
+    /**
+     * Generic batch: one call per request, for limiters without a native batch path.
+     * <p>
+     * All or nothing: every key is peeked first, so a batch that cannot be served is rejected without
+     * writing anything. Otherwise the requests are charged in order; if one still fails because a concurrent
+     * request took the tokens in between, the tokens already taken are given back with {@link #refund}.
+     * </p>
+     */
+    @Override
+    public List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        if (allOrNothing) {
+            long[] remainingTokens = remainingTokensOf(peekAll(resolved));
+            long retryAfterMs = estimateRetryAfterMs(resolved, remainingTokens);
+            if (retryAfterMs > 0) {
+                return rejectAll(resolved, remainingTokens, retryAfterMs);
+            }
+        }
+        List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+        for (int i = 0; i < resolved.size(); i++) {
+            RateLimitStatus result = tryConsume(resolved.get(i));
+            if (allOrNothing && !result.isAllowed()) {
+                for (int j = i - 1; j >= 0; j--) {
+                    refund(resolved.get(j));
+                }
+                return rejectAll(resolved, remainingTokensOf(peekAll(resolved)), result.getRetryAfterMs());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public List<RateLimitStatus> peekAll(List<RateLimitRequest> requests) {
+        List<RateLimitStatus> results = new ArrayList<>(requests.size());
+        for (RateLimitRequest request : requests) {
+            RateLimitRequest resolved = resolve(request);
+            results.add(resolved.tier() != null
+                    ? peekForTier(resolved.key(), resolved.tier())
+                    : peek(resolved.key(), resolved.bucketCapacity(), resolved.bucketRefillRate()));
+        }
+        return results;
+    }
+
+    /**
+     * Gives back the tokens of a request charged by an all-or-nothing batch that then failed.
+     * Does nothing if the key's state is gone meanwhile (a missing bucket is a full one).
+     *
+     * @param request the resolved request whose tokens were taken
+     */
+    protected abstract void refund(RateLimitRequest request);
+
+    /**
+     * Fills in the capacity and refill rate of a batch request from its tier or the defaults.
+     *
+     * @param request batch request
+     * @return the request with explicit limits (the tier is kept)
+     */
+    protected RateLimitRequest resolve(RateLimitRequest request) {
+        if (request.bucketCapacity() > 0) {
+            return request;
+        }
+        if (request.tier() != null) {
+            RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(request.tier());
+            return request.withLimits(tierConfig.getCapacity(), tierConfig.getRefillRate());
+        }
+        return request.withLimits(rateLimitConfig.getDefaultCapacity(), rateLimitConfig.getDefaultRefillRate());
+    }
+
+    protected List<RateLimitRequest> resolveAll(List<RateLimitRequest> requests) {
+        List<RateLimitRequest> resolved = new ArrayList<>(requests.size());
+        for (RateLimitRequest request : requests) {
+            resolved.add(resolve(request));
+        }
+        return resolved;
+    }
+
+    /**
+     * Rejects every request of an all-or-nothing batch.
+     *
+     * @param requests        the resolved requests
+     * @param remainingTokens tokens currently available per request
+     * @param retryAfterMs    wait until the whole batch can be served
+     * @return one rejected RateLimitResult per request
+     */
+    protected List<RateLimitStatus> rejectAll(List<RateLimitRequest> requests, long[] remainingTokens,
+                                              long retryAfterMs) {
+        List<RateLimitStatus> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            results.add(createRejectedResult(request.key(), remainingTokens[i], request.bucketCapacity(), retryAfterMs));
+        }
+        return results;
+    }
+
+    /**
+     * Converts the result of a batch script: flattened {allowed (0/1), remaining tokens, retry after in ms}
+     * triples, one per request. In all-or-nothing mode, any retry-after means the batch was rejected as a whole.
+     *
+     * @param requests     the resolved requests sent to the script
+     * @param result       script result
+     * @param allOrNothing whether the batch was sent in all-or-nothing mode
+     * @return one RateLimitResult per request
+     */
+    protected List<RateLimitStatus> toBatchStatuses(List<RateLimitRequest> requests, List<Long> result,
+                                                  boolean allOrNothing) {
+        if (result == null || result.size() < 3 * requests.size()) {
+            log.error("Unexpected result from Redis batch script for {} keys", requests.size());
+            // Fail open - allow requests if Redis returns unexpected result
+            return allowAll(requests);
+        }
+        if (allOrNothing) {
+            long retryAfterMs = 0;
+            long[] remainingTokens = new long[requests.size()];
+            for (int i = 0; i < requests.size(); i++) {
+                remainingTokens[i] = result.get(3 * i + 1);
+                retryAfterMs = Math.max(retryAfterMs, result.get(3 * i + 2));
+            }
+            if (retryAfterMs > 0) {
+                return rejectAll(requests, remainingTokens, retryAfterMs);
+            }
+        }
+        List<RateLimitStatus> statuses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            long remainingTokens = result.get(3 * i + 1);
+            statuses.add(result.get(3 * i) == 1
+                    ? createAllowedResult(request.key(), remainingTokens, request.bucketCapacity())
+                    : createRejectedResult(request.key(), remainingTokens, request.bucketCapacity(), result.get(3 * i + 2)));
+        }
+        return statuses;
+    }
+
+    /**
+     * Fail-open results for a batch that could not be decided: every request allowed with a full bucket.
+     *
+     * @param requests the resolved requests
+     * @return one allowed RateLimitResult per request
+     */
+    protected static List<RateLimitStatus> allowAll(List<RateLimitRequest> requests) {
+        List<RateLimitStatus> statuses = new ArrayList<>(requests.size());
+        for (RateLimitRequest request : requests) {
+            statuses.add(RateLimitStatus.allowed(request.bucketCapacity(), request.bucketCapacity()));
+        }
+        return statuses;
+    }
+
+    private RateLimitStatus tryConsume(RateLimitRequest request) {
+        // Tier requests keep going through the tier path (sliding windows use the tier's window)
+        return request.tier() != null
+                ? tryConsumeForTier(request.key(), request.tier(), request.tokens())
+                : tryConsume(request.key(), request.tokens(), request.bucketCapacity(), request.bucketRefillRate());
+    }
+
+    // Remaining tokens of each result
+    protected static long[] remainingTokensOf(List<RateLimitStatus> statuses) {
+        long[] remainingTokens = new long[statuses.size()];
+        for (int i = 0; i < remainingTokens.length; i++) {
+            remainingTokens[i] = statuses.get(i).getRemainingTokens();
+        }
+        return remainingTokens;
+    }
+
+    /**
+     * Time until every key has the tokens the batch asks of it (a key listed twice needs both amounts),
+     * at the token bucket refill rate; 0 if the batch can be served now.
+     */
+    private static long estimateRetryAfterMs(List<RateLimitRequest> requests, long[] remainingTokens) {
+        Map<String, Long> tokensByKey = new HashMap<>();
+        long retryAfterMs = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            long needed = tokensByKey.merge(request.key(), request.tokens(), Long::sum);
+            if (needed > remainingTokens[i]) {
+                long waitMs = (long) Math.ceil((needed - remainingTokens[i]) * 1000.0 / request.bucketRefillRate());
+                retryAfterMs = Math.max(retryAfterMs, Math.max(1, waitMs));
+            }
+        }
+        return retryAfterMs;
+    }
+
+    /**
+     * Builds the bucket key with the standard prefix
+     *
+     * @param key the raw key
+     * @return the prefixed bucket key
+     */
+    protected String buildBucketKey(String key) {
+        return KEY_PREFIX + key;
+    }
+
+    /**
+     * Reports an allowed decision without creating a result, for the allocation-free path.
+     */
+    protected void recordAllowed(String key, long remainingTokens) {
+        if (hotKeyTracker != null) {
+            hotKeyTracker.record(key, true);
+        }
+        if (decisionEventLog != null) {
+            decisionEventLog.recordAllowed(key, remainingTokens);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Rate limit ALLOWED for key: {}, remaining: {}", key, remainingTokens);
+        }
+    }
+
+    /**
+     * Reports a rejected decision without creating a result, for the allocation-free path.
+     */
+    protected void recordRejected(String key, long remainingTokens, long retryAfterMs) {
+        if (hotKeyTracker != null) {
+            hotKeyTracker.record(key, false);
+        }
+        if (decisionEventLog != null) {
+            decisionEventLog.recordRejected(key, remainingTokens, retryAfterMs);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Rate limit EXCEEDED for key: {}, retry after: {}ms", key, retryAfterMs);
+        }
+    }
+
+    /**
+     * Creates the result of a peek. Peeks are not decisions, so nothing is recorded.
+     *
+     * @param remainingTokens tokens currently available
+     * @param bucketCapacity  total bucket capacity
+     * @return allowed RateLimitResult
+     */
+    protected RateLimitStatus createPeekResult(long remainingTokens, long bucketCapacity) {
+        return RateLimitStatus.allowed(remainingTokens, bucketCapacity);
+    }
+
+    /**
+     * Creates an allowed result and records the decision.
+     *
+     * @param key             the rate limit key
+     * @param remainingTokens tokens remaining after consumption
+     * @param bucketCapacity  total bucket capacity
+     * @return allowed RateLimitResult
+     */
+    protected RateLimitStatus createAllowedResult(String key, long remainingTokens, long bucketCapacity) {
+        recordAllowed(key, remainingTokens);
+        return RateLimitStatus.allowed(remainingTokens, bucketCapacity);
+    }
+
+    /**
+     * Creates a rejected result and records the decision.
+     *
+     * @param key             the rate limit key
+     * @param remainingTokens tokens remaining (not enough for request)
+     * @param bucketCapacity  total bucket capacity
+     * @param retryAfterMs    milliseconds until tokens will be available
+     * @return rejected RateLimitResult
+     */
+    protected RateLimitStatus createRejectedResult(String key, long remainingTokens, long bucketCapacity, long retryAfterMs) {
+        recordRejected(key, remainingTokens, retryAfterMs);
+        return RateLimitStatus.rejected(remainingTokens, bucketCapacity, retryAfterMs);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedSlidingWindow;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.ratelimiter.utils.ApplicationConstants.SLIDING_WINDOW_KEY_PREFIX;
+
+/**
+ * Abstract base class for sliding-window-counter Rate Limiter implementations.
+ * <p>
+ * Enforces "at most capacity tokens per rolling window". The window comes from
+ * {@link RateLimitConfig.TierConfig#getWindow()}; when it is not configured (or when limits
+ * are passed explicitly) it is capacity / refillRate, which keeps the same long-term rate
+ * as the token bucket.
+ * </p>
+ * <p>
+ * Subclasses provide counter storage via {@link #tryConsumeInWindow}.
+ * </p>
+ */
+public abstract class AbstractSlidingWindowRateLimiter extends AbstractRateLimiter {
+
+    protected AbstractSlidingWindowRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
+        super(rateLimitConfig, tokensPerRequest);
+    }
+
+    @Override
+    public RateLimitStatus tryConsumeForTier(String key, String tier, long tokens) {
+        RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(tier);
+        return tryConsumeInWindow(key, tokens, tierConfig.getCapacity(), windowMsOf(tierConfig));
+    }
+
+    @Override
+    public RateLimitStatus peekForTier(String key, String tier) {
+        RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(tier);
+        return peekInWindow(key, tierConfig.getCapacity(), windowMsOf(tierConfig));
+    }
+
+    // Keeps the tier's configured window (the base class would derive it from capacity and rate)
+    @Override
+    public boolean tryConsumeForTier(String key, String tier, long tokens, RateLimitDecision decision) {
+        return decision.copyFrom(tryConsumeForTier(key, tier, tokens));
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        return tryConsumeInWindow(key, tokens, bucketCapacity, deriveWindowMs(bucketCapacity, bucketRefillRate));
+    }
+
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        return peekInWindow(key, bucketCapacity, deriveWindowMs(bucketCapacity, bucketRefillRate));
+    }
+
+    /**
+     * Checks and counts a request against the rolling window.
+     *
+     * @param key      Unique identifier (e.g. user ID, IP address, API Key)
+     * @param tokens   Number of tokens to consume
+     * @param limit    maximum tokens per rolling window
+     * @param windowMs rolling window length in milliseconds
+     * @return RateLimitResult indicating if request is allowed and rate limit info
+     */
+    protected abstract RateLimitStatus tryConsumeInWindow(String key, long tokens, long limit, long windowMs);
+
+    /**
+     * Reads the window counts without creating or updating them.
+     *
+     * @param key      Unique identifier (e.g. user ID, IP address, API Key)
+     * @param limit    maximum tokens per rolling window
+     * @param windowMs rolling window length in milliseconds
+     * @return RateLimitResult with the remaining tokens (always marked as allowed)
+     */
+    protected abstract RateLimitStatus peekInWindow(String key, long limit, long windowMs);
+
+    /**
+     * Builds the result of a peek from the window counts.
+     *
+     * @param previousCount count of the previous fixed window
+     * @param currentCount  count of the current fixed window
+     * @param limit         maximum tokens per rolling window
+     * @param offsetMs      time since the start of the current window
+     * @param windowMs      window length
+     * @return allowed RateLimitResult, not recorded as a decision
+     */
+    protected RateLimitStatus toPeekStatus(long previousCount, long currentCount, long limit,
+                                           long offsetMs, long windowMs) {
+        double used = PackedSlidingWindow.estimate(previousCount, currentCount, offsetMs, windowMs);
+        return createPeekResult(Math.max(0, (long) Math.floor(limit - used)), limit);
+    }
+
+    /**
+     * Builds the result from the window counts seen by the check.
+     *
+     * @param key           the rate limit key
+     * @param allowed       whether the request was counted
+     * @param previousCount count of the previous fixed window
+     * @param currentCount  count of the current fixed window (including this request if allowed)
+     * @param tokens        tokens requested
+     * @param limit         maximum tokens per rolling window
+     * @param offsetMs      time since the start of the current window
+     * @param windowMs      window length
+     * @return allowed or rejected RateLimitResult
+     */
+    protected RateLimitStatus toRateLimitStatus(String key, boolean allowed, long previousCount, long currentCount,
+                                                long tokens, long limit, long offsetMs, long windowMs) {
+        double used = PackedSlidingWindow.estimate(previousCount, currentCount, offsetMs, windowMs);
+        long remaining = Math.max(0, (long) Math.floor(limit - used));
+        if (allowed) {
+            return createAllowedResult(key, remaining, limit);
+        }
+        long retryAfterMs = PackedSlidingWindow.retryAfterMs(previousCount, currentCount, tokens, limit, offsetMs, windowMs);
+        return createRejectedResult(key, remaining, limit, retryAfterMs);
+    }
+
+    /**
+     * Window of a resolved batch request: the tier's window for tier requests, otherwise derived from its limits.
+     *
+     * @param request resolved batch request
+     * @return rolling window length in milliseconds
+     */
+    protected long windowMsOf(RateLimitRequest request) {
+        return request.tier() != null
+                ? windowMsOf(rateLimitConfig.getTierConfig(request.tier()))
+                : deriveWindowMs(request.bucketCapacity(), request.bucketRefillRate());
+    }
+
+    /**
+     * Window lengths a client key can be counted in: those of the configured tiers and of the default limits.
+     *
+     * @return distinct window lengths in milliseconds
+     */
+    protected Set<Long> configuredWindowsMs() {
+        Set<Long> windowsMs = new HashSet<>();
+        windowsMs.add(deriveWindowMs(rateLimitConfig.getDefaultCapacity(), rateLimitConfig.getDefaultRefillRate()));
+        for (RateLimitConfig.TierConfig tierConfig : rateLimitConfig.getTiers().values()) {
+            windowsMs.add(windowMsOf(tierConfig));
+        }
+        return windowsMs;
+    }
+
+    // The tier's configured window, or one derived from its capacity and rate
+    private static long windowMsOf(RateLimitConfig.TierConfig tierConfig) {
+        return tierConfig.getWindow() != null
+                ? tierConfig.getWindow().toMillis()
+                : deriveWindowMs(tierConfig.getCapacity(), tierConfig.getRefillRate());
+    }
+
+    // Window length with the same long-term rate as a token bucket of this capacity and refill rate
+    protected static long deriveWindowMs(long bucketCapacity, double bucketRefillRate) {
+        return Math.max(1, Math.round(bucketCapacity * 1000.0 / bucketRefillRate));
+    }
+
+    @Override
+    protected String buildBucketKey(String key) {
+        return SLIDING_WINDOW_KEY_PREFIX + key;
+    }
+}
@@ -1,170 +1,186 @@
 package com.ratelimiter.service.impl;
 
 import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.AtomicTokenBucket;
+import com.ratelimiter.model.PackedTokenBucket;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
 import com.ratelimiter.model.RateLimitStatus;
-import com.ratelimiter.model.TokenBucket;
-import com.ratelimiter.service.RateLimiter;
-import lombok.extern.slf4j.Slf4j;
 
-import static com.ratelimiter.utils.ApplicationConstants.KEY_PREFIX;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Abstract base class for Token Bucket Rate Limiter implementations.
  * <p>
- * Uses Template Method pattern: the algorithm is defined here, subclasses only
- * provide the bucket storage/retrieval mechanism via {@link #getOrCreateBucket}.
+ * Uses Template Method pattern: the decision paths (single, allocation-free, batch, peek) are defined
+ * here on top of three storage primitives, {@link #consume}, {@link #availableTokens} and
+ * {@link #refund(String, long, long)}. Stores that keep one {@link AtomicTokenBucket} per key extend
+ * {@link AbstractAtomicTokenBucketRateLimiter}; stores that keep the packed state elsewhere (see
+ * {@link OffHeapTokenBucketRateLimiter}) implement the primitives directly.
  * </p>
  */
-@Slf4j
-public abstract class AbstractTokenBucketRateLimiter implements RateLimiter {
-
-    protected final RateLimitConfig rateLimitConfig;
-    protected final long tokensPerRequest;
+public abstract class AbstractTokenBucketRateLimiter extends AbstractRateLimiter {
 
     protected AbstractTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
-        this.rateLimitConfig = rateLimitConfig;
-        this.tokensPerRequest = tokensPerRequest;
-    }
-
-    @Override
-    public RateLimitStatus tryConsume(String key) {
-        return tryConsume(key, tokensPerRequest);
+        super(rateLimitConfig, tokensPerRequest);
     }
 
+    /**
+     * Template method implementing the Token Bucket algorithm.
+     * Subclasses provide refill-and-consume via {@link #consume}.
+     */
     @Override
-    public RateLimitStatus tryConsume(String key, long tokens) {
-        return tryConsume(key, tokens, rateLimitConfig.getDefaultCapacity(), rateLimitConfig.getDefaultRefillRate());
+    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        long decision = consume(key, tokens, bucketCapacity, bucketRefillRate, System.currentTimeMillis());
+        return toRateLimitStatus(key, decision, tokens, bucketCapacity, bucketRefillRate);
     }
 
-    @Override
-    public RateLimitStatus tryConsumeForTier(String key, String tier) {
-        return tryConsumeForTier(key, tier, tokensPerRequest);
-    }
+    /**
+     * Refills and consumes on the key's bucket, creating it full if missing; all decision paths go through here.
+     *
+     * @param key              the rate limit key (not yet prefixed)
+     * @param tokens           tokens to consume
+     * @param bucketCapacity   bucket capacity
+     * @param bucketRefillRate tokens per second refill rate
+     * @param currentTimeMs    current time in milliseconds
+     * @return packed decision (see {@link PackedTokenBucket})
+     */
+    protected abstract long consume(String key, long tokens, long bucketCapacity, double bucketRefillRate,
+                                    long currentTimeMs);
 
+    /**
+     * Allocation-free variant of the template method: same algorithm, but the result is written into
+     * the caller's holder.
+     */
     @Override
-    public RateLimitStatus tryConsumeForTier(String key, String tier, long tokens) {
-        RateLimitConfig.TierConfig tierConfig = rateLimitConfig.getTierConfig(tier);
-        return tryConsume(key, tokens, tierConfig.getCapacity(), tierConfig.getRefillRate());
+    public boolean tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate,
+                              RateLimitDecision decision) {
+        long currentTimeMs = System.currentTimeMillis();
+        long packed = consume(key, tokens, bucketCapacity, bucketRefillRate, currentTimeMs);
+        long availableTokens = PackedTokenBucket.availableOf(packed);
+        long retryAfterMs = recordDecision(key, packed, tokens, bucketRefillRate);
+        return retryAfterMs < 0
+                ? decision.allow(availableTokens, bucketCapacity, currentTimeMs)
+                : decision.reject(availableTokens, bucketCapacity, retryAfterMs, currentTimeMs);
     }
 
     /**
-     * Template method implementing the Token Bucket algorithm.
-     * Subclasses provide bucket storage via {@link #getOrCreateBucket}.
+     * Native batch: all requests are decided in one pass with one clock read, and recorded once the
+     * outcome of the batch is known.
+     * <p>
+     * All or nothing is done by compensation: on the first rejection, the tokens already taken are given
+     * back (see {@link #refund(String, long, long)}). Requests running concurrently may briefly see them
+     * missing, but the batch is never charged in part.
+     * </p>
      */
     @Override
-    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
-        String bucketKey = buildBucketKey(key);
+    public List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
         long currentTimeMs = System.currentTimeMillis();
-
-        // Get or create bucket - subclasses provide storage mechanism
-        TokenBucket tokenBucket = getOrCreateBucket(bucketKey, bucketCapacity, bucketRefillRate, currentTimeMs);
-
-        // Synchronize on the bucket to prevent race conditions during read-modify-write
-        synchronized (tokenBucket) {
-            // Calculate tokens to add based on elapsed time
-            long elapsedMs = currentTimeMs - tokenBucket.getLastRefillTime();
-            long tokensToAdd = calculateTokensToAdd(elapsedMs, bucketRefillRate);
-
-            // Refill tokens (capped at capacity)
-            tokenBucket.setAvailableTokens(Math.min(bucketCapacity, tokenBucket.getAvailableTokens() + tokensToAdd));
-
-            // Update lastRefillTime only if tokens were added
-            if (tokensToAdd > 0) {
-                tokenBucket.setLastRefillTime(currentTimeMs);
-            }
-
-            // Check if we have enough tokens
-            if (tokenBucket.hasTokens(tokens)) {
-                // Consume tokens
-                tokenBucket.setAvailableTokens(tokenBucket.getAvailableTokens() - tokens);
-                log.debug("Bucket state after consume: {}", tokenBucket);
-                return createAllowedResult(key, tokenBucket.getAvailableTokens(), bucketCapacity);
-            } else {
-                // Calculate retry-after time
-                long tokensNeeded = tokens - tokenBucket.getAvailableTokens();
-                long retryAfterMs = calculateRetryAfterMs(tokensNeeded, bucketRefillRate);
-                log.debug("Bucket state (rate limited): {}", tokenBucket);
-                return createRejectedResult(key, tokenBucket.getAvailableTokens(), bucketCapacity, retryAfterMs);
+        long[] decisions = new long[resolved.size()];
+        for (int i = 0; i < decisions.length; i++) {
+            RateLimitRequest request = resolved.get(i);
+            decisions[i] = consume(request.key(), request.tokens(), request.bucketCapacity(),
+                    request.bucketRefillRate(), currentTimeMs);
+            if (allOrNothing && !PackedTokenBucket.isAllowed(decisions[i])) {
+                for (int j = i - 1; j >= 0; j--) {
+                    RateLimitRequest charged = resolved.get(j);
+                    refund(charged.key(), charged.tokens(), charged.bucketCapacity());
+                }
+                long retryAfterMs = calculateRetryAfterMs(
+                        request.tokens() - PackedTokenBucket.availableOf(decisions[i]), request.bucketRefillRate());
+                return rejectAll(resolved, remainingTokensOf(peekAll(resolved)), retryAfterMs);
             }
         }
+        List<RateLimitStatus> results = new ArrayList<>(decisions.length);
+        for (int i = 0; i < decisions.length; i++) {
+            RateLimitRequest request = resolved.get(i);
+            results.add(toRateLimitStatus(request.key(), decisions[i], request.tokens(),
+                    request.bucketCapacity(), request.bucketRefillRate()));
+        }
+        return results;
     }
 
     @Override
-    public RateLimitStatus peek(String key) {
-        return tryConsume(key, 0);
+    protected void refund(RateLimitRequest request) {
+        refund(request.key(), request.tokens(), request.bucketCapacity());
     }
 
     /**
-     * Gets or creates a bucket for the given key.
-     * Subclasses implement this to provide their storage mechanism.
+     * Gives back tokens taken by a failed all-or-nothing batch. Does nothing if the key has no bucket.
      *
-     * @param bucketKey        the prefixed bucket key
-     * @param bucketCapacity   bucket capacity
-     * @param bucketRefillRate bucket refill rate
-     * @param currentTimeMs    current time in milliseconds
-     * @return the TokenBucket (existing or newly created)
+     * @param key            the rate limit key (not yet prefixed)
+     * @param tokens         tokens to give back
+     * @param bucketCapacity bucket capacity
      */
-    protected abstract TokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
-                                                     double bucketRefillRate, long currentTimeMs);
+    protected abstract void refund(String key, long tokens, long bucketCapacity);
 
     /**
-     * Builds the bucket key with the standard prefix
-     *
-     * @param key the raw key
-     * @return the prefixed bucket key
+     * Read-only: never creates the key's bucket, see {@link #availableTokens}.
      */
-    protected String buildBucketKey(String key) {
-        return KEY_PREFIX + key;
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        long availableTokens = availableTokens(key, bucketCapacity, bucketRefillRate, System.currentTimeMillis());
+        return createPeekResult(availableTokens, bucketCapacity);
     }
 
     /**
-     * Calculates tokens to add based on elapsed time and refill rate.
-     * Uses floor to ensure tokens are only added when full time period has elapsed.
+     * Reads the tokens the key's bucket would hold after a refill, without creating or writing it.
+     * A missing bucket counts as full: the first request creates a full one.
      *
-     * @param elapsedMs        time elapsed since last refill in milliseconds
+     * @param key              the rate limit key (not yet prefixed)
+     * @param bucketCapacity   bucket capacity
      * @param bucketRefillRate tokens per second refill rate
-     * @return number of tokens to add
+     * @param currentTimeMs    current time in milliseconds
+     * @return available tokens
      */
-    protected long calculateTokensToAdd(long elapsedMs, double bucketRefillRate) {
-        return (long) Math.floor(elapsedMs * bucketRefillRate / 1000.0);
-    }
+    protected abstract long availableTokens(String key, long bucketCapacity, double bucketRefillRate,
+                                            long currentTimeMs);
 
     /**
-     * Calculates retry-after time when not enough tokens are available.
+     * Converts a packed decision (see {@link PackedTokenBucket}) into a RateLimitStatus.
      *
-     * @param tokensNeeded     number of additional tokens needed
+     * @param key              the rate limit key
+     * @param decision         encoded decision
+     * @param tokens           tokens that were requested
+     * @param bucketCapacity   bucket capacity
      * @param bucketRefillRate tokens per second refill rate
-     * @return milliseconds to wait before retrying
+     * @return allowed or rejected RateLimitResult
      */
-    protected long calculateRetryAfterMs(long tokensNeeded, double bucketRefillRate) {
-        return (long) Math.ceil(tokensNeeded * 1000.0 / bucketRefillRate);
+    protected RateLimitStatus toRateLimitStatus(String key, long decision, long tokens,
+                                                long bucketCapacity, double bucketRefillRate) {
+        long availableTokens = PackedTokenBucket.availableOf(decision);
+        long retryAfterMs = recordDecision(key, decision, tokens, bucketRefillRate);
+        return retryAfterMs < 0
+                ? RateLimitStatus.allowed(availableTokens, bucketCapacity)
+                : RateLimitStatus.rejected(availableTokens, bucketCapacity, retryAfterMs);
     }
 
     /**
-     * Creates an allowed result and logs the action.
+     * Records a packed decision; shared by the status and the allocation-free decision paths.
      *
-     * @param key             the rate limit key
-     * @param remainingTokens tokens remaining after consumption
-     * @param bucketCapacity  total bucket capacity
-     * @return allowed RateLimitResult
+     * @return milliseconds until the request could pass if it was rejected, -1 if it was allowed
      */
-    protected RateLimitStatus createAllowedResult(String key, long remainingTokens, long bucketCapacity) {
-        log.info("Rate limit ALLOWED for key: {}, remaining: {}", key, remainingTokens);
-        return RateLimitStatus.allowed(remainingTokens, bucketCapacity);
+    private long recordDecision(String key, long decision, long tokens, double bucketRefillRate) {
+        long availableTokens = PackedTokenBucket.availableOf(decision);
+        if (PackedTokenBucket.isAllowed(decision)) {
+            recordAllowed(key, availableTokens);
+            return -1;
+        }
+        long retryAfterMs = calculateRetryAfterMs(tokens - availableTokens, bucketRefillRate);
+        recordRejected(key, availableTokens, retryAfterMs);
+        return retryAfterMs;
     }
 
     /**
-     * Creates a rejected result and logs the action.
+     * Calculates retry-after time when not enough tokens are available.
      *
-     * @param key             the rate limit key
-     * @param remainingTokens tokens remaining (not enough for request)
-     * @param bucketCapacity  total bucket capacity
-     * @param retryAfterMs    milliseconds until tokens will be available
-     * @return rejected RateLimitResult
+     * @param tokensNeeded     number of additional tokens needed
+     * @param bucketRefillRate tokens per second refill rate
+     * @return milliseconds to wait before retrying
      */
-    protected RateLimitStatus createRejectedResult(String key, long remainingTokens, long bucketCapacity, long retryAfterMs) {
-        log.warn("Rate limit EXCEEDED for key: {}, retry after: {}ms", key, retryAfterMs);
-        return RateLimitStatus.rejected(remainingTokens, bucketCapacity, retryAfterMs);
+    protected long calculateRetryAfterMs(long tokensNeeded, double bucketRefillRate) {
+        return (long) Math.ceil(tokensNeeded * 1000.0 / bucketRefillRate);
     }
 }
-
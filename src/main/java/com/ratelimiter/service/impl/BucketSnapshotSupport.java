@@ -0,0 +1,33 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.model.PackedTokenBucket;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Local Token Bucket storage whose buckets can be saved and restored across restarts
+ * (see {@link com.ratelimiter.service.BucketSnapshotService}).
+ * <p>
+ * Buckets are exchanged as their prefixed bucket key and packed state (see {@link PackedTokenBucket}).
+ * The packed state carries the absolute last refill time, so a restored bucket is refilled for the
+ * downtime on its next decision, with the caller's tier limits.
+ * </p>
+ */
+public interface BucketSnapshotSupport {
+
+    /**
+     * Passes every stored bucket to the consumer. Runs concurrently with requests, so each
+     * bucket is a consistent word but the whole is not a point-in-time copy.
+     *
+     * @param consumer receives the bucket key and packed state
+     */
+    void forEachBucket(ObjLongConsumer<String> consumer);
+
+    /**
+     * Stores a bucket unless the key already has one (a request got there first).
+     *
+     * @param bucketKey   the prefixed bucket key
+     * @param packedState packed bucket state
+     */
+    void restoreBucket(String bucketKey, long packedState);
+}
@@ -0,0 +1,174 @@
+package com.ratelimiter.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.ratelimiter.utils.ApplicationConstants.GCRA_KEY_PREFIX;
+
+/**
+ * GCRA (Generic Cell Rate Algorithm) Rate Limiter implementation using Caffeine cache.
+ * <p>
+ * GCRA makes the same decisions as a Token Bucket with the same capacity and refill rate,
+ * but keeps a single timestamp per key: the theoretical arrival time (TAT) of the next request.
+ * <ul>
+ *     <li>Emission interval T = 1s / refill rate</li>
+ *     <li>A request for n tokens moves TAT to max(TAT, now) + n * T</li>
+ *     <li>It is allowed if the new TAT is at most capacity * T ahead of now</li>
+ * </ul>
+ * A TAT in the past is the same as a full bucket, so entries can expire as soon as their TAT passes.
+ * </p>
+ */
+@Slf4j
+public class CaffeineGcraRateLimiter extends AbstractRateLimiter {
+
+    private final Cache<String, AtomicLong> tatCache;
+
+    public CaffeineGcraRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest, long maxSize) {
+        super(rateLimitConfig, tokensPerRequest);
+        long ttlSeconds = calculateTtlSeconds(rateLimitConfig);
+        this.tatCache = Caffeine.newBuilder()
+                .expireAfterAccess(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        log.info("Initialized Caffeine GCRA cache with TTL={}s, maxSize={}", ttlSeconds, maxSize);
+    }
+
+    /**
+     * Simplified constructor with sensible defaults
+     */
+    public CaffeineGcraRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
+        this(rateLimitConfig, tokensPerRequest, 100_000);
+    }
+
+    // TAT is never more than capacity / refillRate seconds ahead of the last access
+    private static long calculateTtlSeconds(RateLimitConfig config) {
+        double maxBurstSeconds = config.getDefaultCapacity() / config.getDefaultRefillRate();
+        for (RateLimitConfig.TierConfig tier : config.getTiers().values()) {
+            maxBurstSeconds = Math.max(maxBurstSeconds, tier.getCapacity() / tier.getRefillRate());
+        }
+        return (long) Math.ceil(maxBurstSeconds) + 1;
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        String bucketKey = buildBucketKey(key);
+        long nowMicros = System.currentTimeMillis() * 1_000;
+        long interval = emissionIntervalMicros(bucketRefillRate);
+        long burst = bucketCapacity * interval;
+
+        AtomicLong tat = tatCache.get(bucketKey, k -> new AtomicLong(nowMicros));
+        while (true) {
+            long storedTat = tat.get();
+            long currentTat = Math.max(storedTat, nowMicros);
+            long newTat = currentTat + tokens * interval;
+            long allowAt = newTat - burst;
+
+            if (nowMicros < allowAt) {
+                long remaining = (burst - (currentTat - nowMicros)) / interval;
+                long retryAfterMs = (allowAt - nowMicros + 999) / 1_000;
+                return createRejectedResult(key, remaining, bucketCapacity, retryAfterMs);
+            }
+            // A peek (0 tokens) never writes
+            if (tokens == 0 || tat.compareAndSet(storedTat, newTat)) {
+                long remaining = (burst - (newTat - nowMicros)) / interval;
+                return createAllowedResult(key, remaining, bucketCapacity);
+            }
+        }
+    }
+
+    /**
+     * Read-only: reads the key's TAT without creating or touching the cache entry.
+     */
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        AtomicLong tat = tatCache.policy().getIfPresentQuietly(buildBucketKey(key));
+        if (tat == null) {
+            return createPeekResult(bucketCapacity, bucketCapacity);
+        }
+        long remaining = remainingTokens(tat.get(), System.currentTimeMillis() * 1_000, bucketCapacity,
+                emissionIntervalMicros(bucketRefillRate));
+        return createPeekResult(remaining, bucketCapacity);
+    }
+
+    // Moves the TAT back by the tokens of a failed all-or-nothing batch; a TAT in the past means a full bucket
+    @Override
+    protected void refund(RateLimitRequest request) {
+        AtomicLong tat = tatCache.getIfPresent(buildBucketKey(request.key()));
+        if (tat != null) {
+            tat.addAndGet(-request.tokens() * emissionIntervalMicros(request.bucketRefillRate()));
+        }
+    }
+
+    /**
+     * Tokens a request could take right now, given the stored TAT
+     *
+     * @param tatMicros      stored theoretical arrival time in microseconds
+     * @param nowMicros      current time in microseconds
+     * @param bucketCapacity burst capacity
+     * @param interval       emission interval in microseconds
+     * @return remaining tokens, {@code bucketCapacity} once the TAT has passed
+     */
+    static long remainingTokens(long tatMicros, long nowMicros, long bucketCapacity, long interval) {
+        long burst = bucketCapacity * interval;
+        return Math.max(0, (burst - (Math.max(tatMicros, nowMicros) - nowMicros)) / interval);
+    }
+
+    /**
+     * Emission interval (time between two tokens) in microseconds
+     *
+     * @param bucketRefillRate tokens per second
+     * @return microseconds per token, at least 1
+     */
+    static long emissionIntervalMicros(double bucketRefillRate) {
+        return Math.max(1, Math.round(1_000_000 / bucketRefillRate));
+    }
+
+    @Override
+    protected String buildBucketKey(String key) {
+        return GCRA_KEY_PREFIX + key;
+    }
+
+    @Override
+    public void reset(String key) {
+        tatCache.invalidate(buildBucketKey(key));
+        log.info("Rate limit reset for key: {}", key);
+    }
+
+    /**
+     * Returns the current number of tracked keys
+     */
+    public long getBucketCount() {
+        return tatCache.estimatedSize();
+    }
+
+    /**
+     * Returns cache statistics (hit rate, eviction count, etc.)
+     */
+    public String getStats() {
+        return getCacheStats().toString();
+    }
+
+    /**
+     * Returns cache statistics as numbers, for metrics
+     */
+    public CacheStats getCacheStats() {
+        return tatCache.stats();
+    }
+
+    /**
+     * Clears all tracked keys
+     */
+    public void clearAll() {
+        tatCache.invalidateAll();
+        log.info("All rate limit buckets cleared");
+    }
+}
@@ -0,0 +1,153 @@
+package com.ratelimiter.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedSlidingWindow;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding-window-counter Rate Limiter implementation using Caffeine cache.
+ * <p>
+ * Each key holds one atomic word with the previous and current window counts
+ * (see {@link PackedSlidingWindow}). Check-and-increment is a single compare-and-set,
+ * so concurrent requests can never push the count over the limit.
+ * Entries expire after two windows without access, when both counts would be zero anyway.
+ * </p>
+ */
+@Slf4j
+public class CaffeineSlidingWindowRateLimiter extends AbstractSlidingWindowRateLimiter {
+
+    private final Cache<String, AtomicLong> counterCache;
+
+    public CaffeineSlidingWindowRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest, long maxSize) {
+        super(rateLimitConfig, tokensPerRequest);
+        long ttlMs = 2 * calculateMaxWindowMs(rateLimitConfig);
+        this.counterCache = Caffeine.newBuilder()
+                .expireAfterAccess(ttlMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        log.info("Initialized Caffeine sliding window cache with TTL={}ms, maxSize={}", ttlMs, maxSize);
+    }
+
+    /**
+     * Simplified constructor with sensible defaults
+     */
+    public CaffeineSlidingWindowRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
+        this(rateLimitConfig, tokensPerRequest, 100_000);
+    }
+
+    private static long calculateMaxWindowMs(RateLimitConfig config) {
+        long maxWindowMs = deriveWindowMs(config.getDefaultCapacity(), config.getDefaultRefillRate());
+        for (RateLimitConfig.TierConfig tier : config.getTiers().values()) {
+            long windowMs = tier.getWindow() != null
+                    ? tier.getWindow().toMillis()
+                    : deriveWindowMs(tier.getCapacity(), tier.getRefillRate());
+            maxWindowMs = Math.max(maxWindowMs, windowMs);
+        }
+        return maxWindowMs;
+    }
+
+    @Override
+    protected RateLimitStatus tryConsumeInWindow(String key, long tokens, long limit, long windowMs) {
+        if (limit > PackedSlidingWindow.MAX_COUNT) {
+            throw new IllegalArgumentException("Window limit must be at most " + PackedSlidingWindow.MAX_COUNT + ": " + limit);
+        }
+        long currentTimeMs = System.currentTimeMillis();
+        long windowIndex = currentTimeMs / windowMs;
+        long offsetMs = currentTimeMs % windowMs;
+
+        AtomicLong counter = counterCache.get(buildBucketKey(key),
+                k -> new AtomicLong(PackedSlidingWindow.pack(windowIndex, 0, 0)));
+        while (true) {
+            long stored = counter.get();
+            long rolled = PackedSlidingWindow.roll(stored, windowIndex);
+            long previous = PackedSlidingWindow.previousOf(rolled);
+            long current = PackedSlidingWindow.currentOf(rolled);
+
+            if (PackedSlidingWindow.estimate(previous, current + tokens, offsetMs, windowMs) > limit) {
+                return toRateLimitStatus(key, false, previous, current, tokens, limit, offsetMs, windowMs);
+            }
+            long next = PackedSlidingWindow.pack(windowIndex, previous, current + tokens);
+            if (tokens == 0 || counter.compareAndSet(stored, next)) {
+                return toRateLimitStatus(key, true, previous, current + tokens, tokens, limit, offsetMs, windowMs);
+            }
+        }
+    }
+
+    @Override
+    protected RateLimitStatus peekInWindow(String key, long limit, long windowMs) {
+        AtomicLong counter = counterCache.policy().getIfPresentQuietly(buildBucketKey(key));
+        if (counter == null) {
+            return createPeekResult(limit, limit);
+        }
+        long currentTimeMs = System.currentTimeMillis();
+        long rolled = PackedSlidingWindow.roll(counter.get(), currentTimeMs / windowMs);
+        return toPeekStatus(PackedSlidingWindow.previousOf(rolled), PackedSlidingWindow.currentOf(rolled),
+                limit, currentTimeMs % windowMs, windowMs);
+    }
+
+    // Uncounts the tokens of a failed all-or-nothing batch, from the previous window if it has rolled since
+    @Override
+    protected void refund(RateLimitRequest request) {
+        AtomicLong counter = counterCache.getIfPresent(buildBucketKey(request.key()));
+        if (counter == null) {
+            return;
+        }
+        long windowIndex = System.currentTimeMillis() / windowMsOf(request);
+        while (true) {
+            long stored = counter.get();
+            long rolled = PackedSlidingWindow.roll(stored, windowIndex);
+            long current = PackedSlidingWindow.currentOf(rolled);
+            long previous = PackedSlidingWindow.previousOf(rolled);
+            long fromCurrent = Math.min(current, request.tokens());
+            long fromPrevious = Math.min(previous, request.tokens() - fromCurrent);
+            long next = PackedSlidingWindow.pack(windowIndex, previous - fromPrevious, current - fromCurrent);
+            if (counter.compareAndSet(stored, next)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void reset(String key) {
+        counterCache.invalidate(buildBucketKey(key));
+        log.info("Rate limit reset for key: {}", key);
+    }
+
+    /**
+     * Returns the current number of tracked counters
+     */
+    public long getBucketCount() {
+        return counterCache.estimatedSize();
+    }
+
+    /**
+     * Returns cache statistics (hit rate, eviction count, etc.)
+     */
+    public String getStats() {
+        return getCacheStats().toString();
+    }
+
+    /**
+     * Returns cache statistics as numbers, for metrics
+     */
+    public CacheStats getCacheStats() {
+        return counterCache.stats();
+    }
+
+    /**
+     * Clears all counters
+     */
+    public void clearAll() {
+        counterCache.invalidateAll();
+        log.info("All rate limit buckets cleared");
+    }
+}
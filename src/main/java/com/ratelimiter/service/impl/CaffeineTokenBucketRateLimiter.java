@@ -2,11 +2,13 @@ package com.ratelimiter.service.impl;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.ratelimiter.configuration.RateLimitConfig;
-import com.ratelimiter.model.TokenBucket;
+import com.ratelimiter.model.AtomicTokenBucket;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Token Bucket Rate Limiter implementation using Caffeine cache.
@@ -23,9 +25,10 @@ import java.util.concurrent.TimeUnit;
  * </p>
  */
 @Slf4j
-public class CaffeineTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+public class CaffeineTokenBucketRateLimiter extends AbstractAtomicTokenBucketRateLimiter
+        implements BucketSnapshotSupport {
 
-    private final Cache<String, TokenBucket> bucketCache;
+    private final Cache<String, AtomicTokenBucket> bucketCache;
 
     public CaffeineTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
                                           long ttlSeconds, long maxSize) {
@@ -57,10 +60,33 @@ public class CaffeineTokenBucketRateLimiter extends AbstractTokenBucketRateLimit
     }
 
     @Override
-    protected TokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
+    protected AtomicTokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
                                             double bucketRefillRate, long currentTimeMs) {
-        return bucketCache.get(bucketKey,
-                k -> TokenBucket.createNew(k, bucketCapacity, bucketRefillRate, currentTimeMs));
+        // getIfPresent first: get(key, mappingFunction) would allocate the capturing lambda on every call.
+        // It records the hit or miss; putIfAbsent records nothing, so a new key counts as one miss, not two
+        AtomicTokenBucket bucket = bucketCache.getIfPresent(bucketKey);
+        if (bucket != null) {
+            return bucket;
+        }
+        AtomicTokenBucket created = AtomicTokenBucket.createNew(bucketCapacity, currentTimeMs);
+        AtomicTokenBucket existing = bucketCache.asMap().putIfAbsent(bucketKey, created);
+        return existing != null ? existing : created;
+    }
+
+    @Override
+    protected AtomicTokenBucket findBucket(String bucketKey) {
+        // Quietly: a peek must not count as an access for eviction or expiry
+        return bucketCache.policy().getIfPresentQuietly(bucketKey);
+    }
+
+    @Override
+    public void forEachBucket(ObjLongConsumer<String> consumer) {
+        bucketCache.asMap().forEach((bucketKey, bucket) -> consumer.accept(bucketKey, bucket.getState()));
+    }
+
+    @Override
+    public void restoreBucket(String bucketKey, long packedState) {
+        bucketCache.asMap().putIfAbsent(bucketKey, new AtomicTokenBucket(packedState));
     }
 
     @Override
@@ -81,7 +107,14 @@ public class CaffeineTokenBucketRateLimiter extends AbstractTokenBucketRateLimit
      * Returns cache statistics (hit rate, eviction count, etc.)
      */
     public String getStats() {
-        return bucketCache.stats().toString();
+        return getCacheStats().toString();
+    }
+
+    /**
+     * Returns cache statistics as numbers, for metrics
+     */
+    public CacheStats getCacheStats() {
+        return bucketCache.stats();
     }
 
     /**
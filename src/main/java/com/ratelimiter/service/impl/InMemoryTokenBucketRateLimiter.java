@@ -1,11 +1,12 @@
 package com.ratelimiter.service.impl;
 
 import com.ratelimiter.configuration.RateLimitConfig;
-import com.ratelimiter.model.TokenBucket;
+import com.ratelimiter.model.AtomicTokenBucket;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjLongConsumer;
 
 /**
  * In-memory Token Bucket Rate Limiter implementation using ConcurrentHashMap.
@@ -15,24 +16,45 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Learning/prototyping
  *
  * <p> Limitations: </br>
- * - State is lost on restart </br>
+ * - State is lost on restart, unless saved with {@code rate.limit.snapshot.enabled} </br>
  * - Not shared across multiple instances </br>
- * - No automatic TTL/expiration (entries stay forever)
+ * - No automatic TTL/expiration (entries stay forever, use {@link ShardedInMemoryTokenBucketRateLimiter} for that)
  */
 @Slf4j
-public class InMemoryTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+public class InMemoryTokenBucketRateLimiter extends AbstractAtomicTokenBucketRateLimiter
+        implements BucketSnapshotSupport {
 
-    private final Map<String, TokenBucket> bucketStore = new ConcurrentHashMap<>();
+    private final Map<String, AtomicTokenBucket> bucketStore = new ConcurrentHashMap<>();
 
     public InMemoryTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest) {
         super(rateLimitConfig, tokensPerRequest);
     }
 
     @Override
-    protected TokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
+    protected AtomicTokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
                                             double bucketRefillRate, long currentTimeMs) {
+        // Plain get first: computeIfAbsent would allocate the capturing lambda on every call
+        AtomicTokenBucket bucket = bucketStore.get(bucketKey);
+        if (bucket != null) {
+            return bucket;
+        }
         return bucketStore.computeIfAbsent(bucketKey,
-                k -> TokenBucket.createNew(k, bucketCapacity, bucketRefillRate, currentTimeMs));
+                k -> AtomicTokenBucket.createNew(bucketCapacity, currentTimeMs));
+    }
+
+    @Override
+    protected AtomicTokenBucket findBucket(String bucketKey) {
+        return bucketStore.get(bucketKey);
+    }
+
+    @Override
+    public void forEachBucket(ObjLongConsumer<String> consumer) {
+        bucketStore.forEach((bucketKey, bucket) -> consumer.accept(bucketKey, bucket.getState()));
+    }
+
+    @Override
+    public void restoreBucket(String bucketKey, long packedState) {
+        bucketStore.putIfAbsent(bucketKey, new AtomicTokenBucket(packedState));
     }
 
     @Override
@@ -0,0 +1,222 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import com.ratelimiter.service.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator that records Micrometer metrics for every decision of the wrapped {@link RateLimiter}.
+ * <p>
+ * Metrics:
+ * <ul>
+ *     <li>{@code ratelimiter.decisions} - counter tagged with {@code tier}, {@code outcome} (allowed / rejected),
+ *     {@code backend} and {@code algorithm}</li>
+ *     <li>{@code ratelimiter.decision.latency} - timer over the limiter call, with percentiles and a histogram
+ *     for Prometheus</li>
+ * </ul>
+ * Counters are registered up front for every configured tier, so a decision costs one map read, one timer
+ * update and one counter increment. Tiers that are not configured (the tier can come from a request header)
+ * are counted as {@code default} and never added to the map, which keeps both the tag and the map bounded.
+ * Peeks and resets are not counted.
+ * </p>
+ * <p>
+ * Closing the decorator closes the wrapped limiter, so its background threads still stop on shutdown.
+ * </p>
+ */
+public class MeteredRateLimiter implements RateLimiter, AutoCloseable {
+
+    private static final String DEFAULT_TIER = "default";
+
+    private final RateLimiter delegate;
+    private final MeterRegistry meterRegistry;
+    private final String backend;
+    private final String algorithm;
+    private final Timer latency;
+    // Configured tiers plus "default"; built once and never written, whatever tiers requests carry
+    private final Map<String, TierCounters> countersByTier;
+    private final TierCounters defaultCounters;
+
+    /**
+     * Decision counters of one tier
+     */
+    private record TierCounters(Counter allowed, Counter rejected) {
+    }
+
+    public MeteredRateLimiter(RateLimiter delegate, RateLimitConfig rateLimitConfig, MeterRegistry meterRegistry,
+                              String backend, String algorithm) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.backend = backend;
+        this.algorithm = algorithm;
+        this.latency = Timer.builder("ratelimiter.decision.latency")
+                .description("Time taken by a rate limit decision")
+                .tag("backend", backend)
+                .tag("algorithm", algorithm)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Map<String, TierCounters> counters = new HashMap<>();
+        for (String tier : rateLimitConfig.getTiers().keySet()) {
+            counters.put(tier.toLowerCase(), countersOf(tier.toLowerCase()));
+        }
+        this.defaultCounters = counters.computeIfAbsent(DEFAULT_TIER, this::countersOf);
+        this.countersByTier = Map.copyOf(counters);
+    }
+
+    /**
+     * Returns the wrapped limiter
+     */
+    public RateLimiter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key) {
+        long startNanos = System.nanoTime();
+        RateLimitStatus status = delegate.tryConsume(key);
+        return record(DEFAULT_TIER, status, startNanos);
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens) {
+        long startNanos = System.nanoTime();
+        RateLimitStatus status = delegate.tryConsume(key, tokens);
+        return record(DEFAULT_TIER, status, startNanos);
+    }
+
+    @Override
+    public RateLimitStatus tryConsumeForTier(String key, String tier) {
+        long startNanos = System.nanoTime();
+        RateLimitStatus status = delegate.tryConsumeForTier(key, tier);
+        return record(tier, status, startNanos);
+    }
+
+    @Override
+    public RateLimitStatus tryConsumeForTier(String key, String tier, long tokens) {
+        long startNanos = System.nanoTime();
+        RateLimitStatus status = delegate.tryConsumeForTier(key, tier, tokens);
+        return record(tier, status, startNanos);
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        long startNanos = System.nanoTime();
+        RateLimitStatus status = delegate.tryConsume(key, tokens, bucketCapacity, bucketRefillRate);
+        return record(DEFAULT_TIER, status, startNanos);
+    }
+
+    @Override
+    public boolean tryConsumeForTier(String key, String tier, RateLimitDecision decision) {
+        long startNanos = System.nanoTime();
+        boolean allowed = delegate.tryConsumeForTier(key, tier, decision);
+        return record(tier, allowed, startNanos);
+    }
+
+    @Override
+    public boolean tryConsumeForTier(String key, String tier, long tokens, RateLimitDecision decision) {
+        long startNanos = System.nanoTime();
+        boolean allowed = delegate.tryConsumeForTier(key, tier, tokens, decision);
+        return record(tier, allowed, startNanos);
+    }
+
+    @Override
+    public boolean tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate,
+                              RateLimitDecision decision) {
+        long startNanos = System.nanoTime();
+        boolean allowed = delegate.tryConsume(key, tokens, bucketCapacity, bucketRefillRate, decision);
+        return record(DEFAULT_TIER, allowed, startNanos);
+    }
+
+    // One latency sample per batch, one decision per request
+    @Override
+    public List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing) {
+        long startNanos = System.nanoTime();
+        List<RateLimitStatus> statuses = delegate.tryConsumeAll(requests, allOrNothing);
+        latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < statuses.size(); i++) {
+            TierCounters counters = countersFor(requests.get(i).tier());
+            (statuses.get(i).isAllowed() ? counters.allowed() : counters.rejected()).increment();
+        }
+        return statuses;
+    }
+
+    @Override
+    public List<RateLimitStatus> peekAll(List<RateLimitRequest> requests) {
+        return delegate.peekAll(requests);
+    }
+
+    @Override
+    public RateLimitStatus peek(String key) {
+        return delegate.peek(key);
+    }
+
+    @Override
+    public RateLimitStatus peekForTier(String key, String tier) {
+        return delegate.peekForTier(key, tier);
+    }
+
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        return delegate.peek(key, bucketCapacity, bucketRefillRate);
+    }
+
+    @Override
+    public void reset(String key) {
+        delegate.reset(key);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private RateLimitStatus record(String tier, RateLimitStatus status, long startNanos) {
+        record(tier, status.isAllowed(), startNanos);
+        return status;
+    }
+
+    private boolean record(String tier, boolean allowed, long startNanos) {
+        latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        TierCounters counters = countersFor(tier);
+        (allowed ? counters.allowed() : counters.rejected()).increment();
+        return allowed;
+    }
+
+    private TierCounters countersFor(String tier) {
+        if (tier == null) {
+            return defaultCounters;
+        }
+        TierCounters counters = countersByTier.get(tier);
+        if (counters == null) {
+            // Tiers are configured in lower case; only other spellings pay for the conversion
+            counters = countersByTier.getOrDefault(tier.toLowerCase(), defaultCounters);
+        }
+        return counters;
+    }
+
+    private TierCounters countersOf(String tier) {
+        return new TierCounters(counter(tier, "allowed"), counter(tier, "rejected"));
+    }
+
+    private Counter counter(String tier, String outcome) {
+        return Counter.builder("ratelimiter.decisions")
+                .description("Rate limit decisions")
+                .tag("tier", tier)
+                .tag("outcome", outcome)
+                .tag("backend", backend)
+                .tag("algorithm", algorithm)
+                .register(meterRegistry);
+    }
+}
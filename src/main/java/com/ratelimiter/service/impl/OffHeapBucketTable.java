@@ -0,0 +1,401 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.model.PackedTokenBucket;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, open-addressing table of packed token buckets stored outside the Java heap.
+ * <p>
+ * The table is set-associative: a 64-bit hash of the client key selects a set of
+ * {@link #WAYS} slots and the key may live in any of them. Each slot is two longs:
+ * <ul>
+ *     <li>key word: key hash, with the top bit used as the CLOCK "referenced" bit</li>
+ *     <li>state word: {@link PackedTokenBucket} (tokens + last refill time)</li>
+ * </ul>
+ * Lookups always scan the whole set, so slots can be reclaimed without tombstones.
+ * When a set is full, a per-set CLOCK hand evicts the first slot that was not referenced
+ * since the hand last passed it, which approximates evicting the least recently used key.
+ * </p>
+ * <p>
+ * Every update is a compare-and-set on the buffer, so the request path takes no locks and
+ * allocates nothing. Memory is bounded by {@code sets * WAYS * 16} bytes.
+ * </p>
+ * <p>
+ * A slot can be evicted or reclaimed and given to another key while a request is between reading its
+ * state and writing it back. Two rules keep that request from charging the other key's bucket:
+ * <ul>
+ *     <li>the refill time of a slot's state never goes back, and a reused slot starts at a refill time later
+ *     than any state it held before, so a state read before the reuse can never be compare-and-set after it
+ *     (the refill time acts as the slot's stamp)</li>
+ *     <li>after every read of the state the key word is checked again, and the lookup starts over if the
+ *     slot no longer belongs to the key</li>
+ * </ul>
+ * Both hold across processes sharing the table through a memory-mapped file.
+ * </p>
+ * <p>
+ * Limitations: </br>
+ * - Two keys with the same 64-bit hash share a bucket </br>
+ * - Two threads inserting the same new key at the same instant may both create a slot;
+ * lookups use the first one and the other is reclaimed by the CLOCK
+ * </p>
+ */
+public final class OffHeapBucketTable {
+
+    public static final int WAYS = 8;
+    public static final int SLOT_BYTES = 16;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // Key word values with special meaning
+    private static final long EMPTY = 0L;
+    private static final long BUSY = 1L;
+    private static final long REFERENCED = Long.MIN_VALUE;
+    private static final long HASH_MASK = ~REFERENCED;
+
+    private final ByteBuffer buffer;
+    private final int baseOffset;
+    private final int sets;
+    private final int setMask;
+    private final byte[] clockHands;
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a table view over an existing direct buffer (e.g. a memory-mapped file).
+     *
+     * @param buffer     direct buffer holding the slots
+     * @param baseOffset offset of the first slot, must be 8-byte aligned
+     * @param sets       number of sets, must be a power of two
+     */
+    public OffHeapBucketTable(ByteBuffer buffer, int baseOffset, int sets) {
+        if (!buffer.isDirect() || Integer.bitCount(sets) != 1 || (baseOffset & 7) != 0) {
+            throw new IllegalArgumentException("Table needs a direct buffer, 8-byte aligned offset and power-of-two sets");
+        }
+        if ((long) baseOffset + bytesFor(sets) > buffer.capacity()) {
+            throw new IllegalArgumentException("Buffer too small for " + sets + " sets");
+        }
+        this.buffer = buffer;
+        this.baseOffset = baseOffset;
+        this.sets = sets;
+        this.setMask = sets - 1;
+        this.clockHands = new byte[sets];
+    }
+
+    /**
+     * Allocates a new table in a direct buffer, big enough for at least {@code maxBuckets} keys.
+     *
+     * @param maxBuckets maximum number of tracked keys
+     * @return an empty table
+     */
+    public static OffHeapBucketTable allocate(long maxBuckets) {
+        int sets = setsFor(maxBuckets);
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytesFor(sets)).order(ByteOrder.nativeOrder());
+        return new OffHeapBucketTable(buffer, 0, sets);
+    }
+
+    // Number of sets (power of two) needed to hold maxBuckets keys
+    public static int setsFor(long maxBuckets) {
+        long sets = Math.max(1, (maxBuckets + WAYS - 1) / WAYS);
+        long rounded = Long.highestOneBit(sets) == sets ? sets : Long.highestOneBit(sets) << 1;
+        if (rounded * WAYS * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many buckets for a single table: " + maxBuckets);
+        }
+        return (int) rounded;
+    }
+
+    // Bytes used by a table with the given number of sets
+    public static long bytesFor(int sets) {
+        return (long) sets * WAYS * SLOT_BYTES;
+    }
+
+    /**
+     * Hashes a client key to 64 bits without allocating (FNV-1a over the chars, then a murmur3 finalizer).
+     *
+     * @param key the raw key
+     * @return 64-bit hash
+     */
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Refills and consumes tokens from the bucket for the given key hash,
+     * creating a full bucket first if the key is not tracked yet.
+     *
+     * @return decision encoded as described in {@link PackedTokenBucket}
+     */
+    public long tryConsume(long keyHash, long tokens, long capacity, double bucketRefillRate, long currentTimeMs) {
+        long hash = normalize(keyHash);
+        while (true) {
+            int slot = find(hash);
+            if (slot < 0) {
+                slot = insert(hash, capacity, currentTimeMs);
+            }
+            int stateOffset = stateOffset(slot);
+            while (true) {
+                long current = (long) LONGS.getVolatile(buffer, stateOffset);
+                if (!ownedBy(slot, hash)) {
+                    // Evicted or reclaimed since the lookup: current may be another key's state
+                    break;
+                }
+                long refilled = PackedTokenBucket.refill(current, currentTimeMs, capacity, bucketRefillRate);
+                long available = PackedTokenBucket.tokensOf(refilled);
+
+                if (available >= tokens) {
+                    long next = PackedTokenBucket.pack(available - tokens, PackedTokenBucket.lastRefillTimeOf(refilled));
+                    if (LONGS.compareAndSet(buffer, stateOffset, current, next)) {
+                        return PackedTokenBucket.allowed(available - tokens);
+                    }
+                } else if (refilled == current || LONGS.compareAndSet(buffer, stateOffset, current, refilled)) {
+                    return PackedTokenBucket.rejected(available);
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Gives back tokens taken earlier from the bucket for the given key hash, without going over capacity.
+     * Does nothing if the key is no longer tracked (it starts full anyway).
+     */
+    public void refund(long keyHash, long tokens, long capacity) {
+        long hash = normalize(keyHash);
+        int slot = locate(hash);
+        if (slot < 0) {
+            return;
+        }
+        int stateOffset = stateOffset(slot);
+        while (true) {
+            long current = (long) LONGS.getVolatile(buffer, stateOffset);
+            if (!ownedBy(slot, hash)) {
+                // Dropped meanwhile: the key starts full anyway
+                return;
+            }
+            long tokensAfter = Math.min(capacity, PackedTokenBucket.tokensOf(current) + tokens);
+            long next = PackedTokenBucket.pack(tokensAfter, PackedTokenBucket.lastRefillTimeOf(current));
+            if (LONGS.compareAndSet(buffer, stateOffset, current, next)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Tokens available in the bucket for the given key hash, refilled on the fly. Read-only: does not
+     * create the bucket, store the refill or mark the slot as referenced.
+     *
+     * @return available tokens, or {@code capacity} if the key is not tracked
+     */
+    public long peek(long keyHash, long capacity, double bucketRefillRate, long currentTimeMs) {
+        long hash = normalize(keyHash);
+        int slot = locate(hash);
+        if (slot < 0) {
+            return capacity;
+        }
+        long state = (long) LONGS.getVolatile(buffer, stateOffset(slot));
+        if (!ownedBy(slot, hash)) {
+            return capacity;
+        }
+        return PackedTokenBucket.availableAt(state, currentTimeMs, capacity, bucketRefillRate);
+    }
+
+    /**
+     * Removes the bucket for the given key hash.
+     *
+     * @return true if a bucket was removed
+     */
+    public boolean remove(long keyHash) {
+        long hash = normalize(keyHash);
+        int first = (int) (hash & setMask) * WAYS;
+        boolean removed = false;
+        for (int way = 0; way < WAYS; way++) {
+            int keyOffset = keyOffset(first + way);
+            long word = (long) LONGS.getVolatile(buffer, keyOffset);
+            if ((word & HASH_MASK) == hash && word != BUSY) {
+                removed |= LONGS.compareAndSet(buffer, keyOffset, word, EMPTY);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Frees slots that are no longer needed, for tables that outlive a single process:
+     * <ul>
+     *     <li>buckets last refilled before {@code refilledBeforeMs}: full again at any limit, same as a missing bucket</li>
+     *     <li>slots left busy by an insert that never completed (its process died); a slot is only freed
+     *     when it was already busy on the previous call</li>
+     * </ul>
+     * A request racing with the reclaim may still charge the bucket as it is dropped; its tokens are then
+     * lost with the bucket and the key's next request finds a full bucket (the state it would have had anyway,
+     * being that old). The request never charges the bucket of a key that takes the slot afterwards (see the
+     * class documentation).
+     *
+     * @param refilledBeforeMs buckets with an older refill time are dropped
+     * @param busySlots        slots seen busy on the previous call, updated for the next one
+     * @return number of slots freed
+     */
+    public long reclaim(long refilledBeforeMs, BitSet busySlots) {
+        long freed = 0;
+        for (int slot = 0; slot < sets * WAYS; slot++) {
+            int keyOffset = keyOffset(slot);
+            long word = (long) LONGS.getVolatile(buffer, keyOffset);
+            if (word == BUSY) {
+                if (busySlots.get(slot) && LONGS.compareAndSet(buffer, keyOffset, BUSY, EMPTY)) {
+                    busySlots.clear(slot);
+                    freed++;
+                } else {
+                    busySlots.set(slot);
+                }
+                continue;
+            }
+            busySlots.clear(slot);
+            if (word == EMPTY) {
+                continue;
+            }
+            long state = (long) LONGS.getVolatile(buffer, stateOffset(slot));
+            if (PackedTokenBucket.lastRefillTimeOf(state) < refilledBeforeMs
+                    && LONGS.compareAndSet(buffer, keyOffset, word, EMPTY)) {
+                freed++;
+            }
+        }
+        return freed;
+    }
+
+    // Number of occupied slots (scans the table, for monitoring only)
+    public long size() {
+        long count = 0;
+        for (int slot = 0; slot < sets * WAYS; slot++) {
+            long word = (long) LONGS.getVolatile(buffer, keyOffset(slot));
+            if (word != EMPTY && word != BUSY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Maximum number of keys the table can hold
+    public long capacity() {
+        return (long) sets * WAYS;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Empties every slot
+    public void clear() {
+        for (int slot = 0; slot < sets * WAYS; slot++) {
+            LONGS.setVolatile(buffer, keyOffset(slot), EMPTY);
+        }
+    }
+
+    // Slot of the key, marked as referenced for the CLOCK, or -1
+    private int find(long hash) {
+        int first = (int) (hash & setMask) * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            int keyOffset = keyOffset(first + way);
+            long word = (long) LONGS.getVolatile(buffer, keyOffset);
+            if ((word & HASH_MASK) == hash) {
+                if ((word & REFERENCED) == 0) {
+                    // Best effort: a lost race only delays eviction decisions
+                    LONGS.compareAndSet(buffer, keyOffset, word, word | REFERENCED);
+                }
+                return first + way;
+            }
+        }
+        return -1;
+    }
+
+    // Slot of the key without touching the referenced bit, or -1
+    private int locate(long hash) {
+        int first = (int) (hash & setMask) * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            if (ownedBy(first + way, hash)) {
+                return first + way;
+            }
+        }
+        return -1;
+    }
+
+    private boolean ownedBy(int slot, long hash) {
+        return ((long) LONGS.getVolatile(buffer, keyOffset(slot)) & HASH_MASK) == hash;
+    }
+
+    private int insert(long hash, long capacity, long currentTimeMs) {
+        int set = (int) (hash & setMask);
+        int first = set * WAYS;
+        while (true) {
+            // Prefer a free slot
+            for (int way = 0; way < WAYS; way++) {
+                int slot = first + way;
+                if (LONGS.compareAndSet(buffer, keyOffset(slot), EMPTY, BUSY)) {
+                    return publish(slot, hash, capacity, currentTimeMs);
+                }
+            }
+            // Set is full: advance the CLOCK hand until an unreferenced slot is found
+            for (int step = 0; step < 2 * WAYS; step++) {
+                int way = clockHands[set] & (WAYS - 1);
+                clockHands[set] = (byte) (way + 1);
+                int slot = first + way;
+                int keyOffset = keyOffset(slot);
+                long word = (long) LONGS.getVolatile(buffer, keyOffset);
+                if (word == BUSY || word == EMPTY) {
+                    continue;
+                }
+                if ((word & REFERENCED) != 0) {
+                    LONGS.compareAndSet(buffer, keyOffset, word, word & HASH_MASK);
+                } else if (LONGS.compareAndSet(buffer, keyOffset, word, BUSY)) {
+                    evictions.increment();
+                    return publish(slot, hash, capacity, currentTimeMs);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Gives a claimed (busy) slot to a key with a full bucket. The new state's refill time is later than that of
+     * any state the slot held, so requests still holding a state of the previous key fail their compare-and-set.
+     */
+    private int publish(int slot, long hash, long capacity, long currentTimeMs) {
+        int stateOffset = stateOffset(slot);
+        while (true) {
+            long previous = (long) LONGS.getVolatile(buffer, stateOffset);
+            long refillTimeMs = Math.max(currentTimeMs, PackedTokenBucket.lastRefillTimeOf(previous) + 1);
+            if (LONGS.compareAndSet(buffer, stateOffset, previous, PackedTokenBucket.full(capacity, refillTimeMs))) {
+                break;
+            }
+        }
+        LONGS.setVolatile(buffer, keyOffset(slot), hash | REFERENCED);
+        return slot;
+    }
+
+    // Maps a raw hash away from the reserved key word values
+    private static long normalize(long keyHash) {
+        long hash = keyHash & HASH_MASK;
+        return hash <= BUSY ? hash + 2 : hash;
+    }
+
+    private int keyOffset(int slot) {
+        return baseOffset + slot * SLOT_BYTES;
+    }
+
+    private int stateOffset(int slot) {
+        return baseOffset + slot * SLOT_BYTES + Long.BYTES;
+    }
+}
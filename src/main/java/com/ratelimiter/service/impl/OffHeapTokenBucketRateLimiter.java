@@ -0,0 +1,84 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedTokenBucket;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token Bucket Rate Limiter implementation backed by an {@link OffHeapBucketTable}.
+ * <p>
+ * Bucket state lives in a fixed-size direct buffer keyed by a 64-bit hash of the client key,
+ * so tracking a client costs 16 bytes outside the heap instead of a map node, a String key
+ * and a bucket object. Idle keys are evicted by a CLOCK sweep when a set fills up.
+ * </p>
+ * <p> Best suited for: </br>
+ * - Single instance deployments tracking millions of anonymous (ip:) keys</br>
+ * - Workloads where GC pressure from the in-memory stores is a problem
+ * </p>
+ * <p> Limitations: </br>
+ * - State is lost on restart </br>
+ * - Not shared across multiple instances </br>
+ * - When the table is full, the least recently used keys lose their state (start full again)
+ * </p>
+ */
+@Slf4j
+public class OffHeapTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+
+    private final OffHeapBucketTable bucketTable;
+
+    public OffHeapTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest, long maxBuckets) {
+        this(rateLimitConfig, tokensPerRequest, OffHeapBucketTable.allocate(maxBuckets));
+    }
+
+    public OffHeapTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                         OffHeapBucketTable bucketTable) {
+        super(rateLimitConfig, tokensPerRequest);
+        this.bucketTable = bucketTable;
+        log.info("Initialized off-heap bucket table with {} slots ({} bytes)",
+                bucketTable.capacity(), bucketTable.capacity() * OffHeapBucketTable.SLOT_BYTES);
+    }
+
+    @Override
+    protected long consume(String key, long tokens, long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
+        PackedTokenBucket.checkCapacity(bucketCapacity);
+        return bucketTable.tryConsume(OffHeapBucketTable.hash(key), tokens, bucketCapacity, bucketRefillRate, currentTimeMs);
+    }
+
+    @Override
+    protected long availableTokens(String key, long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
+        return bucketTable.peek(OffHeapBucketTable.hash(key), bucketCapacity, bucketRefillRate, currentTimeMs);
+    }
+
+    @Override
+    protected void refund(String key, long tokens, long bucketCapacity) {
+        bucketTable.refund(OffHeapBucketTable.hash(key), tokens, bucketCapacity);
+    }
+
+    @Override
+    public void reset(String key) {
+        bucketTable.remove(OffHeapBucketTable.hash(key));
+        log.info("Rate limit reset for key: {}", key);
+    }
+
+    /**
+     * Returns the current number of tracked buckets (scans the table, for monitoring/debugging)
+     */
+    public long getBucketCount() {
+        return bucketTable.size();
+    }
+
+    /**
+     * Returns the number of buckets evicted to make room for new keys
+     */
+    public long getEvictionCount() {
+        return bucketTable.getEvictionCount();
+    }
+
+    /**
+     * Clears all rate limit buckets (useful for testing)
+     */
+    public void clearAll() {
+        bucketTable.clear();
+        log.info("All rate limit buckets cleared");
+    }
+}
@@ -0,0 +1,177 @@
+package com.ratelimiter.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for the Redis rate limit path.
+ * <p>
+ * States:
+ * <ul>
+ *     <li>{@code CLOSED} - calls go to Redis; outcomes are counted per time window</li>
+ *     <li>{@code OPEN} - calls are not attempted (callers use their fallback) for {@code openDurationMs}</li>
+ *     <li>{@code HALF_OPEN} - up to {@code halfOpenProbes} calls go to Redis; if all succeed the breaker
+ *     closes, the first failure opens it again</li>
+ * </ul>
+ * A call counts as failed if it throws or takes longer than {@code slowCallMs}. The breaker opens once a window
+ * holds at least {@code minimumCalls} calls and the failed share reaches {@code failureRatePercent}.
+ * </p>
+ * <p>
+ * Callers use {@link #tryAcquire()}, then report the outcome with {@link #onSuccess(long)} or {@link #onFailure()}.
+ * Errors can be logged through {@link #shouldLogError()}, which lets one line through per {@code windowMs}.
+ * </p>
+ */
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long slowCallNanos;
+    private final long windowMs;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAtMs;
+    private volatile long windowStartMs = System.currentTimeMillis();
+    private final LongAdder windowCalls = new LongAdder();
+    private final LongAdder windowFailures = new LongAdder();
+    private final AtomicInteger probesStarted = new AtomicInteger();
+    private final AtomicInteger probesSucceeded = new AtomicInteger();
+    private final AtomicLong lastErrorLogMs = new AtomicLong();
+    private final LongAdder suppressedErrors = new LongAdder();
+
+    public RedisCircuitBreaker(int failureRatePercent, int minimumCalls, long slowCallMs,
+                               long windowMs, long openDurationMs, int halfOpenProbes) {
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.slowCallNanos = slowCallMs * 1_000_000L;
+        this.windowMs = Math.max(1, windowMs);
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    /**
+     * Returns true if the call may go to Redis, false if the caller should use its fallback.
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAtMs < openDurationMs) {
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                probesStarted.set(0);
+                probesSucceeded.set(0);
+                log.info("Redis circuit breaker half-open, probing Redis with up to {} calls", halfOpenProbes);
+            }
+        }
+        // HALF_OPEN: let a few probes through
+        return probesStarted.incrementAndGet() <= halfOpenProbes;
+    }
+
+    /**
+     * Records a completed Redis call and its latency.
+     */
+    public void onSuccess(long elapsedNanos) {
+        if (elapsedNanos > slowCallNanos) {
+            onFailure();
+            return;
+        }
+        if (state.get() == State.HALF_OPEN) {
+            if (probesSucceeded.incrementAndGet() < halfOpenProbes) {
+                return;
+            }
+            // Drop the calls that opened the breaker before closing it, or the next failure would reopen it
+            startWindow(System.currentTimeMillis());
+            if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                log.info("Redis circuit breaker closed, Redis is healthy again ({} errors were not logged)",
+                        suppressedErrors.sumThenReset());
+            }
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Records a Redis call that failed or was too slow.
+     */
+    public void onFailure() {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            open(State.HALF_OPEN, "probe failed");
+            return;
+        }
+        if (current == State.CLOSED && record(true)) {
+            open(State.CLOSED, "failure rate reached " + failureRatePercent + "%");
+        }
+    }
+
+    /**
+     * Returns true at most once per window; other errors are only counted.
+     */
+    public boolean shouldLogError() {
+        long now = System.currentTimeMillis();
+        long last = lastErrorLogMs.get();
+        if (now - last >= windowMs && lastErrorLogMs.compareAndSet(last, now)) {
+            return true;
+        }
+        suppressedErrors.increment();
+        return false;
+    }
+
+    /**
+     * Returns the number of errors not logged since the last logged one, and resets it
+     */
+    public long drainSuppressedErrors() {
+        return suppressedErrors.sumThenReset();
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // Counts one call in the current window; returns true if the breaker should open
+    private boolean record(boolean failed) {
+        long now = System.currentTimeMillis();
+        if (now - windowStartMs >= windowMs) {
+            rollWindow(now);
+        }
+        windowCalls.increment();
+        if (!failed) {
+            return false;
+        }
+        windowFailures.increment();
+        long calls = windowCalls.sum();
+        return calls >= minimumCalls && windowFailures.sum() * 100 >= calls * failureRatePercent;
+    }
+
+    // Several callers can see the window elapse; only the first one starts a new window
+    private synchronized void rollWindow(long now) {
+        if (now - windowStartMs >= windowMs) {
+            startWindow(now);
+        }
+    }
+
+    private synchronized void startWindow(long now) {
+        windowCalls.reset();
+        windowFailures.reset();
+        windowStartMs = now;
+    }
+
+    private void open(State from, String reason) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAtMs = System.currentTimeMillis();
+            log.warn("Redis circuit breaker opened ({}), using local fallback limits for {}ms", reason, openDurationMs);
+        }
+    }
+}
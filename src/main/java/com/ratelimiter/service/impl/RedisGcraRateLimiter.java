@@ -0,0 +1,186 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.configuration.RedisConfig;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.ratelimiter.utils.ApplicationConstants.GCRA_BATCH_SCRIPT;
+import static com.ratelimiter.utils.ApplicationConstants.GCRA_KEY_PREFIX;
+import static com.ratelimiter.utils.ApplicationConstants.GCRA_REFUND_SCRIPT;
+
+/**
+ * GCRA (Generic Cell Rate Algorithm) Rate Limiter implementation using Redis.
+ * <p>
+ * Each key is a single string holding the theoretical arrival time (see {@link CaffeineGcraRateLimiter}),
+ * so the Lua script is one GET and at most one SET with PX expiry. The key expires exactly when the
+ * bucket would be full again.
+ * </p>
+ */
+@Slf4j
+public class RedisGcraRateLimiter extends AbstractRateLimiter {
+
+    private final RedisTemplate<String, Long> redisTemplate;
+    private final RedisScript<List<Long>> gcraScript;
+    private final RedisScript<List<Long>> gcraBatchScript;
+    private final RedisScript<List<Long>> gcraRefundScript = RedisConfig.listScript(GCRA_REFUND_SCRIPT);
+
+    public RedisGcraRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> gcraScript) {
+        this(rateLimitConfig, tokensPerRequest, redisTemplate, gcraScript, RedisConfig.listScript(GCRA_BATCH_SCRIPT));
+    }
+
+    public RedisGcraRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> gcraScript,
+                                RedisScript<List<Long>> gcraBatchScript) {
+        super(rateLimitConfig, tokensPerRequest);
+        this.redisTemplate = redisTemplate;
+        this.gcraScript = gcraScript;
+        this.gcraBatchScript = gcraBatchScript;
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        String bucketKey = buildBucketKey(key);
+        long nowMicros = System.currentTimeMillis() * 1_000;
+
+        try {
+            List<Long> result = redisTemplate.execute(
+                    gcraScript,
+                    Collections.singletonList(bucketKey),
+                    bucketCapacity,
+                    CaffeineGcraRateLimiter.emissionIntervalMicros(bucketRefillRate),
+                    tokens,
+                    nowMicros
+            );
+
+            if (result == null || result.size() < 3) {
+                log.error("Unexpected result from Redis GCRA script for key: {}", key);
+                // Fail open - allow request if Redis returns unexpected result
+                return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+            }
+
+            if (result.get(0) == 1) {
+                return createAllowedResult(key, result.get(1), bucketCapacity);
+            } else {
+                return createRejectedResult(key, result.get(1), bucketCapacity, result.get(2));
+            }
+        } catch (Exception e) {
+            log.error("Redis error during rate limit check for key: {}", key, e);
+            // Fail open - allow request if Redis is unavailable
+            return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+        }
+    }
+
+    /**
+     * Decides the batch with one call of the batch script, chunked and restricted to one node like
+     * {@link RedisTokenBucketRateLimiter#tryConsumeAll}.
+     */
+    @Override
+    public List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+        int chunkSize = allOrNothing ? Math.max(1, resolved.size()) : RedisTokenBucketRateLimiter.BATCH_CHUNK_SIZE;
+        try {
+            for (int from = 0; from < resolved.size(); from += chunkSize) {
+                List<RateLimitRequest> chunk = resolved.subList(from, Math.min(resolved.size(), from + chunkSize));
+                results.addAll(executeBatchScript(chunk, allOrNothing));
+            }
+        } catch (Exception e) {
+            log.error("Redis error during batch rate limit check of {} keys", resolved.size() - results.size(), e);
+            // Fail open - allow requests if Redis is unavailable
+            results.addAll(allowAll(resolved.subList(results.size(), resolved.size())));
+        }
+        return results;
+    }
+
+    private List<RateLimitStatus> executeBatchScript(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<String> bucketKeys = new ArrayList<>(requests.size());
+        Object[] args = new Object[2 + 3 * requests.size()];
+        args[0] = allOrNothing ? 1L : 0L;
+        args[1] = System.currentTimeMillis() * 1_000;
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            bucketKeys.add(buildBucketKey(request.key()));
+            args[2 + 3 * i] = request.bucketCapacity();
+            args[3 + 3 * i] = CaffeineGcraRateLimiter.emissionIntervalMicros(request.bucketRefillRate());
+            args[4 + 3 * i] = request.tokens();
+        }
+        return toBatchStatuses(requests, redisTemplate.execute(gcraBatchScript, bucketKeys, args), allOrNothing);
+    }
+
+    // All TATs with one MGET (a plain read, replicas can serve it)
+    @Override
+    public List<RateLimitStatus> peekAll(List<RateLimitRequest> requests) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        try {
+            List<String> bucketKeys = new ArrayList<>(resolved.size());
+            for (RateLimitRequest request : resolved) {
+                bucketKeys.add(buildBucketKey(request.key()));
+            }
+            List<Long> tats = redisTemplate.opsForValue().multiGet(bucketKeys);
+            long nowMicros = System.currentTimeMillis() * 1_000;
+            List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+            for (int i = 0; i < resolved.size(); i++) {
+                RateLimitRequest request = resolved.get(i);
+                Long tat = tats != null ? tats.get(i) : null;
+                long remaining = tat == null ? request.bucketCapacity()
+                        : CaffeineGcraRateLimiter.remainingTokens(tat, nowMicros, request.bucketCapacity(),
+                        CaffeineGcraRateLimiter.emissionIntervalMicros(request.bucketRefillRate()));
+                results.add(createPeekResult(remaining, request.bucketCapacity()));
+            }
+            return results;
+        } catch (Exception e) {
+            log.warn("Redis error during batch rate limit peek of {} keys: {}", resolved.size(), e.getMessage());
+            return allowAll(resolved);
+        }
+    }
+
+    /**
+     * Read-only: reads the TAT with a plain GET (which replicas can serve) instead of running the script.
+     */
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        try {
+            Long tat = redisTemplate.opsForValue().get(buildBucketKey(key));
+            if (tat == null) {
+                return createPeekResult(bucketCapacity, bucketCapacity);
+            }
+            long remaining = CaffeineGcraRateLimiter.remainingTokens(tat, System.currentTimeMillis() * 1_000,
+                    bucketCapacity, CaffeineGcraRateLimiter.emissionIntervalMicros(bucketRefillRate));
+            return createPeekResult(remaining, bucketCapacity);
+        } catch (Exception e) {
+            log.warn("Redis error during rate limit peek for key: {}: {}", key, e.getMessage());
+            return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+        }
+    }
+
+    // Moves the TAT back by the tokens of a failed all-or-nothing batch, like CaffeineGcraRateLimiter
+    @Override
+    protected void refund(RateLimitRequest request) {
+        try {
+            redisTemplate.execute(gcraRefundScript, Collections.singletonList(buildBucketKey(request.key())),
+                    request.tokens() * CaffeineGcraRateLimiter.emissionIntervalMicros(request.bucketRefillRate()));
+        } catch (Exception e) {
+            log.warn("Could not give back {} tokens for key: {}: {}", request.tokens(), request.key(), e.getMessage());
+        }
+    }
+
+    @Override
+    protected String buildBucketKey(String key) {
+        return GCRA_KEY_PREFIX + key;
+    }
+
+    @Override
+    public void reset(String key) {
+        redisTemplate.delete(buildBucketKey(key));
+        log.info("Rate limit reset for key: {}", key);
+    }
+}
@@ -0,0 +1,367 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier Token Bucket Rate Limiter: the bucket lives in Redis, but each instance leases
+ * a block of tokens and spends it locally.
+ * <p>
+ * Flow per key:
+ * <ol>
+ *     <li>Requests take tokens from the local lease with a lock-free compare-and-set</li>
+ *     <li>When the lease is used up or expired, one thread renews it through a Lua script that
+ *     returns the unused tokens and takes a new block in the same call</li>
+ *     <li>A background task returns the unused tokens of expired leases</li>
+ * </ol>
+ * The lease size follows the rate observed locally over the previous lease (tokens per lease TTL),
+ * capped at {@code maxLeaseFraction} of the capacity. Cold keys lease one request at a time and
+ * behave like {@link RedisTokenBucketRateLimiter}; hot keys hit Redis about once per lease.
+ * </p>
+ * <p>
+ * Accuracy: leased tokens are taken out of the Redis bucket, so the long-term rate is never exceeded.
+ * Because leased tokens may be spent after the Redis bucket has refilled, a burst can exceed the
+ * capacity by at most (number of instances x maximum lease size). Tokens stuck in another
+ * instance's lease can cause a short under-admission until that lease expires.
+ * </p>
+ * <p>
+ * Remaining tokens (the {@code X-RateLimit-Remaining} header) are the tokens left in Redis as of this
+ * instance's last lease call, plus what is left of its lease. Between lease calls the estimate does not see
+ * what other instances take or what Redis refills, so it is exact only for a single instance.
+ * </p>
+ */
+@Slf4j
+public class RedisLeasingTokenBucketRateLimiter extends AbstractRateLimiter implements AutoCloseable {
+
+    private final RedisTemplate<String, Long> redisTemplate;
+    private final RedisScript<List<Long>> tokenLeaseScript;
+    private final long leaseTtlMs;
+    private final double maxLeaseFraction;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leaseReaper;
+    private final LongAdder localDecisions = new LongAdder();
+    private final LongAdder redisCalls = new LongAdder();
+
+    /**
+     * Tokens leased from Redis for one key on this instance
+     */
+    private static final class Lease {
+        private final AtomicLong available = new AtomicLong();
+        private final LongAdder spent = new LongAdder();
+        private volatile long expiresAtMs;
+        private volatile long grantedAtMs;
+        private volatile long capacity;
+        private volatile double refillRate;
+        // Tokens left in Redis after the last lease call
+        private volatile long redisRemaining;
+        // Set under the lock once the lease is no longer in the map; a closed lease never takes tokens again
+        private boolean closed;
+    }
+
+    public RedisLeasingTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                              RedisTemplate<String, Long> redisTemplate,
+                                              RedisScript<List<Long>> tokenLeaseScript,
+                                              long leaseTtlMs, double maxLeaseFraction) {
+        super(rateLimitConfig, tokensPerRequest);
+        this.redisTemplate = redisTemplate;
+        this.tokenLeaseScript = tokenLeaseScript;
+        this.leaseTtlMs = Math.max(1, leaseTtlMs);
+        this.maxLeaseFraction = maxLeaseFraction;
+        this.leaseReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-lease-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseReaper.scheduleWithFixedDelay(this::returnExpiredLeases, this.leaseTtlMs, this.leaseTtlMs, TimeUnit.MILLISECONDS);
+        log.info("Initialized Redis token leasing with lease TTL={}ms, max lease={}% of capacity",
+                this.leaseTtlMs, maxLeaseFraction * 100);
+    }
+
+    @Override
+    public RateLimitStatus tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        String bucketKey = buildBucketKey(key);
+        while (true) {
+            Lease lease = leases.computeIfAbsent(bucketKey, k -> new Lease());
+
+            // Fast path: spend from the local lease (a closed lease is expired)
+            long remaining = takeFromLease(lease, tokens, System.currentTimeMillis());
+            if (remaining >= 0) {
+                localDecisions.increment();
+                return createAllowedResult(key, estimateRemaining(lease, remaining, bucketCapacity), bucketCapacity);
+            }
+
+            // Slow path: one thread per key renews the lease, the others wait and retry locally
+            synchronized (lease) {
+                if (lease.closed) {
+                    // Removed by the reaper or a reset after we looked it up: start over with the key's new lease
+                    continue;
+                }
+                long currentTimeMs = System.currentTimeMillis();
+                remaining = takeFromLease(lease, tokens, currentTimeMs);
+                if (remaining >= 0) {
+                    localDecisions.increment();
+                    return createAllowedResult(key, estimateRemaining(lease, remaining, bucketCapacity), bucketCapacity);
+                }
+                return renewLease(key, bucketKey, lease, tokens, bucketCapacity, bucketRefillRate, currentTimeMs);
+            }
+        }
+    }
+
+    // Tokens left in Redis as of the last lease call plus the lease's own, see the class doc
+    private static long estimateRemaining(Lease lease, long leaseRemaining, long bucketCapacity) {
+        return Math.min(bucketCapacity, lease.redisRemaining + leaseRemaining);
+    }
+
+    /**
+     * Read-only: the Redis bucket refilled on the fly (read with HMGET, which replicas can serve) plus the
+     * tokens still in this instance's unexpired lease. Unlike {@code tryConsume(key, 0)}, the lease is kept.
+     */
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        String bucketKey = buildBucketKey(key);
+        long currentTimeMs = System.currentTimeMillis();
+        Lease lease = leases.get(bucketKey);
+        long leased = lease != null && currentTimeMs < lease.expiresAtMs ? lease.available.get() : 0;
+        try {
+            HashOperations<String, String, Long> hashOperations = redisTemplate.opsForHash();
+            List<Long> bucket = hashOperations.multiGet(bucketKey, RedisTokenBucketRateLimiter.BUCKET_FIELDS);
+            long redisTokens = RedisTokenBucketRateLimiter.refilledTokens(bucket, bucketCapacity,
+                    (long) bucketRefillRate, currentTimeMs);
+            return createPeekResult(Math.min(bucketCapacity, redisTokens + leased), bucketCapacity);
+        } catch (Exception e) {
+            log.warn("Redis error during rate limit peek for key: {}: {}", key, e.getMessage());
+            return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+        }
+    }
+
+    // Same as peek, with one pipelined round trip for all buckets
+    @Override
+    public List<RateLimitStatus> peekAll(List<RateLimitRequest> requests) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+        try {
+            List<String> bucketKeys = new ArrayList<>(resolved.size());
+            for (RateLimitRequest request : resolved) {
+                bucketKeys.add(buildBucketKey(request.key()));
+            }
+            List<List<Long>> buckets = RedisTokenBucketRateLimiter.readBuckets(redisTemplate, bucketKeys);
+            long currentTimeMs = System.currentTimeMillis();
+            for (int i = 0; i < resolved.size(); i++) {
+                RateLimitRequest request = resolved.get(i);
+                Lease lease = leases.get(bucketKeys.get(i));
+                long leased = lease != null && currentTimeMs < lease.expiresAtMs ? lease.available.get() : 0;
+                long redisTokens = RedisTokenBucketRateLimiter.refilledTokens(buckets.get(i),
+                        request.bucketCapacity(), (long) request.bucketRefillRate(), currentTimeMs);
+                results.add(createPeekResult(Math.min(request.bucketCapacity(), redisTokens + leased),
+                        request.bucketCapacity()));
+            }
+        } catch (Exception e) {
+            log.warn("Redis error during batch rate limit peek of {} keys: {}", resolved.size(), e.getMessage());
+            return allowAll(resolved);
+        }
+        return results;
+    }
+
+    /**
+     * Puts the tokens of a failed all-or-nothing batch back into the local lease. If the lease has expired
+     * or is gone meanwhile, they are returned to Redis directly.
+     */
+    @Override
+    protected void refund(RateLimitRequest request) {
+        String bucketKey = buildBucketKey(request.key());
+        Lease lease = leases.get(bucketKey);
+        if (lease != null) {
+            // Under the lock, the reaper cannot take the leftovers of a lease that is still valid
+            synchronized (lease) {
+                if (!lease.closed && System.currentTimeMillis() < lease.expiresAtMs) {
+                    lease.available.addAndGet(request.tokens());
+                    lease.spent.add(-request.tokens());
+                    return;
+                }
+            }
+        }
+        returnTokens(bucketKey, request.tokens(), request.bucketCapacity(), request.bucketRefillRate(),
+                System.currentTimeMillis());
+    }
+
+    // Returns the tokens left in the lease after taking, or -1 if the lease can't cover the request
+    private static long takeFromLease(Lease lease, long tokens, long currentTimeMs) {
+        if (currentTimeMs >= lease.expiresAtMs) {
+            return -1;
+        }
+        while (true) {
+            long available = lease.available.get();
+            if (available < tokens) {
+                return -1;
+            }
+            if (lease.available.compareAndSet(available, available - tokens)) {
+                lease.spent.add(tokens);
+                return available - tokens;
+            }
+        }
+    }
+
+    private RateLimitStatus renewLease(String key, String bucketKey, Lease lease, long tokens,
+                                       long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
+        long leftover = lease.available.getAndSet(0);
+        // A peek (0 tokens) only returns leftovers and never takes a new lease
+        long wanted = tokens == 0 ? 0 : nextLeaseSize(lease, tokens, bucketCapacity, currentTimeMs);
+        try {
+            redisCalls.increment();
+            List<Long> result = redisTemplate.execute(
+                    tokenLeaseScript,
+                    Collections.singletonList(bucketKey),
+                    bucketCapacity,
+                    (long) bucketRefillRate,
+                    tokens,
+                    wanted,
+                    leftover,
+                    currentTimeMs
+            );
+
+            if (result == null || result.size() < 3) {
+                log.error("Unexpected result from Redis lease script for key: {}", key);
+                // Fail open - allow request if Redis returns unexpected result
+                return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+            }
+
+            long granted = result.get(0);
+            long redisRemaining = result.get(1);
+            lease.capacity = bucketCapacity;
+            lease.refillRate = bucketRefillRate;
+            lease.redisRemaining = redisRemaining;
+            lease.expiresAtMs = 0;
+            if (tokens == 0) {
+                return createAllowedResult(key, redisRemaining, bucketCapacity);
+            }
+
+            lease.spent.reset();
+            lease.grantedAtMs = currentTimeMs;
+            if (granted >= tokens) {
+                lease.available.set(granted - tokens);
+                lease.spent.add(tokens);
+                lease.expiresAtMs = currentTimeMs + leaseTtlMs;
+                return createAllowedResult(key, redisRemaining + granted - tokens, bucketCapacity);
+            }
+            return createRejectedResult(key, redisRemaining, bucketCapacity, result.get(2));
+        } catch (Exception e) {
+            log.error("Redis error during rate limit lease for key: {}", key, e);
+            // The leftover may not have reached Redis: keep it, the reaper returns it once the lease expires
+            lease.available.addAndGet(leftover);
+            // Fail open - allow request if Redis is unavailable
+            return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+        }
+    }
+
+    /**
+     * Lease size: what this instance spent during the previous lease, scaled to a full lease TTL.
+     * Never smaller than the current request, never larger than maxLeaseFraction of capacity.
+     */
+    private long nextLeaseSize(Lease lease, long tokens, long bucketCapacity, long currentTimeMs) {
+        long maxLease = Math.max(1, (long) (bucketCapacity * maxLeaseFraction));
+        long elapsedMs = Math.max(1, currentTimeMs - lease.grantedAtMs);
+        long observed = lease.grantedAtMs == 0 ? 0 : lease.spent.sum();
+        long projected = (long) Math.ceil(observed * (double) leaseTtlMs / Math.min(elapsedMs, leaseTtlMs));
+        return Math.max(tokens, Math.min(projected, maxLease));
+    }
+
+    // Runs on the reaper thread: gives unused tokens of expired leases back to Redis
+    void returnExpiredLeases() {
+        long currentTimeMs = System.currentTimeMillis();
+        leases.forEach((bucketKey, lease) -> {
+            if (currentTimeMs < lease.expiresAtMs) {
+                return;
+            }
+            long leftover;
+            synchronized (lease) {
+                if (currentTimeMs < lease.expiresAtMs) {
+                    return;
+                }
+                leftover = lease.available.getAndSet(0);
+                if (currentTimeMs - lease.expiresAtMs > leaseTtlMs) {
+                    // Idle for a whole extra TTL: forget the key locally. Closed under the lock, so a request
+                    // that still holds the lease starts over instead of renewing it outside the map
+                    lease.closed = true;
+                    leases.remove(bucketKey, lease);
+                }
+            }
+            if (leftover > 0) {
+                returnTokens(bucketKey, leftover, lease.capacity, lease.refillRate, currentTimeMs);
+            }
+        });
+    }
+
+    // Adds unused tokens back to the Redis bucket (capped at capacity) without taking any
+    private void returnTokens(String bucketKey, long tokens, long bucketCapacity, double bucketRefillRate,
+                              long currentTimeMs) {
+        try {
+            redisCalls.increment();
+            redisTemplate.execute(tokenLeaseScript, Collections.singletonList(bucketKey),
+                    bucketCapacity, (long) bucketRefillRate, 0L, 0L, tokens, currentTimeMs);
+        } catch (Exception e) {
+            log.warn("Could not return {} leased tokens for key: {}", tokens, bucketKey);
+        }
+    }
+
+    @Override
+    public void reset(String key) {
+        String bucketKey = buildBucketKey(key);
+        Lease lease = leases.remove(bucketKey);
+        if (lease != null) {
+            synchronized (lease) {
+                lease.closed = true;
+                lease.expiresAtMs = 0;
+                lease.available.set(0);
+            }
+        }
+        redisTemplate.delete(bucketKey);
+        log.info("Rate limit reset for key: {}", key);
+    }
+
+    /**
+     * Returns the number of keys with a local lease
+     */
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+    /**
+     * Returns how many decisions were served from a local lease
+     */
+    public long getLocalDecisionCount() {
+        return localDecisions.sum();
+    }
+
+    /**
+     * Returns how many lease/return calls were sent to Redis
+     */
+    public long getRedisCallCount() {
+        return redisCalls.sum();
+    }
+
+    /**
+     * Returns unused tokens to Redis and stops the reaper
+     */
+    @Override
+    public void close() {
+        leaseReaper.shutdownNow();
+        leases.values().forEach(lease -> lease.expiresAtMs = 0);
+        returnExpiredLeases();
+    }
+}
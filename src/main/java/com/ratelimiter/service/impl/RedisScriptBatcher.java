@@ -0,0 +1,199 @@
+package com.ratelimiter.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects concurrent Lua script calls and sends them to Redis as one pipelined EVALSHA batch.
+ * <p>
+ * A single flusher thread waits for the first call, keeps collecting for up to {@code windowMicros}
+ * (or until {@code maxBatchSize} calls are queued) and then writes the whole batch on one connection.
+ * Each caller blocks only until its own reply is in, so many request threads share one round trip.
+ * </p>
+ * <p>
+ * Metrics: {@code ratelimiter.redis.batch.size} (calls per batch) and
+ * {@code ratelimiter.redis.batch.flush} (time from flush start to replies).
+ * </p>
+ */
+@Slf4j
+public class RedisScriptBatcher implements AutoCloseable {
+
+    private final RedisTemplate<String, Long> redisTemplate;
+    private final RedisScript<List<Long>> script;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutMs;
+    private final BlockingQueue<BatchEntry> queue = new LinkedBlockingQueue<>();
+    private final DistributionSummary batchSize;
+    private final Timer flushLatency;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    // One queued script call
+    private record BatchEntry(int numKeys, byte[][] keysAndArgs, CompletableFuture<List<Long>> result) {
+    }
+
+    public RedisScriptBatcher(RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> script,
+                              long windowMicros, int maxBatchSize, long timeoutMs, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.script = script;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.timeoutMs = timeoutMs;
+        this.batchSize = DistributionSummary.builder("ratelimiter.redis.batch.size")
+                .description("Script calls sent per pipelined batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("ratelimiter.redis.batch.flush")
+                .description("Time to send a pipelined batch and read all replies")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flusher = new Thread(this::runFlusher, "rate-limit-redis-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Initialized Redis script batcher with window={}us, maxBatchSize={}", windowMicros, this.maxBatchSize);
+    }
+
+    /**
+     * Queues a script call and waits for its reply.
+     *
+     * @param keys script keys
+     * @param args script arguments
+     * @return the script reply
+     * @throws IllegalStateException if the reply does not arrive within the timeout
+     */
+    public List<Long> execute(List<String> keys, long... args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            // Same encoding as the template's GenericToStringSerializer
+            keysAndArgs[keys.size() + i] = Long.toString(args[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        BatchEntry entry = new BatchEntry(keys.size(), keysAndArgs, new CompletableFuture<>());
+        queue.add(entry);
+        try {
+            return entry.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Redis batch", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Redis batch call failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        BatchEntry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.result().completeExceptionally(new IllegalStateException("Batcher closed"));
+        }
+    }
+
+    private void runFlusher() {
+        List<BatchEntry> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                BatchEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    BatchEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Redis batch flush failed", e);
+                for (BatchEntry entry : batch) {
+                    entry.result().completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<BatchEntry> batch) {
+        batchSize.record(batch.size());
+        long start = System.nanoTime();
+        List<Object> replies;
+        try {
+            replies = pipeline(batch);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // Script cache was flushed (or Redis restarted): load it and retry once
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            replies = pipeline(batch);
+        }
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        for (int i = 0; i < batch.size(); i++) {
+            Object reply = i < replies.size() ? replies.get(i) : null;
+            complete(batch.get(i), reply);
+        }
+    }
+
+    private List<Object> pipeline(List<BatchEntry> batch) {
+        String sha = script.getSha1();
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (BatchEntry entry : batch) {
+                connection.scriptingCommands().evalSha(sha, ReturnType.MULTI, entry.numKeys(), entry.keysAndArgs());
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void complete(BatchEntry entry, Object reply) {
+        if (reply instanceof List<?> list) {
+            entry.result().complete((List<Long>) list);
+        } else if (reply instanceof Throwable error) {
+            entry.result().completeExceptionally(error);
+        } else {
+            entry.result().complete(null);
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
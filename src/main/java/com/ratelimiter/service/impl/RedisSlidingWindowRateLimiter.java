@@ -0,0 +1,256 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.configuration.RedisConfig;
+import com.ratelimiter.model.PackedSlidingWindow;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ratelimiter.utils.ApplicationConstants.SLIDING_WINDOW_BATCH_SCRIPT;
+import static com.ratelimiter.utils.ApplicationConstants.SLIDING_WINDOW_REFUND_SCRIPT;
+
+/**
+ * Sliding-window-counter Rate Limiter implementation using Redis.
+ * <p>
+ * Each fixed window is a plain counter key ({@code rate_limit_sw:{key}:<windowIndex>}).
+ * One Lua script reads the previous and current counters, checks the weighted estimate and
+ * does INCRBY plus PEXPIRE on the current counter, all in a single round trip.
+ * The key is wrapped in a hash tag so both counters land on the same Redis Cluster slot.
+ * </p>
+ */
+@Slf4j
+public class RedisSlidingWindowRateLimiter extends AbstractSlidingWindowRateLimiter {
+
+    private final RedisTemplate<String, Long> redisTemplate;
+    private final RedisScript<List<Long>> slidingWindowScript;
+    private final RedisScript<List<Long>> slidingWindowBatchScript;
+    private final RedisScript<List<Long>> slidingWindowRefundScript = RedisConfig.listScript(SLIDING_WINDOW_REFUND_SCRIPT);
+
+    public RedisSlidingWindowRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                         RedisTemplate<String, Long> redisTemplate,
+                                         RedisScript<List<Long>> slidingWindowScript) {
+        this(rateLimitConfig, tokensPerRequest, redisTemplate, slidingWindowScript,
+                RedisConfig.listScript(SLIDING_WINDOW_BATCH_SCRIPT));
+    }
+
+    public RedisSlidingWindowRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                         RedisTemplate<String, Long> redisTemplate,
+                                         RedisScript<List<Long>> slidingWindowScript,
+                                         RedisScript<List<Long>> slidingWindowBatchScript) {
+        super(rateLimitConfig, tokensPerRequest);
+        this.redisTemplate = redisTemplate;
+        this.slidingWindowScript = slidingWindowScript;
+        this.slidingWindowBatchScript = slidingWindowBatchScript;
+    }
+
+    @Override
+    protected RateLimitStatus tryConsumeInWindow(String key, long tokens, long limit, long windowMs) {
+        long currentTimeMs = System.currentTimeMillis();
+        long windowIndex = currentTimeMs / windowMs;
+        long offsetMs = currentTimeMs % windowMs;
+        String counterKey = buildBucketKey(key);
+
+        try {
+            List<Long> result = redisTemplate.execute(
+                    slidingWindowScript,
+                    List.of(counterKey + ":" + (windowIndex - 1), counterKey + ":" + windowIndex),
+                    limit,
+                    tokens,
+                    offsetMs,
+                    windowMs
+            );
+
+            if (result == null || result.size() < 3) {
+                log.error("Unexpected result from Redis sliding window script for key: {}", key);
+                // Fail open - allow request if Redis returns unexpected result
+                return RateLimitStatus.allowed(limit, limit);
+            }
+
+            return toRateLimitStatus(key, result.get(0) == 1, result.get(1), result.get(2),
+                    tokens, limit, offsetMs, windowMs);
+        } catch (Exception e) {
+            log.error("Redis error during rate limit check for key: {}", key, e);
+            // Fail open - allow request if Redis is unavailable
+            return RateLimitStatus.allowed(limit, limit);
+        }
+    }
+
+    /**
+     * Read-only: reads both counters with MGET (which replicas can serve) instead of running the script.
+     */
+    @Override
+    protected RateLimitStatus peekInWindow(String key, long limit, long windowMs) {
+        long currentTimeMs = System.currentTimeMillis();
+        long windowIndex = currentTimeMs / windowMs;
+        String counterKey = buildBucketKey(key);
+        try {
+            List<Long> counts = redisTemplate.opsForValue().multiGet(
+                    List.of(counterKey + ":" + (windowIndex - 1), counterKey + ":" + windowIndex));
+            long previous = counts != null && counts.get(0) != null ? counts.get(0) : 0;
+            long current = counts != null && counts.get(1) != null ? counts.get(1) : 0;
+            return toPeekStatus(previous, current, limit, currentTimeMs % windowMs, windowMs);
+        } catch (Exception e) {
+            log.warn("Redis error during rate limit peek for key: {}: {}", key, e.getMessage());
+            return RateLimitStatus.allowed(limit, limit);
+        }
+    }
+
+    /**
+     * Decides the batch with one call of the batch script, chunked and restricted to one node like
+     * {@link RedisTokenBucketRateLimiter#tryConsumeAll}.
+     */
+    @Override
+    public List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+        int chunkSize = allOrNothing ? Math.max(1, resolved.size()) : RedisTokenBucketRateLimiter.BATCH_CHUNK_SIZE;
+        try {
+            for (int from = 0; from < resolved.size(); from += chunkSize) {
+                List<RateLimitRequest> chunk = resolved.subList(from, Math.min(resolved.size(), from + chunkSize));
+                results.addAll(executeBatchScript(chunk, allOrNothing));
+            }
+        } catch (Exception e) {
+            log.error("Redis error during batch rate limit check of {} keys", resolved.size() - results.size(), e);
+            // Fail open - allow requests if Redis is unavailable
+            results.addAll(allowAll(resolved.subList(results.size(), resolved.size())));
+        }
+        return results;
+    }
+
+    private List<RateLimitStatus> executeBatchScript(List<RateLimitRequest> requests, boolean allOrNothing) {
+        long currentTimeMs = System.currentTimeMillis();
+        List<String> counterKeys = new ArrayList<>(2 * requests.size());
+        long[] offsetsMs = new long[requests.size()];
+        long[] windowsMs = new long[requests.size()];
+        Object[] args = new Object[1 + 4 * requests.size()];
+        args[0] = allOrNothing ? 1L : 0L;
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            windowsMs[i] = windowMsOf(request);
+            offsetsMs[i] = currentTimeMs % windowsMs[i];
+            long windowIndex = currentTimeMs / windowsMs[i];
+            String counterKey = buildBucketKey(request.key());
+            counterKeys.add(counterKey + ":" + (windowIndex - 1));
+            counterKeys.add(counterKey + ":" + windowIndex);
+            args[1 + 4 * i] = request.bucketCapacity();
+            args[2 + 4 * i] = request.tokens();
+            args[3 + 4 * i] = offsetsMs[i];
+            args[4 + 4 * i] = windowsMs[i];
+        }
+
+        List<Long> result = redisTemplate.execute(slidingWindowBatchScript, counterKeys, args);
+        if (result == null || result.size() < 3 * requests.size()) {
+            log.error("Unexpected result from Redis sliding window batch script for {} keys", requests.size());
+            // Fail open - allow requests if Redis returns unexpected result
+            return allowAll(requests);
+        }
+
+        if (allOrNothing && isAnyRejected(result, requests.size())) {
+            // Nothing was counted and the counts are from before the batch: wait for the slowest request
+            long[] remainingTokens = new long[requests.size()];
+            long retryAfterMs = 0;
+            for (int i = 0; i < requests.size(); i++) {
+                RateLimitRequest request = requests.get(i);
+                long previous = result.get(3 * i + 1);
+                long current = result.get(3 * i + 2);
+                double used = PackedSlidingWindow.estimate(previous, current, offsetsMs[i], windowsMs[i]);
+                remainingTokens[i] = Math.max(0, (long) Math.floor(request.bucketCapacity() - used));
+                if (request.tokens() > remainingTokens[i]) {
+                    retryAfterMs = Math.max(retryAfterMs, PackedSlidingWindow.retryAfterMs(previous, current,
+                            request.tokens(), request.bucketCapacity(), offsetsMs[i], windowsMs[i]));
+                }
+            }
+            return rejectAll(requests, remainingTokens, retryAfterMs);
+        }
+
+        List<RateLimitStatus> statuses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            statuses.add(toRateLimitStatus(request.key(), result.get(3 * i) == 1, result.get(3 * i + 1),
+                    result.get(3 * i + 2), request.tokens(), request.bucketCapacity(), offsetsMs[i], windowsMs[i]));
+        }
+        return statuses;
+    }
+
+    private static boolean isAnyRejected(List<Long> result, int requestCount) {
+        for (int i = 0; i < requestCount; i++) {
+            if (result.get(3 * i) != 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // All counters with one MGET (a plain read, replicas can serve it)
+    @Override
+    public List<RateLimitStatus> peekAll(List<RateLimitRequest> requests) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        long currentTimeMs = System.currentTimeMillis();
+        try {
+            List<String> counterKeys = new ArrayList<>(2 * resolved.size());
+            for (RateLimitRequest request : resolved) {
+                long windowIndex = currentTimeMs / windowMsOf(request);
+                String counterKey = buildBucketKey(request.key());
+                counterKeys.add(counterKey + ":" + (windowIndex - 1));
+                counterKeys.add(counterKey + ":" + windowIndex);
+            }
+            List<Long> counts = redisTemplate.opsForValue().multiGet(counterKeys);
+            List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+            for (int i = 0; i < resolved.size(); i++) {
+                RateLimitRequest request = resolved.get(i);
+                long windowMs = windowMsOf(request);
+                long previous = counts != null && counts.get(2 * i) != null ? counts.get(2 * i) : 0;
+                long current = counts != null && counts.get(2 * i + 1) != null ? counts.get(2 * i + 1) : 0;
+                results.add(toPeekStatus(previous, current, request.bucketCapacity(), currentTimeMs % windowMs, windowMs));
+            }
+            return results;
+        } catch (Exception e) {
+            log.warn("Redis error during batch rate limit peek of {} keys: {}", resolved.size(), e.getMessage());
+            return allowAll(resolved);
+        }
+    }
+
+    // Uncounts the tokens of a failed all-or-nothing batch, from the previous window if it has rolled since
+    @Override
+    protected void refund(RateLimitRequest request) {
+        long windowIndex = System.currentTimeMillis() / windowMsOf(request);
+        String counterKey = buildBucketKey(request.key());
+        try {
+            redisTemplate.execute(slidingWindowRefundScript,
+                    List.of(counterKey + ":" + windowIndex, counterKey + ":" + (windowIndex - 1)), request.tokens());
+        } catch (Exception e) {
+            log.warn("Could not give back {} tokens for key: {}: {}", request.tokens(), request.key(), e.getMessage());
+        }
+    }
+
+    // Hash tag keeps all windows of a key on one cluster slot
+    @Override
+    protected String buildBucketKey(String key) {
+        return super.buildBucketKey("{" + key + "}");
+    }
+
+    /**
+     * Deletes the previous and current counters of every configured window length (tiers and default) in one
+     * DEL; the hash tag keeps them on one cluster slot. Counters of other windows (explicit limits) expire
+     * on their own after two windows.
+     */
+    @Override
+    public void reset(String key) {
+        long currentTimeMs = System.currentTimeMillis();
+        String counterKey = buildBucketKey(key);
+        List<String> counterKeys = new ArrayList<>();
+        for (long windowMs : configuredWindowsMs()) {
+            long windowIndex = currentTimeMs / windowMs;
+            counterKeys.add(counterKey + ":" + (windowIndex - 1));
+            counterKeys.add(counterKey + ":" + windowIndex);
+        }
+        redisTemplate.delete(counterKeys);
+        log.info("Rate limit reset for key: {}", key);
+    }
+}
@@ -1,14 +1,29 @@
 package com.ratelimiter.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.configuration.RedisConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
 import com.ratelimiter.model.RateLimitStatus;
-import com.ratelimiter.model.TokenBucket;
+import com.ratelimiter.service.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.script.RedisScript;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.ratelimiter.utils.ApplicationConstants.TOKEN_BUCKET_BATCH_SCRIPT;
+import static com.ratelimiter.utils.ApplicationConstants.TOKEN_LEASE_SCRIPT;
 
 /**
  * Token Bucket Rate Limiter implementation using Redis.
@@ -29,18 +44,147 @@ import java.util.List;
  * - Atomic operations via Lua scripts </br>
  * - Automatic key expiration (TTL)
  * </p>
+ * <p>
+ * With a {@link RedisScriptBatcher}, concurrent checks share one pipelined round trip.
+ * </p>
+ * <p>
+ * Rejected keys are remembered locally until their retry-after deadline. Until then, requests
+ * for at least as many tokens are rejected without calling Redis, since the bucket cannot have
+ * refilled enough. A throttled client hammering the service therefore costs no Redis traffic.
+ * A reset on another instance is only seen here once the deadline passes.
+ * </p>
+ * <p>
+ * With a {@link RedisCircuitBreaker}, Redis errors and slow calls no longer fail open. Failed calls and
+ * all calls while the breaker is open are decided by a local fallback limiter with 1/N of the limits,
+ * N being the number of application instances, so the cluster as a whole keeps roughly the same limits.
+ * </p>
+ * <p>
+ * The buckets live in Redis, not in local bucket objects, so this limiter implements the limiter operations
+ * (consume, peek, batch) directly rather than the local template of {@link AbstractTokenBucketRateLimiter}.
+ * </p>
  */
 @Slf4j
-public class RedisTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+public class RedisTokenBucketRateLimiter extends AbstractRateLimiter {
 
     private final RedisTemplate<String, Long> redisTemplate;
     private final RedisScript<List<Long>> tokenBucketScript;
+    private final RedisScript<List<Long>> tokenBucketBatchScript;
+    private final RedisScript<List<Long>> tokenRefundScript = RedisConfig.listScript(TOKEN_LEASE_SCRIPT);
+    // Optional: when set, script calls are pipelined in micro-batches
+    private final RedisScriptBatcher batcher;
+    // Optional: keys known to be rejected until a deadline, null when disabled
+    private final Cache<String, Rejection> rejectedKeys;
+    private final LongAdder localRejections = new LongAdder();
+    private final LongAdder scriptCalls = new LongAdder();
+    private final LongAdder scriptNanos = new LongAdder();
+    private final LongAdder scriptErrors = new LongAdder();
+    // Optional: when set, Redis outages are handled by the fallback limiter instead of failing open
+    private final RedisCircuitBreaker circuitBreaker;
+    private final RateLimiter fallbackRateLimiter;
+    private final int instanceCount;
+
+    // Requests per batch script call when they need not be decided together
+    static final int BATCH_CHUNK_SIZE = 256;
+
+    // Fields of the bucket hash written by the token bucket and lease scripts
+    static final List<String> BUCKET_FIELDS = List.of("tokens", "lastRefillTime");
+
+    /**
+     * A rejection seen from Redis: requests for at least {@code tokens} with the same limits fail until
+     * {@code retryAtMs}, the exact time the script's refill reaches them
+     */
+    private record Rejection(long tokens, long bucketCapacity, long bucketRefillRate, long remainingTokens,
+                             long retryAtMs) {
+
+        // The same bucket key is charged with other limits on other paths (e.g. explicit or composite limits)
+        boolean covers(long tokens, long bucketCapacity, long bucketRefillRate, long currentTimeMs) {
+            return tokens >= this.tokens && bucketCapacity == this.bucketCapacity
+                    && bucketRefillRate == this.bucketRefillRate && currentTimeMs < retryAtMs;
+        }
+    }
 
     public RedisTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
                                        RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> tokenBucketScript) {
+        this(rateLimitConfig, tokensPerRequest, redisTemplate, tokenBucketScript, null, 0);
+    }
+
+    public RedisTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                       RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> tokenBucketScript,
+                                       RedisScriptBatcher batcher) {
+        this(rateLimitConfig, tokensPerRequest, redisTemplate, tokenBucketScript, batcher, 0);
+    }
+
+    /**
+     * @param rejectCacheMaxSize maximum rejected keys remembered locally, 0 disables the cache
+     */
+    public RedisTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                       RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> tokenBucketScript,
+                                       RedisScriptBatcher batcher, long rejectCacheMaxSize) {
+        this(rateLimitConfig, tokensPerRequest, redisTemplate, tokenBucketScript, batcher, rejectCacheMaxSize,
+                null, null, 1);
+    }
+
+    /**
+     * @param rejectCacheMaxSize  maximum rejected keys remembered locally, 0 disables the cache
+     * @param circuitBreaker      breaker around Redis calls, null to fail open on errors
+     * @param fallbackRateLimiter local limiter used when Redis is unavailable
+     * @param instanceCount       number of application instances sharing the Redis limits
+     */
+    public RedisTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                       RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> tokenBucketScript,
+                                       RedisScriptBatcher batcher, long rejectCacheMaxSize,
+                                       RedisCircuitBreaker circuitBreaker, RateLimiter fallbackRateLimiter,
+                                       int instanceCount) {
+        this(rateLimitConfig, tokensPerRequest, redisTemplate, tokenBucketScript,
+                RedisConfig.listScript(TOKEN_BUCKET_BATCH_SCRIPT), batcher, rejectCacheMaxSize,
+                circuitBreaker, fallbackRateLimiter, instanceCount);
+    }
+
+    /**
+     * @param tokenBucketBatchScript script deciding a batch of requests in one call
+     * @param rejectCacheMaxSize     maximum rejected keys remembered locally, 0 disables the cache
+     * @param circuitBreaker         breaker around Redis calls, null to fail open on errors
+     * @param fallbackRateLimiter    local limiter used when Redis is unavailable
+     * @param instanceCount          number of application instances sharing the Redis limits
+     */
+    public RedisTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                       RedisTemplate<String, Long> redisTemplate, RedisScript<List<Long>> tokenBucketScript,
+                                       RedisScript<List<Long>> tokenBucketBatchScript,
+                                       RedisScriptBatcher batcher, long rejectCacheMaxSize,
+                                       RedisCircuitBreaker circuitBreaker, RateLimiter fallbackRateLimiter,
+                                       int instanceCount) {
         super(rateLimitConfig, tokensPerRequest);
         this.redisTemplate = redisTemplate;
         this.tokenBucketScript = tokenBucketScript;
+        this.tokenBucketBatchScript = tokenBucketBatchScript;
+        this.batcher = batcher;
+        this.rejectedKeys = rejectCacheMaxSize > 0 ? buildRejectionCache(rejectCacheMaxSize) : null;
+        this.circuitBreaker = circuitBreaker;
+        this.fallbackRateLimiter = fallbackRateLimiter;
+        this.instanceCount = Math.max(1, instanceCount);
+    }
+
+    // Each entry expires exactly at its retry-after deadline
+    private static Cache<String, Rejection> buildRejectionCache(long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Rejection>() {
+                    @Override
+                    public long expireAfterCreate(String key, Rejection value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.retryAtMs() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Rejection value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Rejection value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     @Override
@@ -48,18 +192,31 @@ public class RedisTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter
         String bucketKey = buildBucketKey(key);
         long currentTimeMs = System.currentTimeMillis();
 
+        if (rejectedKeys != null && tokens > 0) {
+            Rejection rejection = rejectedKeys.getIfPresent(bucketKey);
+            if (rejection != null && rejection.covers(tokens, bucketCapacity, (long) bucketRefillRate, currentTimeMs)) {
+                localRejections.increment();
+                return createRejectedResult(key, rejection.remainingTokens(), bucketCapacity,
+                        rejection.retryAtMs() - currentTimeMs);
+            }
+        }
+
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            return tryConsumeLocally(key, tokens, bucketCapacity, bucketRefillRate);
+        }
+
         try {
             // Execute Lua script atomically
-            List<Long> result = redisTemplate.execute(
-                    tokenBucketScript,
-                    Collections.singletonList(bucketKey),
-                    bucketCapacity,
-                    (long) bucketRefillRate,
-                    tokens,
-                    currentTimeMs
-            );
-
-            if (result == null || result.size() < 3) {
+            long startNanos = System.nanoTime();
+            List<Long> result = executeScript(bucketKey, bucketCapacity, (long) bucketRefillRate, tokens, currentTimeMs);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            scriptCalls.increment();
+            scriptNanos.add(elapsedNanos);
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess(elapsedNanos);
+            }
+
+            if (result == null || result.size() < 4) {
                 log.error("Unexpected result from Redis script for key: {}", key);
                 // Fail open - allow request if Redis returns unexpected result
                 return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
@@ -72,9 +229,23 @@ public class RedisTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter
             if (allowed == 1) {
                 return createAllowedResult(key, remainingTokens, bucketCapacity);
             } else {
+                long retryAtMs = result.get(3);
+                if (rejectedKeys != null && retryAtMs > currentTimeMs) {
+                    rejectedKeys.put(bucketKey, new Rejection(tokens, bucketCapacity, (long) bucketRefillRate,
+                            remainingTokens, retryAtMs));
+                }
                 return createRejectedResult(key, remainingTokens, bucketCapacity, retryAfterMs);
             }
         } catch (Exception e) {
+            scriptErrors.increment();
+            if (circuitBreaker != null) {
+                circuitBreaker.onFailure();
+                if (circuitBreaker.shouldLogError()) {
+                    log.error("Redis error during rate limit check for key: {} ({} similar errors not logged)",
+                            key, circuitBreaker.drainSuppressedErrors(), e);
+                }
+                return tryConsumeLocally(key, tokens, bucketCapacity, bucketRefillRate);
+            }
             log.error("Redis error during rate limit check for key: {}", key, e);
             // Fail open - allow request if Redis is unavailable
             // Prefer availability over strict rate limiting
@@ -82,19 +253,300 @@ public class RedisTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter
         }
     }
 
+    // Network bound anyway: reuse the regular path instead of the local-bucket one
+    @Override
+    public boolean tryConsume(String key, long tokens, long bucketCapacity, double bucketRefillRate,
+                              RateLimitDecision decision) {
+        return decision.copyFrom(tryConsume(key, tokens, bucketCapacity, bucketRefillRate));
+    }
+
+    /**
+     * Decides the batch with one call of the batch script, which refills and charges every bucket atomically
+     * (all-or-nothing is exact here, not compensated). Independent batches are sent in chunks of
+     * {@value #BATCH_CHUNK_SIZE} so a bulk job does not block Redis with one huge script. All keys of a chunk
+     * must be on one node; on Redis Cluster, batch only keys of one hash slot.
+     * <p>
+     * The local rejected-key cache is not used; the circuit breaker and fallback work as for single requests.
+     * </p>
+     */
     @Override
-    protected TokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
-        // Redis implementation relies on the Lua script path and should never call
-        // the in-memory bucket creation used by other implementations. If this method
-        // is invoked, it indicates an unexpected code path; fail fast to avoid
-        // silently bypassing Redis.
-        throw new UnsupportedOperationException("RedisTokenBucketRateLimiter does not use local TokenBucket instances");
+    public List<RateLimitStatus> tryConsumeAll(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            return fallbackRateLimiter.tryConsumeAll(localShareOf(resolved), allOrNothing);
+        }
+
+        List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+        int chunkSize = allOrNothing ? Math.max(1, resolved.size()) : BATCH_CHUNK_SIZE;
+        try {
+            for (int from = 0; from < resolved.size(); from += chunkSize) {
+                List<RateLimitRequest> chunk = resolved.subList(from, Math.min(resolved.size(), from + chunkSize));
+                results.addAll(executeBatchScript(chunk, allOrNothing));
+            }
+            return results;
+        } catch (Exception e) {
+            scriptErrors.increment();
+            List<RateLimitRequest> undecided = resolved.subList(results.size(), resolved.size());
+            if (circuitBreaker != null) {
+                circuitBreaker.onFailure();
+                if (circuitBreaker.shouldLogError()) {
+                    log.error("Redis error during batch rate limit check of {} keys ({} similar errors not logged)",
+                            undecided.size(), circuitBreaker.drainSuppressedErrors(), e);
+                }
+                results.addAll(fallbackRateLimiter.tryConsumeAll(localShareOf(undecided), allOrNothing));
+                return results;
+            }
+            log.error("Redis error during batch rate limit check of {} keys", undecided.size(), e);
+            // Fail open - allow requests if Redis is unavailable
+            results.addAll(allowAll(undecided));
+            return results;
+        }
+    }
+
+    private List<RateLimitStatus> executeBatchScript(List<RateLimitRequest> requests, boolean allOrNothing) {
+        List<String> bucketKeys = new ArrayList<>(requests.size());
+        Object[] args = new Object[2 + 3 * requests.size()];
+        args[0] = allOrNothing ? 1L : 0L;
+        args[1] = System.currentTimeMillis();
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequest request = requests.get(i);
+            bucketKeys.add(buildBucketKey(request.key()));
+            args[2 + 3 * i] = request.bucketCapacity();
+            args[3 + 3 * i] = (long) request.bucketRefillRate();
+            args[4 + 3 * i] = request.tokens();
+        }
+
+        long startNanos = System.nanoTime();
+        List<Long> result = redisTemplate.execute(tokenBucketBatchScript, bucketKeys, args);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        scriptCalls.increment();
+        scriptNanos.add(elapsedNanos);
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess(elapsedNanos);
+        }
+        return toBatchStatuses(requests, result, allOrNothing);
+    }
+
+    /**
+     * Reads every bucket with pipelined HMGETs: one round trip, plain reads that replicas can serve.
+     */
+    @Override
+    public List<RateLimitStatus> peekAll(List<RateLimitRequest> requests) {
+        List<RateLimitRequest> resolved = resolveAll(requests);
+        if (circuitBreaker != null && circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            return fallbackRateLimiter.peekAll(localShareOf(resolved));
+        }
+        try {
+            List<String> bucketKeys = new ArrayList<>(resolved.size());
+            for (RateLimitRequest request : resolved) {
+                bucketKeys.add(buildBucketKey(request.key()));
+            }
+            List<List<Long>> buckets = readBuckets(redisTemplate, bucketKeys);
+            long currentTimeMs = System.currentTimeMillis();
+            List<RateLimitStatus> results = new ArrayList<>(resolved.size());
+            for (int i = 0; i < resolved.size(); i++) {
+                RateLimitRequest request = resolved.get(i);
+                long availableTokens = refilledTokens(buckets.get(i), request.bucketCapacity(),
+                        (long) request.bucketRefillRate(), currentTimeMs);
+                results.add(createPeekResult(availableTokens, request.bucketCapacity()));
+            }
+            return results;
+        } catch (Exception e) {
+            log.warn("Redis error during batch rate limit peek of {} keys: {}", resolved.size(), e.getMessage());
+            if (fallbackRateLimiter != null) {
+                return fallbackRateLimiter.peekAll(localShareOf(resolved));
+            }
+            return allowAll(resolved);
+        }
+    }
+
+    /**
+     * Reads the {@link #BUCKET_FIELDS} of several bucket hashes in one pipelined round trip.
+     *
+     * @param redisTemplate template to read with
+     * @param bucketKeys    bucket keys
+     * @return field values per key, in key order
+     */
+    @SuppressWarnings("unchecked")
+    static List<List<Long>> readBuckets(RedisTemplate<String, Long> redisTemplate, List<String> bucketKeys) {
+        List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                HashOperations<String, String, Long> hashOperations =
+                        ((RedisOperations<String, Long>) operations).opsForHash();
+                for (String bucketKey : bucketKeys) {
+                    hashOperations.multiGet(bucketKey, BUCKET_FIELDS);
+                }
+                return null;
+            }
+        });
+        List<List<Long>> buckets = new ArrayList<>(replies.size());
+        for (Object reply : replies) {
+            buckets.add((List<Long>) reply);
+        }
+        return buckets;
+    }
+
+    // The batch with this instance's share (1/N) of each limit, for the fallback limiter
+    private List<RateLimitRequest> localShareOf(List<RateLimitRequest> requests) {
+        List<RateLimitRequest> local = new ArrayList<>(requests.size());
+        for (RateLimitRequest request : requests) {
+            long localCapacity = Math.max(request.tokens(), Math.max(1, request.bucketCapacity() / instanceCount));
+            local.add(RateLimitRequest.withLimits(request.key(), request.tokens(), localCapacity,
+                    request.bucketRefillRate() / instanceCount));
+        }
+        return local;
+    }
+
+    /**
+     * Read-only: reads the bucket hash with HMGET and refills it here the way the script would. A plain read
+     * command, unlike EVAL, can be served by a replica when the connection reads from replicas, so status
+     * pages don't load the primary. While the breaker is not closed, the fallback limiter answers instead.
+     */
+    @Override
+    public RateLimitStatus peek(String key, long bucketCapacity, double bucketRefillRate) {
+        if (circuitBreaker != null && circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            return peekLocally(key, bucketCapacity, bucketRefillRate);
+        }
+        try {
+            HashOperations<String, String, Long> hashOperations = redisTemplate.opsForHash();
+            List<Long> bucket = hashOperations.multiGet(buildBucketKey(key), BUCKET_FIELDS);
+            long availableTokens = refilledTokens(bucket, bucketCapacity, (long) bucketRefillRate,
+                    System.currentTimeMillis());
+            return createPeekResult(availableTokens, bucketCapacity);
+        } catch (Exception e) {
+            log.warn("Redis error during rate limit peek for key: {}: {}", key, e.getMessage());
+            if (fallbackRateLimiter != null) {
+                return peekLocally(key, bucketCapacity, bucketRefillRate);
+            }
+            return RateLimitStatus.allowed(bucketCapacity, bucketCapacity);
+        }
+    }
+
+    /**
+     * Tokens in a bucket hash read with {@link #BUCKET_FIELDS}, refilled to the given time exactly like
+     * the token bucket and lease scripts do (whole tokens, integer refill rate).
+     *
+     * @param bucket           values of the {@code tokens} and {@code lastRefillTime} fields, null entries if absent
+     * @param bucketCapacity   bucket capacity
+     * @param bucketRefillRate tokens per second refill rate, as passed to the scripts
+     * @param currentTimeMs    current time in milliseconds
+     * @return available tokens, {@code bucketCapacity} for a missing bucket
+     */
+    static long refilledTokens(List<Long> bucket, long bucketCapacity, long bucketRefillRate, long currentTimeMs) {
+        if (bucket == null || bucket.size() < 2 || bucket.get(0) == null) {
+            return bucketCapacity;
+        }
+        long tokens = bucket.get(0);
+        Long lastRefillTime = bucket.get(1);
+        long elapsedMs = lastRefillTime == null ? 0 : Math.max(0, currentTimeMs - lastRefillTime);
+        long tokensToAdd = (long) Math.floor(elapsedMs * (double) bucketRefillRate / 1000.0);
+        return Math.min(bucketCapacity, tokens + tokensToAdd);
+    }
+
+    private RateLimitStatus peekLocally(String key, long bucketCapacity, double bucketRefillRate) {
+        long localCapacity = Math.max(1, bucketCapacity / instanceCount);
+        return fallbackRateLimiter.peek(key, localCapacity, bucketRefillRate / instanceCount);
+    }
+
+    /**
+     * Decides locally with this instance's share (1/N) of the limits while Redis is unavailable.
+     */
+    private RateLimitStatus tryConsumeLocally(String key, long tokens, long bucketCapacity, double bucketRefillRate) {
+        long localCapacity = Math.max(tokens, Math.max(1, bucketCapacity / instanceCount));
+        return fallbackRateLimiter.tryConsume(key, tokens, localCapacity, bucketRefillRate / instanceCount);
+    }
+
+    /**
+     * Runs the token bucket script, either directly or through the micro-batcher.
+     */
+    private List<Long> executeScript(String bucketKey, long bucketCapacity, long bucketRefillRate,
+                                     long tokens, long currentTimeMs) {
+        if (batcher != null) {
+            return batcher.execute(Collections.singletonList(bucketKey),
+                    bucketCapacity, bucketRefillRate, tokens, currentTimeMs);
+        }
+        return redisTemplate.execute(
+                tokenBucketScript,
+                Collections.singletonList(bucketKey),
+                bucketCapacity,
+                bucketRefillRate,
+                tokens,
+                currentTimeMs
+        );
+    }
+
+    /**
+     * Gives back the tokens of a failed all-or-nothing batch through the lease script, which adds returned
+     * tokens to the refilled bucket (capped at capacity) on the same hash.
+     */
+    @Override
+    protected void refund(RateLimitRequest request) {
+        String bucketKey = buildBucketKey(request.key());
+        if (rejectedKeys != null) {
+            rejectedKeys.invalidate(bucketKey);
+        }
+        try {
+            redisTemplate.execute(tokenRefundScript, Collections.singletonList(bucketKey),
+                    request.bucketCapacity(), (long) request.bucketRefillRate(), 0L, 0L, request.tokens(),
+                    System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("Could not give back {} tokens for key: {}: {}", request.tokens(), request.key(), e.getMessage());
+        }
     }
 
     @Override
     public void reset(String key) {
         String bucketKey = buildBucketKey(key);
+        if (rejectedKeys != null) {
+            rejectedKeys.invalidate(bucketKey);
+        }
+        if (fallbackRateLimiter != null) {
+            fallbackRateLimiter.reset(key);
+        }
         redisTemplate.delete(bucketKey);
         log.info("Rate limit reset for key: {}", key);
     }
+
+    /**
+     * Returns how many token bucket script calls completed
+     */
+    public long getScriptCallCount() {
+        return scriptCalls.sum();
+    }
+
+    /**
+     * Returns the total round-trip time of completed script calls, in nanoseconds
+     */
+    public double getScriptTimeNanos() {
+        return scriptNanos.sum();
+    }
+
+    /**
+     * Returns how many script calls failed (connection errors, timeouts, script errors)
+     */
+    public long getScriptErrorCount() {
+        return scriptErrors.sum();
+    }
+
+    /**
+     * Returns how many requests were rejected locally without calling Redis
+     */
+    public long getLocalRejectionCount() {
+        return localRejections.sum();
+    }
+
+    /**
+     * Returns the number of keys currently known to be rejected
+     */
+    public long getRejectedKeyCount() {
+        return rejectedKeys == null ? 0 : rejectedKeys.estimatedSize();
+    }
+
+    /**
+     * Returns the circuit breaker state, or null when no breaker is configured
+     */
+    public RedisCircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker == null ? null : circuitBreaker.getState();
+    }
 }
@@ -0,0 +1,323 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.AtomicTokenBucket;
+import com.ratelimiter.model.PackedTokenBucket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory Token Bucket Rate Limiter split into N shards, each with its own expiry index.
+ * <p>
+ * A bucket that has refilled to capacity behaves exactly like a missing bucket (a new one
+ * starts full), so it can be dropped without changing any decision. Every bucket records the
+ * time it will be full again; a background sweeper walks a per-shard hashed timing wheel and
+ * removes buckets whose time has passed. Request threads only write that timestamp, so there
+ * is no per-access reordering like in Caffeine.
+ * </p>
+ * <p> Best suited for: </br>
+ * - Single instance deployments with high key churn (e.g. many anonymous IPs)</br>
+ * - When memory must stay bounded by the number of <i>active</i> clients
+ * </p>
+ * <p> Limitations: </br>
+ * - State is lost on restart </br>
+ * - Not shared across multiple instances </br>
+ * - A request racing with the sweeper may land on a bucket being removed; the bucket is then put back.
+ * If another request has already created a new bucket for the key, the racing request's tokens are lost
+ * and the client gets up to that many extra tokens
+ * </p>
+ */
+@Slf4j
+public class ShardedInMemoryTokenBucketRateLimiter extends AbstractAtomicTokenBucketRateLimiter implements AutoCloseable {
+
+    private static final int WHEEL_SLOTS = 512;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long tickMs;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Per-shard statistics exposed for monitoring
+     *
+     * @param shard           shard index
+     * @param bucketCount     buckets currently stored
+     * @param lastSweepMicros duration of the last sweep of this shard
+     * @param evictions       total buckets evicted because they were full
+     */
+    public record ShardStats(int shard, int bucketCount, long lastSweepMicros, long evictions) {
+    }
+
+    public ShardedInMemoryTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                                 int shardCount, long sweepIntervalMs) {
+        super(rateLimitConfig, tokensPerRequest);
+        // Round the shard count up to a power of two
+        int size = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.tickMs = Math.max(1, sweepIntervalMs);
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = size - 1;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("Initialized sharded in-memory store with {} shards, sweep interval={}ms", size, tickMs);
+    }
+
+    @Override
+    protected long consume(String key, long tokens, long bucketCapacity, double bucketRefillRate, long currentTimeMs) {
+        String bucketKey = buildBucketKey(key);
+        ShardEntry entry = getOrCreateEntry(bucketKey, bucketCapacity, currentTimeMs);
+        long decision = entry.bucket.tryConsume(tokens, bucketCapacity, bucketRefillRate, currentTimeMs);
+
+        // Record when this bucket will be full again so the sweeper can drop it
+        long missingTokens = bucketCapacity - PackedTokenBucket.availableOf(decision);
+        entry.extendFullAt(currentTimeMs + calculateRetryAfterMs(missingTokens, bucketRefillRate));
+        // Read after writing fullAtMs: either we see the removal, or the sweeper sees the new fullAtMs
+        if (entry.removed) {
+            restore(entry);
+        }
+        return decision;
+    }
+
+    // The sweeper removed the entry while this request was consuming from it: put its bucket back
+    private void restore(ShardEntry removed) {
+        Shard shard = shardFor(removed.key);
+        ShardEntry restored = shard.restore(removed);
+        if (restored != null) {
+            shard.pending.offer(restored);
+        }
+    }
+
+    @Override
+    protected AtomicTokenBucket getOrCreateBucket(String bucketKey, long bucketCapacity,
+                                                  double bucketRefillRate, long currentTimeMs) {
+        return getOrCreateEntry(bucketKey, bucketCapacity, currentTimeMs).bucket;
+    }
+
+    @Override
+    protected AtomicTokenBucket findBucket(String bucketKey) {
+        ShardEntry entry = shardFor(bucketKey).buckets.get(bucketKey);
+        return entry != null ? entry.bucket : null;
+    }
+
+    private ShardEntry getOrCreateEntry(String bucketKey, long bucketCapacity, long currentTimeMs) {
+        Shard shard = shardFor(bucketKey);
+        ShardEntry entry = shard.buckets.get(bucketKey);
+        if (entry != null) {
+            return entry;
+        }
+        return shard.buckets.computeIfAbsent(bucketKey, k -> {
+            ShardEntry created = new ShardEntry(k, AtomicTokenBucket.createNew(bucketCapacity, currentTimeMs), currentTimeMs);
+            shard.pending.offer(created);
+            return created;
+        });
+    }
+
+    @Override
+    public void reset(String key) {
+        String bucketKey = buildBucketKey(key);
+        // The wheel drops entries that are no longer in the map
+        shardFor(bucketKey).buckets.remove(bucketKey);
+        log.info("Rate limit reset for key: {}", key);
+    }
+
+    /**
+     * Returns the current number of tracked buckets across all shards
+     */
+    public long getBucketCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.buckets.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of shards (the configured count rounded up to a power of two)
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns bucket count, last sweep duration and evictions of one shard
+     *
+     * @param shard shard index, from 0 to {@link #getShardCount()} - 1
+     */
+    public ShardStats getShardStats(int shard) {
+        Shard selected = shards[shard];
+        return new ShardStats(shard, selected.buckets.size(), selected.lastSweepMicros, selected.evictions);
+    }
+
+    /**
+     * Clears all rate limit buckets (useful for testing)
+     */
+    public void clearAll() {
+        for (Shard shard : shards) {
+            shard.buckets.clear();
+        }
+        log.info("All rate limit buckets cleared");
+    }
+
+    /**
+     * Stops the background sweeper
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    // Runs on the sweeper thread only
+    void sweep() {
+        try {
+            long currentTimeMs = System.currentTimeMillis();
+            for (Shard shard : shards) {
+                long start = System.nanoTime();
+                shard.sweep(currentTimeMs);
+                shard.lastSweepMicros = (System.nanoTime() - start) / 1_000;
+            }
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the scheduled sweep
+            log.error("Rate limit sweeper failed", e);
+        }
+    }
+
+    private Shard shardFor(String bucketKey) {
+        int h = bucketKey.hashCode();
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+
+    /**
+     * Map entry: the bucket plus the time it will have refilled to capacity
+     */
+    private static final class ShardEntry {
+        private static final VarHandle FULL_AT_MS;
+
+        static {
+            try {
+                FULL_AT_MS = MethodHandles.lookup().findVarHandle(ShardEntry.class, "fullAtMs", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final String key;
+        private final AtomicTokenBucket bucket;
+        private volatile long fullAtMs;
+        // Set once the sweeper has removed the entry from the map; a restored bucket gets a new entry
+        private volatile boolean removed;
+
+        private ShardEntry(String key, AtomicTokenBucket bucket, long fullAtMs) {
+            this.key = key;
+            this.bucket = bucket;
+            this.fullAtMs = fullAtMs;
+        }
+
+        // Atomic max: a concurrent consumer with an earlier deadline must not overwrite a later one
+        private void extendFullAt(long newFullAtMs) {
+            long current;
+            while (newFullAtMs > (current = fullAtMs)) {
+                if (FULL_AT_MS.compareAndSet(this, current, newFullAtMs)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One shard: its own map, and a hashed timing wheel that only the sweeper thread touches.
+     * New entries reach the wheel through the lock-free pending queue.
+     */
+    private final class Shard {
+        private final Map<String, ShardEntry> buckets = new ConcurrentHashMap<>();
+        private final Queue<ShardEntry> pending = new ConcurrentLinkedQueue<>();
+        @SuppressWarnings("unchecked")
+        private final List<ShardEntry>[] wheel = new List[WHEEL_SLOTS];
+        private long lastTick = System.currentTimeMillis() / tickMs;
+        private volatile long lastSweepMicros;
+        private volatile long evictions;
+
+        private void sweep(long currentTimeMs) {
+            ShardEntry created;
+            while ((created = pending.poll()) != null) {
+                schedule(created);
+            }
+
+            long currentTick = currentTimeMs / tickMs;
+            // After a long pause one pass over the wheel visits every slot
+            long fromTick = Math.max(lastTick + 1, currentTick - WHEEL_SLOTS + 1);
+            for (long tick = fromTick; tick <= currentTick; tick++) {
+                lastTick = tick;
+                int slot = (int) (tick & (WHEEL_SLOTS - 1));
+                List<ShardEntry> due = wheel[slot];
+                if (due == null) {
+                    continue;
+                }
+                wheel[slot] = null;
+                for (ShardEntry entry : due) {
+                    expireOrReschedule(entry, currentTimeMs);
+                }
+            }
+        }
+
+        private void expireOrReschedule(ShardEntry entry, long currentTimeMs) {
+            if (buckets.get(entry.key) != entry) {
+                // Reset or already replaced
+                return;
+            }
+            if (entry.fullAtMs > currentTimeMs) {
+                schedule(entry);
+                return;
+            }
+            if (buckets.remove(entry.key, entry)) {
+                entry.removed = true;
+                evictions++;
+                // A request consumed from the bucket while we were removing it: put it back
+                if (entry.fullAtMs > currentTimeMs) {
+                    ShardEntry restored = restore(entry);
+                    if (restored != null) {
+                        evictions--;
+                        schedule(restored);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Puts the bucket of a removed entry back under a new entry, unless the key has a bucket again
+         * (restored by the sweeper or a request, or created anew).
+         *
+         * @return the new entry, to be scheduled, or null if nothing was inserted
+         */
+        private ShardEntry restore(ShardEntry removed) {
+            ShardEntry restored = new ShardEntry(removed.key, removed.bucket, removed.fullAtMs);
+            return buckets.putIfAbsent(removed.key, restored) == null ? restored : null;
+        }
+
+        private void schedule(ShardEntry entry) {
+            // Entries beyond the wheel span land in a slot early and are rescheduled when it fires
+            long tick = Math.max(entry.fullAtMs / tickMs, lastTick + 1);
+            int slot = (int) (tick & (WHEEL_SLOTS - 1));
+            if (wheel[slot] == null) {
+                wheel[slot] = new ArrayList<>();
+            }
+            wheel[slot].add(entry);
+        }
+    }
+}
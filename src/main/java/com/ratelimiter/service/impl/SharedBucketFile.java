@@ -0,0 +1,232 @@
+package com.ratelimiter.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * A memory-mapped file holding an {@link OffHeapBucketTable} that every process on the host can map.
+ * <p>
+ * Layout: a {@value #HEADER_BYTES}-byte header followed by the table slots, in native byte order.
+ * The header holds the table geometry and, last, a magic word that marks the file as initialized:
+ * <ul>
+ *     <li>0: magic ({@code "RLSHMTBL"})</li>
+ *     <li>8: layout version</li>
+ *     <li>12: number of sets</li>
+ *     <li>16: ways per set</li>
+ *     <li>20: bytes per slot</li>
+ *     <li>24: initialization time (epoch ms)</li>
+ * </ul>
+ * Opening takes an exclusive {@link FileLock} (released by the OS even if the process dies) and checks the
+ * header. A valid header is adopted as is, even if {@code max-buckets} differs, because other processes are
+ * already using that geometry. A new, empty file is initialized in place, with the magic written only after
+ * everything else. Any other file - half initialized by a process that crashed, or laid out by another
+ * version - is never written to, since a process may still have it mapped and would fault on a shrunk file:
+ * a new table is initialized next to it and renamed over it, and processes still using the old one keep it
+ * until they exit.
+ * </p>
+ * <p>
+ * Whoever replaces the file does so while holding the lock of the old one, so a process that was waiting on
+ * that lock checks, once it has it, that its channel is still the file at the path, and opens it again if not.
+ * </p>
+ */
+@Slf4j
+final class SharedBucketFile implements AutoCloseable {
+
+    static final int HEADER_BYTES = 64;
+
+    private static final long MAGIC = 0x524C53484D54424CL; // "RLSHMTBL"
+    // 2: a reused slot starts at a later refill time than its previous state (see OffHeapBucketTable)
+    private static final int VERSION = 2;
+    private static final int MAX_OPEN_ATTEMPTS = 10;
+    private static final Object MISSING = new Object();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final OffHeapBucketTable table;
+    private final boolean created;
+
+    private SharedBucketFile(Path path, FileChannel channel, OffHeapBucketTable table, boolean created) {
+        this.path = path;
+        this.channel = channel;
+        this.table = table;
+        this.created = created;
+    }
+
+    /**
+     * Maps the file at {@code path}, initializing it for {@code maxBuckets} keys unless another process
+     * already did.
+     *
+     * @param path       file to map, e.g. under {@code /dev/shm}
+     * @param maxBuckets keys to size a new table for
+     * @return the mapped file
+     */
+    static SharedBucketFile open(Path path, long maxBuckets) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            for (int attempt = 0; attempt < MAX_OPEN_ATTEMPTS; attempt++) {
+                SharedBucketFile file = tryOpen(path, maxBuckets);
+                if (file != null) {
+                    return file;
+                }
+            }
+            throw new IOException("File kept being replaced by other processes");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map shared bucket table " + path, e);
+        }
+    }
+
+    // The mapped file, or null if the path was replaced while opening it
+    private static SharedBucketFile tryOpen(Path path, long maxBuckets) throws IOException {
+        Object fileKey = fileKey(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        SharedBucketFile file = null;
+        try (FileLock ignored = channel.lock()) {
+            // Same key before opening and once locked: the channel is the file at the path, and stays it
+            // while we hold the lock
+            if (fileKey != MISSING && Objects.equals(fileKey, fileKey(path))) {
+                file = openLocked(path, channel, maxBuckets);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        if (file == null || file.channel != channel) {
+            closeQuietly(channel);
+        }
+        return file;
+    }
+
+    private static SharedBucketFile openLocked(Path path, FileChannel channel, long maxBuckets) throws IOException {
+        int sets = validSets(channel);
+        if (sets > 0) {
+            return new SharedBucketFile(path, channel,
+                    new OffHeapBucketTable(map(channel, sets), HEADER_BYTES, sets), false);
+        }
+        sets = OffHeapBucketTable.setsFor(maxBuckets);
+        if (channel.size() == 0) {
+            return new SharedBucketFile(path, channel,
+                    new OffHeapBucketTable(initialize(channel, sets), HEADER_BYTES, sets), true);
+        }
+        log.warn("Shared bucket table {} is incomplete or from another version, replacing it", path);
+        return replace(path, sets);
+    }
+
+    // Initializes a new file next to the path and renames it over it; the caller holds the old file's lock
+    private static SharedBucketFile replace(Path path, int sets) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = initialize(channel, sets);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new SharedBucketFile(path, channel, new OffHeapBucketTable(buffer, HEADER_BYTES, sets), true);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Identity of the file at the path (inode on Unix), MISSING if there is none, or null if the
+    // file system has no file keys, in which case replacements cannot be detected
+    private static Object fileKey(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+    }
+
+    OffHeapBucketTable table() {
+        return table;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    // True if this process initialized the file
+    boolean created() {
+        return created;
+    }
+
+    /**
+     * Closes the channel. The mapping stays valid until it is garbage collected, and the file is left
+     * in place for the other processes.
+     */
+    @Override
+    public void close() {
+        closeQuietly(channel);
+    }
+
+    // Number of sets from a complete header, or 0 if the file has to be initialized
+    private static int validSets(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return 0;
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        header.order(ByteOrder.nativeOrder());
+        int sets = header.getInt(12);
+        boolean complete = header.getLong(0) == MAGIC
+                && header.getInt(8) == VERSION
+                && header.getInt(16) == OffHeapBucketTable.WAYS
+                && header.getInt(20) == OffHeapBucketTable.SLOT_BYTES
+                && sets > 0 && Integer.bitCount(sets) == 1
+                && channel.size() >= HEADER_BYTES + OffHeapBucketTable.bytesFor(sets);
+        return complete ? sets : 0;
+    }
+
+    // The channel must be an empty file: extending it by the mapping leaves every slot zero (empty)
+    private static MappedByteBuffer initialize(FileChannel channel, int sets) throws IOException {
+        MappedByteBuffer buffer = map(channel, sets);
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, sets);
+        buffer.putInt(16, OffHeapBucketTable.WAYS);
+        buffer.putInt(20, OffHeapBucketTable.SLOT_BYTES);
+        buffer.putLong(24, System.currentTimeMillis());
+        buffer.force();
+        // Marks the file complete; a crash before this line makes the next process start over
+        buffer.putLong(0, MAGIC);
+        buffer.force();
+        return buffer;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int sets) throws IOException {
+        long size = HEADER_BYTES + OffHeapBucketTable.bytesFor(sets);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Shared bucket table too large: " + size + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Could not close shared bucket table channel", e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token Bucket Rate Limiter whose {@link OffHeapBucketTable} lives in a memory-mapped file shared by every
+ * instance on the host (see {@link SharedBucketFile}).
+ * <p>
+ * All processes map the same slots and update them with the table's compare-and-set operations, so N instances
+ * behind a local proxy enforce one set of limits instead of N, without a network round trip. The file should be
+ * on a memory-backed file system such as {@code /dev/shm}; on disk it works too, but the kernel writes the
+ * dirty pages back.
+ * </p>
+ * <p>
+ * A background sweeper frees slots of buckets that have refilled to capacity at every configured tier, and
+ * slots left half-inserted by a process that died, so the table does not depend on the CLOCK eviction alone.
+ * </p>
+ * <p> Best suited for: </br>
+ * - Several instances per host with no shared store</br>
+ * </p>
+ * <p> Limitations: </br>
+ * - Limits are per host, not per cluster </br>
+ * - All instances on the host must run with the same tier configuration </br>
+ * - State survives restarts of single instances, but not a reboot when the file is in {@code /dev/shm}
+ * </p>
+ */
+@Slf4j
+public class SharedMemoryTokenBucketRateLimiter extends OffHeapTokenBucketRateLimiter implements AutoCloseable {
+
+    private final SharedBucketFile bucketFile;
+    private final long maxRefillMs;
+    private final BitSet busySlots = new BitSet();
+    private final ScheduledExecutorService sweeper;
+
+    public SharedMemoryTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                              Path path, long maxBuckets, long sweepIntervalMs) {
+        this(rateLimitConfig, tokensPerRequest, SharedBucketFile.open(path, maxBuckets), sweepIntervalMs);
+    }
+
+    private SharedMemoryTokenBucketRateLimiter(RateLimitConfig rateLimitConfig, long tokensPerRequest,
+                                               SharedBucketFile bucketFile, long sweepIntervalMs) {
+        super(rateLimitConfig, tokensPerRequest, bucketFile.table());
+        this.bucketFile = bucketFile;
+        this.maxRefillMs = rateLimitConfig.slowestRefillMs();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-shm-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(1, sweepIntervalMs);
+        sweeper.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("{} shared bucket table {} with {} slots, sweep interval={}ms",
+                bucketFile.created() ? "Created" : "Attached to", bucketFile.path(),
+                bucketFile.table().capacity(), intervalMs);
+    }
+
+    /**
+     * Stops the sweeper and closes the file; the table stays in place for the other instances
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        bucketFile.close();
+    }
+
+    // Runs on the sweeper thread only
+    void sweep() {
+        try {
+            if (maxRefillMs == Long.MAX_VALUE) {
+                // A limit without refill never becomes full again: only free abandoned slots
+                bucketFile.table().reclaim(Long.MIN_VALUE, busySlots);
+                return;
+            }
+            long freed = bucketFile.table().reclaim(System.currentTimeMillis() - maxRefillMs, busySlots);
+            log.debug("Shared bucket sweep freed {} slots", freed);
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the scheduled sweep
+            log.error("Shared bucket sweeper failed", e);
+        }
+    }
+}
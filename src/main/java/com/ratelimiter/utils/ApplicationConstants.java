@@ -15,6 +15,8 @@ public class ApplicationConstants {
     public static final String HEADER_RETRY_AFTER = "X-Retry-After";
 
     public static final String KEY_PREFIX = "rate_limit:";
+    public static final String GCRA_KEY_PREFIX = "rate_limit_gcra:";
+    public static final String SLIDING_WINDOW_KEY_PREFIX = "rate_limit_sw:";
 
     // Lua Script for Token Bucket Rate Limiter
     public static final String TOKEN_BUCKET_SCRIPT = """
@@ -56,14 +58,17 @@ public class ApplicationConstants {
                 -- Check if we have enough tokens
                 local allowed = 0
                 local retryAfterMs = 0
+                local retryAtMs = 0
             
                 if tokens >= tokensRequested then
                     tokens = tokens - tokensRequested
                     allowed = 1
                 else
-                    -- Calculate when tokens will be available
+                    -- Calculate when tokens will be available: the refill continues from lastRefillTime,
+                    -- so the time already elapsed since then counts
                     local tokensNeeded = tokensRequested - tokens
-                    retryAfterMs = math.ceil(tokensNeeded * 1000 / refillRate)
+                    retryAtMs = lastRefillTime + math.ceil(tokensNeeded * 1000 / refillRate)
+                    retryAfterMs = math.max(0, retryAtMs - currentTimeMs)
                 end
             
                 -- Save bucket state with TTL = 2x time to refill the bucket
@@ -71,8 +76,378 @@ public class ApplicationConstants {
                 redis.call('HMSET', key, 'tokens', tokens, 'lastRefillTime', lastRefillTime)
                 redis.call('EXPIRE', key, ttl)
             
+                -- Return {allowed (0/1), remaining tokens, retry after in ms, time the request can pass in ms (0 if allowed)}
+                return {allowed, tokens, retryAfterMs, retryAtMs}
+            """;
+
+    // Lua Script for GCRA (Generic Cell Rate Algorithm) Rate Limiter
+    public static final String GCRA_SCRIPT = """
+                -- KEYS[1] = key holding the theoretical arrival time (TAT) in microseconds
+                -- ARGV[1] = bucket capacity (burst)
+                -- ARGV[2] = emission interval in microseconds (1s / refill rate)
+                -- ARGV[3] = tokens requested (usually 1)
+                -- ARGV[4] = current time in microseconds
+            
+                local key = KEYS[1]
+                local capacity = tonumber(ARGV[1])
+                local interval = tonumber(ARGV[2])
+                local tokensRequested = tonumber(ARGV[3])
+                local nowMicros = tonumber(ARGV[4])
+                local burst = capacity * interval
+            
+                -- A missing or past TAT means the bucket is full
+                local tat = tonumber(redis.call('GET', key))
+                if tat == nil or tat < nowMicros then
+                    tat = nowMicros
+                end
+            
+                local newTat = tat + tokensRequested * interval
+                local allowAt = newTat - burst
+            
+                if nowMicros < allowAt then
+                    local remaining = math.floor((burst - (tat - nowMicros)) / interval)
+                    return {0, remaining, math.ceil((allowAt - nowMicros) / 1000)}
+                end
+            
+                -- Store the new TAT; it expires exactly when the bucket would be full again.
+                -- string.format keeps all digits (plain tostring would round to 14 significant digits)
+                if tokensRequested > 0 then
+                    redis.call('SET', key, string.format('%d', newTat), 'PX', math.ceil((newTat - nowMicros) / 1000))
+                end
+            
                 -- Return {allowed (0/1), remaining tokens, retry after in ms}
-                return {allowed, tokens, retryAfterMs}
+                return {1, math.floor((burst - (newTat - nowMicros)) / interval), 0}
+            """;
+
+    // Lua Script for Sliding Window Counter Rate Limiter
+    public static final String SLIDING_WINDOW_SCRIPT = """
+                -- KEYS[1] = previous window counter (e.g. "rate_limit_sw:{user:123}:28333332")
+                -- KEYS[2] = current window counter (e.g. "rate_limit_sw:{user:123}:28333333")
+                -- ARGV[1] = limit (max tokens per rolling window)
+                -- ARGV[2] = tokens requested (usually 1)
+                -- ARGV[3] = milliseconds elapsed in the current window
+                -- ARGV[4] = window length in milliseconds
+            
+                local limit = tonumber(ARGV[1])
+                local tokensRequested = tonumber(ARGV[2])
+                local offsetMs = tonumber(ARGV[3])
+                local windowMs = tonumber(ARGV[4])
+            
+                local previous = tonumber(redis.call('GET', KEYS[1])) or 0
+                local current = tonumber(redis.call('GET', KEYS[2])) or 0
+            
+                -- Weight the previous window by how much of it is still inside the rolling window
+                local estimate = previous * (1 - offsetMs / windowMs) + current + tokensRequested
+                if estimate > limit then
+                    return {0, previous, current}
+                end
+            
+                -- Count the request; the counter is needed for two windows (current, then previous)
+                if tokensRequested > 0 then
+                    current = redis.call('INCRBY', KEYS[2], tokensRequested)
+                    redis.call('PEXPIRE', KEYS[2], 2 * windowMs)
+                end
+            
+                -- Return {allowed (0/1), previous count, current count}
+                return {1, previous, current}
+            """;
+
+    // Lua Script that leases a block of tokens from a Token Bucket (and returns unused ones).
+    // Uses the same hash layout as TOKEN_BUCKET_SCRIPT, so leasing and non-leasing nodes can share buckets.
+    public static final String TOKEN_LEASE_SCRIPT = """
+                -- KEYS[1] = bucket key (e.g. "rate_limit:user:123")
+                -- ARGV[1] = bucket capacity (max tokens)
+                -- ARGV[2] = bucket refill rate (tokens per second)
+                -- ARGV[3] = tokens needed now (0 = only return tokens)
+                -- ARGV[4] = tokens wanted for the lease (>= tokens needed)
+                -- ARGV[5] = unused tokens returned from the previous lease
+                -- ARGV[6] = current time in milliseconds
+            
+                local key = KEYS[1]
+                local capacity = tonumber(ARGV[1])
+                local refillRate = tonumber(ARGV[2])
+                local tokensNeeded = tonumber(ARGV[3])
+                local tokensWanted = tonumber(ARGV[4])
+                local tokensReturned = tonumber(ARGV[5])
+                local currentTimeMs = tonumber(ARGV[6])
+            
+                local bucket = redis.call('HMGET', key, 'tokens', 'lastRefillTime')
+                local tokens = tonumber(bucket[1])
+                local lastRefillTime = tonumber(bucket[2])
+            
+                if tokens == nil then
+                    tokens = capacity
+                    lastRefillTime = currentTimeMs
+                end
+            
+                -- Refill exactly like TOKEN_BUCKET_SCRIPT, then take back returned tokens
+                local elapsedMs = currentTimeMs - lastRefillTime
+                local tokensToAdd = math.floor(elapsedMs * refillRate / 1000)
+                if tokensToAdd > 0 then
+                    lastRefillTime = currentTimeMs
+                else
+                    tokensToAdd = 0
+                end
+                tokens = math.min(capacity, tokens + tokensToAdd + tokensReturned)
+            
+                -- Grant as much of the wanted lease as is available, but never less than needed
+                local granted = 0
+                local retryAfterMs = 0
+                if tokens >= tokensNeeded then
+                    granted = math.min(tokens, tokensWanted)
+                    tokens = tokens - granted
+                else
+                    retryAfterMs = math.ceil((tokensNeeded - tokens) * 1000 / refillRate)
+                end
+            
+                local ttl = math.ceil(capacity / refillRate * 2)
+                redis.call('HMSET', key, 'tokens', tokens, 'lastRefillTime', lastRefillTime)
+                redis.call('EXPIRE', key, ttl)
+            
+                -- Return {granted tokens, tokens left in Redis, retry after in ms}
+                return {granted, tokens, retryAfterMs}
+            """;
+
+    // Lua Script that decides a batch of Token Bucket requests in one call (same hash layout as TOKEN_BUCKET_SCRIPT).
+    // All keys must be on one node: on Redis Cluster, in one hash slot.
+    public static final String TOKEN_BUCKET_BATCH_SCRIPT = """
+                -- KEYS[i] = bucket key of request i (a key may appear more than once)
+                -- ARGV[1] = 1 to charge every request or none, 0 to decide each on its own
+                -- ARGV[2] = current time in milliseconds
+                -- ARGV[3i], ARGV[3i + 1], ARGV[3i + 2] = capacity, refill rate and tokens requested of request i
+            
+                local allOrNothing = ARGV[1] == '1'
+                local currentTimeMs = tonumber(ARGV[2])
+                local buckets = {}
+                local results = {}
+                local rejected = false
+            
+                for i, key in ipairs(KEYS) do
+                    local capacity = tonumber(ARGV[3 * i])
+                    local refillRate = tonumber(ARGV[3 * i + 1])
+                    local tokensRequested = tonumber(ARGV[3 * i + 2])
+            
+                    -- Refill exactly like TOKEN_BUCKET_SCRIPT; a repeated key continues from the previous request
+                    local bucket = buckets[key]
+                    if bucket == nil then
+                        local stored = redis.call('HMGET', key, 'tokens', 'lastRefillTime')
+                        local tokens = tonumber(stored[1])
+                        local lastRefillTime = tonumber(stored[2])
+                        if tokens == nil then
+                            tokens = capacity
+                            lastRefillTime = currentTimeMs
+                        end
+                        local tokensToAdd = math.floor((currentTimeMs - lastRefillTime) * refillRate / 1000)
+                        if tokensToAdd > 0 then
+                            lastRefillTime = currentTimeMs
+                        else
+                            tokensToAdd = 0
+                        end
+                        tokens = math.min(capacity, tokens + tokensToAdd)
+                        bucket = {tokens = tokens, before = tokens, lastRefillTime = lastRefillTime,
+                                  ttl = math.ceil(capacity / refillRate * 2)}
+                        buckets[key] = bucket
+                    end
+            
+                    if bucket.tokens >= tokensRequested then
+                        bucket.tokens = bucket.tokens - tokensRequested
+                        results[3 * i - 2] = 1
+                        results[3 * i] = 0
+                    else
+                        rejected = true
+                        results[3 * i - 2] = 0
+                        results[3 * i] = math.ceil((tokensRequested - bucket.tokens) * 1000 / refillRate)
+                    end
+                    results[3 * i - 1] = bucket.tokens
+                end
+            
+                if allOrNothing and rejected then
+                    -- Charge nothing and report every bucket as it was before the batch
+                    for i, key in ipairs(KEYS) do
+                        results[3 * i - 2] = 0
+                        results[3 * i - 1] = buckets[key].before
+                    end
+                    return results
+                end
+            
+                for key, bucket in pairs(buckets) do
+                    redis.call('HMSET', key, 'tokens', bucket.tokens, 'lastRefillTime', bucket.lastRefillTime)
+                    redis.call('EXPIRE', key, bucket.ttl)
+                end
+            
+                -- Return {allowed (0/1), remaining tokens, retry after in ms} per request, flattened
+                return results
+            """;
+
+    // Lua Script that decides a batch of GCRA requests in one call (same keys as GCRA_SCRIPT).
+    // All keys must be on one node: on Redis Cluster, in one hash slot.
+    public static final String GCRA_BATCH_SCRIPT = """
+                -- KEYS[i] = TAT key of request i (a key may appear more than once)
+                -- ARGV[1] = 1 to charge every request or none, 0 to decide each on its own
+                -- ARGV[2] = current time in microseconds
+                -- ARGV[3i], ARGV[3i + 1], ARGV[3i + 2] = capacity, emission interval and tokens requested of request i
+            
+                local allOrNothing = ARGV[1] == '1'
+                local nowMicros = tonumber(ARGV[2])
+                local tats = {}
+                local before = {}
+                local results = {}
+                local rejected = false
+            
+                for i, key in ipairs(KEYS) do
+                    local interval = tonumber(ARGV[3 * i + 1])
+                    local burst = tonumber(ARGV[3 * i]) * interval
+                    local tokensRequested = tonumber(ARGV[3 * i + 2])
+            
+                    -- A missing or past TAT means the bucket is full; a repeated key continues from the previous request
+                    local tat = tats[key]
+                    if tat == nil then
+                        tat = tonumber(redis.call('GET', key))
+                        if tat == nil or tat < nowMicros then
+                            tat = nowMicros
+                        end
+                        before[key] = tat
+                    end
+            
+                    local newTat = tat + tokensRequested * interval
+                    local allowAt = newTat - burst
+                    if nowMicros < allowAt then
+                        rejected = true
+                        tats[key] = tat
+                        results[3 * i - 2] = 0
+                        results[3 * i - 1] = math.floor((burst - (tat - nowMicros)) / interval)
+                        results[3 * i] = math.ceil((allowAt - nowMicros) / 1000)
+                    else
+                        tats[key] = newTat
+                        results[3 * i - 2] = 1
+                        results[3 * i - 1] = math.floor((burst - (newTat - nowMicros)) / interval)
+                        results[3 * i] = 0
+                    end
+                end
+            
+                if allOrNothing and rejected then
+                    -- Charge nothing and report every key as it was before the batch
+                    for i, key in ipairs(KEYS) do
+                        local interval = tonumber(ARGV[3 * i + 1])
+                        results[3 * i - 2] = 0
+                        results[3 * i - 1] = math.floor((tonumber(ARGV[3 * i]) * interval - (before[key] - nowMicros)) / interval)
+                    end
+                    return results
+                end
+            
+                -- Same expiry and formatting as GCRA_SCRIPT
+                for key, tat in pairs(tats) do
+                    if tat > before[key] then
+                        redis.call('SET', key, string.format('%d', tat), 'PX', math.ceil((tat - nowMicros) / 1000))
+                    end
+                end
+            
+                -- Return {allowed (0/1), remaining tokens, retry after in ms} per request, flattened
+                return results
+            """;
+
+    // Lua Script that decides a batch of Sliding Window Counter requests in one call (same keys as SLIDING_WINDOW_SCRIPT).
+    // All keys must be on one node: on Redis Cluster, in one hash slot.
+    public static final String SLIDING_WINDOW_BATCH_SCRIPT = """
+                -- KEYS[2i - 1], KEYS[2i] = previous and current window counters of request i
+                -- ARGV[1] = 1 to charge every request or none, 0 to decide each on its own
+                -- ARGV[4i - 2], ARGV[4i - 1], ARGV[4i], ARGV[4i + 1] = limit, tokens requested,
+                --           milliseconds elapsed in the current window and window length of request i
+            
+                local allOrNothing = ARGV[1] == '1'
+                local counts = {}
+                local before = {}
+                local windows = {}
+                local results = {}
+                local rejected = false
+            
+                -- A counter shared by several requests continues from the previous one
+                local function count(key)
+                    local value = counts[key]
+                    if value == nil then
+                        value = tonumber(redis.call('GET', key)) or 0
+                        counts[key] = value
+                        before[key] = value
+                    end
+                    return value
+                end
+            
+                for i = 1, #KEYS / 2 do
+                    local limit = tonumber(ARGV[4 * i - 2])
+                    local tokensRequested = tonumber(ARGV[4 * i - 1])
+                    local offsetMs = tonumber(ARGV[4 * i])
+                    local windowMs = tonumber(ARGV[4 * i + 1])
+                    local previous = count(KEYS[2 * i - 1])
+                    local current = count(KEYS[2 * i])
+            
+                    -- Weight the previous window by how much of it is still inside the rolling window
+                    local estimate = previous * (1 - offsetMs / windowMs) + current + tokensRequested
+                    if estimate > limit then
+                        rejected = true
+                        results[3 * i - 2] = 0
+                    else
+                        current = current + tokensRequested
+                        counts[KEYS[2 * i]] = current
+                        windows[KEYS[2 * i]] = windowMs
+                        results[3 * i - 2] = 1
+                    end
+                    results[3 * i - 1] = previous
+                    results[3 * i] = current
+                end
+            
+                if allOrNothing and rejected then
+                    -- Count nothing and report every window as it was before the batch
+                    for i = 1, #KEYS / 2 do
+                        results[3 * i - 2] = 0
+                        results[3 * i - 1] = before[KEYS[2 * i - 1]]
+                        results[3 * i] = before[KEYS[2 * i]]
+                    end
+                    return results
+                end
+            
+                -- The counter is needed for two windows (current, then previous)
+                for key, windowMs in pairs(windows) do
+                    if counts[key] > before[key] then
+                        redis.call('INCRBY', key, counts[key] - before[key])
+                        redis.call('PEXPIRE', key, 2 * windowMs)
+                    end
+                end
+            
+                -- Return {allowed (0/1), previous count, current count} per request, flattened
+                return results
+            """;
+
+    // Lua Script that gives back the tokens of a failed all-or-nothing batch (same key as GCRA_SCRIPT).
+    public static final String GCRA_REFUND_SCRIPT = """
+                -- KEYS[1] = key holding the theoretical arrival time (TAT) in microseconds
+                -- ARGV[1] = microseconds to move the TAT back (tokens x emission interval)
+            
+                -- A missing TAT is a full bucket: nothing to give back. DECRBY keeps the expiry,
+                -- and a TAT moved into the past reads as a full bucket
+                if redis.call('EXISTS', KEYS[1]) == 0 then
+                    return {0}
+                end
+                return {redis.call('DECRBY', KEYS[1], ARGV[1])}
+            """;
+
+    // Lua Script that gives back the tokens of a failed all-or-nothing batch (same keys as SLIDING_WINDOW_SCRIPT).
+    public static final String SLIDING_WINDOW_REFUND_SCRIPT = """
+                -- KEYS[1] = current window counter
+                -- KEYS[2] = previous window counter (the window may have rolled since the tokens were counted)
+                -- ARGV[1] = tokens to uncount
+            
+                local remaining = tonumber(ARGV[1])
+                for i = 1, 2 do
+                    local count = tonumber(redis.call('GET', KEYS[i])) or 0
+                    local uncounted = math.min(count, remaining)
+                    if uncounted > 0 then
+                        redis.call('DECRBY', KEYS[i], uncounted)
+                        remaining = remaining - uncounted
+                    end
+                end
+            
+                -- Return {tokens uncounted}
+                return {tonumber(ARGV[1]) - remaining}
             """;
 
 }
@@ -15,4 +15,18 @@ CREATE TABLE IF NOT EXISTS users
     INDEX idx_users_email (email),
     INDEX idx_users_tier (tier),
     INDEX idx_users_role (role)
-);
\ No newline at end of file
+);
+
+-- Added after the table existed: CREATE TABLE IF NOT EXISTS never adds it to an existing database, and MySQL
+-- has no CREATE INDEX IF NOT EXISTS
+SET @has_updated_at_index = (SELECT COUNT(*)
+                             FROM information_schema.statistics
+                             WHERE table_schema = DATABASE()
+                               AND table_name = 'users'
+                               AND index_name = 'idx_users_updated_at');
+SET @create_updated_at_index = IF(@has_updated_at_index = 0,
+                                  'CREATE INDEX idx_users_updated_at ON users (updated_at)',
+                                  'SELECT 1');
+PREPARE create_updated_at_index FROM @create_updated_at_index;
+EXECUTE create_updated_at_index;
+DEALLOCATE PREPARE create_updated_at_index;
\ No newline at end of file
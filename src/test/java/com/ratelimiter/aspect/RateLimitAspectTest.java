@@ -0,0 +1,146 @@
+package com.ratelimiter.aspect;
+
+import com.ratelimiter.annotation.RateLimit;
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.interceptor.RateLimitContext;
+import com.ratelimiter.interceptor.RateLimitInterceptor;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitStatus;
+import com.ratelimiter.service.ClientIdentityResolver;
+import com.ratelimiter.service.ClientIdentityResolver.ResolvedIdentity;
+import com.ratelimiter.service.CompositeLimitChain;
+import com.ratelimiter.service.RateLimiter;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class RateLimitAspectTest {
+
+    private RateLimiter rateLimiter;
+    private ClientIdentityResolver clientIdentityResolver;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private RateLimitInterceptor interceptor;
+    private RateLimitAspect aspect;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.tryConsumeForTier(anyString(), anyString(), anyLong()))
+                .thenReturn(RateLimitStatus.allowed(5, 10));
+        when(rateLimiter.tryConsumeForTier(anyString(), anyString(), any(RateLimitDecision.class))).thenReturn(true);
+        clientIdentityResolver = mock(ClientIdentityResolver.class);
+        when(clientIdentityResolver.resolveIdentity(any())).thenReturn(new ResolvedIdentity("api:a"));
+        when(clientIdentityResolver.resolveUserTier(any(), any())).thenReturn("free");
+
+        request = new MockHttpServletRequest("GET", "/api/reports");
+        response = new MockHttpServletResponse();
+        RateLimitConfig config = new RateLimitConfig();
+        interceptor = new RateLimitInterceptor(rateLimiter, clientIdentityResolver);
+        ReflectionTestUtils.setField(interceptor, "tokensPerRequest", 1L);
+        aspect = new RateLimitAspect(rateLimiter, config, clientIdentityResolver, new CompositeLimitChain(config),
+                request, response);
+    }
+
+    @Test
+    void annotatedEndpointIsChargedOnceWithGlobalAndEndpointTokens() throws Throwable {
+        assertThat(interceptor.preHandle(request, response, handler("limited"))).isTrue();
+        verifyNoInteractions(rateLimiter);
+
+        assertThat(aspect.rateLimit(joinPoint("limited"))).isEqualTo("ok");
+
+        verify(rateLimiter).tryConsumeForTier("api:a", "free", 3L);
+        verifyNoMoreInteractions(rateLimiter);
+        verify(clientIdentityResolver, times(1)).resolveIdentity(request);
+    }
+
+    @Test
+    void plainEndpointIsChargedByTheInterceptorOnly() {
+        assertThat(interceptor.preHandle(request, response, handler("unlimited"))).isTrue();
+
+        verify(rateLimiter).tryConsumeForTier(eq("api:a"), eq("free"), any(RateLimitDecision.class));
+        verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    void globalLimitChargedByTheFilterIsNotChargedAgain() throws Throwable {
+        RateLimitContext.resolve(request, clientIdentityResolver).markGlobalCharged();
+
+        interceptor.preHandle(request, response, handler("limited"));
+        aspect.rateLimit(joinPoint("limited"));
+
+        verify(rateLimiter).tryConsumeForTier("api:a", "free", 2L);
+        verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    void rejectedEndpointIsNotInvoked() throws Throwable {
+        when(rateLimiter.tryConsumeForTier(anyString(), anyString(), anyLong()))
+                .thenReturn(RateLimitStatus.rejected(0, 10, 1500));
+        interceptor.preHandle(request, response, handler("limited"));
+        ProceedingJoinPoint joinPoint = joinPoint("limited");
+
+        assertThatThrownBy(() -> aspect.rateLimit(joinPoint)).isInstanceOf(RateLimitExceededException.class);
+
+        verify(joinPoint, never()).proceed();
+    }
+
+    private static HandlerMethod handler(String methodName) {
+        return new HandlerMethod(new ReportController(), method(methodName));
+    }
+
+    private static ProceedingJoinPoint joinPoint(String methodName) throws Throwable {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(method(methodName));
+        when(signature.getDeclaringType()).thenReturn(ReportController.class);
+        when(signature.getName()).thenReturn(methodName);
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenReturn("ok");
+        return joinPoint;
+    }
+
+    private static Method method(String name) {
+        try {
+            return ReportController.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @RestController
+    static class ReportController {
+
+        @RateLimit(tokens = 2)
+        public String limited() {
+            return "ok";
+        }
+
+        public String unlimited() {
+            return "ok";
+        }
+    }
+}
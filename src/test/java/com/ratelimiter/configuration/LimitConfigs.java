@@ -0,0 +1,18 @@
+package com.ratelimiter.configuration;
+
+/**
+ * Builds {@link RateLimitConfig.LimitConfig} instances for tests of the composite limits.
+ */
+public final class LimitConfigs {
+
+    private LimitConfigs() {
+    }
+
+    public static RateLimitConfig.LimitConfig limit(long capacity, double refillRate, int stripes) {
+        RateLimitConfig.LimitConfig limit = new RateLimitConfig.LimitConfig();
+        limit.setCapacity(capacity);
+        limit.setRefillRate(refillRate);
+        limit.setStripes(stripes);
+        return limit;
+    }
+}
@@ -0,0 +1,120 @@
+package com.ratelimiter.configuration;
+
+import com.ratelimiter.model.PackedSlidingWindow;
+import com.ratelimiter.model.PackedTokenBucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.ratelimiter.configuration.LimitConfigs.limit;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitConfigTest {
+
+    private static final long ABOVE_PACKED = PackedTokenBucket.MAX_TOKENS + 1;
+
+    private RateLimitConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new RateLimitConfig();
+    }
+
+    @Test
+    void capacityMustFitThePackedBucket() {
+        config.getTiers().put("enterprise", tier(ABOVE_PACKED));
+
+        assertThatThrownBy(config::validate)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("rate.limit.tiers.enterprise.capacity");
+    }
+
+    @Test
+    void redisWithTheBreakerFallbackIsCapped() {
+        config.setStorage("redis");
+        config.getTiers().put("enterprise", tier(ABOVE_PACKED));
+
+        assertThatThrownBy(config::validate).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void redisWithoutLocalBucketsIsNotCapped() {
+        config.getTiers().put("enterprise", tier(ABOVE_PACKED));
+
+        config.setStorage("redis");
+        config.getRedis().getCircuitBreaker().setEnabled(false);
+        assertThatCode(config::validate).doesNotThrowAnyException();
+
+        config.getRedis().getCircuitBreaker().setEnabled(true);
+        config.setAlgorithm("gcra");
+        assertThatCode(config::validate).doesNotThrowAnyException();
+
+        config.setStorage("redis-lease");
+        config.setAlgorithm("token-bucket");
+        assertThatCode(config::validate).doesNotThrowAnyException();
+    }
+
+    @Test
+    void redisLeaseWithALocalAlgorithmIsCapped() {
+        config.setStorage("redis-lease");
+        config.setAlgorithm("gcra");
+        config.getTiers().put("enterprise", tier(ABOVE_PACKED));
+
+        assertThatThrownBy(config::validate).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void localSlidingWindowHasASmallerMaximum() {
+        config.setAlgorithm("sliding-window");
+        config.getTiers().put("premium", tier(PackedSlidingWindow.MAX_COUNT + 1));
+
+        assertThatThrownBy(config::validate).isInstanceOf(IllegalStateException.class);
+        config.getTiers().put("premium", tier(PackedSlidingWindow.MAX_COUNT));
+        assertThatCode(config::validate).doesNotThrowAnyException();
+    }
+
+    @Test
+    void negativeCapacityIsRejectedEverywhere() {
+        config.setStorage("redis-lease");
+        config.setDefaultCapacity(-1);
+
+        assertThatThrownBy(config::validate)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("rate.limit.default-capacity");
+    }
+
+    @Test
+    void everyStripeNeedsATokenOfCapacityAndRate() {
+        config.getComposite().setService(limit(1000, 10, 16));
+
+        assertThatThrownBy(config::validate)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("rate.limit.composite.service.refill-rate");
+
+        config.getComposite().setService(limit(8, 100, 16));
+        assertThatThrownBy(config::validate).isInstanceOf(IllegalStateException.class);
+
+        config.getComposite().setService(limit(16, 16, 16));
+        assertThatCode(config::validate).doesNotThrowAnyException();
+    }
+
+    @Test
+    void endpointStripesAreValidatedButDisabledLimitsAreNot() {
+        RateLimitConfig.PolicyConfig policy = new RateLimitConfig.PolicyConfig();
+        policy.setEndpoint(limit(0, 0, 64));
+        config.getComposite().getPolicies().put("reports", policy);
+        assertThatCode(config::validate).doesNotThrowAnyException();
+
+        policy.setEndpoint(limit(400, 80, 0));
+        assertThatThrownBy(config::validate)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("rate.limit.composite.policies.reports.endpoint.stripes");
+    }
+
+    private static RateLimitConfig.TierConfig tier(long capacity) {
+        RateLimitConfig.TierConfig tier = new RateLimitConfig.TierConfig();
+        tier.setCapacity(capacity);
+        tier.setRefillRate(1.0);
+        return tier;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ratelimiter.configuration;
+
+import com.ratelimiter.service.impl.MeteredRateLimiter;
+import com.ratelimiter.service.impl.ShardedInMemoryTokenBucketRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimiterMetricsConfigurationTest {
+
+    private MeterRegistry registry;
+    private RateLimitConfig config;
+    private BeanPostProcessor postProcessor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        config = new RateLimitConfig();
+        ObjectProvider<MeterRegistry> registryProvider = mock(ObjectProvider.class);
+        when(registryProvider.getObject()).thenReturn(registry);
+        ObjectProvider<RateLimitConfig> configProvider = mock(ObjectProvider.class);
+        when(configProvider.getObject()).thenReturn(config);
+        postProcessor = RateLimiterMetricsConfiguration.meteredRateLimiterPostProcessor(registryProvider, configProvider);
+    }
+
+    @Test
+    void shardedStorageGetsMetricsPerShard() {
+        config.setStorage("sharded");
+        try (ShardedInMemoryTokenBucketRateLimiter rateLimiter =
+                     new ShardedInMemoryTokenBucketRateLimiter(config, 1, 4, 60_000)) {
+            rateLimiter.tryConsume("api:a", 1, 10, 1.0);
+
+            Object wrapped = postProcessor.postProcessAfterInitialization(rateLimiter, "rateLimiter");
+
+            assertThat(wrapped).isInstanceOf(MeteredRateLimiter.class);
+            assertThat(registry.find("ratelimiter.shard.buckets").gauges()).hasSize(4);
+            assertThat(registry.find("ratelimiter.shard.sweep.duration").timeGauges()).hasSize(4);
+            assertThat(registry.find("ratelimiter.shard.evictions").functionCounters()).hasSize(4);
+            double buckets = registry.find("ratelimiter.shard.buckets").gauges().stream()
+                    .mapToDouble(Gauge::value)
+                    .sum();
+            assertThat(buckets).isEqualTo(1.0);
+            assertThat(registry.get("ratelimiter.shard.buckets").tag("shard", "3").gauge()).isNotNull();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ratelimiter.interceptor;
+
+import com.ratelimiter.exception.GlobalExceptionHandler;
+import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.ClientIdentityResolver;
+import com.ratelimiter.service.ClientIdentityResolver.ResolvedIdentity;
+import com.ratelimiter.service.RateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private RateLimiter rateLimiter;
+    private ClientIdentityResolver clientIdentityResolver;
+    private RateLimitFilter filter;
+    private RateLimitDecision decision;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.tryConsumeForTier(anyString(), anyString(), any(RateLimitDecision.class))).thenAnswer(invocation -> {
+            decision = invocation.getArgument(2);
+            return decision.reject(0, 10, 1500, System.currentTimeMillis());
+        });
+        clientIdentityResolver = mock(ClientIdentityResolver.class);
+        when(clientIdentityResolver.resolveUserTier(any(), any())).thenReturn("free");
+        filter = new RateLimitFilter(rateLimiter, clientIdentityResolver, mock(HandlerMapping.class));
+    }
+
+    @Test
+    void rejectedBodyMatchesTheExceptionHandlerBody() throws Exception {
+        assertSameBodyAsExceptionHandler("api:rl_key");
+    }
+
+    @Test
+    void clientIdIsEscapedInTheBody() throws Exception {
+        assertSameBodyAsExceptionHandler("ip:\"quoted\\back\nslash");
+    }
+
+    private void assertSameBodyAsExceptionHandler(String clientId) throws Exception {
+        when(clientIdentityResolver.resolveIdentity(any())).thenReturn(new ResolvedIdentity(clientId));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/data"), response, chain);
+
+        assertThat(chain.getRequest()).isNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(response.getContentType()).isEqualTo("application/json");
+        Map<String, Object> filterBody = parse(response.getContentAsString());
+
+        Map<String, Object> handlerBody = parse(jsonMapper.writeValueAsString(new GlobalExceptionHandler()
+                .handleRateLimitExceeded(new RateLimitExceededException(clientId, decision.toStatus()))
+                .getBody()));
+
+        // Only the timestamp differs: both are ISO instants taken at render time
+        assertThat(Instant.parse((String) filterBody.remove("timestamp"))).isNotNull();
+        handlerBody.remove("timestamp");
+        assertThat(filterBody).isEqualTo(handlerBody);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse(String json) {
+        return jsonMapper.readValue(json, Map.class);
+    }
+}
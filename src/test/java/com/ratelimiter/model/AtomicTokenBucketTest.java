@@ -0,0 +1,130 @@
+package com.ratelimiter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AtomicTokenBucketTest {
+
+    private static final long NOW = PackedTokenBucket.EPOCH_MS + 86_400_000L;
+
+    @Test
+    void packKeepsTokensAndRefillTime() {
+        long state = PackedTokenBucket.pack(PackedTokenBucket.MAX_TOKENS, NOW);
+
+        assertThat(PackedTokenBucket.tokensOf(state)).isEqualTo(PackedTokenBucket.MAX_TOKENS);
+        assertThat(PackedTokenBucket.lastRefillTimeOf(state)).isEqualTo(NOW);
+        assertThat(PackedTokenBucket.tokensOf(PackedTokenBucket.pack(0, NOW))).isZero();
+    }
+
+    @Test
+    void decisionsEncodeOutcomeAndAvailableTokens() {
+        assertThat(PackedTokenBucket.isAllowed(PackedTokenBucket.allowed(0))).isTrue();
+        assertThat(PackedTokenBucket.availableOf(PackedTokenBucket.allowed(7))).isEqualTo(7);
+        assertThat(PackedTokenBucket.isAllowed(PackedTokenBucket.rejected(0))).isFalse();
+        assertThat(PackedTokenBucket.availableOf(PackedTokenBucket.rejected(3))).isEqualTo(3);
+    }
+
+    @Test
+    void capacityAboveMaxTokensIsRejected() {
+        assertThatThrownBy(() -> AtomicTokenBucket.createNew(PackedTokenBucket.MAX_TOKENS + 1, NOW))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void refillAddsWholeTokensUpToCapacity() {
+        long empty = PackedTokenBucket.pack(0, NOW);
+
+        // 10 tokens/s: 250 ms add 2 tokens, the refill time moves to now
+        long refilled = PackedTokenBucket.refill(empty, NOW + 250, 10, 10.0);
+        assertThat(PackedTokenBucket.tokensOf(refilled)).isEqualTo(2);
+        assertThat(PackedTokenBucket.lastRefillTimeOf(refilled)).isEqualTo(NOW + 250);
+
+        assertThat(PackedTokenBucket.tokensOf(PackedTokenBucket.refill(empty, NOW + 60_000, 10, 10.0)))
+                .isEqualTo(10);
+    }
+
+    @Test
+    void refillKeepsTimeWhenNoWholeTokenWasAdded() {
+        long empty = PackedTokenBucket.pack(0, NOW);
+
+        assertThat(PackedTokenBucket.refill(empty, NOW + 50, 10, 10.0)).isEqualTo(empty);
+        assertThat(PackedTokenBucket.refill(empty, NOW - 1_000, 10, 10.0)).isEqualTo(empty);
+    }
+
+    @Test
+    void tryConsumeTakesTokensUntilEmpty() {
+        AtomicTokenBucket bucket = AtomicTokenBucket.createNew(3, NOW);
+
+        assertThat(PackedTokenBucket.availableOf(bucket.tryConsume(2, 3, 1.0, NOW))).isEqualTo(1);
+        long rejected = bucket.tryConsume(2, 3, 1.0, NOW);
+
+        assertThat(PackedTokenBucket.isAllowed(rejected)).isFalse();
+        assertThat(PackedTokenBucket.availableOf(rejected)).isEqualTo(1);
+        assertThat(bucket.getAvailableTokens()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectionStoresTheRefill() {
+        AtomicTokenBucket bucket = new AtomicTokenBucket(PackedTokenBucket.pack(0, NOW));
+
+        assertThat(PackedTokenBucket.isAllowed(bucket.tryConsume(5, 10, 1.0, NOW + 2_000))).isFalse();
+        assertThat(bucket.getAvailableTokens()).isEqualTo(2);
+        assertThat(bucket.getLastRefillTime()).isEqualTo(NOW + 2_000);
+    }
+
+    @Test
+    void refundNeverExceedsCapacity() {
+        AtomicTokenBucket bucket = AtomicTokenBucket.createNew(5, NOW);
+        bucket.tryConsume(3, 5, 1.0, NOW);
+
+        bucket.refund(2, 5);
+        assertThat(bucket.getAvailableTokens()).isEqualTo(4);
+        bucket.refund(10, 5);
+        assertThat(bucket.getAvailableTokens()).isEqualTo(5);
+        assertThat(bucket.getLastRefillTime()).isEqualTo(NOW);
+    }
+
+    @Test
+    void concurrentConsumersNeverTakeMoreThanCapacity() throws Exception {
+        int threads = 8;
+        long capacity = 10_000;
+        AtomicTokenBucket bucket = AtomicTokenBucket.createNew(capacity, NOW);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long allowed = 0;
+                    for (int j = 0; j < 2 * capacity / threads; j++) {
+                        if (PackedTokenBucket.isAllowed(bucket.tryConsume(1, capacity, 0.0, NOW))) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            start.countDown();
+            long allowed = 0;
+            for (Future<Long> result : results) {
+                allowed += result.get(30, TimeUnit.SECONDS);
+            }
+
+            assertThat(allowed).isEqualTo(capacity);
+            assertThat(bucket.getAvailableTokens()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.model.User;
+import com.ratelimiter.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiKeyFilterTest {
+
+    private static final Instant UPDATED_AT = Instant.parse("2026-01-01T00:00:00Z");
+
+    private UserRepository userRepository;
+    private ApiKeyFilter apiKeyFilter;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAllApiKeys()).thenReturn(List.of("rl_known"));
+        when(userRepository.findLatestUpdatedAt()).thenReturn(Optional.of(UPDATED_AT));
+        when(userRepository.findUpdatedSince(any())).thenReturn(List.of());
+        // Large enough that no test key is a false positive
+        apiKeyFilter = new ApiKeyFilter(userRepository, new SimpleMeterRegistry(), 1000, 1e-9, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        apiKeyFilter.close();
+    }
+
+    @Test
+    void everyKeyPassesUntilTheFilterIsBuilt() {
+        assertThat(apiKeyFilter.mightContain("rl_unknown")).isTrue();
+    }
+
+    @Test
+    void rebuildLoadsTheKeysFromTheTable() {
+        apiKeyFilter.rebuild();
+
+        assertThat(apiKeyFilter.mightContain("rl_known")).isTrue();
+        assertThat(apiKeyFilter.mightContain("rl_unknown")).isFalse();
+    }
+
+    @Test
+    void addedKeyPassesRightAway() {
+        apiKeyFilter.rebuild();
+
+        apiKeyFilter.add("rl_created");
+
+        assertThat(apiKeyFilter.mightContain("rl_created")).isTrue();
+    }
+
+    @Test
+    void refreshAddsKeysUpdatedElsewhere() {
+        apiKeyFilter.rebuild();
+        when(userRepository.findUpdatedSince(any())).thenReturn(List.of(user("rl_rotated", UPDATED_AT.plusSeconds(30))));
+
+        apiKeyFilter.refresh();
+
+        assertThat(apiKeyFilter.mightContain("rl_rotated")).isTrue();
+        // Overlap: re-reads from 5 s before the latest update seen
+        verify(userRepository).findUpdatedSince(UPDATED_AT.minusSeconds(5));
+        apiKeyFilter.refresh();
+        verify(userRepository).findUpdatedSince(UPDATED_AT.plusSeconds(25));
+    }
+
+    @Test
+    void refreshRetriesAFailedBuild() {
+        when(userRepository.findAllApiKeys()).thenThrow(new IllegalStateException("database down"));
+        apiKeyFilter.rebuild();
+        assertThat(apiKeyFilter.mightContain("rl_unknown")).isTrue();
+
+        doReturn(List.of("rl_known")).when(userRepository).findAllApiKeys();
+        apiKeyFilter.refresh();
+
+        assertThat(apiKeyFilter.mightContain("rl_known")).isTrue();
+        assertThat(apiKeyFilter.mightContain("rl_unknown")).isFalse();
+    }
+
+    @Test
+    void expectedFalsePositiveRateFollowsTheKeysAdded() {
+        assertThat(apiKeyFilter.getExpectedFalsePositiveRate()).isEqualTo(1.0);
+        apiKeyFilter.rebuild();
+
+        assertThat(apiKeyFilter.getExpectedFalsePositiveRate()).isLessThan(1e-9);
+    }
+
+    private static User user(String apiKey, Instant updatedAt) {
+        User user = new User();
+        user.setApiKey(apiKey);
+        user.setUpdatedAt(updatedAt);
+        return user;
+    }
+}
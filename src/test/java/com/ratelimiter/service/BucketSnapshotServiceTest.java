@@ -0,0 +1,87 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedTokenBucket;
+import com.ratelimiter.service.impl.InMemoryTokenBucketRateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static com.ratelimiter.utils.ApplicationConstants.KEY_PREFIX;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BucketSnapshotServiceTest {
+
+    private static final long CAPACITY = 10;
+    // One token every 1000 s, so nothing refills during a test
+    private static final double REFILL_RATE = 0.001;
+
+    @TempDir
+    Path directory;
+
+    private RateLimitConfig config;
+    private Path snapshot;
+
+    @BeforeEach
+    void setUp() {
+        config = new RateLimitConfig();
+        config.setDefaultRefillRate(REFILL_RATE);
+        snapshot = directory.resolve("buckets.snapshot");
+    }
+
+    @Test
+    void restoredBucketsKeepTheirTokens() throws Exception {
+        InMemoryTokenBucketRateLimiter before = new InMemoryTokenBucketRateLimiter(config, 1);
+        before.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+        before.tryConsume("api:b", CAPACITY, CAPACITY, REFILL_RATE);
+
+        assertThat(service(before).write()).isEqualTo(2);
+        try (Stream<Path> files = Files.list(directory)) {
+            // The temporary file was renamed over the snapshot
+            assertThat(files).containsExactly(snapshot);
+        }
+
+        InMemoryTokenBucketRateLimiter after = new InMemoryTokenBucketRateLimiter(config, 1);
+        assertThat(service(after).restore()).isEqualTo(2);
+        assertThat(after.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(6);
+        assertThat(after.peek("api:b", CAPACITY, REFILL_RATE).getRemainingTokens()).isZero();
+    }
+
+    @Test
+    void bucketsThatHaveRefilledAreNotWritten() throws Exception {
+        InMemoryTokenBucketRateLimiter before = new InMemoryTokenBucketRateLimiter(config, 1);
+        before.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+        long refilledAt = System.currentTimeMillis() - config.slowestRefillMs();
+        before.restoreBucket(KEY_PREFIX + "api:old", PackedTokenBucket.pack(0, refilledAt));
+
+        assertThat(service(before).write()).isEqualTo(1);
+    }
+
+    @Test
+    void restoreKeepsBucketsCreatedSinceStartup() throws Exception {
+        InMemoryTokenBucketRateLimiter before = new InMemoryTokenBucketRateLimiter(config, 1);
+        before.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+        service(before).write();
+
+        InMemoryTokenBucketRateLimiter after = new InMemoryTokenBucketRateLimiter(config, 1);
+        after.tryConsume("api:a", 1, CAPACITY, REFILL_RATE);
+        service(after).restore();
+
+        assertThat(after.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(9);
+    }
+
+    @Test
+    void fileThatIsNotASnapshotIsIgnored() throws Exception {
+        Files.writeString(snapshot, "not a snapshot, but long enough to read a header");
+
+        assertThat(service(new InMemoryTokenBucketRateLimiter(config, 1)).restore()).isZero();
+    }
+
+    private BucketSnapshotService service(RateLimiter rateLimiter) {
+        return new BucketSnapshotService(rateLimiter, config, snapshot.toString(), 0);
+    }
+}
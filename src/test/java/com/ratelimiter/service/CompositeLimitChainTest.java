@@ -0,0 +1,85 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.ratelimiter.configuration.LimitConfigs.limit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CompositeLimitChainTest {
+
+    private RateLimitConfig config;
+    private CompositeLimitChain chain;
+
+    @BeforeEach
+    void setUp() {
+        config = new RateLimitConfig();
+        chain = new CompositeLimitChain(config);
+    }
+
+    @Test
+    void withoutCompositeLimitsTheChainIsTheClientBucket() {
+        RateLimitRequest client = RateLimitRequest.forTier("api:a", "free", 1);
+
+        assertThat(chain.chainOf(client, "", 1)).containsExactly(client);
+        assertThat(chain.chainOf(client, "unknown", 1)).containsExactly(client);
+    }
+
+    @Test
+    void chainHasClientPerClientEndpointAndServiceBuckets() {
+        RateLimitConfig.PolicyConfig policy = new RateLimitConfig.PolicyConfig();
+        policy.setPerClient(limit(20, 2, 1));
+        policy.setEndpoint(limit(400, 80, 1));
+        config.getComposite().getPolicies().put("reports", policy);
+        config.getComposite().setService(limit(1000, 100, 1));
+        RateLimitRequest client = RateLimitRequest.forTier("api:a", "free", 3);
+
+        List<RateLimitRequest> requests = chain.chainOf(client, "reports", 2);
+
+        assertThat(requests).containsExactly(
+                client,
+                RateLimitRequest.withLimits("policy:reports:api:a", 2, 20, 2),
+                RateLimitRequest.withLimits("policy:reports", 2, 400, 80),
+                RateLimitRequest.withLimits("service", 2, 1000, 100));
+    }
+
+    @Test
+    void stripedLimitChargesOneStripeWithItsShare() {
+        config.getComposite().setService(limit(1000, 100, 4));
+
+        for (int i = 0; i < 50; i++) {
+            RateLimitRequest stripe = chain.chainOf(RateLimitRequest.of("api:a", 1), "", 1).get(1);
+            assertThat(stripe.key()).matches("service#[0-3]");
+            assertThat(stripe.bucketCapacity()).isEqualTo(250);
+            assertThat(stripe.bucketRefillRate()).isEqualTo(25.0);
+        }
+    }
+
+    @Test
+    void stripeSharesAddUpToTheLimit() {
+        assertThat(IntStream.range(0, 4).mapToLong(stripe -> CompositeLimitChain.shareOf(10, 4, stripe)))
+                .containsExactly(3L, 3L, 2L, 2L);
+        double totalRate = IntStream.range(0, 4)
+                .mapToDouble(stripe -> CompositeLimitChain.stripeRefillRate(10.5, 4, stripe))
+                .sum();
+        assertThat(totalRate).isCloseTo(10.5, within(1e-9));
+        // Whole tokens per stripe, the fraction on the first one
+        assertThat(CompositeLimitChain.stripeRefillRate(10.5, 4, 0)).isEqualTo(3.5);
+        assertThat(CompositeLimitChain.stripeRefillRate(10.5, 4, 3)).isEqualTo(2.0);
+    }
+
+    @Test
+    void tightestIsTheResultWithFewestRemainingTokens() {
+        RateLimitStatus tightest = RateLimitStatus.allowed(2, 400);
+
+        assertThat(CompositeLimitChain.tightestOf(List.of(
+                RateLimitStatus.allowed(9, 10), tightest, RateLimitStatus.allowed(70, 100)))).isSameAs(tightest);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.model.User;
+import com.ratelimiter.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserIdentityIndexTest {
+
+    private static final Instant UPDATED_AT = Instant.parse("2026-01-01T00:00:00Z");
+
+    private UserRepository userRepository;
+    private UserIdentityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAll()).thenReturn(List.of(
+                user(1, "rl_alice", "free", true, UPDATED_AT),
+                user(2, "rl_bob", "premium", false, UPDATED_AT.minusSeconds(60))));
+        when(userRepository.findUpdatedSince(any())).thenReturn(List.of());
+        // Refreshes are driven by the tests, not the background thread
+        index = new UserIdentityIndex(userRepository, new SimpleMeterRegistry(), 3_600_000, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    @Test
+    void loadsEveryUserIncludingDisabledOnes() {
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.findByApiKey("rl_alice")).get()
+                .satisfies(user -> {
+                    assertThat(user.getId()).isEqualTo(1);
+                    assertThat(user.getTier()).isEqualTo("free");
+                    assertThat(user.isEnabled()).isTrue();
+                });
+        assertThat(index.findByApiKey("rl_bob")).get().extracting(User::isEnabled).isEqualTo(false);
+        assertThat(index.findByApiKey("rl_unknown")).isEmpty();
+    }
+
+    @Test
+    void refreshAppliesNewAndChangedUsers() {
+        when(userRepository.findUpdatedSince(any())).thenReturn(List.of(
+                user(1, "rl_alice", "enterprise", true, UPDATED_AT.plusSeconds(10)),
+                user(3, "rl_carol", "free", true, UPDATED_AT.plusSeconds(20))));
+
+        index.refresh();
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.findByApiKey("rl_alice")).get().extracting(User::getTier).isEqualTo("enterprise");
+        assertThat(index.findByApiKey("rl_carol")).isPresent();
+        verify(userRepository).findUpdatedSince(UPDATED_AT.minusSeconds(5));
+    }
+
+    @Test
+    void rotatedKeyStopsWorking() {
+        when(userRepository.findUpdatedSince(any())).thenReturn(List.of(
+                user(1, "rl_alice_rotated", "free", true, UPDATED_AT.plusSeconds(10))));
+
+        index.refresh();
+
+        assertThat(index.findByApiKey("rl_alice")).isEmpty();
+        assertThat(index.findByApiKey("rl_alice_rotated")).get().extracting(User::getId).isEqualTo(1L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void unchangedRowsOnlyMoveTheWatermark() {
+        when(userRepository.findUpdatedSince(any())).thenReturn(List.of(
+                user(1, "rl_alice", "free", true, UPDATED_AT.plusSeconds(10))));
+
+        index.refresh();
+        index.refresh();
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.findByApiKey("rl_alice")).get().extracting(User::getTier).isEqualTo("free");
+        verify(userRepository).findUpdatedSince(UPDATED_AT.plusSeconds(5));
+    }
+
+    @Test
+    void removedKeyIsGoneRightAwayOutsideATransaction() {
+        index.remove("rl_bob");
+
+        assertThat(index.findByApiKey("rl_bob")).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRefreshKeepsTheCurrentIndex() {
+        when(userRepository.findUpdatedSince(any())).thenThrow(new IllegalStateException("database down"));
+
+        index.refresh();
+
+        assertThat(index.findByApiKey("rl_alice")).isPresent();
+    }
+
+    private static User user(long id, String apiKey, String tier, boolean enabled, Instant updatedAt) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setApiKey(apiKey);
+        user.setTier(tier);
+        user.setEnabled(enabled);
+        user.setUpdatedAt(updatedAt);
+        return user;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineGcraRateLimiterTest {
+
+    private static final long CAPACITY = 5;
+    // One token every 1000 s, so nothing refills during a test
+    private static final double REFILL_RATE = 0.001;
+
+    private CaffeineGcraRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new CaffeineGcraRateLimiter(new RateLimitConfig(), 1);
+    }
+
+    @Test
+    void allowsBurstOfCapacityThenRejects() {
+        for (int i = 1; i <= CAPACITY; i++) {
+            RateLimitStatus status = rateLimiter.tryConsume("api:a", 1, CAPACITY, REFILL_RATE);
+            assertThat(status.isAllowed()).isTrue();
+            assertThat(status.getRemainingTokens()).isEqualTo(CAPACITY - i);
+        }
+
+        RateLimitStatus rejected = rateLimiter.tryConsume("api:a", 1, CAPACITY, REFILL_RATE);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRemainingTokens()).isZero();
+        // The next token is one emission interval away
+        assertThat(rejected.getRetryAfterMs()).isBetween(999_000L, 1_000_000L);
+    }
+
+    @Test
+    void rejectedRequestDoesNotMoveTheArrivalTime() {
+        rateLimiter.tryConsume("api:a", 3, CAPACITY, REFILL_RATE);
+
+        assertThat(rateLimiter.tryConsume("api:a", 3, CAPACITY, REFILL_RATE).isAllowed()).isFalse();
+        assertThat(rateLimiter.tryConsume("api:a", 2, CAPACITY, REFILL_RATE).isAllowed()).isTrue();
+    }
+
+    @Test
+    void peekReadsWithoutCharging() {
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+        rateLimiter.tryConsume("api:a", 2, CAPACITY, REFILL_RATE);
+
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(3);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(3);
+        assertThat(rateLimiter.getBucketCount()).isEqualTo(1);
+    }
+
+    @Test
+    void refundMovesTheArrivalTimeBack() {
+        RateLimitRequest request = RateLimitRequest.withLimits("api:a", 4, CAPACITY, REFILL_RATE);
+        rateLimiter.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+
+        rateLimiter.refund(request);
+
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void allOrNothingBatchChargesNothingWhenOneKeyIsShort() {
+        rateLimiter.tryConsume("api:b", CAPACITY, CAPACITY, REFILL_RATE);
+
+        List<RateLimitStatus> statuses = rateLimiter.tryConsumeAll(List.of(
+                RateLimitRequest.withLimits("api:a", 2, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:b", 1, CAPACITY, REFILL_RATE)), true);
+
+        assertThat(statuses).noneMatch(RateLimitStatus::isAllowed);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void allOrNothingBatchCountsAKeyListedTwice() {
+        List<RateLimitStatus> statuses = rateLimiter.tryConsumeAll(List.of(
+                RateLimitRequest.withLimits("api:a", 3, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:a", 3, CAPACITY, REFILL_RATE)), true);
+
+        assertThat(statuses).noneMatch(RateLimitStatus::isAllowed);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void emissionIntervalAndRemainingTokens() {
+        assertThat(CaffeineGcraRateLimiter.emissionIntervalMicros(4.0)).isEqualTo(250_000);
+        assertThat(CaffeineGcraRateLimiter.emissionIntervalMicros(1e9)).isEqualTo(1);
+
+        long interval = 1_000_000;
+        long now = 10_000_000;
+        assertThat(CaffeineGcraRateLimiter.remainingTokens(now - 1, now, CAPACITY, interval)).isEqualTo(CAPACITY);
+        assertThat(CaffeineGcraRateLimiter.remainingTokens(now + 2 * interval, now, CAPACITY, interval)).isEqualTo(3);
+        assertThat(CaffeineGcraRateLimiter.remainingTokens(now + 9 * interval, now, CAPACITY, interval)).isZero();
+    }
+}
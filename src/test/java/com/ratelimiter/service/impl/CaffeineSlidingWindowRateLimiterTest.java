@@ -0,0 +1,111 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.PackedSlidingWindow;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaffeineSlidingWindowRateLimiterTest {
+
+    private static final long LIMIT = 5;
+    // LIMIT tokens per hour: the window is one hour
+    private static final double REFILL_RATE = LIMIT / 3600.0;
+
+    private CaffeineSlidingWindowRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitConfig config = new RateLimitConfig();
+        RateLimitConfig.TierConfig tier = new RateLimitConfig.TierConfig();
+        tier.setCapacity(LIMIT);
+        tier.setRefillRate(1.0);
+        tier.setWindow(Duration.ofHours(1));
+        config.getTiers().put("free", tier);
+        rateLimiter = new CaffeineSlidingWindowRateLimiter(config, 1);
+    }
+
+    @Test
+    void countsRequestsUpToTheLimit() {
+        for (int i = 1; i <= LIMIT; i++) {
+            RateLimitStatus status = rateLimiter.tryConsume("api:a", 1, LIMIT, REFILL_RATE);
+            assertThat(status.isAllowed()).isTrue();
+            assertThat(status.getRemainingTokens()).isEqualTo(LIMIT - i);
+        }
+
+        RateLimitStatus rejected = rateLimiter.tryConsume("api:a", 1, LIMIT, REFILL_RATE);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterMs()).isPositive();
+    }
+
+    @Test
+    void rejectedRequestIsNotCounted() {
+        rateLimiter.tryConsume("api:a", 3, LIMIT, REFILL_RATE);
+
+        assertThat(rateLimiter.tryConsume("api:a", 3, LIMIT, REFILL_RATE).isAllowed()).isFalse();
+        assertThat(rateLimiter.tryConsume("api:a", 2, LIMIT, REFILL_RATE).isAllowed()).isTrue();
+    }
+
+    @Test
+    void tierUsesItsConfiguredWindow() {
+        for (int i = 0; i < LIMIT; i++) {
+            assertThat(rateLimiter.tryConsumeForTier("api:a", "free", 1).isAllowed()).isTrue();
+        }
+
+        assertThat(rateLimiter.tryConsumeForTier("api:a", "free", 1).isAllowed()).isFalse();
+        assertThat(rateLimiter.peekForTier("api:a", "free").getRemainingTokens()).isZero();
+    }
+
+    @Test
+    void refundUncountsTokens() {
+        rateLimiter.tryConsume("api:a", 4, LIMIT, REFILL_RATE);
+
+        rateLimiter.refund(RateLimitRequest.withLimits("api:a", 3, LIMIT, REFILL_RATE));
+
+        assertThat(rateLimiter.peek("api:a", LIMIT, REFILL_RATE).getRemainingTokens()).isEqualTo(4);
+    }
+
+    @Test
+    void limitAboveThePackedCountIsRejected() {
+        long limit = PackedSlidingWindow.MAX_COUNT + 1;
+
+        assertThatThrownBy(() -> rateLimiter.tryConsume("api:a", 1, limit, limit / 3600.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rollKeepsOnlyTheAdjacentWindow() {
+        long state = PackedSlidingWindow.pack(10, 2, 7);
+
+        assertThat(PackedSlidingWindow.roll(state, 10)).isEqualTo(state);
+        long next = PackedSlidingWindow.roll(state, 11);
+        assertThat(PackedSlidingWindow.previousOf(next)).isEqualTo(7);
+        assertThat(PackedSlidingWindow.currentOf(next)).isZero();
+        long later = PackedSlidingWindow.roll(state, 12);
+        assertThat(PackedSlidingWindow.previousOf(later)).isZero();
+        assertThat(PackedSlidingWindow.currentOf(later)).isZero();
+    }
+
+    @Test
+    void estimateWeighsThePreviousWindowByItsRemainingOverlap() {
+        assertThat(PackedSlidingWindow.estimate(10, 2, 0, 1000)).isEqualTo(12.0);
+        assertThat(PackedSlidingWindow.estimate(10, 2, 250, 1000)).isEqualTo(9.5);
+        assertThat(PackedSlidingWindow.estimate(10, 2, 1000, 1000)).isEqualTo(2.0);
+    }
+
+    @Test
+    void retryAfterWaitsForThePreviousWindowToSlideOut() {
+        // limit 10, 6 in the previous window, 4 in the current one: 1 more fits once 1/6 of the window passed
+        assertThat(PackedSlidingWindow.retryAfterMs(6, 4, 1, 10, 0, 600)).isEqualTo(100);
+        // nothing left to slide out: wait for the next window
+        assertThat(PackedSlidingWindow.retryAfterMs(0, 10, 1, 10, 200, 1000)).isEqualTo(900);
+        // more than the limit can never fit
+        assertThat(PackedSlidingWindow.retryAfterMs(0, 0, 11, 10, 200, 1000)).isEqualTo(1000);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ratelimiter.service.impl;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ratelimiter.configuration.RateLimitConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineTokenBucketRateLimiterTest {
+
+    private static final long CAPACITY = 10;
+    // One token every 1000 s, so nothing refills during a test
+    private static final double REFILL_RATE = 0.001;
+
+    private CaffeineTokenBucketRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new CaffeineTokenBucketRateLimiter(new RateLimitConfig(), 1);
+    }
+
+    @Test
+    void newKeyIsOneMissAndLaterRequestsAreHits() {
+        rateLimiter.tryConsume("api:a", 1, CAPACITY, REFILL_RATE);
+
+        CacheStats stats = rateLimiter.getCacheStats();
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(stats.hitCount()).isZero();
+
+        rateLimiter.tryConsume("api:a", 1, CAPACITY, REFILL_RATE);
+        rateLimiter.tryConsume("api:b", 1, CAPACITY, REFILL_RATE);
+
+        stats = rateLimiter.getCacheStats();
+        assertThat(stats.requestCount()).isEqualTo(3);
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void peekDoesNotCountAsARequest() {
+        rateLimiter.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(6);
+        assertThat(rateLimiter.getCacheStats().requestCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitRequest;
+import com.ratelimiter.model.RateLimitStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryTokenBucketRateLimiterTest {
+
+    private static final long CAPACITY = 10;
+    // One token every 1000 s, so nothing refills during a test
+    private static final double REFILL_RATE = 0.001;
+
+    private InMemoryTokenBucketRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new InMemoryTokenBucketRateLimiter(new RateLimitConfig(), 1);
+    }
+
+    @Test
+    void statusAndDecisionPathsAgree() {
+        RateLimitStatus status = rateLimiter.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+        RateLimitDecision decision = new RateLimitDecision();
+
+        assertThat(status.isAllowed()).isTrue();
+        assertThat(status.getRemainingTokens()).isEqualTo(6);
+        assertThat(rateLimiter.tryConsume("api:a", 4, CAPACITY, REFILL_RATE, decision)).isTrue();
+        assertThat(decision.getRemainingTokens()).isEqualTo(2);
+
+        assertThat(rateLimiter.tryConsume("api:a", 4, CAPACITY, REFILL_RATE, decision)).isFalse();
+        assertThat(decision.getRemainingTokens()).isEqualTo(2);
+        RateLimitStatus rejected = rateLimiter.tryConsume("api:a", 4, CAPACITY, REFILL_RATE);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterMs()).isEqualTo(decision.getRetryAfterMs()).isEqualTo(2_000_000);
+    }
+
+    @Test
+    void allOrNothingBatchRefundsTheKeysChargedBeforeTheRejection() {
+        rateLimiter.tryConsume("api:c", CAPACITY, CAPACITY, REFILL_RATE);
+
+        List<RateLimitStatus> statuses = rateLimiter.tryConsumeAll(List.of(
+                RateLimitRequest.withLimits("api:a", 3, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:b", 5, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:c", 1, CAPACITY, REFILL_RATE)), true);
+
+        assertThat(statuses).hasSize(3).noneMatch(RateLimitStatus::isAllowed);
+        assertThat(statuses).allMatch(status -> status.getRetryAfterMs() == 1_000_000);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+        assertThat(rateLimiter.peek("api:b", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+        assertThat(rateLimiter.peek("api:c", CAPACITY, REFILL_RATE).getRemainingTokens()).isZero();
+    }
+
+    @Test
+    void allOrNothingBatchRefundsAKeyListedTwice() {
+        List<RateLimitStatus> statuses = rateLimiter.tryConsumeAll(List.of(
+                RateLimitRequest.withLimits("api:a", 6, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:a", 6, CAPACITY, REFILL_RATE)), true);
+
+        assertThat(statuses).noneMatch(RateLimitStatus::isAllowed);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void allOrNothingBatchChargesEveryKeyWhenAllFit() {
+        List<RateLimitStatus> statuses = rateLimiter.tryConsumeAll(List.of(
+                RateLimitRequest.withLimits("api:a", 3, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:b", 5, CAPACITY, REFILL_RATE)), true);
+
+        assertThat(statuses).extracting(RateLimitStatus::getRemainingTokens).containsExactly(7L, 5L);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(7);
+    }
+
+    @Test
+    void partialBatchChargesTheKeysThatFit() {
+        rateLimiter.tryConsume("api:b", CAPACITY, CAPACITY, REFILL_RATE);
+
+        List<RateLimitStatus> statuses = rateLimiter.tryConsumeAll(List.of(
+                RateLimitRequest.withLimits("api:a", 3, CAPACITY, REFILL_RATE),
+                RateLimitRequest.withLimits("api:b", 1, CAPACITY, REFILL_RATE)), false);
+
+        assertThat(statuses).extracting(RateLimitStatus::isAllowed).containsExactly(true, false);
+        assertThat(rateLimiter.peek("api:a", CAPACITY, REFILL_RATE).getRemainingTokens()).isEqualTo(7);
+    }
+}
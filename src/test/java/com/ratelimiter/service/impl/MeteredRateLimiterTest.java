@@ -0,0 +1,60 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import com.ratelimiter.model.RateLimitStatus;
+import com.ratelimiter.service.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MeteredRateLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MeteredRateLimiter meteredRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiter delegate = mock(RateLimiter.class);
+        when(delegate.tryConsumeForTier(anyString(), any(), anyLong())).thenReturn(RateLimitStatus.allowed(5, 10));
+        when(delegate.tryConsumeForTier(anyString(), any())).thenReturn(RateLimitStatus.rejected(0, 10, 1000));
+        RateLimitConfig config = new RateLimitConfig();
+        config.getTiers().put("free", new RateLimitConfig.TierConfig());
+        config.getTiers().put("premium", new RateLimitConfig.TierConfig());
+        meterRegistry = new SimpleMeterRegistry();
+        meteredRateLimiter = new MeteredRateLimiter(delegate, config, meterRegistry, "caffeine", "token-bucket");
+    }
+
+    @Test
+    void decisionsAreCountedPerConfiguredTier() {
+        meteredRateLimiter.tryConsumeForTier("api:a", "premium", 1);
+        meteredRateLimiter.tryConsumeForTier("api:a", "PREMIUM", 1);
+        meteredRateLimiter.tryConsumeForTier("api:a", "free");
+
+        assertThat(count("premium", "allowed")).isEqualTo(2);
+        assertThat(count("free", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void unknownTiersAreCountedAsDefaultWithoutNewMeters() {
+        int meters = meterRegistry.getMeters().size();
+
+        for (int i = 0; i < 100; i++) {
+            meteredRateLimiter.tryConsumeForTier("api:a", "header-tier-" + i, 1);
+        }
+        meteredRateLimiter.tryConsumeForTier("api:a", null, 1);
+
+        assertThat(count("default", "allowed")).isEqualTo(101);
+        assertThat(meterRegistry.getMeters()).hasSize(meters);
+    }
+
+    private double count(String tier, String outcome) {
+        return meterRegistry.get("ratelimiter.decisions").tag("tier", tier).tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,130 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.model.PackedTokenBucket;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapBucketTableTest {
+
+    private static final long NOW = PackedTokenBucket.EPOCH_MS + 86_400_000L;
+    private static final long CAPACITY = 10;
+
+    @Test
+    void sizedToPowerOfTwoSets() {
+        assertThat(OffHeapBucketTable.setsFor(1)).isEqualTo(1);
+        assertThat(OffHeapBucketTable.setsFor(OffHeapBucketTable.WAYS + 1)).isEqualTo(2);
+        assertThat(OffHeapBucketTable.allocate(1000).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void newKeyStartsFullAndIsCharged() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(64);
+        long key = OffHeapBucketTable.hash("api:a");
+
+        assertThat(PackedTokenBucket.availableOf(table.tryConsume(key, 4, CAPACITY, 0.0, NOW))).isEqualTo(6);
+        assertThat(PackedTokenBucket.availableOf(table.tryConsume(key, 4, CAPACITY, 0.0, NOW))).isEqualTo(2);
+        long rejected = table.tryConsume(key, 4, CAPACITY, 0.0, NOW);
+
+        assertThat(PackedTokenBucket.isAllowed(rejected)).isFalse();
+        assertThat(PackedTokenBucket.availableOf(rejected)).isEqualTo(2);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(64);
+        long a = OffHeapBucketTable.hash("api:a");
+        long b = OffHeapBucketTable.hash("api:b");
+
+        table.tryConsume(a, CAPACITY, CAPACITY, 0.0, NOW);
+
+        assertThat(table.peek(a, CAPACITY, 0.0, NOW)).isZero();
+        assertThat(table.peek(b, CAPACITY, 0.0, NOW)).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void consumedTokensRefillOverTime() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(64);
+        long key = OffHeapBucketTable.hash("api:a");
+        table.tryConsume(key, CAPACITY, CAPACITY, 2.0, NOW);
+
+        assertThat(table.peek(key, CAPACITY, 2.0, NOW + 1_500)).isEqualTo(3);
+        assertThat(PackedTokenBucket.isAllowed(table.tryConsume(key, 3, CAPACITY, 2.0, NOW + 1_500))).isTrue();
+        assertThat(PackedTokenBucket.isAllowed(table.tryConsume(key, 1, CAPACITY, 2.0, NOW + 1_500))).isFalse();
+    }
+
+    @Test
+    void peekDoesNotCreateBucket() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(64);
+
+        assertThat(table.peek(OffHeapBucketTable.hash("api:a"), CAPACITY, 1.0, NOW)).isEqualTo(CAPACITY);
+        assertThat(table.size()).isZero();
+    }
+
+    @Test
+    void refundAndRemove() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(64);
+        long key = OffHeapBucketTable.hash("api:a");
+        table.tryConsume(key, 8, CAPACITY, 0.0, NOW);
+
+        table.refund(key, 5, CAPACITY);
+        assertThat(table.peek(key, CAPACITY, 0.0, NOW)).isEqualTo(7);
+        table.refund(key, 5, CAPACITY);
+        assertThat(table.peek(key, CAPACITY, 0.0, NOW)).isEqualTo(CAPACITY);
+
+        assertThat(table.remove(key)).isTrue();
+        assertThat(table.remove(key)).isFalse();
+        assertThat(table.size()).isZero();
+    }
+
+    @Test
+    void fullSetEvictsKeyNotReferencedSinceTheClockPassed() {
+        // A single set of WAYS slots
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(OffHeapBucketTable.WAYS);
+        for (int i = 0; i < OffHeapBucketTable.WAYS; i++) {
+            table.tryConsume(OffHeapBucketTable.hash("key" + i), 1, CAPACITY, 0.0, NOW);
+        }
+
+        // Every slot is referenced: the hand clears them all and evicts the first
+        table.tryConsume(OffHeapBucketTable.hash("new1"), 1, CAPACITY, 0.0, NOW);
+        assertThat(table.getEvictionCount()).isEqualTo(1);
+        assertThat(table.peek(OffHeapBucketTable.hash("key0"), CAPACITY, 0.0, NOW)).isEqualTo(CAPACITY);
+
+        // key1 is used again, so the hand skips it and evicts key2
+        table.tryConsume(OffHeapBucketTable.hash("key1"), 1, CAPACITY, 0.0, NOW);
+        table.tryConsume(OffHeapBucketTable.hash("new2"), 1, CAPACITY, 0.0, NOW);
+
+        assertThat(table.getEvictionCount()).isEqualTo(2);
+        assertThat(table.peek(OffHeapBucketTable.hash("key1"), CAPACITY, 0.0, NOW)).isEqualTo(CAPACITY - 2);
+        assertThat(table.peek(OffHeapBucketTable.hash("key2"), CAPACITY, 0.0, NOW)).isEqualTo(CAPACITY);
+        assertThat(table.size()).isEqualTo(OffHeapBucketTable.WAYS);
+    }
+
+    @Test
+    void evictedKeyStartsFullAgain() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(OffHeapBucketTable.WAYS);
+        long first = OffHeapBucketTable.hash("key0");
+        table.tryConsume(first, CAPACITY, CAPACITY, 0.0, NOW);
+        for (int i = 1; i <= OffHeapBucketTable.WAYS; i++) {
+            table.tryConsume(OffHeapBucketTable.hash("key" + i), 1, CAPACITY, 0.0, NOW);
+        }
+
+        assertThat(PackedTokenBucket.availableOf(table.tryConsume(first, 1, CAPACITY, 0.0, NOW)))
+                .isEqualTo(CAPACITY - 1);
+    }
+
+    @Test
+    void reclaimDropsBucketsRefilledBeforeTheCutoff() {
+        OffHeapBucketTable table = OffHeapBucketTable.allocate(64);
+        table.tryConsume(OffHeapBucketTable.hash("old"), 1, CAPACITY, 0.0, NOW);
+        table.tryConsume(OffHeapBucketTable.hash("recent"), 1, CAPACITY, 0.0, NOW + 10_000);
+
+        assertThat(table.reclaim(NOW + 5_000, new BitSet())).isEqualTo(1);
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.peek(OffHeapBucketTable.hash("recent"), CAPACITY, 0.0, NOW + 10_000))
+                .isEqualTo(CAPACITY - 1);
+    }
+}
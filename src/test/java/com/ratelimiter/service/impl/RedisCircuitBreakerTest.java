@@ -0,0 +1,91 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.service.impl.RedisCircuitBreaker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisCircuitBreakerTest {
+
+    private static final int MINIMUM_CALLS = 4;
+    private static final int PROBES = 2;
+    private static final long OPEN_MS = 20;
+
+    private RedisCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        // 50% failures over at least 4 calls, 100 ms slow calls, a window much longer than the test
+        breaker = new RedisCircuitBreaker(50, MINIMUM_CALLS, 100, 60_000, OPEN_MS, PROBES);
+    }
+
+    @Test
+    void opensOnceTheFailureRateIsReachedOverEnoughCalls() {
+        breaker.onSuccess(0);
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+
+        breaker.onSuccess(0);
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void slowCallCountsAsFailure() {
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            breaker.onSuccess(200_000_000L);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void halfOpenLetsOnlyTheProbesThrough() throws InterruptedException {
+        trip();
+        Thread.sleep(OPEN_MS + 10);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void failedProbeOpensAgain() throws InterruptedException {
+        trip();
+        Thread.sleep(OPEN_MS + 10);
+        breaker.tryAcquire();
+
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void closingForgetsTheCallsThatOpenedIt() throws InterruptedException {
+        trip();
+        Thread.sleep(OPEN_MS + 10);
+        for (int i = 0; i < PROBES; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onSuccess(0);
+        }
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+
+        // Still inside the window that opened the breaker
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    private void trip() {
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+}
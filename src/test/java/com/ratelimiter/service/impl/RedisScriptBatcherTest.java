@@ -0,0 +1,176 @@
+package com.ratelimiter.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisScriptBatcherTest {
+
+    private static final int BATCH_SIZE = 8;
+
+    private RedisTemplate<String, Long> redisTemplate;
+    private RedisScript<List<Long>> script;
+    private RedisScriptingCommands scriptingCommands;
+    private RedisScriptBatcher batcher;
+    private final AtomicInteger pipelines = new AtomicInteger();
+    // Keys and arguments of the calls in the current pipeline
+    private final List<List<String>> calls = new ArrayList<>();
+    // Makes the second call of a pipeline get an error reply
+    private volatile boolean failSecondCall;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        script = mock(RedisScript.class);
+        when(script.getSha1()).thenReturn("sha");
+        when(script.getScriptAsString()).thenReturn("return 1");
+        scriptingCommands = mock(RedisScriptingCommands.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+
+        // Each call's reply echoes its last argument
+        doAnswer(call -> {
+            Object[] arguments = call.getArguments();
+            List<String> keysAndArgs = new ArrayList<>();
+            for (int i = 3; i < arguments.length; i++) {
+                keysAndArgs.add(new String((byte[]) arguments[i], StandardCharsets.UTF_8));
+            }
+            return calls.add(keysAndArgs);
+        }).when(scriptingCommands).evalSha(anyString(), any(ReturnType.class), anyInt(), any(byte[][].class));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pipelines.incrementAndGet();
+            calls.clear();
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            List<Object> replies = new ArrayList<>();
+            for (int i = 0; i < calls.size(); i++) {
+                List<String> keysAndArgs = calls.get(i);
+                replies.add(failSecondCall && i == 1
+                        ? new IllegalStateException("ERR script failed")
+                        : List.of(Long.parseLong(keysAndArgs.getLast())));
+            }
+            return replies;
+        });
+        batcher = newBatcher(1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    void concurrentCallsShareOnePipelineAndGetTheirOwnReply() throws Exception {
+        useFullBatches();
+        List<Future<List<Long>>> results = executeConcurrently(BATCH_SIZE);
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertThat(results.get(i).get()).containsExactly((long) i);
+        }
+        assertThat(pipelines).hasValue(1);
+    }
+
+    @Test
+    void failedReplyOnlyFailsItsOwnCall() throws Exception {
+        useFullBatches();
+        failSecondCall = true;
+
+        List<Future<List<Long>>> results = executeConcurrently(BATCH_SIZE);
+
+        int failed = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            try {
+                assertThat(results.get(i).get()).containsExactly((long) i);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).hasMessageContaining("Redis batch call failed");
+                failed++;
+            }
+        }
+        assertThat(failed).isEqualTo(1);
+    }
+
+    @Test
+    void missingScriptIsLoadedAndTheBatchRetriedOnce() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new IllegalStateException("NOSCRIPT No matching script"))
+                .thenReturn(List.of(List.of(42L)));
+
+        assertThat(batcher.execute(List.of("key"), 42)).containsExactly(42L);
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        verify(redisTemplate).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void otherErrorsFailTheCallWithoutRetrying() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new IllegalStateException("connection refused"));
+
+        assertThatThrownBy(() -> batcher.execute(List.of("key"), 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Redis batch call failed");
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void argumentsAreSentAfterTheKeys() {
+        assertThat(batcher.execute(List.of("a", "b"), 7, 8)).containsExactly(8L);
+
+        assertThat(calls).containsExactly(List.of("a", "b", "7", "8"));
+        verify(scriptingCommands).evalSha(eq("sha"), eq(ReturnType.MULTI), eq(2), any(byte[][].class));
+    }
+
+    private RedisScriptBatcher newBatcher(long windowMicros) {
+        return new RedisScriptBatcher(redisTemplate, script, windowMicros, BATCH_SIZE, 10_000, new SimpleMeterRegistry());
+    }
+
+    // Waits up to 5 s for BATCH_SIZE calls, so concurrent calls always end up in one batch
+    private void useFullBatches() {
+        batcher.close();
+        batcher = newBatcher(5_000_000);
+    }
+
+    private List<Future<List<Long>>> executeConcurrently(int calls) {
+        ExecutorService executor = Executors.newFixedThreadPool(calls);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            long arg = i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return batcher.execute(List.of("key" + arg), arg);
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        return results;
+    }
+}
@@ -0,0 +1,64 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.configuration.RateLimitConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedInMemoryTokenBucketRateLimiterTest {
+
+    private static final long CAPACITY = 10;
+
+    private ShardedInMemoryTokenBucketRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        // 5 shards round up to 8; sweep every 5 ms
+        rateLimiter = new ShardedInMemoryTokenBucketRateLimiter(new RateLimitConfig(), 1, 5, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.close();
+    }
+
+    @Test
+    void sweeperDropsOnlyBucketsThatRefilled() throws InterruptedException {
+        // Full again after 1 ms
+        rateLimiter.tryConsume("api:fast", 1, CAPACITY, 1000.0);
+        // Full again after 1000 s
+        rateLimiter.tryConsume("api:slow", 1, CAPACITY, 0.001);
+
+        awaitBucketCount(1);
+
+        assertThat(rateLimiter.peek("api:slow", CAPACITY, 0.001).getRemainingTokens()).isEqualTo(CAPACITY - 1);
+        assertThat(IntStream.range(0, rateLimiter.getShardCount())
+                .mapToLong(shard -> rateLimiter.getShardStats(shard).evictions())
+                .sum()).isEqualTo(1);
+    }
+
+    @Test
+    void shardStatsAddUpToTheBucketCount() {
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.tryConsume("api:" + i, 1, CAPACITY, 0.001);
+        }
+
+        assertThat(rateLimiter.getShardCount()).isEqualTo(8);
+        assertThat(IntStream.range(0, rateLimiter.getShardCount())
+                .map(shard -> rateLimiter.getShardStats(shard).bucketCount())
+                .sum()).isEqualTo(100);
+        assertThat(rateLimiter.getShardStats(3).shard()).isEqualTo(3);
+    }
+
+    private void awaitBucketCount(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (rateLimiter.getBucketCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(rateLimiter.getBucketCount()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,98 @@
+package com.ratelimiter.service.impl;
+
+import com.ratelimiter.model.PackedTokenBucket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedBucketFileTest {
+
+    private static final long NOW = PackedTokenBucket.EPOCH_MS + 86_400_000L;
+    private static final long CAPACITY = 10;
+    private static final long KEY = OffHeapBucketTable.hash("api:a");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void firstOpenInitializesTheFileAndLaterOpensShareIt() {
+        Path path = directory.resolve("buckets.shm");
+
+        try (SharedBucketFile first = SharedBucketFile.open(path, 1000);
+             SharedBucketFile second = SharedBucketFile.open(path, 1000)) {
+            assertThat(first.created()).isTrue();
+            assertThat(second.created()).isFalse();
+
+            first.table().tryConsume(KEY, 4, CAPACITY, 0.0, NOW);
+
+            assertThat(second.table().peek(KEY, CAPACITY, 0.0, NOW)).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void existingGeometryIsAdoptedWhateverTheRequestedSize() {
+        Path path = directory.resolve("buckets.shm");
+
+        try (SharedBucketFile first = SharedBucketFile.open(path, 1000);
+             SharedBucketFile second = SharedBucketFile.open(path, 100_000)) {
+            assertThat(second.created()).isFalse();
+            assertThat(second.table().capacity()).isEqualTo(first.table().capacity()).isEqualTo(1024);
+        }
+    }
+
+    @Test
+    void fileWithoutTheMagicIsReplaced() throws IOException {
+        Path path = directory.resolve("buckets.shm");
+        // Header written but not marked complete, as left by a process that crashed while initializing
+        Files.write(path, new byte[SharedBucketFile.HEADER_BYTES + 128]);
+
+        try (SharedBucketFile file = SharedBucketFile.open(path, 1000)) {
+            assertThat(file.created()).isTrue();
+            assertThat(Files.size(path))
+                    .isEqualTo(SharedBucketFile.HEADER_BYTES + OffHeapBucketTable.bytesFor(OffHeapBucketTable.setsFor(1000)));
+        }
+        assertThat(onlyFileIn(directory)).isEqualTo(path);
+    }
+
+    @Test
+    void fileFromAnotherVersionIsReplacedWithoutTouchingTheOldMapping() throws IOException {
+        Path path = directory.resolve("buckets.shm");
+        try (SharedBucketFile old = SharedBucketFile.open(path, 1000)) {
+            old.table().tryConsume(KEY, 4, CAPACITY, 0.0, NOW);
+            writeVersion(path, 1);
+
+            try (SharedBucketFile replaced = SharedBucketFile.open(path, 1000)) {
+                assertThat(replaced.created()).isTrue();
+                assertThat(replaced.table().peek(KEY, CAPACITY, 0.0, NOW)).isEqualTo(CAPACITY);
+                // A process still using the old file keeps its buckets until it exits
+                assertThat(old.table().peek(KEY, CAPACITY, 0.0, NOW)).isEqualTo(6);
+            }
+        }
+        assertThat(onlyFileIn(directory)).isEqualTo(path);
+    }
+
+    private static void writeVersion(Path path, int version) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder()).putInt(version);
+            channel.write(buffer.flip(), 8);
+        }
+    }
+
+    private static Path onlyFileIn(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.reduce((a, b) -> {
+                throw new AssertionError("More than one file: " + a + ", " + b);
+            }).orElseThrow();
+        }
+    }
+}